@@ -16,28 +16,41 @@
 
 package com.linkedin.drelephant;
 
+import com.linkedin.drelephant.analysis.AnalysisBackfill;
+import com.linkedin.drelephant.analysis.AnalysisLane;
 import com.linkedin.drelephant.analysis.AnalyticJob;
 import com.linkedin.drelephant.analysis.AnalyticJobGenerator;
+import com.linkedin.drelephant.analysis.AnalyticJobPriorityComparator;
+import com.linkedin.drelephant.analysis.AnalyticJobQueue;
+import com.linkedin.drelephant.analysis.AppResultRetention;
+import com.linkedin.drelephant.analysis.AppResultWriter;
+import com.linkedin.drelephant.analysis.ApplicationType;
+import com.linkedin.drelephant.analysis.ClusterCoordinator;
+import com.linkedin.drelephant.analysis.FetchIntervalController;
 import com.linkedin.drelephant.analysis.HDFSContext;
 import com.linkedin.drelephant.analysis.HadoopSystemContext;
+import com.linkedin.drelephant.analysis.HeuristicExecutor;
 import com.linkedin.drelephant.analysis.AnalyticJobGeneratorHadoop2;
 
 import com.linkedin.drelephant.security.HadoopSecurity;
 import java.io.IOException;
 import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import com.linkedin.drelephant.util.HadoopRestClient;
 import com.linkedin.drelephant.util.Utils;
 import models.AppResult;
 
 import org.apache.commons.lang.exception.ExceptionUtils;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.log4j.Logger;
+import play.api.Play;
 
 
 /**
@@ -49,21 +62,46 @@ public class ElephantRunner implements Runnable {
   private static final long FETCH_INTERVAL = 60 * 1000;     // Interval between fetches
   private static final long RETRY_INTERVAL = 60 * 1000;     // Interval between retries
   private static final int EXECUTOR_NUM = 3;                // The number of executor threads to analyse the jobs
+  private static final int QUEUE_CAPACITY = 10000;          // The maximum number of jobs waiting to be analysed
+  private static final long QUEUE_OFFER_TIMEOUT = 10 * 1000; // How long to wait for room in a full queue at a time
+  private static final int LANE_MIN_THREADS = 1;             // The threads kept by a lane when idle
+  private static final long LANE_SCALE_LATENCY = 60 * 1000;  // How long a job waits before its lane adds a thread
+  private static final int WRITER_BATCH_SIZE = 100;          // The maximum number of results saved at once
+  private static final long WRITER_FLUSH_INTERVAL = 1000;    // How long a result waits to be saved at most
+  private static final long WRITER_STOP_TIMEOUT = 30 * 1000; // How long to wait for the queued results on shutdown
 
   private static final String GENERAL_CONF = "GeneralConf.xml";
   private static final String FETCH_INTERVAL_KEY = "drelephant.analysis.fetch.interval";
   private static final String RETRY_INTERVAL_KEY = "drelephant.analysis.retry.interval";
   private static final String EXECUTOR_NUM_KEY = "drelephant.analysis.thread.count";
+  private static final String QUEUE_CAPACITY_KEY = "drelephant.analysis.queue.capacity";
+  private static final String QUEUE_COMPARATOR_KEY = "drelephant.analysis.queue.comparator";
+  private static final String LANE_SCALE_LATENCY_KEY = "drelephant.analysis.lane.scale.latency";
+  private static final String LANE_KEY_PREFIX = "drelephant.analysis.lane.";
+  private static final String LANE_MIN_THREADS_KEY_SUFFIX = ".thread.min";
+  private static final String LANE_MAX_THREADS_KEY_SUFFIX = ".thread.max";
+  private static final String WRITER_BATCH_SIZE_KEY = "drelephant.analysis.writer.batch.size";
+  private static final String WRITER_FLUSH_INTERVAL_KEY = "drelephant.analysis.writer.flush.interval";
 
   private AtomicBoolean _running = new AtomicBoolean(true);
   private long lastRun;
+  private long lastFetch;
   private long _fetchInterval;
   private long _retryInterval;
   private int _executorNum;
+  private int _queueCapacity;
   private HadoopSecurity _hadoopSecurity;
-  private ExecutorService _service;
-  private BlockingQueue<AnalyticJob> _jobQueue;
+  private long _laneScaleLatency;
+  private int _writerBatchSize;
+  private long _writerFlushInterval;
+  private AppResultWriter _resultWriter;
+  private AppResultRetention _resultRetention;
+  private AnalysisBackfill _backfill;
+  private Comparator<AnalyticJob> _queueComparator;
+  private final Map<ApplicationType, AnalysisLane> _lanes = new ConcurrentHashMap<ApplicationType, AnalysisLane>();
   private AnalyticJobGenerator _analyticJobGenerator;
+  private ClusterCoordinator _clusterCoordinator;
+  private FetchIntervalController _fetchIntervalController;
   private Configuration _configuration;
 
   private void loadGeneralConfiguration() {
@@ -75,6 +113,46 @@ public class ElephantRunner implements Runnable {
     _executorNum = Utils.getNonNegativeInt(_configuration, EXECUTOR_NUM_KEY, EXECUTOR_NUM);
     _fetchInterval = Utils.getNonNegativeLong(_configuration, FETCH_INTERVAL_KEY, FETCH_INTERVAL);
     _retryInterval = Utils.getNonNegativeLong(_configuration, RETRY_INTERVAL_KEY, RETRY_INTERVAL);
+    _queueCapacity = Utils.getNonNegativeInt(_configuration, QUEUE_CAPACITY_KEY, QUEUE_CAPACITY);
+    if (_queueCapacity == 0) {
+      logger.warn("Configuration " + QUEUE_CAPACITY_KEY + " should be positive. Resetting it to " + QUEUE_CAPACITY);
+      _queueCapacity = QUEUE_CAPACITY;
+    }
+
+    _laneScaleLatency = Utils.getNonNegativeLong(_configuration, LANE_SCALE_LATENCY_KEY, LANE_SCALE_LATENCY);
+    _writerBatchSize = Utils.getNonNegativeInt(_configuration, WRITER_BATCH_SIZE_KEY, WRITER_BATCH_SIZE);
+    _writerFlushInterval = Utils.getNonNegativeLong(_configuration, WRITER_FLUSH_INTERVAL_KEY, WRITER_FLUSH_INTERVAL);
+
+    HadoopRestClient.configure(_configuration);
+    HeuristicExecutor.configure(_configuration);
+  }
+
+  /**
+   * Load the ordering of the analysis queue. Falls back to the default ordering if the configured class is invalid.
+   *
+   * @return The comparator used to prioritize the analytic jobs
+   */
+  @SuppressWarnings("unchecked")
+  private Comparator<AnalyticJob> loadQueueComparator() {
+    String className = _configuration.get(QUEUE_COMPARATOR_KEY);
+    if (Utils.isSet(className)) {
+      try {
+        Object instance = Play.current().classloader().loadClass(className.trim()).newInstance();
+        if (instance instanceof Comparator) {
+          logger.info("Using " + className + " to prioritize the analysis queue");
+          return (Comparator<AnalyticJob>) instance;
+        }
+        logger.error("Class " + className + " is not an implementation of " + Comparator.class.getName());
+      } catch (ClassNotFoundException e) {
+        logger.error("Could not find class " + className, e);
+      } catch (InstantiationException e) {
+        logger.error("Could not instantiate class " + className, e);
+      } catch (IllegalAccessException e) {
+        logger.error("Could not access constructor for class " + className, e);
+      }
+    }
+    logger.info("Using the default ordering for the analysis queue");
+    return new AnalyticJobPriorityComparator();
   }
 
   private void loadAnalyticJobGenerator() {
@@ -104,20 +182,48 @@ public class ElephantRunner implements Runnable {
           loadGeneralConfiguration();
           loadAnalyticJobGenerator();
           ElephantContext.init();
+          // The backlog of all the lanes is compared with their total capacity, known once the types are loaded
+          _fetchIntervalController = FetchIntervalController.fromConfiguration(_configuration, _fetchInterval,
+              getTotalQueueCapacity());
+
+          // Offline mode, the new applications are fetched once the daemon is started again without a backfill
+          _backfill = AnalysisBackfill.fromConfiguration(_configuration);
+          if (_backfill.isEnabled()) {
+            _backfill.run(_analyticJobGenerator, _hadoopSecurity);
+            logger.info("Main thread is terminated.");
+            return null;
+          }
 
-          _jobQueue = new LinkedBlockingQueue<AnalyticJob>();
-          logger.info("executor num is " + _executorNum);
-          if (_executorNum > 0) {
-            _service = Executors.newFixedThreadPool(_executorNum);
-            for (int i = 0; i < _executorNum; i++) {
-              _service.submit(new ExecutorThread(i + 1, _jobQueue));
-            }
+          if (ClusterCoordinator.isEnabled(_configuration)) {
+            _clusterCoordinator = new ClusterCoordinator(_configuration);
+            _clusterCoordinator.start();
           }
 
+          _resultWriter = new AppResultWriter(_writerBatchSize, _writerFlushInterval, new ResultListener());
+          _resultWriter.start();
+
+          _resultRetention = AppResultRetention.fromConfiguration(_configuration, _clusterCoordinator);
+          if (_resultRetention.isEnabled()) {
+            _resultRetention.start();
+          }
+
+          _queueComparator = loadQueueComparator();
+          logger.info("analysis queue capacity is " + _queueCapacity + " per application type");
+          logger.info("executor num is " + _executorNum + " per application type");
+
           while (_running.get() && !Thread.currentThread().isInterrupted()) {
             _analyticJobGenerator.updateResourceManagerAddresses();
             lastRun = System.currentTimeMillis();
 
+            // Hold off fetching while the executors are still busy with a backed up queue. The jobs that finish in
+            // the meantime are picked up by the next fetch.
+            int backlog = getBacklog();
+            if (_fetchIntervalController.shouldSkipFetch(backlog)) {
+              logger.info("Job queue is backed up, skipping this fetch. " + getQueueStats());
+              waitInterval(_fetchIntervalController.nextInterval(0, 0, backlog));
+              continue;
+            }
+
             logger.info("Fetching analytic job list...");
 
             try {
@@ -129,9 +235,19 @@ public class ElephantRunner implements Runnable {
               continue;
             }
 
+            // A node joined or left the cluster. The applications that finished while a dead node was still considered
+            // alive were skipped by every other node, so fetch them again.
+            if (_clusterCoordinator != null && _clusterCoordinator.pollMembershipChange()) {
+              _analyticJobGenerator.rewind(
+                  _clusterCoordinator.getFailoverWindow() + _fetchIntervalController.getMaxInterval());
+            }
+
             List<AnalyticJob> todos;
             try {
               todos = _analyticJobGenerator.fetchAnalyticJobs();
+              if (_clusterCoordinator != null) {
+                todos = claimAnalyticJobs(todos);
+              }
             } catch (Exception e) {
               logger.error("Error fetching job list. Try again later...", e);
               //Wait for a while before retry
@@ -139,11 +255,16 @@ public class ElephantRunner implements Runnable {
               continue;
             }
 
-            _jobQueue.addAll(todos);
-            logger.info("Job queue size is " + _jobQueue.size());
+            // The executors have caught up if nothing is waiting anymore when the new jobs are queued
+            backlog = getBacklog();
+            if (!enqueue(todos)) {
+              break;
+            }
+            logger.info(getQueueStats());
 
             //Wait for a while before next fetch
-            waitInterval(_fetchInterval);
+            waitInterval(_fetchIntervalController.nextInterval(todos.size(), lastRun - lastFetch, backlog));
+            lastFetch = lastRun;
           }
           logger.info("Main thread is terminated.");
           return null;
@@ -155,46 +276,201 @@ public class ElephantRunner implements Runnable {
     }
   }
 
-  private class ExecutorThread implements Runnable {
+  /**
+   * Analyzes a single job and hands its result over to the result writer. Failed jobs are retried up to their retry
+   * limit.
+   */
+  private class ExecutorThread implements AnalysisLane.JobProcessor {
 
-    private int _threadId;
-    private BlockingQueue<AnalyticJob> _jobQueue;
+    @Override
+    public void process(AnalyticJob analyticJob, String workerName) {
+      try {
+        if (_clusterCoordinator != null && !_clusterCoordinator.renew(analyticJob.getAppId())) {
+          logger.info("Executor thread " + workerName + " skipping " + analyticJob.getAppId()
+              + ", which was taken over by another node");
+          _analyticJobGenerator.markDone(analyticJob);
+          return;
+        }
+        logger.info("Executor thread " + workerName + " analyzing " + analyticJob.getAppType().getName() + " "
+            + analyticJob.getAppId());
+        AppResult result = analyticJob.getAnalysis();
+        _resultWriter.write(analyticJob, result);
+
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      } catch (Exception e) {
+        logger.error(e.getMessage());
+        logger.error(ExceptionUtils.getStackTrace(e));
+        retryOrDrop(analyticJob);
+      }
+    }
+  }
 
-    ExecutorThread(int threadNum, BlockingQueue<AnalyticJob> jobQueue) {
-      this._threadId = threadNum;
-      this._jobQueue = jobQueue;
+  /**
+   * Completes the jobs once their results are saved, and retries the ones whose results could not be saved
+   */
+  private class ResultListener implements AppResultWriter.Listener {
+
+    @Override
+    public void onSaved(AnalyticJob analyticJob) {
+      _analyticJobGenerator.markDone(analyticJob);
+      if (_clusterCoordinator != null) {
+        _clusterCoordinator.release(analyticJob.getAppId());
+      }
     }
 
     @Override
-    public void run() {
-      while (_running.get() && !Thread.currentThread().isInterrupted()) {
-        AnalyticJob analyticJob = null;
+    public void onFailed(AnalyticJob analyticJob, Exception e) {
+      logger.error("Error saving the result of " + analyticJob.getAppId(), e);
+      retryOrDrop(analyticJob);
+    }
+  }
+
+  private void retryOrDrop(AnalyticJob analyticJob) {
+    if (analyticJob.retry()) {
+      logger.error("Add analytic job id [" + analyticJob.getAppId() + "] into the retry list.");
+      _analyticJobGenerator.addIntoRetries(analyticJob);
+    } else {
+      logger.error("Drop the analytic job. Reason: reached the max retries for application id = ["
+              + analyticJob.getAppId() + "].");
+      _analyticJobGenerator.markDone(analyticJob);
+      if (_clusterCoordinator != null) {
+        _clusterCoordinator.release(analyticJob.getAppId());
+      }
+    }
+  }
+
+  /**
+   * Keep the jobs this node should analyze in cluster mode: the new jobs hashed to this node that nobody has claimed
+   * yet, and the retries of the jobs it still holds. The jobs left behind by the dead nodes are added.
+   *
+   * @param todos The jobs fetched from the generator
+   * @return The jobs claimed by this node
+   */
+  private List<AnalyticJob> claimAnalyticJobs(List<AnalyticJob> todos) {
+    List<AnalyticJob> claimed = new ArrayList<AnalyticJob>();
+    for (AnalyticJob job : todos) {
+      String appId = job.getAppId();
+      try {
+        if (job.getRetries() > 0 ? _clusterCoordinator.renew(appId)
+            : _clusterCoordinator.isOwner(appId) && _clusterCoordinator.claim(appId)) {
+          claimed.add(job);
+          continue;
+        }
+      } catch (Exception e) {
+        logger.error("Error claiming application " + appId + ". Skipping it.", e);
+      }
+      // Left to the node owning it
+      _analyticJobGenerator.markDone(job);
+    }
+
+    try {
+      // The taken over applications may be of any type, so the backlog of every lane is compared with their capacity
+      int room = getTotalQueueCapacity() - getBacklog() - claimed.size();
+      for (String appId : _clusterCoordinator.takeOverExpiredLeases(room)) {
         try {
-          analyticJob = _jobQueue.take();
-          logger.info("Executor thread " + _threadId + " analyzing " + analyticJob.getAppType().getName() + " "
-              + analyticJob.getAppId());
-          AppResult result = analyticJob.getAnalysis();
-          result.save();
-
-        } catch (InterruptedException ex) {
-          Thread.currentThread().interrupt();
+          AnalyticJob job = _analyticJobGenerator.fetchAnalyticJob(appId);
+          if (job != null) {
+            claimed.add(job);
+          } else {
+            _clusterCoordinator.release(appId);
+          }
         } catch (Exception e) {
-          logger.error(e.getMessage());
-          logger.error(ExceptionUtils.getStackTrace(e));
+          // Let the lease expire so that the application is taken over again later
+          logger.error("Error fetching application " + appId + " to take it over", e);
+          _clusterCoordinator.expire(appId);
+        }
+      }
+    } catch (Exception e) {
+      logger.error("Error taking over the applications of the dead cluster nodes", e);
+    }
+    logger.info("Cluster node " + _clusterCoordinator.getNodeId() + " claimed " + claimed.size() + " of "
+        + todos.size() + " jobs. Live nodes are " + _clusterCoordinator.getLiveNodes());
+    return claimed;
+  }
 
-          if (analyticJob != null && analyticJob.retry()) {
-            logger.error("Add analytic job id [" + analyticJob.getAppId() + "] into the retry list.");
-            _analyticJobGenerator.addIntoRetries(analyticJob);
-          } else {
-            if (analyticJob != null) {
-              logger.error("Drop the analytic job. Reason: reached the max retries for application id = ["
-                      + analyticJob.getAppId() + "].");
-            }
+  /**
+   * Add the jobs to the analysis queue, waiting for room while the queue is full.
+   *
+   * @param todos The jobs to add
+   * @return false if the daemon was stopped before all the jobs could be added
+   */
+  private boolean enqueue(List<AnalyticJob> todos) {
+    // Fill the lanes with room first, so that a full lane does not hold back the jobs of the other types
+    List<AnalyticJob> waiting = new ArrayList<AnalyticJob>();
+    try {
+      for (AnalyticJob job : todos) {
+        if (!getLane(job.getAppType()).offer(job, 0, TimeUnit.MILLISECONDS)) {
+          waiting.add(job);
+        }
+      }
+      for (AnalyticJob job : waiting) {
+        AnalysisLane lane = getLane(job.getAppType());
+        while (!lane.offer(job, QUEUE_OFFER_TIMEOUT, TimeUnit.MILLISECONDS)) {
+          if (!_running.get()) {
+            return false;
           }
+          logger.info("Job queue of " + lane.getName() + " is full, waiting for room. " + getQueueStats());
         }
       }
-      logger.info("Executor Thread" + _threadId + " is terminated.");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Get the analysis lane of an application type, starting it on first use
+   *
+   * @param type The application type
+   * @return The lane
+   */
+  private AnalysisLane getLane(ApplicationType type) {
+    AnalysisLane lane = _lanes.get(type);
+    if (lane == null) {
+      String prefix = LANE_KEY_PREFIX + type.getName().toLowerCase();
+      int maxThreads = Utils.getNonNegativeInt(_configuration, prefix + LANE_MAX_THREADS_KEY_SUFFIX, _executorNum);
+      int minThreads = Utils.getNonNegativeInt(_configuration, prefix + LANE_MIN_THREADS_KEY_SUFFIX,
+          Math.min(LANE_MIN_THREADS, maxThreads));
+      lane = new AnalysisLane(type.getName(), new AnalyticJobQueue(_queueCapacity, _queueComparator), minThreads,
+          maxThreads, _laneScaleLatency, new ExecutorThread());
+      _lanes.put(type, lane);
+      lane.start();
     }
+    return lane;
+  }
+
+  /**
+   * @return The capacity of all the lanes, one per supported application type
+   */
+  private int getTotalQueueCapacity() {
+    return _queueCapacity * Math.max(1, ElephantContext.instance().getAppTypeToJobTypes().size());
+  }
+
+  /**
+   * @return The number of jobs waiting for analysis in all the lanes, to compare with the total queue capacity
+   */
+  private int getBacklog() {
+    int backlog = 0;
+    for (AnalysisLane lane : _lanes.values()) {
+      backlog += lane.getQueue().size();
+    }
+    return backlog;
+  }
+
+  private String getQueueStats() {
+    StringBuilder stats = new StringBuilder();
+    for (AnalysisLane lane : _lanes.values()) {
+      AnalyticJobQueue queue = lane.getQueue();
+      stats.append(lane.getName()).append(" job queue size is ").append(queue.size()).append("/")
+          .append(queue.getCapacity()).append(" with ").append(lane.getWorkers())
+          .append(" threads, oldest job waiting for ").append(queue.getOldestAge()).append(" ms, average wait ")
+          .append(queue.getAverageWaitTime()).append(" ms, last wait ").append(queue.getLastWaitTime())
+          .append(" ms, ").append(queue.getTotalDequeued()).append(" of ").append(queue.getTotalEnqueued())
+          .append(" jobs taken. ");
+    }
+    return stats.length() == 0 ? "No job queued yet." : stats.toString().trim();
   }
 
   private void waitInterval(long interval) {
@@ -215,8 +491,21 @@ public class ElephantRunner implements Runnable {
 
   public void kill() {
     _running.set(false);
-    if (_service != null) {
-      _service.shutdownNow();
+    if (_backfill != null) {
+      _backfill.stop();
+    }
+    for (AnalysisLane lane : _lanes.values()) {
+      lane.stop();
+    }
+    if (_resultRetention != null) {
+      _resultRetention.stop();
+    }
+    if (_resultWriter != null) {
+      _resultWriter.stop(WRITER_STOP_TIMEOUT);
+    }
+    if (_clusterCoordinator != null) {
+      _clusterCoordinator.stop();
     }
+    HeuristicExecutor.instance().shutdown();
   }
 }
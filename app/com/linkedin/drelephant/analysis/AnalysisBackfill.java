@@ -0,0 +1,382 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.analysis;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.hash.Hashing;
+import com.linkedin.drelephant.security.HadoopSecurity;
+import com.linkedin.drelephant.util.Utils;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import models.AnalysisWatermark;
+import models.AppResult;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.log4j.Logger;
+
+
+/**
+ * Analyzes, or reanalyzes, the applications finished within a time range or a list of applications, replacing their
+ * existing results. The daemon runs the backfill instead of fetching the new applications.
+ *
+ * The applications are taken one window of finish time, or one chunk of ids, at a time. They are fetched and analyzed
+ * by a pool of threads, and their results are written in large batches by a replacing result writer. Once all the
+ * results of a window are written, the window is saved as the checkpoint of the backfill, so that an interrupted
+ * backfill started again with the same range or list resumes with the next window. The applications are fetched and
+ * analyzed again after the retry interval when they fail, and the ones that still fail after their retries are logged
+ * and skipped. The applications analyzed before are rebuilt from their results, so that the ones the resource manager
+ * no longer retains can still be reanalyzed, and the ones no longer known at all are skipped right away.
+ */
+public class AnalysisBackfill {
+  private static final Logger logger = Logger.getLogger(AnalysisBackfill.class);
+
+  public static final String FINISH_TIME_BEGIN_KEY = "drelephant.backfill.finish.time.begin";
+  public static final String FINISH_TIME_END_KEY = "drelephant.backfill.finish.time.end";
+  public static final String APP_IDS_KEY = "drelephant.backfill.app.ids";
+  public static final String THREAD_COUNT_KEY = "drelephant.backfill.thread.count";
+  public static final String WINDOW_KEY = "drelephant.backfill.window";
+  public static final String CHUNK_SIZE_KEY = "drelephant.backfill.chunk.size";
+  public static final String BATCH_SIZE_KEY = "drelephant.backfill.batch.size";
+  public static final String RETRY_INTERVAL_KEY = "drelephant.backfill.retry.interval";
+
+  private static final int THREAD_COUNT = 16;            // The number of threads fetching and analyzing at once
+  private static final long WINDOW = 60 * 60 * 1000;     // The finish time range listed and checkpointed at once
+  private static final int CHUNK_SIZE = 1000;            // The number of application ids checkpointed at once
+  private static final int BATCH_SIZE = 1000;            // The maximum number of results saved at once
+  private static final long FLUSH_INTERVAL = 5000;       // How long a result waits to be saved at most
+  private static final long RETRY_INTERVAL = 60 * 1000;  // How long to wait before listing or fetching again
+  private static final int FETCH_RETRIES = 3;            // How many times fetching an application is retried
+  private static final long WRITER_STOP_TIMEOUT = 60 * 1000;
+  private static final String CHECKPOINT_PREFIX = "backfill-";
+
+  private final long _finishTimeBegin;
+  private final long _finishTimeEnd;
+  private final List<String> _appIds;
+  private final int _threadCount;
+  private final long _window;
+  private final int _chunkSize;
+  private final int _batchSize;
+  private final long _retryInterval;
+
+  private volatile boolean _running = true;
+  private volatile ExecutorService _executor;
+  private volatile CountDownLatch _remaining;
+  private final AtomicInteger _saved = new AtomicInteger();
+  private final AtomicInteger _failed = new AtomicInteger();
+  private final AtomicInteger _skipped = new AtomicInteger();
+  private AppResultWriter _writer;
+
+  AnalysisBackfill(long finishTimeBegin, long finishTimeEnd, List<String> appIds, int threadCount, long window,
+      int chunkSize, int batchSize, long retryInterval) {
+    _finishTimeBegin = finishTimeBegin;
+    _finishTimeEnd = finishTimeEnd;
+    _appIds = appIds;
+    _threadCount = Math.max(1, threadCount);
+    _window = Math.max(1, window);
+    _chunkSize = Math.max(1, chunkSize);
+    _batchSize = batchSize;
+    _retryInterval = retryInterval;
+  }
+
+  /**
+   * Reads the backfill settings of the general configuration
+   *
+   * @param configuration The general configuration
+   * @return The backfill, disabled unless an application list or a whole finish time range is configured
+   */
+  public static AnalysisBackfill fromConfiguration(Configuration configuration) {
+    List<String> appIds = new ArrayList<String>();
+    for (String appId : configuration.getTrimmedStrings(APP_IDS_KEY)) {
+      if (!appId.isEmpty()) {
+        appIds.add(appId);
+      }
+    }
+    return new AnalysisBackfill(Utils.getNonNegativeLong(configuration, FINISH_TIME_BEGIN_KEY, 0),
+        Utils.getNonNegativeLong(configuration, FINISH_TIME_END_KEY, 0), appIds,
+        Utils.getNonNegativeInt(configuration, THREAD_COUNT_KEY, THREAD_COUNT),
+        Utils.getNonNegativeLong(configuration, WINDOW_KEY, WINDOW),
+        Utils.getNonNegativeInt(configuration, CHUNK_SIZE_KEY, CHUNK_SIZE),
+        Utils.getNonNegativeInt(configuration, BATCH_SIZE_KEY, BATCH_SIZE),
+        Utils.getNonNegativeLong(configuration, RETRY_INTERVAL_KEY, RETRY_INTERVAL));
+  }
+
+  public boolean isEnabled() {
+    return !_appIds.isEmpty() || (_finishTimeBegin > 0 && _finishTimeEnd >= _finishTimeBegin);
+  }
+
+  /**
+   * Returns the id the checkpoint is saved under. It depends on the range or the list, so that a different backfill
+   * starts over.
+   *
+   * @return The checkpoint id
+   */
+  String getCheckpointId() {
+    if (!_appIds.isEmpty()) {
+      return CHECKPOINT_PREFIX + Hashing.murmur3_128().hashString(Joiner.on(',').join(_appIds), Charsets.UTF_8);
+    }
+    return CHECKPOINT_PREFIX + _finishTimeBegin + "-" + _finishTimeEnd;
+  }
+
+  /**
+   * Returns the checkpoint: the end of the last window backfilled for a range, the number of applications backfilled
+   * for a list
+   *
+   * @return The checkpoint, 0 if the backfill has not started
+   */
+  long loadCheckpoint() {
+    AnalysisWatermark watermark = AnalysisWatermark.find.byId(getCheckpointId());
+    return watermark == null ? 0 : watermark.finishTime;
+  }
+
+  void saveCheckpoint(long checkpoint) {
+    AnalysisWatermark watermark = AnalysisWatermark.find.byId(getCheckpointId());
+    if (watermark == null) {
+      watermark = new AnalysisWatermark();
+      watermark.nodeId = getCheckpointId();
+    }
+    watermark.finishTime = checkpoint;
+    watermark.save();
+  }
+
+  AppResultWriter createWriter(AppResultWriter.Listener listener) {
+    return new AppResultWriter(_batchSize, FLUSH_INTERVAL, listener, true);
+  }
+
+  /**
+   * Runs the backfill from its checkpoint, until it is done or stopped
+   *
+   * @param generator The generator listing and fetching the applications
+   * @param hadoopSecurity The login to renew before each window, null if none
+   */
+  public void run(AnalyticJobGenerator generator, HadoopSecurity hadoopSecurity) {
+    long checkpoint = loadCheckpoint();
+    logger.info("Starting the backfill " + getCheckpointId() + " from checkpoint " + checkpoint + " with "
+        + _threadCount + " threads");
+    _executor = Executors.newFixedThreadPool(_threadCount);
+    _writer = createWriter(new BackfillListener());
+    _writer.start();
+    try {
+      if (_appIds.isEmpty()) {
+        backfillRange(generator, hadoopSecurity, checkpoint);
+      } else {
+        backfillApps(generator, hadoopSecurity, (int) checkpoint);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      _executor.shutdownNow();
+      _writer.stop(WRITER_STOP_TIMEOUT);
+    }
+    logger.info("Backfill " + getCheckpointId() + (_running ? " is done. " : " was stopped. ") + getStats());
+  }
+
+  public void stop() {
+    _running = false;
+    ExecutorService executor = _executor;
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  private void backfillRange(AnalyticJobGenerator generator, HadoopSecurity hadoopSecurity, long checkpoint)
+      throws InterruptedException {
+    long begin = Math.max(_finishTimeBegin, checkpoint + 1);
+    while (begin <= _finishTimeEnd && _running) {
+      long startTime = System.currentTimeMillis();
+      long end = Math.min(begin + _window - 1, _finishTimeEnd);
+      List<AnalyticJob> jobs;
+      try {
+        if (hadoopSecurity != null) {
+          hadoopSecurity.checkLogin();
+        }
+        jobs = generator.fetchAnalyticJobs(begin, end);
+      } catch (Exception e) {
+        logger.error("Error listing the applications finished between " + begin + " and " + end
+            + ". Trying again later...", e);
+        Thread.sleep(_retryInterval);
+        continue;
+      }
+
+      List<Callable<AnalyticJob>> sources = new ArrayList<Callable<AnalyticJob>>(jobs.size());
+      for (final AnalyticJob job : jobs) {
+        sources.add(new Callable<AnalyticJob>() {
+          @Override
+          public AnalyticJob call() {
+            return job;
+          }
+        });
+      }
+      if (!analyze(sources)) {
+        return;
+      }
+      saveCheckpoint(end);
+      logger.info("Backfilled the " + jobs.size() + " applications finished between " + begin + " and " + end
+          + " in " + (System.currentTimeMillis() - startTime) + " ms. " + getStats());
+      begin = end + 1;
+    }
+  }
+
+  private void backfillApps(final AnalyticJobGenerator generator, HadoopSecurity hadoopSecurity, int checkpoint)
+      throws InterruptedException {
+    for (int from = checkpoint; from < _appIds.size() && _running; from += _chunkSize) {
+      long startTime = System.currentTimeMillis();
+      List<String> chunk = _appIds.subList(from, Math.min(from + _chunkSize, _appIds.size()));
+      try {
+        if (hadoopSecurity != null) {
+          hadoopSecurity.checkLogin();
+        }
+      } catch (Exception e) {
+        logger.error("Error with hadoop kerberos login", e);
+      }
+
+      // The applications are fetched by the analysis threads too
+      List<Callable<AnalyticJob>> sources = new ArrayList<Callable<AnalyticJob>>(chunk.size());
+      for (final String appId : chunk) {
+        sources.add(new Callable<AnalyticJob>() {
+          @Override
+          public AnalyticJob call() throws Exception {
+            return generator.fetchAnalyticJob(appId, true);
+          }
+        });
+      }
+      if (!analyze(sources)) {
+        return;
+      }
+      saveCheckpoint(from + chunk.size());
+      logger.info("Backfilled applications " + from + " to " + (from + chunk.size()) + " of " + _appIds.size()
+          + " in " + (System.currentTimeMillis() - startTime) + " ms. " + getStats());
+    }
+  }
+
+  /**
+   * Fetches and analyzes the applications, and waits for all their results to be written
+   *
+   * @param sources The sources of the applications, which may return null for an unknown application
+   * @return false if the backfill was stopped in the meantime
+   */
+  private boolean analyze(List<Callable<AnalyticJob>> sources) throws InterruptedException {
+    CountDownLatch remaining = new CountDownLatch(sources.size());
+    _remaining = remaining;
+    for (final Callable<AnalyticJob> source : sources) {
+      _executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          analyze(source);
+        }
+      });
+    }
+    while (!remaining.await(1, TimeUnit.SECONDS)) {
+      if (!_running) {
+        return false;
+      }
+    }
+    return _running;
+  }
+
+  private void analyze(Callable<AnalyticJob> source) {
+    AnalyticJob job = null;
+    for (int attempt = 0; job == null; attempt++) {
+      try {
+        job = source.call();
+        if (job == null) {
+          _skipped.incrementAndGet();
+          _remaining.countDown();
+          return;
+        }
+      } catch (Exception e) {
+        if (!_running || attempt >= FETCH_RETRIES) {
+          logger.error("Dropping the backfill of an application that could not be fetched", e);
+          _failed.incrementAndGet();
+          _remaining.countDown();
+          return;
+        }
+        logger.warn("Error fetching an application to backfill. Retrying...", e);
+        if (!waitRetryInterval()) {
+          return;
+        }
+      }
+    }
+
+    while (true) {
+      try {
+        AppResult result = job.getAnalysis();
+        // Counted down once the result is written
+        _writer.write(job, result);
+        return;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (Exception e) {
+        if (!_running || !job.retry()) {
+          logger.error("Dropping the backfill of " + job.getAppId(), e);
+          _failed.incrementAndGet();
+          _remaining.countDown();
+          return;
+        }
+        logger.warn("Error backfilling " + job.getAppId() + ". Retrying...", e);
+        if (!waitRetryInterval()) {
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Waits before retrying an application, so that a failing cluster or history server is not called in a tight loop
+   *
+   * @return false if the backfill was stopped in the meantime
+   */
+  private boolean waitRetryInterval() {
+    try {
+      Thread.sleep(_retryInterval);
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  private String getStats() {
+    return _saved.get() + " results saved, " + _failed.get() + " applications failed, " + _skipped.get()
+        + " applications unknown or unsupported.";
+  }
+
+  /**
+   * Counts the results down once they are written
+   */
+  private class BackfillListener implements AppResultWriter.Listener {
+
+    @Override
+    public void onSaved(AnalyticJob job) {
+      _saved.incrementAndGet();
+      _remaining.countDown();
+    }
+
+    @Override
+    public void onFailed(AnalyticJob job, Exception e) {
+      logger.error("Error saving the backfilled result of " + job.getAppId(), e);
+      _failed.incrementAndGet();
+      _remaining.countDown();
+    }
+  }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.analysis;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.log4j.Logger;
+
+
+/**
+ * A queue of jobs of one application type along with the worker threads analyzing them.
+ *
+ * Each application type gets its own lane, so that slow analyses of one type cannot hold every thread while the jobs
+ * of another type wait. A lane scales between its minimum and maximum number of threads: a thread is added when the
+ * oldest waiting job has waited longer than the scale up latency, and a thread above the minimum stops after waiting
+ * for a job for the idle timeout.
+ */
+public class AnalysisLane {
+  private static final Logger logger = Logger.getLogger(AnalysisLane.class);
+
+  private static final long IDLE_TIMEOUT = 60 * 1000;   // How long a thread above the minimum waits for a job
+
+  /**
+   * The analysis of a single job, run by the threads of the lane
+   */
+  public interface JobProcessor {
+
+    /**
+     * @param job The job to analyze
+     * @param workerName The name of the thread analyzing the job, for logging
+     */
+    public void process(AnalyticJob job, String workerName);
+  }
+
+  private final String _name;
+  private final AnalyticJobQueue _queue;
+  private final int _minThreads;
+  private final int _maxThreads;
+  private final long _scaleUpLatency;
+  private final JobProcessor _processor;
+  private final ExecutorService _service = Executors.newCachedThreadPool();
+  private final AtomicInteger _workers = new AtomicInteger(0);
+  private final AtomicInteger _workerIds = new AtomicInteger(0);
+  private volatile boolean _running = true;
+
+  /**
+   * @param name The name of the lane, usually the application type
+   * @param queue The queue of the jobs waiting for analysis
+   * @param minThreads The number of threads kept even when idle
+   * @param maxThreads The maximum number of threads
+   * @param scaleUpLatency The time in milliseconds the oldest job may wait before a thread is added
+   * @param processor The analysis of a job
+   */
+  public AnalysisLane(String name, AnalyticJobQueue queue, int minThreads, int maxThreads, long scaleUpLatency,
+      JobProcessor processor) {
+    _name = name;
+    _queue = queue;
+    _maxThreads = maxThreads;
+    _minThreads = Math.min(minThreads, maxThreads);
+    _scaleUpLatency = scaleUpLatency;
+    _processor = processor;
+  }
+
+  /**
+   * Starts the minimum number of threads
+   */
+  public void start() {
+    logger.info("Starting analysis lane " + _name + " with " + _minThreads + " to " + _maxThreads + " threads");
+    for (int i = 0; i < _minThreads; i++) {
+      addWorker(_workers.get());
+    }
+  }
+
+  /**
+   * Stops the threads, interrupting the running analyses
+   */
+  public void stop() {
+    _running = false;
+    _service.shutdownNow();
+  }
+
+  /**
+   * Adds a job, waiting up to the given time for space in the queue
+   *
+   * @param job The job to add
+   * @param timeout How long to wait
+   * @param unit The unit of the timeout
+   * @return true if the job was added, false if the queue stayed full
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public boolean offer(AnalyticJob job, long timeout, TimeUnit unit) throws InterruptedException {
+    if (_queue.offer(job, timeout, unit)) {
+      scale();
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Adds a thread if the lane has none, or if the jobs have been waiting for too long
+   */
+  private void scale() {
+    int workers = _workers.get();
+    if (_running && workers < _maxThreads && (workers == 0 || _queue.getOldestAge() > _scaleUpLatency)) {
+      addWorker(workers);
+    }
+  }
+
+  private void addWorker(int workers) {
+    if (_workers.compareAndSet(workers, workers + 1)) {
+      String workerName = _name + "-" + _workerIds.incrementAndGet();
+      logger.info("Analysis lane " + _name + " adding thread " + workerName + ", now running " + (workers + 1)
+          + " threads. " + _queue.size() + " jobs waiting, the oldest for " + _queue.getOldestAge() + " ms");
+      _service.submit(new Worker(workerName));
+    }
+  }
+
+  /**
+   * @return true if the calling thread should stop because the lane has more threads than its minimum
+   */
+  private boolean retire() {
+    int workers = _workers.get();
+    return workers > _minThreads && _workers.compareAndSet(workers, workers - 1);
+  }
+
+  public String getName() {
+    return _name;
+  }
+
+  public AnalyticJobQueue getQueue() {
+    return _queue;
+  }
+
+  /**
+   * @return The number of threads currently running
+   */
+  public int getWorkers() {
+    return _workers.get();
+  }
+
+  private class Worker implements Runnable {
+    private final String _workerName;
+
+    Worker(String workerName) {
+      _workerName = workerName;
+    }
+
+    @Override
+    public void run() {
+      boolean retired = false;
+      try {
+        while (_running && !Thread.currentThread().isInterrupted()) {
+          AnalyticJob job = _queue.poll(IDLE_TIMEOUT, TimeUnit.MILLISECONDS);
+          if (job == null) {
+            if (retire()) {
+              logger.info("Analysis lane " + _name + " stopping idle thread " + _workerName);
+              retired = true;
+              // A job may have been added while this thread was retiring
+              if (_queue.size() > 0) {
+                scale();
+              }
+              break;
+            }
+            continue;
+          }
+          _processor.process(job, _workerName);
+          scale();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        if (!retired) {
+          _workers.decrementAndGet();
+        }
+      }
+      logger.info("Executor thread " + _workerName + " is terminated.");
+    }
+  }
+}
@@ -24,6 +24,7 @@ import java.util.Date;
 import java.util.List;
 import models.AppHeuristicResult;
 import models.AppHeuristicResultDetails;
+import models.AppHeuristicResultMetric;
 import models.AppResult;
 import org.apache.log4j.Logger;
 
@@ -47,6 +48,7 @@ public class AnalyticJob {
   private String _trackingUrl;
   private long _startTime;
   private long _finishTime;
+  private boolean _failed;
 
   /**
    * Returns the application type
@@ -144,6 +146,37 @@ public class AnalyticJob {
     return this;
   }
 
+  /**
+   * Sets whether the application finished with a FAILED final status in the resource manager
+   *
+   * @param failed true if the application failed
+   * @return The analytic job
+   */
+  public AnalyticJob setFailed(boolean failed) {
+    _failed = failed;
+    return this;
+  }
+
+  /**
+   * Sets the number of times the analysis of the job has been retried, e.g. when restoring a persisted retry
+   *
+   * @param retries The number of retries
+   * @return The analytic job
+   */
+  public AnalyticJob setRetries(int retries) {
+    _retries = retries;
+    return this;
+  }
+
+  /**
+   * Returns the number of times the analysis of the job has been retried
+   *
+   * @return The number of retries
+   */
+  public int getRetries() {
+    return _retries;
+  }
+
   /**
    * Returns the application id
    *
@@ -189,6 +222,25 @@ public class AnalyticJob {
     return _finishTime;
   }
 
+  /**
+   * Returns true if the application finished with a FAILED final status
+   *
+   * @return true if the application failed, else false
+   */
+  public boolean isFailed() {
+    return _failed;
+  }
+
+  /**
+   * Returns the wall clock duration of the application, used as a rough estimate of how expensive the application is
+   * to fetch and analyse.
+   *
+   * @return The duration of the application in milliseconds
+   */
+  public long getDuration() {
+    return Math.max(0, _finishTime - _startTime);
+  }
+
   /**
    * Returns the tracking url of the job
    *
@@ -239,12 +291,7 @@ public class AnalyticJob {
       analysisResults.add(HeuristicResult.NO_DATA);
     } else {
       List<Heuristic> heuristics = ElephantContext.instance().getHeuristicsForApplicationType(getAppType());
-      for (Heuristic heuristic : heuristics) {
-        HeuristicResult result = heuristic.apply(data);
-        if (result != null) {
-          analysisResults.add(result);
-        }
-      }
+      analysisResults.addAll(HeuristicExecutor.instance().apply(heuristics, data));
     }
 
     JobType jobType = ElephantContext.instance().matchJobType(data);
@@ -273,6 +320,7 @@ public class AnalyticJob {
           AppHeuristicResult.HEURISTIC_NAME_LIMIT, getAppId());
       detail.severity = heuristicResult.getSeverity();
       detail.score = heuristicResult.getScore();
+      detail.timedOut = heuristicResult.isTimedOut();
 
       // Load Heuristic Details
       for (HeuristicResultDetails heuristicResultDetails : heuristicResult.getHeuristicResultDetails()) {
@@ -288,6 +336,17 @@ public class AnalyticJob {
         //detail.yarnAppHeuristicResultDetails = new ArrayList<AppHeuristicResultDetails>();
         detail.yarnAppHeuristicResultDetails.add(heuristicDetail);
       }
+
+      // Load Heuristic Metrics
+      for (HeuristicResultMetric heuristicResultMetric : heuristicResult.getHeuristicResultMetrics()) {
+        AppHeuristicResultMetric heuristicMetric = new AppHeuristicResultMetric();
+        heuristicMetric.yarnAppHeuristicResult = detail;
+        heuristicMetric.name = Utils.truncateField(heuristicResultMetric.getName(),
+            AppHeuristicResultMetric.NAME_LIMIT, getAppId());
+        heuristicMetric.unit = heuristicResultMetric.getUnit();
+        heuristicMetric.value = heuristicResultMetric.getValue();
+        detail.yarnAppHeuristicResultMetrics.add(heuristicMetric);
+      }
       result.yarnAppHeuristicResults.add(detail);
       worstSeverity = Severity.max(worstSeverity, detail.severity);
       jobScore += detail.score;
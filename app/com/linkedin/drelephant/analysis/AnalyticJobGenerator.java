@@ -52,6 +52,52 @@ public interface AnalyticJobGenerator {
   public List<AnalyticJob> fetchAnalyticJobs()
       throws IOException, AuthenticationException;
 
+  /**
+   * Provides the AnalyticJob of a single application, e.g. to take over the analysis from another node
+   *
+   * @param appId The application id
+   * @return The AnalyticJob, or null if the application is unknown, unsupported or already analyzed
+   * @throws IOException
+   * @throws AuthenticationException
+   */
+  public AnalyticJob fetchAnalyticJob(String appId)
+      throws IOException, AuthenticationException;
+
+  /**
+   * Provides the AnalyticJobs of the applications finished within a time range, including the analyzed ones, e.g. to
+   * backfill or reanalyze them. The analyzed applications the resource manager no longer retains are provided from
+   * their results. Does not move the fetch of the new applications.
+   *
+   * @param finishedTimeBegin The start of the range in milliseconds, inclusive
+   * @param finishedTimeEnd The end of the range in milliseconds, inclusive
+   * @return a list of AnalyticJobs
+   * @throws IOException
+   * @throws AuthenticationException
+   */
+  public List<AnalyticJob> fetchAnalyticJobs(long finishedTimeBegin, long finishedTimeEnd)
+      throws IOException, AuthenticationException;
+
+  /**
+   * Provides the AnalyticJob of a single application, including an analyzed one, e.g. to reanalyze it. An analyzed
+   * application is provided from its result, so it does not need to be retained by the resource manager anymore.
+   *
+   * @param appId The application id
+   * @param includeAnalyzed Whether an application with a result is provided
+   * @return The AnalyticJob, or null if the application is unknown, unsupported or, unless included, analyzed
+   * @throws IOException
+   * @throws AuthenticationException
+   */
+  public AnalyticJob fetchAnalyticJob(String appId, boolean includeAnalyzed)
+      throws IOException, AuthenticationException;
+
+  /**
+   * Moves the start of the next fetch back, so that the applications finished within the interval are provided again
+   * unless they have already been analyzed
+   *
+   * @param interval The interval in milliseconds
+   */
+  public void rewind(long interval);
+
   /**
    * Add an AnalyticJob into retry list. Those jobs will be provided again via #fetchAnalyticJobs under
    * the generator's decision.
@@ -59,4 +105,12 @@ public interface AnalyticJobGenerator {
    * @param job The job to add
    */
   public void addIntoRetries(AnalyticJob job);
+
+  /**
+   * Tells the generator that a job it provided was analyzed, dropped or left to another node, so that it is no longer
+   * pending or waiting for a retry.
+   *
+   * @param job The job
+   */
+  public void markDone(AnalyticJob job);
 }
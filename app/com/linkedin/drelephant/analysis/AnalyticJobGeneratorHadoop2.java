@@ -17,23 +17,31 @@
 package com.linkedin.drelephant.analysis;
 
 import com.linkedin.drelephant.ElephantContext;
-import com.linkedin.drelephant.math.Statistics;
+import com.linkedin.drelephant.configurations.heuristic.HeuristicConfigurationData;
+import com.linkedin.drelephant.util.HadoopRestClient;
+import com.linkedin.drelephant.util.Utils;
+import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
-import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import models.AnalysisRetry;
+import models.AnalysisWatermark;
+import models.AppHeuristicResult;
 import models.AppResult;
 import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.security.authentication.client.AuthenticatedURL;
 import org.apache.hadoop.security.authentication.client.AuthenticationException;
 import org.apache.log4j.Logger;
 import org.codehaus.jackson.JsonNode;
-import org.codehaus.jackson.map.ObjectMapper;
 
 
 /**
@@ -45,25 +53,35 @@ public class AnalyticJobGeneratorHadoop2 implements AnalyticJobGenerator {
   private static final String IS_RM_HA_ENABLED = "yarn.resourcemanager.ha.enabled";
   private static final String RESOURCE_MANAGER_IDS = "yarn.resourcemanager.ha.rm-ids";
   private static final String RM_NODE_STATE_URL = "http://%s/ws/v1/cluster/info";
+  private static final String RM_APP_URL = "/ws/v1/cluster/apps/%s";
+  private static final String JOB_HISTORY_ADDRESS = "mapreduce.jobhistory.webapp.address";
+  private static final String JHS_JOB_URL = "/ws/v1/history/mapreduce/jobs/%s";
+  private static final String JHS_TRACKING_URL = "http://%s/jobhistory/job/%s";
+  private static final String MAPREDUCE_APP_TYPE = "MAPREDUCE";
   private static Configuration configuration;
 
   // We provide one minute job fetch delay due to the job sending lag from AM/NM to JobHistoryServer HDFS
   private static final long FETCH_DELAY = 60000;
 
-  // Generate a token update interval with a random deviation so that it does not update the token exactly at the same
-  // time with other token updaters (e.g. ElephantFetchers).
-  private static final long TOKEN_UPDATE_INTERVAL =
-      Statistics.MINUTE_IN_MS * 30 + new Random().nextLong() % (3 * Statistics.MINUTE_IN_MS);
+  // The watermark and the retries are kept under this id when not running in cluster mode
+  private static final String DEFAULT_NODE_ID = "default";
+  // The maximum number of application ids looked up at once in the database
+  private static final int DEDUPE_BATCH_SIZE = 500;
 
   private String _resourceManagerAddress;
   private long _lastTime = 0;
   private long _currentTime = 0;
-  private long _tokenUpdatedTime = 0;
-  private AuthenticatedURL.Token _token;
-  private AuthenticatedURL _authenticatedURL;
-  private final ObjectMapper _objectMapper = new ObjectMapper();
+  // Whether the next fetch may return applications that have already been analyzed
+  private volatile boolean _checkAnalyzed = true;
+  private String _nodeId;
+  private boolean _stateLoaded = false;
 
   private final Queue<AnalyticJob> _retryQueue = new ConcurrentLinkedQueue<AnalyticJob>();
+  // The finish times of the new jobs handed out and not analyzed yet. The persisted watermark stays behind them, so
+  // that they are fetched again if the daemon restarts before analyzing them.
+  private final Map<String, Long> _pending = new ConcurrentHashMap<String, Long>();
+  // The applications waiting for a retry or being retried, restored or persisted in analysis_retry
+  private final Set<String> _retryIds = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
   public void updateResourceManagerAddresses() {
     if (Boolean.valueOf(configuration.get(IS_RM_HA_ENABLED))) {
@@ -71,8 +89,6 @@ public class AnalyticJobGeneratorHadoop2 implements AnalyticJobGenerator {
       if (resourceManagers != null) {
         logger.info("The list of RM IDs are " + resourceManagers);
         List<String> ids = Arrays.asList(resourceManagers.split(","));
-        _currentTime = System.currentTimeMillis();
-        updateAuthToken();
         for (String id : ids) {
           try {
             String resourceManager = configuration.get(RESOURCE_MANAGER_ADDRESS + "." + id);
@@ -108,9 +124,62 @@ public class AnalyticJobGeneratorHadoop2 implements AnalyticJobGenerator {
   public void configure(Configuration configuration)
       throws IOException {
     this.configuration = configuration;
+    _nodeId = ClusterCoordinator.isEnabled(configuration) ? ClusterCoordinator.getNodeId(configuration)
+        : DEFAULT_NODE_ID;
     updateResourceManagerAddresses();
   }
 
+  /**
+   * Restore the watermark and the retries persisted before the last shutdown
+   */
+  private void loadState() {
+    AnalysisWatermark watermark = AnalysisWatermark.find.byId(_nodeId);
+    if (watermark != null) {
+      _lastTime = watermark.finishTime;
+      logger.info("Resuming the fetch from the applications finished after " + _lastTime);
+    }
+
+    List<AnalysisRetry> retries =
+        AnalysisRetry.find.where().eq(AnalysisRetry.TABLE.NODE_ID, _nodeId).findList();
+    for (AnalysisRetry retry : retries) {
+      ApplicationType type = getApplicationType(retry.appType);
+      if (type == null) {
+        logger.info("Dropping the retry of " + retry.appId + " with unsupported application type " + retry.appType);
+        retry.delete();
+        continue;
+      }
+      AnalyticJob analyticJob = new AnalyticJob();
+      analyticJob.setAppId(retry.appId).setAppType(type).setUser(retry.username).setName(retry.name)
+          .setQueueName(retry.queueName).setTrackingUrl(retry.trackingUrl).setStartTime(retry.startTime)
+          .setFinishTime(retry.finishTime).setFailed(retry.failed).setRetries(retry.retries);
+      _retryQueue.add(analyticJob);
+      _retryIds.add(retry.appId);
+    }
+    logger.info("Restored " + retries.size() + " analytic jobs to retry");
+  }
+
+  /**
+   * Persist the finish time up to which all the applications have been analyzed or are waiting for a retry
+   */
+  private void saveWatermark() {
+    long finishTime = _lastTime;
+    for (long pendingTime : _pending.values()) {
+      finishTime = Math.min(finishTime, pendingTime - 1);
+    }
+
+    try {
+      AnalysisWatermark watermark = AnalysisWatermark.find.byId(_nodeId);
+      if (watermark == null) {
+        watermark = new AnalysisWatermark();
+        watermark.nodeId = _nodeId;
+      }
+      watermark.finishTime = finishTime;
+      watermark.save();
+    } catch (Exception e) {
+      logger.error("Error saving the fetch watermark " + finishTime, e);
+    }
+  }
+
   /**
    *  Fetch all the succeeded and failed applications/analytic jobs from the resource manager.
    *
@@ -123,10 +192,14 @@ public class AnalyticJobGeneratorHadoop2 implements AnalyticJobGenerator {
       throws IOException, AuthenticationException {
     List<AnalyticJob> appList = new ArrayList<AnalyticJob>();
 
+    if (!_stateLoaded) {
+      loadState();
+      _stateLoaded = true;
+    }
+
     // There is a lag of job data from AM/NM to JobHistoryServer HDFS, we shouldn't use the current time, since there
     // might be new jobs arriving after we fetch jobs. We provide one minute delay to address this lag.
     _currentTime = System.currentTimeMillis() - FETCH_DELAY;
-    updateAuthToken();
 
     logger.info("Fetching recent finished application runs between last time: " + (_lastTime + 1)
         + ", and current time: " + _currentTime);
@@ -147,29 +220,136 @@ public class AnalyticJobGeneratorHadoop2 implements AnalyticJobGenerator {
     logger.info("The failed apps URL is " + failedAppsURL);
     appList.addAll(failedApps);
 
+    for (AnalyticJob analyticJob : appList) {
+      _pending.put(analyticJob.getAppId(), analyticJob.getFinishTime());
+    }
+
     // Append promises from the retry queue at the end of the list
     while (!_retryQueue.isEmpty()) {
       appList.add(_retryQueue.poll());
     }
 
     _lastTime = _currentTime;
+    _checkAnalyzed = false;
+    saveWatermark();
     return appList;
   }
 
+  @Override
+  public List<AnalyticJob> fetchAnalyticJobs(long finishedTimeBegin, long finishedTimeEnd)
+      throws IOException, AuthenticationException {
+    Map<String, AnalyticJob> apps = new LinkedHashMap<String, AnalyticJob>();
+    for (String finalStatus : new String[] { "SUCCEEDED", "FAILED" }) {
+      URL appsURL = new URL(new URL("http://" + _resourceManagerAddress), String.format(
+          "/ws/v1/cluster/apps?finalStatus=%s&finishedTimeBegin=%s&finishedTimeEnd=%s", finalStatus,
+          String.valueOf(finishedTimeBegin), String.valueOf(finishedTimeEnd)));
+      for (AnalyticJob analyticJob : readApps(appsURL, false)) {
+        apps.put(analyticJob.getAppId(), analyticJob);
+      }
+    }
+
+    // The resource manager only retains the most recent applications, the older ones analyzed before are rebuilt
+    // from their results
+    List<AppResult> results = AppResult.find.select(Utils.commaSeparated(AppResult.TABLE.ID, AppResult.TABLE.NAME,
+        AppResult.TABLE.USERNAME, AppResult.TABLE.QUEUE_NAME, AppResult.TABLE.START_TIME,
+        AppResult.TABLE.FINISH_TIME, AppResult.TABLE.TRACKING_URL))
+        .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS, AppHeuristicResult.TABLE.HEURISTIC_CLASS)
+        .where()
+        .ge(AppResult.TABLE.FINISH_TIME, finishedTimeBegin)
+        .le(AppResult.TABLE.FINISH_TIME, finishedTimeEnd)
+        .findList();
+    for (AppResult result : results) {
+      if (!apps.containsKey(result.id)) {
+        AnalyticJob analyticJob = readAppResult(result);
+        if (analyticJob != null) {
+          apps.put(result.id, analyticJob);
+        }
+      }
+    }
+    return new ArrayList<AnalyticJob>(apps.values());
+  }
+
+  @Override
+  public AnalyticJob fetchAnalyticJob(String appId)
+      throws IOException, AuthenticationException {
+    return fetchAnalyticJob(appId, false);
+  }
+
+  @Override
+  public AnalyticJob fetchAnalyticJob(String appId, boolean includeAnalyzed)
+      throws IOException, AuthenticationException {
+    AppResult result = AppResult.find.byId(appId);
+    if (result != null) {
+      if (!includeAnalyzed) {
+        return null;
+      }
+      // Reanalyze the application from its result, the resource manager may no longer retain it
+      AnalyticJob analyticJob = readAppResult(result);
+      if (analyticJob != null) {
+        return analyticJob;
+      }
+    }
+
+    URL appURL = new URL(new URL("http://" + _resourceManagerAddress), String.format(RM_APP_URL, appId));
+    try {
+      JsonNode app = readJsonNode(appURL).path("app");
+      return app.isMissingNode() ? null : readApp(app);
+    } catch (FileNotFoundException e) {
+      logger.info("The resource manager no longer retains " + appId + ", looking it up in the job history server");
+      return fetchHistoryJob(appId);
+    }
+  }
+
+  @Override
+  public void rewind(long interval) {
+    if (_lastTime > 0) {
+      _lastTime = Math.max(1, _lastTime - interval);
+      _checkAnalyzed = true;
+      logger.info("Rewinding the next fetch to the applications finished after " + _lastTime);
+    }
+  }
+
   @Override
   public void addIntoRetries(AnalyticJob promise) {
+    try {
+      AnalysisRetry retry = AnalysisRetry.find.byId(promise.getAppId());
+      if (retry == null) {
+        retry = new AnalysisRetry();
+        retry.appId = promise.getAppId();
+      }
+      retry.nodeId = _nodeId;
+      retry.appType = promise.getAppType().getName();
+      retry.username = promise.getUser();
+      retry.name = Utils.truncateField(promise.getName(), AppResult.APP_NAME_LIMIT, promise.getAppId());
+      retry.queueName = promise.getQueueName();
+      retry.trackingUrl = promise.getTrackingUrl();
+      retry.startTime = promise.getStartTime();
+      retry.finishTime = promise.getFinishTime();
+      retry.failed = promise.isFailed();
+      retry.retries = promise.getRetries();
+      retry.save();
+      // The retry is durable now, it no longer holds the watermark back
+      _pending.remove(promise.getAppId());
+    } catch (Exception e) {
+      logger.error("Error persisting the retry of " + promise.getAppId(), e);
+    }
+    _retryIds.add(promise.getAppId());
     _retryQueue.add(promise);
   }
 
-  /**
-   * Authenticate and update the token
-   */
-  private void updateAuthToken() {
-    if (_currentTime - _tokenUpdatedTime > TOKEN_UPDATE_INTERVAL) {
-      logger.info("AnalysisProvider updating its Authenticate Token...");
-      _token = new AuthenticatedURL.Token();
-      _authenticatedURL = new AuthenticatedURL();
-      _tokenUpdatedTime = _currentTime;
+  @Override
+  public void markDone(AnalyticJob promise) {
+    _pending.remove(promise.getAppId());
+    _retryIds.remove(promise.getAppId());
+    if (promise.getRetries() > 0) {
+      try {
+        AnalysisRetry retry = AnalysisRetry.find.byId(promise.getAppId());
+        if (retry != null) {
+          retry.delete();
+        }
+      } catch (Exception e) {
+        logger.error("Error removing the retry of " + promise.getAppId(), e);
+      }
     }
   }
 
@@ -181,10 +361,9 @@ public class AnalyticJobGeneratorHadoop2 implements AnalyticJobGenerator {
    * @throws IOException Unable to get the stream
    * @throws AuthenticationException Authencation problem
    */
-  private JsonNode readJsonNode(URL url)
+  JsonNode readJsonNode(URL url)
       throws IOException, AuthenticationException {
-    HttpURLConnection conn = _authenticatedURL.openConnection(url, _token);
-    return _objectMapper.readTree(conn.getInputStream());
+    return HadoopRestClient.instance().readJsonNode(url);
   }
 
   /**
@@ -196,37 +375,172 @@ public class AnalyticJobGeneratorHadoop2 implements AnalyticJobGenerator {
    * @throws AuthenticationException Problem authenticating to resource manager
    */
   private List<AnalyticJob> readApps(URL url) throws IOException, AuthenticationException{
+    return readApps(url, _checkAnalyzed);
+  }
+
+  /**
+   * Parse the returned json from Resource manager
+   *
+   * @param url The REST call
+   * @param checkAnalyzed Whether the applications analyzed before, or still queued, are skipped
+   * @return
+   * @throws IOException
+   * @throws AuthenticationException Problem authenticating to resource manager
+   */
+  private List<AnalyticJob> readApps(URL url, boolean checkAnalyzed) throws IOException, AuthenticationException{
     List<AnalyticJob> appList = new ArrayList<AnalyticJob>();
 
     JsonNode rootNode = readJsonNode(url);
     JsonNode apps = rootNode.path("apps").path("app");
 
-    for (JsonNode app : apps) {
-      String appId = app.get("id").getValueAsText();
-
-      // When called first time after launch, hit the DB and avoid duplicated analytic jobs that have been analyzed
-      // before.
-      if (_lastTime > 0 || (_lastTime == 0 && AppResult.find.byId(appId) == null)) {
-        String user = app.get("user").getValueAsText();
-        String name = app.get("name").getValueAsText();
-        String queueName = app.get("queue").getValueAsText();
-        String trackingUrl = app.get("trackingUrl") != null? app.get("trackingUrl").getValueAsText() : null;
-        long startTime = app.get("startedTime").getLongValue();
-        long finishTime = app.get("finishedTime").getLongValue();
-
-        ApplicationType type =
-            ElephantContext.instance().getApplicationTypeForName(app.get("applicationType").getValueAsText());
-
-        // If the application type is supported
-        if (type != null) {
-          AnalyticJob analyticJob = new AnalyticJob();
-          analyticJob.setAppId(appId).setAppType(type).setUser(user).setName(name).setQueueName(queueName)
-              .setTrackingUrl(trackingUrl).setStartTime(startTime).setFinishTime(finishTime);
+    // When called first time after launch or after a rewind, hit the DB and avoid duplicated analytic jobs that have
+    // been analyzed before. The window read again also holds the jobs handed out and not analyzed yet, and the jobs
+    // restored from analysis_retry or waiting for a retry, which must not be queued twice.
+    Set<String> skipped = new HashSet<String>();
+    if (checkAnalyzed) {
+      List<String> appIds = new ArrayList<String>();
+      for (JsonNode app : apps) {
+        appIds.add(app.get("id").getValueAsText());
+      }
+      skipped = findAnalyzed(appIds);
+      skipped.addAll(_pending.keySet());
+      skipped.addAll(_retryIds);
+    }
 
+    for (JsonNode app : apps) {
+      if (!skipped.contains(app.get("id").getValueAsText())) {
+        AnalyticJob analyticJob = readApp(app);
+        if (analyticJob != null) {
           appList.add(analyticJob);
         }
       }
     }
     return appList;
   }
+
+  /**
+   * Find the applications that already have results, looking them up in batches
+   *
+   * @param appIds The application ids
+   * @return The ids of the applications analyzed before
+   */
+  private Set<String> findAnalyzed(List<String> appIds) {
+    Set<String> analyzed = new HashSet<String>();
+    for (int i = 0; i < appIds.size(); i += DEDUPE_BATCH_SIZE) {
+      List<String> batch = appIds.subList(i, Math.min(i + DEDUPE_BATCH_SIZE, appIds.size()));
+      List<AppResult> results =
+          AppResult.find.select(AppResult.TABLE.ID).where().in(AppResult.TABLE.ID, batch).findList();
+      for (AppResult result : results) {
+        analyzed.add(result.id);
+      }
+    }
+    logger.info(analyzed.size() + " of " + appIds.size() + " applications have been analyzed before");
+    return analyzed;
+  }
+
+  /**
+   * @param typeName The application type returned by the resource manager
+   * @return The application type, or null if no fetcher and heuristics are configured for it
+   */
+  ApplicationType getApplicationType(String typeName) {
+    return ElephantContext.instance().getApplicationTypeForName(typeName);
+  }
+
+  /**
+   * Create the analytic job of an application returned by the resource manager
+   *
+   * @param app The application node
+   * @return The analytic job, or null if the application type is not supported
+   */
+  private AnalyticJob readApp(JsonNode app) {
+    String appId = app.get("id").getValueAsText();
+    String user = app.get("user").getValueAsText();
+    String name = app.get("name").getValueAsText();
+    String queueName = app.get("queue").getValueAsText();
+    String trackingUrl = app.get("trackingUrl") != null? app.get("trackingUrl").getValueAsText() : null;
+    long startTime = app.get("startedTime").getLongValue();
+    long finishTime = app.get("finishedTime").getLongValue();
+    boolean failed = "FAILED".equals(app.path("finalStatus").getValueAsText());
+
+    ApplicationType type = getApplicationType(app.get("applicationType").getValueAsText());
+
+    // Skip the applications of unsupported types
+    if (type == null) {
+      return null;
+    }
+    AnalyticJob analyticJob = new AnalyticJob();
+    analyticJob.setAppId(appId).setAppType(type).setUser(user).setName(name).setQueueName(queueName)
+        .setTrackingUrl(trackingUrl).setStartTime(startTime).setFinishTime(finishTime).setFailed(failed);
+    return analyticJob;
+  }
+
+  /**
+   * @return The configuration of the heuristics, telling the application type of each heuristic class
+   */
+  List<HeuristicConfigurationData> getHeuristicsConfigurationData() {
+    return ElephantContext.instance().getHeuristicsConfigurationData();
+  }
+
+  /**
+   * Create the analytic job of an application from its existing result, to analyze it again
+   *
+   * @param result The result of the application
+   * @return The analytic job, or null if the application type of its heuristics is not supported
+   */
+  private AnalyticJob readAppResult(AppResult result) {
+    ApplicationType type = null;
+    for (AppHeuristicResult heuristicResult : result.yarnAppHeuristicResults) {
+      for (HeuristicConfigurationData data : getHeuristicsConfigurationData()) {
+        if (data.getClassName().equals(heuristicResult.heuristicClass)) {
+          type = getApplicationType(data.getAppType().getName());
+          break;
+        }
+      }
+      if (type != null) {
+        break;
+      }
+    }
+    if (type == null) {
+      return null;
+    }
+    AnalyticJob analyticJob = new AnalyticJob();
+    analyticJob.setAppId(result.id).setAppType(type).setUser(result.username).setName(result.name)
+        .setQueueName(result.queueName).setTrackingUrl(result.trackingUrl).setStartTime(result.startTime)
+        .setFinishTime(result.finishTime);
+    return analyticJob;
+  }
+
+  /**
+   * Create the analytic job of a MapReduce application from the job history server, which retains the jobs longer
+   * than the resource manager
+   *
+   * @param appId The application id
+   * @return The analytic job, or null if the job history server does not know the application either
+   * @throws IOException
+   * @throws AuthenticationException
+   */
+  private AnalyticJob fetchHistoryJob(String appId) throws IOException, AuthenticationException {
+    String historyAddress = configuration.get(JOB_HISTORY_ADDRESS);
+    ApplicationType type = getApplicationType(MAPREDUCE_APP_TYPE);
+    if (historyAddress == null || type == null) {
+      return null;
+    }
+    String jobId = Utils.getJobIdFromApplicationId(appId);
+    JsonNode job;
+    try {
+      job = readJsonNode(new URL(new URL("http://" + historyAddress), String.format(JHS_JOB_URL, jobId))).path("job");
+    } catch (FileNotFoundException e) {
+      return null;
+    }
+    if (job.isMissingNode()) {
+      return null;
+    }
+    AnalyticJob analyticJob = new AnalyticJob();
+    analyticJob.setAppId(appId).setAppType(type).setUser(job.get("user").getValueAsText())
+        .setName(job.get("name").getValueAsText()).setQueueName(job.get("queue").getValueAsText())
+        .setTrackingUrl(String.format(JHS_TRACKING_URL, historyAddress, jobId))
+        .setStartTime(job.get("startTime").getLongValue()).setFinishTime(job.get("finishTime").getLongValue())
+        .setFailed("FAILED".equals(job.path("state").getValueAsText()));
+    return analyticJob;
+  }
 }
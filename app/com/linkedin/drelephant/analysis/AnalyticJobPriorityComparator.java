@@ -0,0 +1,47 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.analysis;
+
+import java.util.Comparator;
+
+
+/**
+ * The default ordering of the analysis queue. Jobs that sort first are analysed first.
+ *
+ * 1. Failed applications come before succeeded ones, since their owners usually want feedback right away.
+ * 2. Among those, applications that finished more recently come first.
+ * 3. Finally, cheaper applications (shorter duration, a proxy for the number of tasks to fetch) come first.
+ *
+ * A different ordering can be plugged in through drelephant.analysis.queue.comparator in GeneralConf.xml. The class
+ * must implement Comparator&lt;AnalyticJob&gt; and have a public no-arg constructor.
+ */
+public class AnalyticJobPriorityComparator implements Comparator<AnalyticJob> {
+
+  @Override
+  public int compare(AnalyticJob job1, AnalyticJob job2) {
+    if (job1.isFailed() != job2.isFailed()) {
+      return job1.isFailed() ? -1 : 1;
+    }
+    if (job1.getFinishTime() != job2.getFinishTime()) {
+      return job1.getFinishTime() > job2.getFinishTime() ? -1 : 1;
+    }
+    if (job1.getDuration() != job2.getDuration()) {
+      return job1.getDuration() < job2.getDuration() ? -1 : 1;
+    }
+    return 0;
+  }
+}
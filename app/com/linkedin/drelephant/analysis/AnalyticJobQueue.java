@@ -0,0 +1,282 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.analysis;
+
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ * A bounded, priority ordered queue of AnalyticJobs waiting to be analysed.
+ *
+ * Jobs are handed out in the order defined by the given comparator. Jobs that compare equal are handed out in the
+ * order they were added. When the queue is full, producers block until an executor takes a job, which keeps the
+ * memory used by pending jobs bounded no matter how many applications the resource manager reports.
+ *
+ * The queue also keeps track of how long jobs wait before being analysed, so that the daemon can report when
+ * analysis falls behind.
+ */
+public class AnalyticJobQueue {
+
+  private final int _capacity;
+  private final PriorityQueue<Entry> _queue;
+  // The same entries in the order they were added, so that the oldest one is the first. Entries compare by identity.
+  private final LinkedHashSet<Entry> _arrivals = new LinkedHashSet<Entry>();
+  private final ReentrantLock _lock = new ReentrantLock();
+  private final Condition _notEmpty = _lock.newCondition();
+  private final Condition _notFull = _lock.newCondition();
+
+  private long _sequence = 0;
+  private long _totalEnqueued = 0;
+  private long _totalDequeued = 0;
+  private long _totalWaitTime = 0;
+  private long _lastWaitTime = 0;
+
+  /**
+   * Creates a queue
+   *
+   * @param capacity The maximum number of jobs the queue holds
+   * @param comparator The ordering of the jobs, jobs that sort first are taken first
+   */
+  public AnalyticJobQueue(int capacity, final Comparator<AnalyticJob> comparator) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Queue capacity should be positive, found " + capacity);
+    }
+    _capacity = capacity;
+    _queue = new PriorityQueue<Entry>(Math.min(capacity, 1024), new Comparator<Entry>() {
+      @Override
+      public int compare(Entry entry1, Entry entry2) {
+        int order = comparator.compare(entry1._job, entry2._job);
+        if (order != 0) {
+          return order;
+        }
+        return entry1._sequence < entry2._sequence ? -1 : (entry1._sequence == entry2._sequence ? 0 : 1);
+      }
+    });
+  }
+
+  /**
+   * Adds a job, waiting for space to become available if the queue is full.
+   *
+   * @param job The job to add
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public void put(AnalyticJob job) throws InterruptedException {
+    _lock.lockInterruptibly();
+    try {
+      while (_queue.size() >= _capacity) {
+        _notFull.await();
+      }
+      enqueue(job);
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  /**
+   * Adds a job, waiting up to the given time for space to become available if the queue is full.
+   *
+   * @param job The job to add
+   * @param timeout How long to wait
+   * @param unit The unit of the timeout
+   * @return true if the job was added, false if the queue stayed full
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public boolean offer(AnalyticJob job, long timeout, TimeUnit unit) throws InterruptedException {
+    long nanos = unit.toNanos(timeout);
+    _lock.lockInterruptibly();
+    try {
+      while (_queue.size() >= _capacity) {
+        if (nanos <= 0) {
+          return false;
+        }
+        nanos = _notFull.awaitNanos(nanos);
+      }
+      enqueue(job);
+      return true;
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  /**
+   * Removes and returns the job with the highest priority, waiting for one to become available if necessary.
+   *
+   * @return The job with the highest priority
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public AnalyticJob take() throws InterruptedException {
+    _lock.lockInterruptibly();
+    try {
+      while (_queue.isEmpty()) {
+        _notEmpty.await();
+      }
+      return dequeue();
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  /**
+   * Removes and returns the job with the highest priority, waiting up to the given time for one to become available.
+   *
+   * @param timeout How long to wait
+   * @param unit The unit of the timeout
+   * @return The job with the highest priority, or null if the queue stayed empty
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public AnalyticJob poll(long timeout, TimeUnit unit) throws InterruptedException {
+    long nanos = unit.toNanos(timeout);
+    _lock.lockInterruptibly();
+    try {
+      while (_queue.isEmpty()) {
+        if (nanos <= 0) {
+          return null;
+        }
+        nanos = _notEmpty.awaitNanos(nanos);
+      }
+      return dequeue();
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  private void enqueue(AnalyticJob job) {
+    Entry entry = new Entry(job, System.currentTimeMillis(), _sequence++);
+    _queue.add(entry);
+    _arrivals.add(entry);
+    _totalEnqueued++;
+    _notEmpty.signal();
+  }
+
+  private AnalyticJob dequeue() {
+    Entry entry = _queue.poll();
+    _arrivals.remove(entry);
+    _lastWaitTime = System.currentTimeMillis() - entry._enqueueTime;
+    _totalWaitTime += _lastWaitTime;
+    _totalDequeued++;
+    _notFull.signal();
+    return entry._job;
+  }
+
+  /**
+   * @return The number of jobs currently waiting in the queue
+   */
+  public int size() {
+    _lock.lock();
+    try {
+      return _queue.size();
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  /**
+   * @return The maximum number of jobs the queue holds
+   */
+  public int getCapacity() {
+    return _capacity;
+  }
+
+  /**
+   * @return The number of jobs that can be added without blocking
+   */
+  public int remainingCapacity() {
+    return _capacity - size();
+  }
+
+  /**
+   * Returns how long the job that has been waiting the longest has been in the queue, in constant time
+   *
+   * @return The age of the oldest job in milliseconds, 0 if the queue is empty
+   */
+  public long getOldestAge() {
+    _lock.lock();
+    try {
+      return _arrivals.isEmpty() ? 0 : System.currentTimeMillis() - _arrivals.iterator().next()._enqueueTime;
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  /**
+   * @return The time in milliseconds the most recently taken job waited in the queue
+   */
+  public long getLastWaitTime() {
+    _lock.lock();
+    try {
+      return _lastWaitTime;
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  /**
+   * @return The average time in milliseconds that taken jobs waited in the queue
+   */
+  public long getAverageWaitTime() {
+    _lock.lock();
+    try {
+      return _totalDequeued == 0 ? 0 : _totalWaitTime / _totalDequeued;
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  /**
+   * @return The total number of jobs ever added to the queue
+   */
+  public long getTotalEnqueued() {
+    _lock.lock();
+    try {
+      return _totalEnqueued;
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  /**
+   * @return The total number of jobs ever taken from the queue
+   */
+  public long getTotalDequeued() {
+    _lock.lock();
+    try {
+      return _totalDequeued;
+    } finally {
+      _lock.unlock();
+    }
+  }
+
+  /**
+   * A job in the queue along with the time it was added
+   */
+  private static class Entry {
+    private final AnalyticJob _job;
+    private final long _enqueueTime;
+    private final long _sequence;
+
+    Entry(AnalyticJob job, long enqueueTime, long sequence) {
+      _job = job;
+      _enqueueTime = enqueueTime;
+      _sequence = sequence;
+    }
+  }
+}
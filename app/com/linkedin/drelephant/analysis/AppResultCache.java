@@ -0,0 +1,165 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.analysis;
+
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.hash.Hashing;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import models.AppResult;
+
+
+/**
+ * A bounded cache of the serialized analysis results served by the rest api, by application, job execution and flow
+ * execution id.
+ *
+ * The results are read through the cache. The entries of a result are invalidated when it is saved, since a new
+ * application changes the results of its job and flow executions. The results saved by the other nodes of a cluster
+ * are not seen, so the entries also expire after a while.
+ */
+public class AppResultCache {
+  private static final long MAX_WEIGHT = 32 * 1024 * 1024;   // The maximum number of cached characters
+  private static final int ENTRY_WEIGHT = 512;               // The weight of an entry besides its characters
+  private static final long EXPIRY = 5 * 60 * 1000;          // How long an entry is kept after it is loaded
+
+  private static final AppResultCache INSTANCE = new AppResultCache(MAX_WEIGHT, EXPIRY);
+
+  /**
+   * The ids the results are looked up by
+   */
+  public enum Kind {
+    APP, JOB_EXEC, FLOW_EXEC
+  }
+
+  /**
+   * A serialized result and its entity tag
+   */
+  public static class Entry {
+    private final String _json;
+    private final String _etag;
+
+    Entry(String json) {
+      _json = json;
+      _etag = "\"" + Hashing.murmur3_128().hashString(json, Charsets.UTF_8) + "\"";
+    }
+
+    public String getJson() {
+      return _json;
+    }
+
+    public String getETag() {
+      return _etag;
+    }
+
+    /**
+     * @param ifNoneMatch The If-None-Match header of a request, may be null
+     * @return true if the client already has this entry
+     */
+    public boolean matches(String ifNoneMatch) {
+      if (ifNoneMatch == null) {
+        return false;
+      }
+      for (String tag : ifNoneMatch.split(",")) {
+        tag = tag.trim();
+        if (tag.startsWith("W/")) {
+          tag = tag.substring(2);
+        }
+        if (tag.equals("*") || tag.equals(_etag)) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  private final Cache<String, Entry> _cache;
+  private final AtomicLong _invalidations = new AtomicLong();
+
+  public static AppResultCache instance() {
+    return INSTANCE;
+  }
+
+  AppResultCache(long maxWeight, long expiry) {
+    _cache = CacheBuilder.newBuilder()
+        .maximumWeight(maxWeight)
+        .weigher(new Weigher<String, Entry>() {
+          @Override
+          public int weigh(String key, Entry entry) {
+            return ENTRY_WEIGHT + key.length() + entry.getJson().length();
+          }
+        })
+        .expireAfterWrite(expiry, TimeUnit.MILLISECONDS)
+        .build();
+  }
+
+  /**
+   * Returns the cached result, loading it on a miss
+   *
+   * @param kind The kind of id
+   * @param id The id
+   * @param loader Loads the serialized result, or returns null if there is none
+   * @return The result, or null if there is none
+   * @throws Exception if the loader failed
+   */
+  public Entry get(Kind kind, String id, Callable<String> loader) throws Exception {
+    String key = kind + "/" + id;
+    Entry entry = _cache.getIfPresent(key);
+    if (entry == null) {
+      // A result saved while loading may be missing from what was loaded, do not cache it then
+      long invalidations = _invalidations.get();
+      String json = loader.call();
+      if (json == null) {
+        return null;
+      }
+      entry = new Entry(json);
+      synchronized (this) {
+        if (invalidations == _invalidations.get()) {
+          _cache.put(key, entry);
+        }
+      }
+    }
+    return entry;
+  }
+
+  /**
+   * Invalidates the entries that include a result
+   *
+   * @param result The result saved
+   */
+  public void invalidate(AppResult result) {
+    synchronized (this) {
+      _invalidations.incrementAndGet();
+      _cache.invalidate(Kind.APP + "/" + result.id);
+      _cache.invalidate(Kind.JOB_EXEC + "/" + result.jobExecId);
+      _cache.invalidate(Kind.FLOW_EXEC + "/" + result.flowExecId);
+    }
+  }
+
+  /**
+   * Invalidates all the entries, e.g. when results are deleted
+   */
+  public void invalidateAll() {
+    synchronized (this) {
+      _invalidations.incrementAndGet();
+      _cache.invalidateAll();
+    }
+  }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.analysis;
+
+import com.avaje.ebean.Ebean;
+import com.avaje.ebean.SqlRow;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import models.AppResult;
+
+
+/**
+ * Hourly counts of the analyzed applications by severity, job type, queue and user, kept in the
+ * yarn_app_result_count table.
+ *
+ * The counts are added in the same transaction as the results, so the dashboard and the stats read a few rows per
+ * hour instead of counting the results. Windows are rounded down to the start of the hour.
+ */
+public class AppResultCounts {
+
+  public static final long BUCKET_SIZE = 60 * 60 * 1000;
+
+  public static final String JOB_TYPE = "job_type";
+  public static final String QUEUE_NAME = "queue_name";
+  public static final String USERNAME = "username";
+  public static final String SEVERITY = "severity";
+  private static final List<String> DIMENSIONS = Arrays.asList(JOB_TYPE, QUEUE_NAME, USERNAME, SEVERITY);
+
+  private static final String ADD_COUNT_SQL = "INSERT INTO yarn_app_result_count "
+      + "(bucket_time, severity, job_type, queue_name, username, app_count) VALUES (?, ?, ?, ?, ?, ?) "
+      + "ON DUPLICATE KEY UPDATE app_count = app_count + VALUES(app_count)";
+  private static final String REMOVE_COUNT_SQL = "UPDATE yarn_app_result_count "
+      + "SET app_count = CASE WHEN app_count > ? THEN app_count - ? ELSE 0 END "
+      + "WHERE bucket_time = ? AND severity = ? AND job_type = ? AND queue_name = ? AND username = ?";
+  private static final String COUNT_BY_SQL = "SELECT %s AS name, SUM(app_count) AS app_count "
+      + "FROM yarn_app_result_count WHERE bucket_time >= :since GROUP BY %s ORDER BY app_count DESC";
+
+  /**
+   * Returns the start of the hour bucket of a time
+   *
+   * @param time The time in milliseconds
+   * @return The start of its bucket
+   */
+  public static long getBucketTime(long time) {
+    return time - time % BUCKET_SIZE;
+  }
+
+  /**
+   * Adds the results to the counts. Should run in the transaction inserting the results.
+   *
+   * @param connection The connection inserting the results
+   * @param results The new results
+   * @throws SQLException if the counts could not be updated
+   */
+  public static void add(Connection connection, List<AppResult> results) throws SQLException {
+    PreparedStatement statement = connection.prepareStatement(ADD_COUNT_SQL);
+    try {
+      for (Map.Entry<List<Object>, Integer> entry : fold(results).entrySet()) {
+        List<Object> key = entry.getKey();
+        statement.setLong(1, (Long) key.get(0));
+        statement.setInt(2, (Integer) key.get(1));
+        statement.setString(3, (String) key.get(2));
+        statement.setString(4, (String) key.get(3));
+        statement.setString(5, (String) key.get(4));
+        statement.setInt(6, entry.getValue());
+        statement.addBatch();
+      }
+      statement.executeBatch();
+    } finally {
+      statement.close();
+    }
+  }
+
+  /**
+   * Removes replaced results from the counts. Should run in the transaction deleting the results.
+   *
+   * @param connection The connection deleting the results
+   * @param results The replaced results
+   * @throws SQLException if the counts could not be updated
+   */
+  public static void remove(Connection connection, List<AppResult> results) throws SQLException {
+    PreparedStatement statement = connection.prepareStatement(REMOVE_COUNT_SQL);
+    try {
+      for (Map.Entry<List<Object>, Integer> entry : fold(results).entrySet()) {
+        List<Object> key = entry.getKey();
+        statement.setInt(1, entry.getValue());
+        statement.setInt(2, entry.getValue());
+        statement.setLong(3, (Long) key.get(0));
+        statement.setInt(4, (Integer) key.get(1));
+        statement.setString(5, (String) key.get(2));
+        statement.setString(6, (String) key.get(3));
+        statement.setString(7, (String) key.get(4));
+        statement.addBatch();
+      }
+      statement.executeBatch();
+    } finally {
+      statement.close();
+    }
+  }
+
+  private static Map<List<Object>, Integer> fold(List<AppResult> results) {
+    // Most results of a batch fall in the same few buckets
+    Map<List<Object>, Integer> counts = new LinkedHashMap<List<Object>, Integer>();
+    for (AppResult result : results) {
+      List<Object> key = Arrays.<Object>asList(getBucketTime(result.finishTime), result.severity.getValue(),
+          result.jobType, result.queueName == null ? "" : result.queueName, result.username);
+      Integer count = counts.get(key);
+      counts.put(key, count == null ? 1 : count + 1);
+    }
+    return counts;
+  }
+
+  /**
+   * Counts the applications finished since the given time, grouped by one dimension
+   *
+   * @param dimension One of JOB_TYPE, QUEUE_NAME, USERNAME or SEVERITY
+   * @param since The start of the window, rounded down to the hour
+   * @return The counts by value of the dimension, the largest first
+   */
+  public static Map<String, Long> countBy(String dimension, long since) {
+    if (!DIMENSIONS.contains(dimension)) {
+      throw new IllegalArgumentException("Unknown dimension " + dimension + ", should be one of " + DIMENSIONS);
+    }
+    List<SqlRow> rows = Ebean.createSqlQuery(String.format(COUNT_BY_SQL, dimension, dimension))
+        .setParameter("since", getBucketTime(since))
+        .findList();
+    Map<String, Long> counts = new LinkedHashMap<String, Long>();
+    for (SqlRow row : rows) {
+      counts.put(row.getString("name"), row.getLong("app_count"));
+    }
+    return counts;
+  }
+
+  /**
+   * Counts the applications finished since the given time, by severity
+   *
+   * @param since The start of the window, rounded down to the hour
+   * @return The counts by severity, severities without application are missing
+   */
+  public static Map<Severity, Long> countBySeverity(long since) {
+    Map<Severity, Long> counts = new LinkedHashMap<Severity, Long>();
+    for (Map.Entry<String, Long> entry : countBy(SEVERITY, since).entrySet()) {
+      counts.put(Severity.byValue(Integer.parseInt(entry.getKey())), entry.getValue());
+    }
+    return counts;
+  }
+}
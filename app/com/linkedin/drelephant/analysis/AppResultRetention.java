@@ -0,0 +1,461 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.analysis;
+
+import com.linkedin.drelephant.util.Utils;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import models.AnalysisWatermark;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.log4j.Logger;
+import play.db.DB;
+
+
+/**
+ * Deletes the analysis results older than the retention period, and optionally compacts the results older than the
+ * compaction period by clearing the long details of their heuristic results. The compacted results keep their
+ * severities, scores, metrics and the name and value of each heuristic detail. The last result compacted is saved as
+ * a checkpoint, so that a restart or another leader resumes the compaction from there.
+ *
+ * The results are processed in small batches in finish time order, each batch in its own transaction, pausing between
+ * batches so that the result writer and the web pages are not locked out for long. In cluster mode, only the first
+ * live node runs the retention.
+ */
+public class AppResultRetention {
+  private static final Logger logger = Logger.getLogger(AppResultRetention.class);
+
+  public static final String RETENTION_DAYS_KEY = "drelephant.retention.days";
+  public static final String COMPACTION_DAYS_KEY = "drelephant.retention.compaction.days";
+  public static final String INTERVAL_KEY = "drelephant.retention.interval";
+  public static final String BATCH_SIZE_KEY = "drelephant.retention.batch.size";
+  public static final String BATCH_PAUSE_KEY = "drelephant.retention.batch.pause";
+
+  private static final long DAY = 24 * 60 * 60 * 1000L;
+  private static final long INTERVAL = 60 * 60 * 1000;   // Interval between two runs
+  private static final int BATCH_SIZE = 1000;            // The number of results deleted or compacted at once
+  private static final long BATCH_PAUSE = 100;           // How long to pause between two batches
+
+  private static final String SELECT_EXPIRED_SQL =
+      "SELECT id FROM yarn_app_result WHERE finish_time < ? ORDER BY finish_time LIMIT ?";
+  private static final String SELECT_COMPACTABLE_SQL = "SELECT id, finish_time FROM yarn_app_result "
+      + "WHERE (finish_time > ? OR (finish_time = ? AND id > ?)) AND finish_time < ? ORDER BY finish_time, id LIMIT ?";
+  private static final String SELECT_HEURISTIC_RESULT_IDS_SQL =
+      "SELECT id FROM yarn_app_heuristic_result WHERE yarn_app_result_id IN (%s)";
+  private static final String CLEAR_DETAILS_SQL = "UPDATE yarn_app_heuristic_result_details SET details = NULL "
+      + "WHERE yarn_app_heuristic_result_id IN (%s) AND details IS NOT NULL";
+  private static final String DELETE_DETAILS_SQL =
+      "DELETE FROM yarn_app_heuristic_result_details WHERE yarn_app_heuristic_result_id IN (%s)";
+  private static final String DELETE_METRICS_SQL =
+      "DELETE FROM yarn_app_heuristic_result_metric WHERE yarn_app_heuristic_result_id IN (%s)";
+  private static final String DELETE_HEURISTIC_RESULTS_SQL =
+      "DELETE FROM yarn_app_heuristic_result WHERE yarn_app_result_id IN (%s)";
+  private static final String DELETE_APP_RESULTS_SQL = "DELETE FROM yarn_app_result WHERE id IN (%s)";
+  private static final int MAX_IDS = 1000;               // The number of ids in one statement
+  static final String COMPACTION_CHECKPOINT_ID = "retention-compaction";
+
+  // The summary tables and their time columns, deleted up to the time of the last row of a batch
+  private static final String[][] SUMMARIES = { { "yarn_app_result_count", "bucket_time" },
+      { "flow_exec_score", "finish_time" }, { "job_exec_score", "finish_time" } };
+  private static final String SELECT_SUMMARY_TIMES_SQL = "SELECT %2$s FROM %1$s WHERE %2$s < ? ORDER BY %2$s LIMIT ?";
+  private static final String DELETE_SUMMARIES_SQL = "DELETE FROM %1$s WHERE %2$s <= ?";
+
+  private final long _retention;
+  private final long _compaction;
+  private final long _interval;
+  private final int _batchSize;
+  private final long _batchPause;
+  private final ClusterCoordinator _clusterCoordinator;
+  private final ScheduledExecutorService _service;
+  private volatile boolean _running = true;
+
+  // The last result compacted. Only its finish time is checkpointed, so the results sharing it are compacted again
+  // after a restart.
+  private long _compactedTime = 0;
+  private String _compactedId = "";
+
+  /**
+   * @param configuration The general configuration
+   * @param clusterCoordinator The cluster coordinator in cluster mode, null otherwise
+   * @return The retention configured in the general configuration
+   */
+  public static AppResultRetention fromConfiguration(Configuration configuration,
+      ClusterCoordinator clusterCoordinator) {
+    long retention = Utils.getNonNegativeInt(configuration, RETENTION_DAYS_KEY, 0) * DAY;
+    long compaction = Utils.getNonNegativeInt(configuration, COMPACTION_DAYS_KEY, 0) * DAY;
+    if (retention > 0 && compaction >= retention) {
+      logger.warn("Configuration " + COMPACTION_DAYS_KEY + " should be less than " + RETENTION_DAYS_KEY
+          + ". The results are deleted before they are compacted.");
+      compaction = 0;
+    }
+    long interval = Utils.getNonNegativeLong(configuration, INTERVAL_KEY, INTERVAL);
+    int batchSize = Utils.getNonNegativeInt(configuration, BATCH_SIZE_KEY, BATCH_SIZE);
+    long batchPause = Utils.getNonNegativeLong(configuration, BATCH_PAUSE_KEY, BATCH_PAUSE);
+    return new AppResultRetention(retention, compaction, interval, batchSize, batchPause, clusterCoordinator);
+  }
+
+  /**
+   * @param retention How long the results are kept in milliseconds, 0 to keep them forever
+   * @param compaction How long the results are kept with their details in milliseconds, 0 to keep them forever
+   * @param interval The interval between two runs
+   * @param batchSize The number of results deleted or compacted at once
+   * @param batchPause How long to pause between two batches
+   * @param clusterCoordinator The cluster coordinator in cluster mode, null otherwise
+   */
+  public AppResultRetention(long retention, long compaction, long interval, int batchSize, long batchPause,
+      ClusterCoordinator clusterCoordinator) {
+    if (interval <= 0 || batchSize <= 0) {
+      throw new IllegalArgumentException("The interval and the batch size should be positive, found " + interval
+          + " and " + batchSize);
+    }
+    _retention = retention;
+    _compaction = compaction;
+    _interval = interval;
+    _batchSize = batchSize;
+    _batchPause = batchPause;
+    _clusterCoordinator = clusterCoordinator;
+    _service = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "Result retention");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * @return true if some results are ever deleted or compacted
+   */
+  public boolean isEnabled() {
+    return _retention > 0 || _compaction > 0;
+  }
+
+  /**
+   * Starts running the retention periodically
+   */
+  public void start() {
+    logger.info("Starting the result retention. Results are deleted after " + _retention + " ms and compacted after "
+        + _compaction + " ms (0 means never).");
+    _service.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          purge(System.currentTimeMillis());
+        } catch (Exception e) {
+          // An exception would cancel the next runs
+          logger.error("Error running the result retention", e);
+        }
+      }
+    }, 0, _interval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops the retention. A batch being deleted is interrupted and rolled back.
+   */
+  public void stop() {
+    _running = false;
+    _service.shutdownNow();
+  }
+
+  /**
+   * Deletes and compacts the old results
+   *
+   * @param now The current time
+   * @throws SQLException if a batch failed, in which case the next run starts over
+   */
+  void purge(long now) throws SQLException {
+    if (_clusterCoordinator != null && !_clusterCoordinator.isLeader()) {
+      return;
+    }
+
+    if (_retention > 0) {
+      long before = now - _retention;
+      int deleted = 0;
+      int count;
+      do {
+        count = deleteBatch(before, _batchSize);
+        deleted += count;
+      } while (count == _batchSize && pause());
+      logger.info("Deleted " + deleted + " results finished before " + before);
+      if (deleted > 0) {
+        AppResultCache.instance().invalidateAll();
+      }
+
+      // The counts are kept for whole hours, and the scores along with them
+      before = AppResultCounts.getBucketTime(before);
+      do {
+        count = deleteSummariesBatch(before, _batchSize);
+      } while (count == _batchSize && pause());
+    }
+
+    if (_compaction > 0 && _running) {
+      long before = now - _compaction;
+      int compacted = 0;
+      int count;
+      do {
+        count = compactBatch(before, _batchSize);
+        compacted += count;
+      } while (count == _batchSize && pause());
+      logger.info("Compacted " + compacted + " results finished before " + before);
+      if (compacted > 0) {
+        AppResultCache.instance().invalidateAll();
+      }
+    }
+  }
+
+  /**
+   * Pauses between two batches
+   *
+   * @return false if the retention was stopped
+   */
+  private boolean pause() {
+    if (!_running) {
+      return false;
+    }
+    try {
+      Thread.sleep(_batchPause);
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  /**
+   * Deletes the oldest results finished before the given time, with their heuristic results and details
+   *
+   * @param before The finish time before which the results are deleted
+   * @param size The maximum number of results to delete
+   * @return The number of results deleted
+   */
+  int deleteBatch(long before, int size) throws SQLException {
+    Connection connection = DB.getConnection(false);
+    try {
+      List<String> ids = new ArrayList<String>();
+      PreparedStatement statement = connection.prepareStatement(SELECT_EXPIRED_SQL);
+      try {
+        statement.setLong(1, before);
+        statement.setInt(2, size);
+        ResultSet resultSet = statement.executeQuery();
+        while (resultSet.next()) {
+          ids.add(resultSet.getString(1));
+        }
+      } finally {
+        statement.close();
+      }
+
+      if (!ids.isEmpty()) {
+        deleteResults(connection, ids);
+      }
+      connection.commit();
+      return ids.size();
+    } catch (SQLException e) {
+      connection.rollback();
+      throw e;
+    } finally {
+      connection.close();
+    }
+  }
+
+  /**
+   * Clears the long heuristic details of the next results finished before the given time, from the checkpoint on
+   *
+   * @param before The finish time before which the results are compacted
+   * @param size The maximum number of results to compact
+   * @return The number of results compacted
+   */
+  int compactBatch(long before, int size) throws SQLException {
+    long checkpoint = loadCompactionCheckpoint();
+    if (checkpoint != _compactedTime) {
+      _compactedTime = checkpoint;
+      _compactedId = "";
+    }
+
+    Connection connection = DB.getConnection(false);
+    try {
+      List<String> ids = new ArrayList<String>();
+      long lastTime = _compactedTime;
+      PreparedStatement statement = connection.prepareStatement(SELECT_COMPACTABLE_SQL);
+      try {
+        statement.setLong(1, _compactedTime);
+        statement.setLong(2, _compactedTime);
+        statement.setString(3, _compactedId);
+        statement.setLong(4, before);
+        statement.setInt(5, size);
+        ResultSet resultSet = statement.executeQuery();
+        while (resultSet.next()) {
+          ids.add(resultSet.getString(1));
+          lastTime = resultSet.getLong(2);
+        }
+      } finally {
+        statement.close();
+      }
+
+      if (!ids.isEmpty()) {
+        updateByIds(connection, CLEAR_DETAILS_SQL, selectHeuristicResultIds(connection, ids));
+      }
+      connection.commit();
+      if (!ids.isEmpty()) {
+        saveCompactionCheckpoint(lastTime);
+        _compactedTime = lastTime;
+        _compactedId = ids.get(ids.size() - 1);
+      }
+      return ids.size();
+    } catch (SQLException e) {
+      connection.rollback();
+      throw e;
+    } finally {
+      connection.close();
+    }
+  }
+
+  /**
+   * Returns the checkpoint of the compaction: the finish time of the last result compacted
+   *
+   * @return The checkpoint, 0 if no result was compacted yet
+   */
+  static long loadCompactionCheckpoint() {
+    AnalysisWatermark watermark = AnalysisWatermark.find.byId(COMPACTION_CHECKPOINT_ID);
+    return watermark == null ? 0 : watermark.finishTime;
+  }
+
+  private static void saveCompactionCheckpoint(long checkpoint) {
+    AnalysisWatermark watermark = AnalysisWatermark.find.byId(COMPACTION_CHECKPOINT_ID);
+    if (watermark == null) {
+      watermark = new AnalysisWatermark();
+      watermark.nodeId = COMPACTION_CHECKPOINT_ID;
+    }
+    watermark.finishTime = checkpoint;
+    watermark.save();
+  }
+
+  /**
+   * Deletes the oldest hourly counts of the buckets before the given time, and the oldest scores of the flow and job
+   * executions finished before it. The rows sharing the time of the last row of a batch are deleted along with it.
+   *
+   * @param before The bucket time before which the counts and scores are deleted
+   * @param size The number of counts, and of scores of each kind, to delete
+   * @return The largest number of rows found to delete in one table, up to the size
+   */
+  int deleteSummariesBatch(long before, int size) throws SQLException {
+    Connection connection = DB.getConnection(true);
+    try {
+      int count = 0;
+      for (String[] summary : SUMMARIES) {
+        int found = 0;
+        long lastTime = 0;
+        PreparedStatement statement =
+            connection.prepareStatement(String.format(SELECT_SUMMARY_TIMES_SQL, summary[0], summary[1]));
+        try {
+          statement.setLong(1, before);
+          statement.setInt(2, size);
+          ResultSet resultSet = statement.executeQuery();
+          while (resultSet.next()) {
+            lastTime = resultSet.getLong(1);
+            found++;
+          }
+        } finally {
+          statement.close();
+        }
+        if (found == 0) {
+          continue;
+        }
+
+        statement = connection.prepareStatement(String.format(DELETE_SUMMARIES_SQL, summary[0], summary[1]));
+        try {
+          statement.setLong(1, lastTime);
+          statement.executeUpdate();
+        } finally {
+          statement.close();
+        }
+        count = Math.max(count, found);
+      }
+      return count;
+    } finally {
+      connection.close();
+    }
+  }
+
+  /**
+   * Deletes results along with their heuristic results, details and metrics, but not their counts and scores
+   *
+   * @param connection The connection, in a transaction
+   * @param ids The ids of the results
+   */
+  static void deleteResults(Connection connection, List<String> ids) throws SQLException {
+    List<Integer> heuristicResultIds = selectHeuristicResultIds(connection, ids);
+    updateByIds(connection, DELETE_DETAILS_SQL, heuristicResultIds);
+    updateByIds(connection, DELETE_METRICS_SQL, heuristicResultIds);
+    updateByIds(connection, DELETE_HEURISTIC_RESULTS_SQL, ids);
+    updateByIds(connection, DELETE_APP_RESULTS_SQL, ids);
+  }
+
+  private static List<Integer> selectHeuristicResultIds(Connection connection, List<String> ids) throws SQLException {
+    List<Integer> heuristicResultIds = new ArrayList<Integer>();
+    for (int start = 0; start < ids.size(); start += MAX_IDS) {
+      List<String> chunk = ids.subList(start, Math.min(ids.size(), start + MAX_IDS));
+      PreparedStatement statement =
+          connection.prepareStatement(String.format(SELECT_HEURISTIC_RESULT_IDS_SQL, placeholders(chunk.size())));
+      try {
+        for (int i = 0; i < chunk.size(); i++) {
+          statement.setString(i + 1, chunk.get(i));
+        }
+        ResultSet resultSet = statement.executeQuery();
+        while (resultSet.next()) {
+          heuristicResultIds.add(resultSet.getInt(1));
+        }
+      } finally {
+        statement.close();
+      }
+    }
+    return heuristicResultIds;
+  }
+
+  /**
+   * Runs a delete or update statement over the ids, in chunks of at most MAX_IDS
+   */
+  private static void updateByIds(Connection connection, String sql, List<?> ids) throws SQLException {
+    for (int start = 0; start < ids.size(); start += MAX_IDS) {
+      List<?> chunk = ids.subList(start, Math.min(ids.size(), start + MAX_IDS));
+      PreparedStatement statement = connection.prepareStatement(String.format(sql, placeholders(chunk.size())));
+      try {
+        for (int i = 0; i < chunk.size(); i++) {
+          statement.setObject(i + 1, chunk.get(i));
+        }
+        statement.executeUpdate();
+      } finally {
+        statement.close();
+      }
+    }
+  }
+
+  private static String placeholders(int count) {
+    StringBuilder placeholders = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      placeholders.append(i == 0 ? "?" : ", ?");
+    }
+    return placeholders.toString();
+  }
+}
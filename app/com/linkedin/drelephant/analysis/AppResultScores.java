@@ -0,0 +1,335 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.analysis;
+
+import com.avaje.ebean.Ebean;
+import com.avaje.ebean.SqlQuery;
+import com.avaje.ebean.SqlRow;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import models.AppResult;
+import org.apache.commons.codec.digest.DigestUtils;
+
+
+/**
+ * Scores of the flow executions and of the jobs within them, kept in the flow_exec_score and job_exec_score tables.
+ *
+ * The scores are added in the same transaction as the results, so the flow and job history graphs read their last
+ * executions directly instead of loading and grouping thousands of results. Applications without a flow execution
+ * are not scored.
+ */
+public class AppResultScores {
+
+  private static final String ADD_FLOW_SCORE_SQL = "INSERT INTO flow_exec_score "
+      + "(flow_exec_id, flow_def_id, finish_time, score) VALUES (?, ?, ?, ?) "
+      + "ON DUPLICATE KEY UPDATE finish_time = GREATEST(finish_time, VALUES(finish_time)), "
+      + "score = score + VALUES(score)";
+  // The job definition ids are too long for a unique key, the jobs are keyed by their hash. The job execution url is
+  // set before the first finish time it compares with.
+  private static final String ADD_JOB_SCORE_SQL = "INSERT INTO job_exec_score "
+      + "(flow_exec_id, job_def_id, job_def_hash, job_def_url, job_exec_url, first_finish_time, finish_time, score) "
+      + "VALUES (?, ?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE "
+      + "job_exec_url = CASE WHEN VALUES(first_finish_time) < first_finish_time THEN VALUES(job_exec_url) "
+      + "ELSE job_exec_url END, first_finish_time = LEAST(first_finish_time, VALUES(first_finish_time)), "
+      + "finish_time = GREATEST(finish_time, VALUES(finish_time)), score = score + VALUES(score)";
+  private static final String REMOVE_FLOW_SCORE_SQL = "UPDATE flow_exec_score "
+      + "SET score = CASE WHEN score > ? THEN score - ? ELSE 0 END WHERE flow_exec_id = ?";
+  private static final String REMOVE_JOB_SCORE_SQL = "UPDATE job_exec_score "
+      + "SET score = CASE WHEN score > ? THEN score - ? ELSE 0 END WHERE flow_exec_id = ? AND job_def_hash = ?";
+
+  private static final String FLOW_SCORES_SQL = "SELECT flow_exec_id, finish_time, score FROM flow_exec_score "
+      + "WHERE flow_def_id = :id ORDER BY finish_time DESC LIMIT :limit";
+  private static final String JOB_SCORES_SQL = "SELECT flow_exec_id, job_def_id, job_def_url, job_exec_url, "
+      + "first_finish_time, finish_time, score FROM job_exec_score WHERE %s ORDER BY %s";
+
+  /**
+   * The score of a flow execution, or of a job within a flow execution
+   */
+  public static class Score {
+    private final String _flowExecId;
+    private final String _flowDefId;
+    private final String _jobDefId;
+    private final String _jobDefUrl;
+    private final String _jobExecUrl;
+    private final long _firstFinishTime;
+    private final long _finishTime;
+    private final int _score;
+
+    Score(String flowExecId, String flowDefId, String jobDefId, String jobDefUrl, String jobExecUrl,
+        long firstFinishTime, long finishTime, int score) {
+      _flowExecId = flowExecId;
+      _flowDefId = flowDefId;
+      _jobDefId = jobDefId;
+      _jobDefUrl = jobDefUrl;
+      _jobExecUrl = jobExecUrl;
+      _firstFinishTime = firstFinishTime;
+      _finishTime = finishTime;
+      _score = score;
+    }
+
+    public String getFlowExecId() {
+      return _flowExecId;
+    }
+
+    public String getFlowDefId() {
+      return _flowDefId;
+    }
+
+    /**
+     * @return The job definition id, null for a flow execution
+     */
+    public String getJobDefId() {
+      return _jobDefId;
+    }
+
+    public String getJobDefUrl() {
+      return _jobDefUrl;
+    }
+
+    /**
+     * @return The job execution url of the first application of the job
+     */
+    public String getJobExecUrl() {
+      return _jobExecUrl;
+    }
+
+    public long getFirstFinishTime() {
+      return _firstFinishTime;
+    }
+
+    public long getFinishTime() {
+      return _finishTime;
+    }
+
+    public int getScore() {
+      return _score;
+    }
+  }
+
+  /**
+   * Adds the results to the scores of their flow executions and jobs. Should run in the transaction inserting the
+   * results.
+   *
+   * @param connection The connection inserting the results
+   * @param results The new results
+   * @throws SQLException if the scores could not be updated
+   */
+  public static void add(Connection connection, List<AppResult> results) throws SQLException {
+    Map<String, Score> flowScores = new LinkedHashMap<String, Score>();
+    Map<List<String>, Score> jobScores = new LinkedHashMap<List<String>, Score>();
+    fold(results, flowScores, jobScores);
+    if (flowScores.isEmpty()) {
+      return;
+    }
+
+    PreparedStatement statement = connection.prepareStatement(ADD_FLOW_SCORE_SQL);
+    try {
+      for (Map.Entry<String, Score> entry : flowScores.entrySet()) {
+        Score score = entry.getValue();
+        statement.setString(1, entry.getKey());
+        statement.setString(2, score.getFlowDefId());
+        statement.setLong(3, score.getFinishTime());
+        statement.setInt(4, score.getScore());
+        statement.addBatch();
+      }
+      statement.executeBatch();
+    } finally {
+      statement.close();
+    }
+    if (jobScores.isEmpty()) {
+      return;
+    }
+
+    statement = connection.prepareStatement(ADD_JOB_SCORE_SQL);
+    try {
+      for (Score score : jobScores.values()) {
+        statement.setString(1, score.getFlowExecId());
+        statement.setString(2, score.getJobDefId());
+        statement.setString(3, hash(score.getJobDefId()));
+        statement.setString(4, score.getJobDefUrl());
+        statement.setString(5, score.getJobExecUrl());
+        statement.setLong(6, score.getFirstFinishTime());
+        statement.setLong(7, score.getFinishTime());
+        statement.setInt(8, score.getScore());
+        statement.addBatch();
+      }
+      statement.executeBatch();
+    } finally {
+      statement.close();
+    }
+  }
+
+  /**
+   * Removes replaced results from the scores of their flow executions and jobs. Should run in the transaction deleting
+   * the results.
+   *
+   * @param connection The connection deleting the results
+   * @param results The replaced results
+   * @throws SQLException if the scores could not be updated
+   */
+  public static void remove(Connection connection, List<AppResult> results) throws SQLException {
+    Map<String, Score> flowScores = new LinkedHashMap<String, Score>();
+    Map<List<String>, Score> jobScores = new LinkedHashMap<List<String>, Score>();
+    fold(results, flowScores, jobScores);
+    if (flowScores.isEmpty()) {
+      return;
+    }
+
+    PreparedStatement statement = connection.prepareStatement(REMOVE_FLOW_SCORE_SQL);
+    try {
+      for (Score score : flowScores.values()) {
+        statement.setInt(1, score.getScore());
+        statement.setInt(2, score.getScore());
+        statement.setString(3, score.getFlowExecId());
+        statement.addBatch();
+      }
+      statement.executeBatch();
+    } finally {
+      statement.close();
+    }
+
+    statement = connection.prepareStatement(REMOVE_JOB_SCORE_SQL);
+    try {
+      for (Score score : jobScores.values()) {
+        statement.setInt(1, score.getScore());
+        statement.setInt(2, score.getScore());
+        statement.setString(3, score.getFlowExecId());
+        statement.setString(4, hash(score.getJobDefId()));
+        statement.addBatch();
+      }
+      statement.executeBatch();
+    } finally {
+      statement.close();
+    }
+  }
+
+  /**
+   * Folds the results into the scores of their flow executions, keyed by flow execution id, and of their jobs, keyed
+   * by flow execution and job definition id
+   */
+  static void fold(List<AppResult> results, Map<String, Score> flowScores, Map<List<String>, Score> jobScores) {
+    for (AppResult result : results) {
+      if (result.flowExecId == null || result.flowExecId.isEmpty()) {
+        continue;
+      }
+      Score flowScore = flowScores.get(result.flowExecId);
+      flowScores.put(result.flowExecId, flowScore == null
+          ? new Score(result.flowExecId, result.flowDefId, null, null, null, result.finishTime, result.finishTime,
+              result.score)
+          : merge(flowScore, result));
+
+      if (result.jobDefId == null || result.jobDefId.isEmpty()) {
+        continue;
+      }
+      List<String> key = Arrays.asList(result.flowExecId, result.jobDefId);
+      Score jobScore = jobScores.get(key);
+      jobScores.put(key, jobScore == null
+          ? new Score(result.flowExecId, result.flowDefId, result.jobDefId, result.jobDefUrl, result.jobExecUrl,
+              result.finishTime, result.finishTime, result.score)
+          : merge(jobScore, result));
+    }
+  }
+
+  /**
+   * @return The SHA-1 of the job definition id in hex, as SHA1() returns it in MySQL
+   */
+  static String hash(String jobDefId) {
+    return DigestUtils.shaHex(jobDefId);
+  }
+
+  private static Score merge(Score score, AppResult result) {
+    boolean first = result.finishTime < score.getFirstFinishTime();
+    return new Score(score.getFlowExecId(), score.getFlowDefId(), score.getJobDefId(), score.getJobDefUrl(),
+        first ? result.jobExecUrl : score.getJobExecUrl(), Math.min(score.getFirstFinishTime(), result.finishTime),
+        Math.max(score.getFinishTime(), result.finishTime), score.getScore() + result.score);
+  }
+
+  /**
+   * Returns the last executions of a flow
+   *
+   * @param flowDefId The flow definition id
+   * @param limit The maximum number of executions
+   * @return The scores of the executions, the latest first
+   */
+  public static List<Score> getFlowScores(String flowDefId, int limit) {
+    List<SqlRow> rows = Ebean.createSqlQuery(FLOW_SCORES_SQL)
+        .setParameter("id", flowDefId)
+        .setParameter("limit", limit)
+        .findList();
+    List<Score> scores = new ArrayList<Score>();
+    for (SqlRow row : rows) {
+      scores.add(new Score(row.getString("flow_exec_id"), null, null, null, null, row.getLong("finish_time"),
+          row.getLong("finish_time"), row.getInteger("score")));
+    }
+    return scores;
+  }
+
+  /**
+   * Returns the jobs of some flow executions
+   *
+   * @param flowExecIds The flow execution ids
+   * @return The scores of the jobs, in the order they started to finish
+   */
+  public static List<Score> getJobScores(Collection<String> flowExecIds) {
+    if (flowExecIds.isEmpty()) {
+      return new ArrayList<Score>();
+    }
+    StringBuilder placeholders = new StringBuilder();
+    for (int i = 0; i < flowExecIds.size(); i++) {
+      placeholders.append(i == 0 ? "?" : ", ?");
+    }
+    SqlQuery query = Ebean.createSqlQuery(
+        String.format(JOB_SCORES_SQL, "flow_exec_id IN (" + placeholders + ")", "first_finish_time"));
+    int i = 1;
+    for (String flowExecId : flowExecIds) {
+      query.setParameter(i++, flowExecId);
+    }
+    return toScores(query.findList());
+  }
+
+  /**
+   * Returns the last executions of a job
+   *
+   * @param jobDefId The job definition id
+   * @param limit The maximum number of executions
+   * @return The scores of the job in each flow execution, the latest first
+   */
+  public static List<Score> getJobScores(String jobDefId, int limit) {
+    SqlQuery query = Ebean.createSqlQuery(
+        String.format(JOB_SCORES_SQL, "job_def_id = ?", "finish_time DESC LIMIT ?"));
+    query.setParameter(1, jobDefId);
+    query.setParameter(2, limit);
+    return toScores(query.findList());
+  }
+
+  private static List<Score> toScores(List<SqlRow> rows) {
+    List<Score> scores = new ArrayList<Score>();
+    for (SqlRow row : rows) {
+      scores.add(new Score(row.getString("flow_exec_id"), null, row.getString("job_def_id"),
+          row.getString("job_def_url"), row.getString("job_exec_url"), row.getLong("first_finish_time"),
+          row.getLong("finish_time"), row.getInteger("score")));
+    }
+    return scores;
+  }
+}
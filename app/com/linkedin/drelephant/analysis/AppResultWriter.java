@@ -0,0 +1,477 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.analysis;
+
+import com.avaje.ebean.Ebean;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import models.AppHeuristicResult;
+import models.AppHeuristicResultDetails;
+import models.AppHeuristicResultMetric;
+import models.AppResult;
+import org.apache.log4j.Logger;
+import play.db.DB;
+
+
+/**
+ * Saves the analysis results in the background, so that the analysis threads do not wait for the database.
+ *
+ * The results are collected into batches, which are flushed once they reach the batch size or once the oldest result
+ * has waited for the flush interval. A batch is written with JDBC batch inserts, one statement per table, in a single
+ * transaction, along with the hourly counts of the results. If the batch fails, its results are saved one by one so
+ * that a bad result does not fail the others.
+ * Once saved, or once it failed, each result is reported to the listener.
+ *
+ * A writer replacing the existing results, e.g. for a backfill, first deletes the results of the same applications
+ * and removes them from the counts and scores, in the same transaction.
+ */
+public class AppResultWriter {
+  private static final Logger logger = Logger.getLogger(AppResultWriter.class);
+
+  private static final int QUEUED_BATCHES = 4;           // The number of batches that may wait for the writer
+
+  private static final String INSERT_APP_RESULT_SQL = "INSERT INTO yarn_app_result (id, name, username, queue_name, "
+      + "start_time, finish_time, tracking_url, job_type, severity, score, workflow_depth, scheduler, job_name, "
+      + "job_exec_id, flow_exec_id, job_def_id, flow_def_id, job_exec_url, flow_exec_url, job_def_url, flow_def_url) "
+      + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+  private static final String INSERT_HEURISTIC_RESULT_SQL = "INSERT INTO yarn_app_heuristic_result "
+      + "(yarn_app_result_id, heuristic_class, heuristic_name, severity, score, timed_out) "
+      + "VALUES (?, ?, ?, ?, ?, ?)";
+  private static final String INSERT_HEURISTIC_RESULT_DETAILS_SQL = "INSERT INTO yarn_app_heuristic_result_details "
+      + "(yarn_app_heuristic_result_id, name, value, details) VALUES (?, ?, ?, ?)";
+  private static final String SELECT_HEURISTIC_RESULT_IDS_SQL = "SELECT id, yarn_app_result_id "
+      + "FROM yarn_app_heuristic_result WHERE yarn_app_result_id IN (%s) ORDER BY id";
+  private static final String INSERT_HEURISTIC_RESULT_METRIC_SQL = "INSERT INTO yarn_app_heuristic_result_metric "
+      + "(yarn_app_heuristic_result_id, name, unit, value) VALUES (?, ?, ?, ?)";
+  private static final String SELECT_EXISTING_SQL = "SELECT id, username, queue_name, finish_time, job_type, severity, "
+      + "score, flow_exec_id, job_def_id, flow_def_id FROM yarn_app_result WHERE id IN (%s)";
+
+  /**
+   * Gets told the outcome of each result written
+   */
+  public interface Listener {
+
+    /**
+     * @param job The job whose result is now in the database
+     */
+    public void onSaved(AnalyticJob job);
+
+    /**
+     * @param job The job whose result could not be saved
+     * @param e The cause
+     */
+    public void onFailed(AnalyticJob job, Exception e);
+  }
+
+  private final int _batchSize;
+  private final long _flushInterval;
+  private final Listener _listener;
+  private final boolean _replace;
+  private final BlockingQueue<Entry> _queue;
+  private final Thread _thread;
+  private volatile boolean _running = true;
+
+  /**
+   * @param batchSize The maximum number of results written at once
+   * @param flushInterval The maximum time in milliseconds a result waits before its batch is written
+   * @param listener The listener told the outcome of each result
+   */
+  public AppResultWriter(int batchSize, long flushInterval, Listener listener) {
+    this(batchSize, flushInterval, listener, false);
+  }
+
+  /**
+   * @param batchSize The maximum number of results written at once
+   * @param flushInterval The maximum time in milliseconds a result waits before its batch is written
+   * @param listener The listener told the outcome of each result
+   * @param replace Whether the existing results of the applications are replaced
+   */
+  public AppResultWriter(int batchSize, long flushInterval, Listener listener, boolean replace) {
+    _replace = replace;
+    _batchSize = Math.max(1, batchSize);
+    _flushInterval = flushInterval;
+    _listener = listener;
+    _queue = new LinkedBlockingQueue<Entry>(_batchSize * QUEUED_BATCHES);
+    _thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        writeLoop();
+      }
+    }, "AppResultWriter");
+    _thread.setDaemon(true);
+  }
+
+  public void start() {
+    logger.info("Starting the result writer with batches of " + _batchSize + " results, flushed every "
+        + _flushInterval + " ms");
+    _thread.start();
+  }
+
+  /**
+   * Stops the writer once the results already queued are written
+   *
+   * @param timeout How long to wait for the queued results in milliseconds
+   */
+  public void stop(long timeout) {
+    _running = false;
+    try {
+      _thread.join(timeout);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Queues a result for writing. Blocks while the writer is several batches behind.
+   *
+   * @param job The analyzed job
+   * @param result The result of the analysis
+   * @throws InterruptedException if interrupted while waiting for room in the queue
+   */
+  public void write(AnalyticJob job, AppResult result) throws InterruptedException {
+    _queue.put(new Entry(job, result));
+  }
+
+  private void writeLoop() {
+    List<Entry> batch = new ArrayList<Entry>(_batchSize);
+    while (_running || !_queue.isEmpty()) {
+      try {
+        Entry entry = _running ? _queue.poll(_flushInterval, TimeUnit.MILLISECONDS) : _queue.poll();
+        if (entry == null) {
+          continue;
+        }
+        batch.add(entry);
+        long deadline = System.currentTimeMillis() + _flushInterval;
+        while (batch.size() < _batchSize) {
+          // Once stopped, only write what is already queued
+          long wait = _running ? deadline - System.currentTimeMillis() : 0;
+          entry = wait > 0 ? _queue.poll(wait, TimeUnit.MILLISECONDS) : _queue.poll();
+          if (entry == null) {
+            break;
+          }
+          batch.add(entry);
+        }
+      } catch (InterruptedException e) {
+        // Write what was collected, and stop
+        _running = false;
+      }
+      if (!batch.isEmpty()) {
+        flush(batch);
+        batch.clear();
+      }
+    }
+    logger.info("Result writer is terminated.");
+  }
+
+  private void flush(List<Entry> batch) {
+    long startTime = System.currentTimeMillis();
+    List<AppResult> results = new ArrayList<AppResult>(batch.size());
+    for (Entry entry : batch) {
+      results.add(entry._result);
+    }
+    try {
+      insertBatch(results);
+    } catch (Exception e) {
+      logger.error("Error saving a batch of " + batch.size() + " results. Saving them one by one.", e);
+      for (Entry entry : batch) {
+        try {
+          saveOne(entry._result);
+        } catch (Exception ex) {
+          _listener.onFailed(entry._job, ex);
+          continue;
+        }
+        saved(entry);
+      }
+      return;
+    }
+    logger.info("Saved " + batch.size() + " results in " + (System.currentTimeMillis() - startTime) + " ms");
+    for (Entry entry : batch) {
+      saved(entry);
+    }
+  }
+
+  /**
+   * Tells the cache and the listener about a result that is committed. Nothing here may cause it to be saved again.
+   */
+  private void saved(Entry entry) {
+    try {
+      AppResultCache.instance().invalidate(entry._result);
+      _listener.onSaved(entry._job);
+    } catch (RuntimeException e) {
+      logger.error("Error handling the saved result of " + entry._job.getAppId(), e);
+    }
+  }
+
+  /**
+   * Saves a single result through its model, along with its count and scores
+   */
+  void saveOne(AppResult result) throws SQLException {
+    // Forget the ids generated by a failed batch
+    if (result.yarnAppHeuristicResults != null) {
+      for (AppHeuristicResult heuristicResult : result.yarnAppHeuristicResults) {
+        heuristicResult.id = 0;
+      }
+    }
+    Ebean.beginTransaction();
+    try {
+      Connection connection = Ebean.currentTransaction().getConnection();
+      if (_replace) {
+        deleteExisting(connection, Collections.singletonList(result));
+      }
+      result.save();
+      AppResultCounts.add(connection, Collections.singletonList(result));
+      AppResultScores.add(connection, Collections.singletonList(result));
+      Ebean.commitTransaction();
+    } finally {
+      Ebean.endTransaction();
+    }
+  }
+
+  /**
+   * Inserts the results along with their heuristic results and details, in a single transaction
+   *
+   * @param results The results to insert
+   * @throws SQLException if the insert failed, in which case nothing was written
+   */
+  void insertBatch(List<AppResult> results) throws SQLException {
+    Connection connection = DB.getConnection(false);
+    try {
+      if (_replace) {
+        deleteExisting(connection, results);
+      }
+      insertBatch(connection, results);
+      connection.commit();
+    } catch (SQLException e) {
+      connection.rollback();
+      throw e;
+    } finally {
+      connection.close();
+    }
+  }
+
+  /**
+   * Deletes the existing results of the applications, and removes them from the counts and scores
+   */
+  private static void deleteExisting(Connection connection, List<AppResult> results) throws SQLException {
+    List<AppResult> existing = new ArrayList<AppResult>();
+    PreparedStatement statement =
+        connection.prepareStatement(String.format(SELECT_EXISTING_SQL, placeholders(results.size())));
+    try {
+      for (int i = 0; i < results.size(); i++) {
+        statement.setString(i + 1, results.get(i).id);
+      }
+      ResultSet resultSet = statement.executeQuery();
+      while (resultSet.next()) {
+        AppResult result = new AppResult();
+        result.id = resultSet.getString("id");
+        result.username = resultSet.getString("username");
+        result.queueName = resultSet.getString("queue_name");
+        result.finishTime = resultSet.getLong("finish_time");
+        result.jobType = resultSet.getString("job_type");
+        result.severity = Severity.byValue(resultSet.getInt("severity"));
+        result.score = resultSet.getInt("score");
+        result.flowExecId = resultSet.getString("flow_exec_id");
+        result.jobDefId = resultSet.getString("job_def_id");
+        result.flowDefId = resultSet.getString("flow_def_id");
+        existing.add(result);
+      }
+    } finally {
+      statement.close();
+    }
+    if (existing.isEmpty()) {
+      return;
+    }
+
+    List<String> ids = new ArrayList<String>();
+    for (AppResult result : existing) {
+      ids.add(result.id);
+    }
+    AppResultCounts.remove(connection, existing);
+    AppResultScores.remove(connection, existing);
+    AppResultRetention.deleteResults(connection, ids);
+  }
+
+  private static void insertBatch(Connection connection, List<AppResult> results) throws SQLException {
+    List<AppHeuristicResult> heuristicResults = new ArrayList<AppHeuristicResult>();
+    List<String> heuristicResultAppIds = new ArrayList<String>();
+    // The heuristic results of each application in insertion order, until they get their ids
+    Map<String, LinkedList<AppHeuristicResult>> pendingIds = new HashMap<String, LinkedList<AppHeuristicResult>>();
+
+    PreparedStatement statement = connection.prepareStatement(INSERT_APP_RESULT_SQL);
+    try {
+      for (AppResult result : results) {
+        int i = 1;
+        statement.setString(i++, result.id);
+        statement.setString(i++, result.name);
+        statement.setString(i++, result.username);
+        statement.setString(i++, result.queueName);
+        statement.setLong(i++, result.startTime);
+        statement.setLong(i++, result.finishTime);
+        statement.setString(i++, result.trackingUrl);
+        statement.setString(i++, result.jobType);
+        statement.setInt(i++, result.severity.getValue());
+        statement.setInt(i++, result.score);
+        statement.setInt(i++, result.workflowDepth);
+        statement.setString(i++, result.scheduler);
+        statement.setString(i++, result.jobName);
+        statement.setString(i++, result.jobExecId);
+        statement.setString(i++, result.flowExecId);
+        statement.setString(i++, result.jobDefId);
+        statement.setString(i++, result.flowDefId);
+        statement.setString(i++, result.jobExecUrl);
+        statement.setString(i++, result.flowExecUrl);
+        statement.setString(i++, result.jobDefUrl);
+        statement.setString(i++, result.flowDefUrl);
+        statement.addBatch();
+        if (result.yarnAppHeuristicResults != null && !result.yarnAppHeuristicResults.isEmpty()) {
+          for (AppHeuristicResult heuristicResult : result.yarnAppHeuristicResults) {
+            heuristicResults.add(heuristicResult);
+            heuristicResultAppIds.add(result.id);
+          }
+          pendingIds.put(result.id, new LinkedList<AppHeuristicResult>(result.yarnAppHeuristicResults));
+        }
+      }
+      statement.executeBatch();
+    } finally {
+      statement.close();
+    }
+    AppResultCounts.add(connection, results);
+    AppResultScores.add(connection, results);
+    if (heuristicResults.isEmpty()) {
+      return;
+    }
+
+    statement = connection.prepareStatement(INSERT_HEURISTIC_RESULT_SQL);
+    try {
+      for (int i = 0; i < heuristicResults.size(); i++) {
+        AppHeuristicResult heuristicResult = heuristicResults.get(i);
+        statement.setString(1, heuristicResultAppIds.get(i));
+        statement.setString(2, heuristicResult.heuristicClass);
+        statement.setString(3, heuristicResult.heuristicName);
+        statement.setInt(4, heuristicResult.severity.getValue());
+        statement.setInt(5, heuristicResult.score);
+        statement.setBoolean(6, heuristicResult.timedOut);
+        statement.addBatch();
+      }
+      statement.executeBatch();
+    } finally {
+      statement.close();
+    }
+
+    // The details and metrics refer to the generated ids of the heuristic results. Not every driver returns the keys
+    // of a whole batch, H2 only returns the last one, so they are read back. The rows of an application get
+    // increasing ids in the order they were inserted, and it has no other rows since its result was just inserted.
+    statement = connection.prepareStatement(
+        String.format(SELECT_HEURISTIC_RESULT_IDS_SQL, placeholders(pendingIds.size())));
+    try {
+      int i = 1;
+      for (String appId : pendingIds.keySet()) {
+        statement.setString(i++, appId);
+      }
+      ResultSet resultSet = statement.executeQuery();
+      while (resultSet.next()) {
+        LinkedList<AppHeuristicResult> pending = pendingIds.get(resultSet.getString(2));
+        if (pending == null || pending.isEmpty()) {
+          throw new SQLException("Unexpected heuristic result of " + resultSet.getString(2));
+        }
+        pending.removeFirst().id = resultSet.getInt(1);
+      }
+    } finally {
+      statement.close();
+    }
+    for (Map.Entry<String, LinkedList<AppHeuristicResult>> pending : pendingIds.entrySet()) {
+      if (!pending.getValue().isEmpty()) {
+        throw new SQLException(pending.getValue().size() + " heuristic results of " + pending.getKey() + " not found");
+      }
+    }
+
+    statement = connection.prepareStatement(INSERT_HEURISTIC_RESULT_DETAILS_SQL);
+    try {
+      int count = 0;
+      for (AppHeuristicResult heuristicResult : heuristicResults) {
+        if (heuristicResult.yarnAppHeuristicResultDetails == null) {
+          continue;
+        }
+        for (AppHeuristicResultDetails details : heuristicResult.yarnAppHeuristicResultDetails) {
+          statement.setInt(1, heuristicResult.id);
+          statement.setString(2, details.name);
+          statement.setString(3, details.value);
+          statement.setString(4, details.details);
+          statement.addBatch();
+          count++;
+        }
+      }
+      if (count > 0) {
+        statement.executeBatch();
+      }
+    } finally {
+      statement.close();
+    }
+
+    statement = connection.prepareStatement(INSERT_HEURISTIC_RESULT_METRIC_SQL);
+    try {
+      int count = 0;
+      for (AppHeuristicResult heuristicResult : heuristicResults) {
+        if (heuristicResult.yarnAppHeuristicResultMetrics == null) {
+          continue;
+        }
+        for (AppHeuristicResultMetric metric : heuristicResult.yarnAppHeuristicResultMetrics) {
+          statement.setInt(1, heuristicResult.id);
+          statement.setString(2, metric.name);
+          statement.setInt(3, metric.unit.getValue());
+          statement.setDouble(4, metric.value);
+          statement.addBatch();
+          count++;
+        }
+      }
+      if (count > 0) {
+        statement.executeBatch();
+      }
+    } finally {
+      statement.close();
+    }
+  }
+
+  private static String placeholders(int count) {
+    StringBuilder placeholders = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      placeholders.append(i == 0 ? "?" : ", ?");
+    }
+    return placeholders.toString();
+  }
+
+  private static class Entry {
+    private final AnalyticJob _job;
+    private final AppResult _result;
+
+    Entry(AnalyticJob job, AppResult result) {
+      _job = job;
+      _result = result;
+    }
+  }
+}
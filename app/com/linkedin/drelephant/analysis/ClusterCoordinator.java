@@ -0,0 +1,358 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.analysis;
+
+import com.avaje.ebean.Ebean;
+import com.linkedin.drelephant.util.Utils;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.persistence.PersistenceException;
+import models.AnalysisLease;
+import models.ClusterNode;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.log4j.Logger;
+
+
+/**
+ * Coordinates several Dr. Elephant daemons sharing one database.
+ *
+ * Every node fetches the same finished applications from the resource manager, but only analyzes the ones hashed to
+ * it among the live nodes. Before analyzing an application, a node claims it through a lease in the database. The
+ * node keeps its leases alive with its heartbeats, so when a node dies its leases expire and the other nodes take its
+ * applications over. The applications that finished while the dead node was still considered alive are picked up
+ * again by rewinding the fetch window when the set of live nodes changes.
+ *
+ * Node liveness is decided by comparing the wall clock times of the nodes, so their clocks are expected to be kept
+ * in sync, e.g. by NTP.
+ */
+public class ClusterCoordinator {
+  private static final Logger logger = Logger.getLogger(ClusterCoordinator.class);
+
+  public static final String CLUSTER_ENABLED_KEY = "drelephant.cluster.enabled";
+  public static final String NODE_ID_KEY = "drelephant.cluster.node.id";
+  public static final String NODE_TIMEOUT_KEY = "drelephant.cluster.node.timeout";
+
+  private static final long NODE_TIMEOUT = 5 * 60 * 1000;    // How long a node is alive after its last heartbeat
+  private static final long MIN_NODE_TIMEOUT = 30 * 1000;
+
+  private static final String RENEW_LEASES_SQL =
+      "UPDATE analysis_lease SET lease_expiry = :expiry WHERE node_id = :node";
+  private static final String RENEW_LEASE_SQL =
+      "UPDATE analysis_lease SET lease_expiry = :expiry WHERE app_id = :app AND node_id = :node";
+  private static final String CLAIM_LEASE_SQL = "UPDATE analysis_lease SET node_id = :node, lease_expiry = :expiry "
+      + "WHERE app_id = :app AND lease_expiry < :now";
+  private static final String RELEASE_LEASE_SQL = "DELETE FROM analysis_lease WHERE app_id = :app AND node_id = :node";
+  private static final String EXPIRE_LEASE_SQL =
+      "UPDATE analysis_lease SET lease_expiry = 0 WHERE app_id = :app AND node_id = :node";
+  private static final String EXPIRE_LEASES_SQL = "UPDATE analysis_lease SET lease_expiry = 0 WHERE node_id = :node";
+  private static final String HEARTBEAT_SQL = "UPDATE cluster_node SET heartbeat_time = :now WHERE id = :node";
+  private static final String REMOVE_NODES_SQL = "DELETE FROM cluster_node WHERE heartbeat_time < :time";
+  private static final String REMOVE_NODE_SQL = "DELETE FROM cluster_node WHERE id = :node";
+
+  private final String _nodeId;
+  private final long _nodeTimeout;
+  private final ScheduledExecutorService _heartbeatService;
+  private final AtomicBoolean _membershipChanged = new AtomicBoolean(false);
+  private volatile List<String> _liveNodes;
+
+  /**
+   * @param configuration The general configuration
+   * @return true if the daemon should run in cluster mode
+   */
+  public static boolean isEnabled(Configuration configuration) {
+    return configuration.getBoolean(CLUSTER_ENABLED_KEY, false);
+  }
+
+  /**
+   * Returns the id of this node. The id should stay the same across restarts, so that the node resumes fetching from
+   * its own watermark.
+   *
+   * @param configuration The general configuration
+   * @return The configured node id, or the host name by default
+   */
+  public static String getNodeId(Configuration configuration) {
+    String nodeId = configuration.get(NODE_ID_KEY);
+    if (!Utils.isSet(nodeId)) {
+      try {
+        nodeId = InetAddress.getLocalHost().getHostName();
+      } catch (UnknownHostException e) {
+        throw new RuntimeException("Cannot get the host name, please set " + NODE_ID_KEY, e);
+      }
+    }
+    nodeId = nodeId.trim();
+    if (nodeId.length() > ClusterNode.ID_LIMIT) {
+      throw new IllegalArgumentException("Configuration " + NODE_ID_KEY + " should be at most "
+          + ClusterNode.ID_LIMIT + " characters long, found " + nodeId);
+    }
+    return nodeId;
+  }
+
+  public ClusterCoordinator(Configuration configuration) {
+    _nodeId = getNodeId(configuration);
+
+    long nodeTimeout = Utils.getNonNegativeLong(configuration, NODE_TIMEOUT_KEY, NODE_TIMEOUT);
+    if (nodeTimeout < MIN_NODE_TIMEOUT) {
+      logger.warn("Configuration " + NODE_TIMEOUT_KEY + " should be at least " + MIN_NODE_TIMEOUT
+          + ". Resetting it to " + MIN_NODE_TIMEOUT);
+      nodeTimeout = MIN_NODE_TIMEOUT;
+    }
+    _nodeTimeout = nodeTimeout;
+    _liveNodes = Collections.singletonList(_nodeId);
+    _heartbeatService = Executors.newSingleThreadScheduledExecutor();
+  }
+
+  /**
+   * Registers this node and starts sending heartbeats
+   */
+  public void start() {
+    logger.info("Starting cluster node " + _nodeId + " with a node timeout of " + _nodeTimeout + " ms");
+    // The jobs queued before a restart are gone, let their leases be taken over
+    Ebean.createSqlUpdate(EXPIRE_LEASES_SQL).setParameter("node", _nodeId).execute();
+    heartbeat();
+    long interval = getHeartbeatInterval();
+    _heartbeatService.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          heartbeat();
+        } catch (Exception e) {
+          // An exception would cancel the next heartbeats
+          logger.error("Error sending the heartbeat of cluster node " + _nodeId, e);
+        }
+      }
+    }, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops sending heartbeats, and hands the applications of this node over to the other nodes right away
+   */
+  public void stop() {
+    _heartbeatService.shutdownNow();
+    try {
+      Ebean.createSqlUpdate(REMOVE_NODE_SQL).setParameter("node", _nodeId).execute();
+      Ebean.createSqlUpdate(EXPIRE_LEASES_SQL).setParameter("node", _nodeId).execute();
+      logger.info("Cluster node " + _nodeId + " has left the cluster");
+    } catch (Exception e) {
+      logger.error("Error removing cluster node " + _nodeId + ". Its applications are taken over once it times out.",
+          e);
+    }
+  }
+
+  /**
+   * Reports this node as alive, renews its leases and refreshes the list of live nodes
+   */
+  void heartbeat() {
+    long now = System.currentTimeMillis();
+
+    if (Ebean.createSqlUpdate(HEARTBEAT_SQL).setParameter("now", now).setParameter("node", _nodeId).execute() == 0) {
+      ClusterNode node = new ClusterNode();
+      node.id = _nodeId;
+      node.heartbeatTime = now;
+      node.save();
+    }
+    Ebean.createSqlUpdate(RENEW_LEASES_SQL)
+        .setParameter("expiry", now + _nodeTimeout)
+        .setParameter("node", _nodeId)
+        .execute();
+    Ebean.createSqlUpdate(REMOVE_NODES_SQL).setParameter("time", now - _nodeTimeout).execute();
+
+    List<String> liveNodes = new ArrayList<String>();
+    for (ClusterNode node : ClusterNode.find.all()) {
+      liveNodes.add(node.id);
+    }
+    if (!liveNodes.contains(_nodeId)) {
+      liveNodes.add(_nodeId);
+    }
+    Collections.sort(liveNodes);
+
+    if (!liveNodes.equals(_liveNodes)) {
+      logger.info("Live cluster nodes changed from " + _liveNodes + " to " + liveNodes);
+      _liveNodes = Collections.unmodifiableList(liveNodes);
+      _membershipChanged.set(true);
+    }
+  }
+
+  /**
+   * Returns whether the set of live nodes changed since the last call, in which case the applications that finished
+   * within the failover window should be fetched again.
+   *
+   * @return true if the live nodes changed
+   */
+  public boolean pollMembershipChange() {
+    return _membershipChanged.getAndSet(false);
+  }
+
+  /**
+   * Returns how long it may take the other nodes to notice that a node died. The applications that finished within
+   * this window may have been skipped by every live node.
+   *
+   * @return The failover window in milliseconds
+   */
+  public long getFailoverWindow() {
+    return _nodeTimeout + getHeartbeatInterval();
+  }
+
+  private long getHeartbeatInterval() {
+    return _nodeTimeout / 3;
+  }
+
+  public String getNodeId() {
+    return _nodeId;
+  }
+
+  public List<String> getLiveNodes() {
+    return _liveNodes;
+  }
+
+  /**
+   * @return true if this node is the first of the live nodes, which runs the tasks needed only once in the cluster
+   */
+  public boolean isLeader() {
+    return _liveNodes.get(0).equals(_nodeId);
+  }
+
+  /**
+   * @param appId The application id
+   * @return true if the application is hashed to this node among the live nodes
+   */
+  public boolean isOwner(String appId) {
+    return _nodeId.equals(getOwner(appId, _liveNodes));
+  }
+
+  /**
+   * Claims the analysis of an application for this node. The claim succeeds if nobody holds an unexpired lease on the
+   * application, this node included: a live lease of this node means the application is already queued here, e.g.
+   * fetched again after a rewind. The retries of the applications this node holds are kept with {@link #renew}.
+   *
+   * @param appId The application id
+   * @return true if this node now holds the lease
+   */
+  public boolean claim(String appId) {
+    long now = System.currentTimeMillis();
+    if (updateLease(appId, now)) {
+      return true;
+    }
+    try {
+      AnalysisLease lease = new AnalysisLease();
+      lease.appId = appId;
+      lease.nodeId = _nodeId;
+      lease.leaseExpiry = now + _nodeTimeout;
+      lease.save();
+      return true;
+    } catch (PersistenceException e) {
+      // Another node inserted the lease in the meantime
+      logger.debug("Application " + appId + " was claimed by another node");
+      return false;
+    }
+  }
+
+  /**
+   * Renews the lease of an application already claimed by this node
+   *
+   * @param appId The application id
+   * @return false if this node does not hold the lease, e.g. because it was taken over by another node
+   */
+  public boolean renew(String appId) {
+    return Ebean.createSqlUpdate(RENEW_LEASE_SQL)
+        .setParameter("expiry", System.currentTimeMillis() + _nodeTimeout)
+        .setParameter("app", appId)
+        .setParameter("node", _nodeId)
+        .execute() > 0;
+  }
+
+  /**
+   * Gives up the lease of an application, once it is analyzed or dropped. A lease that could not be released is
+   * expired when the node stops, and then dropped by the node taking it over.
+   *
+   * @param appId The application id
+   */
+  public void release(String appId) {
+    try {
+      Ebean.createSqlUpdate(RELEASE_LEASE_SQL).setParameter("app", appId).setParameter("node", _nodeId).execute();
+    } catch (Exception e) {
+      logger.error("Error releasing the lease of application " + appId, e);
+    }
+  }
+
+  /**
+   * Gives up the lease of an application that this node failed to analyze, so that a node may take it over later
+   *
+   * @param appId The application id
+   */
+  public void expire(String appId) {
+    Ebean.createSqlUpdate(EXPIRE_LEASE_SQL).setParameter("app", appId).setParameter("node", _nodeId).execute();
+  }
+
+  /**
+   * Takes over the applications hashed to this node whose leases have expired, i.e. the applications left behind by
+   * the nodes that died. Only the oldest expired leases are read, max for each live node since about one in every
+   * live node hashes to this one, and each is claimed by an update that only matches while the lease is still expired.
+   * The expired leases beyond those are left for the next call.
+   *
+   * @param max The maximum number of applications to take over
+   * @return The ids of the applications now leased by this node
+   */
+  public List<String> takeOverExpiredLeases(int max) {
+    List<String> appIds = new ArrayList<String>();
+    if (max <= 0) {
+      return appIds;
+    }
+
+    long now = System.currentTimeMillis();
+    List<AnalysisLease> expired = AnalysisLease.find.where().lt(AnalysisLease.TABLE.LEASE_EXPIRY, now)
+        .orderBy(AnalysisLease.TABLE.LEASE_EXPIRY)
+        .setMaxRows((int) Math.min(Integer.MAX_VALUE, (long) max * _liveNodes.size()))
+        .findList();
+    for (AnalysisLease lease : expired) {
+      if (appIds.size() >= max) {
+        break;
+      }
+      if (isOwner(lease.appId) && updateLease(lease.appId, now)) {
+        logger.info("Took over application " + lease.appId + " from cluster node " + lease.nodeId);
+        appIds.add(lease.appId);
+      }
+    }
+    return appIds;
+  }
+
+  private boolean updateLease(String appId, long now) {
+    return Ebean.createSqlUpdate(CLAIM_LEASE_SQL)
+        .setParameter("node", _nodeId)
+        .setParameter("expiry", now + _nodeTimeout)
+        .setParameter("app", appId)
+        .setParameter("now", now)
+        .execute() > 0;
+  }
+
+  /**
+   * Hashes an application to one of the nodes. All the nodes agree on the owner as long as they see the same nodes.
+   *
+   * @param appId The application id
+   * @param nodes The sorted ids of the live nodes
+   * @return The id of the node owning the application
+   */
+  static String getOwner(String appId, List<String> nodes) {
+    return nodes.get((appId.hashCode() & Integer.MAX_VALUE) % nodes.size());
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.analysis;
+
+import com.linkedin.drelephant.util.Utils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.log4j.Logger;
+
+
+/**
+ * Decides how long the daemon waits between two fetches from the resource manager.
+ *
+ * The interval starts at the configured fetch interval and adapts within [min, max]:
+ * <ul>
+ *   <li>When the backlog of jobs waiting for analysis is over the threshold, the interval doubles and fetching is
+ *   held off until the backlog drains.</li>
+ *   <li>When applications complete faster than the busy rate and the executors have caught up, the interval halves,
+ *   so that results are available soon after the applications complete.</li>
+ *   <li>When no application completed since the last fetch, the interval grows by half, e.g. at night.</li>
+ *   <li>Otherwise the interval moves back towards the configured fetch interval.</li>
+ * </ul>
+ * With the default min and max equal to the fetch interval, the interval stays fixed.
+ */
+public class FetchIntervalController {
+  private static final Logger logger = Logger.getLogger(FetchIntervalController.class);
+
+  public static final String MIN_INTERVAL_KEY = "drelephant.analysis.fetch.interval.min";
+  public static final String MAX_INTERVAL_KEY = "drelephant.analysis.fetch.interval.max";
+  public static final String BUSY_RATE_KEY = "drelephant.analysis.fetch.busy.rate";
+  public static final String BACKLOG_THRESHOLD_KEY = "drelephant.analysis.fetch.backlog.threshold";
+
+  private static final int BUSY_RATE = 10;     // Applications completed per minute above which the cluster is busy
+  private static final long MIN_STEP = 1000;   // The smallest interval the growth is computed from
+
+  private final long _baseInterval;
+  private final long _minInterval;
+  private final long _maxInterval;
+  private final double _busyRate;
+  private final int _backlogThreshold;
+  private long _interval;
+
+  /**
+   * @param baseInterval The configured fetch interval
+   * @param minInterval The shortest interval
+   * @param maxInterval The longest interval
+   * @param busyRate The completion rate, in applications per minute, above which the interval shortens
+   * @param backlogThreshold The number of waiting jobs above which the interval lengthens and fetches are skipped
+   */
+  public FetchIntervalController(long baseInterval, long minInterval, long maxInterval, double busyRate,
+      int backlogThreshold) {
+    _minInterval = Math.min(minInterval, baseInterval);
+    _maxInterval = Math.max(maxInterval, baseInterval);
+    _baseInterval = baseInterval;
+    _busyRate = busyRate;
+    _backlogThreshold = backlogThreshold;
+    _interval = baseInterval;
+  }
+
+  /**
+   * Creates a controller from the general configuration
+   *
+   * @param configuration The general configuration
+   * @param baseInterval The configured fetch interval
+   * @param totalCapacity The capacity of all the analysis lanes, whose summed backlog is checked. The default backlog
+   *                      threshold is half of it.
+   * @return The controller
+   */
+  public static FetchIntervalController fromConfiguration(Configuration configuration, long baseInterval,
+      int totalCapacity) {
+    long minInterval = Utils.getNonNegativeLong(configuration, MIN_INTERVAL_KEY, baseInterval);
+    long maxInterval = Utils.getNonNegativeLong(configuration, MAX_INTERVAL_KEY, baseInterval);
+    int busyRate = Utils.getNonNegativeInt(configuration, BUSY_RATE_KEY, BUSY_RATE);
+    int backlogThreshold = Utils.getNonNegativeInt(configuration, BACKLOG_THRESHOLD_KEY, totalCapacity / 2);
+    if (backlogThreshold == 0) {
+      backlogThreshold = totalCapacity / 2;
+    }
+    logger.info("Fetch interval adapts between " + minInterval + " and " + maxInterval + " ms, busy rate is "
+        + busyRate + " apps/min, backlog threshold is " + backlogThreshold);
+    return new FetchIntervalController(baseInterval, minInterval, maxInterval, busyRate, backlogThreshold);
+  }
+
+  /**
+   * @param backlog The number of jobs waiting for analysis
+   * @return true if the next fetch should be skipped to let the executors catch up
+   */
+  public boolean shouldSkipFetch(int backlog) {
+    return backlog > _backlogThreshold;
+  }
+
+  /**
+   * Computes the interval until the next fetch
+   *
+   * @param fetched The number of applications returned by the last fetch
+   * @param window The time in milliseconds covered by the last fetch
+   * @param backlog The number of jobs still waiting for analysis when the jobs of the last fetch were queued
+   * @return The interval in milliseconds
+   */
+  public long nextInterval(int fetched, long window, int backlog) {
+    double rate = window > 0 ? fetched * 60000d / window : 0;
+
+    long interval;
+    if (shouldSkipFetch(backlog)) {
+      interval = Math.max(_interval, MIN_STEP) * 2;
+    } else if (backlog == 0 && rate >= _busyRate) {
+      interval = _interval / 2;
+    } else if (fetched == 0) {
+      interval = Math.max(_interval, MIN_STEP) * 3 / 2;
+    } else {
+      interval = (_interval + _baseInterval) / 2;
+    }
+    interval = Math.max(_minInterval, Math.min(_maxInterval, interval));
+
+    if (interval != _interval) {
+      logger.info("Fetch interval changed from " + _interval + " to " + interval + " ms. " + fetched
+          + " applications completed in " + window + " ms, " + backlog + " jobs waiting");
+      _interval = interval;
+    }
+    return _interval;
+  }
+
+  public long getInterval() {
+    return _interval;
+  }
+
+  public long getMaxInterval() {
+    return _maxInterval;
+  }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.analysis;
+
+import com.linkedin.drelephant.configurations.heuristic.HeuristicConfigurationData;
+import com.linkedin.drelephant.util.Utils;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.log4j.Logger;
+
+
+/**
+ * Runs the heuristics of an analysis, shared by all the analysis threads.
+ *
+ * By default the heuristics run one after the other on the analysis thread. With a thread count, the heuristics of
+ * an analysis run in parallel on a pool shared by all the analyses, since they only read the application data. A
+ * heuristic that does not finish within the timeout is cancelled and recorded as a timed out result, so the analysis
+ * goes on without it. Cancelling interrupts the heuristic, a heuristic that ignores the interrupt keeps its pool
+ * thread until it returns.
+ *
+ * A heuristic also gets the timeout to get a pool thread, then the timeout to run. A heuristic still waiting for a
+ * thread after the timeout is taken off the pool and recorded as timed out too, rather than run without a limit on the
+ * analysis thread, so a saturated pool holds an analysis twice the timeout at most.
+ */
+public final class HeuristicExecutor {
+  private static final Logger logger = Logger.getLogger(HeuristicExecutor.class);
+
+  private static final String THREAD_COUNT_KEY = "drelephant.analysis.heuristic.thread.count";
+  private static final String TIMEOUT_KEY = "drelephant.analysis.heuristic.timeout";
+
+  private static final int THREAD_COUNT = 0;        // Threads running the heuristics, 0 uses the analysis thread
+  private static final long TIMEOUT = 60 * 1000;    // How long a heuristic may run in milliseconds, 0 means no limit
+
+  static final String TIMEOUT_DETAIL = "Timeout";
+
+  private static volatile HeuristicExecutor INSTANCE;
+
+  private final long _timeout;
+  private final ExecutorService _executor;
+
+  /**
+   * Configure the shared executor from the general configuration. Should be called before any analysis starts.
+   *
+   * @param configuration The general configuration
+   */
+  public static void configure(Configuration configuration) {
+    int threadCount = Utils.getNonNegativeInt(configuration, THREAD_COUNT_KEY, THREAD_COUNT);
+    long timeout = Utils.getNonNegativeLong(configuration, TIMEOUT_KEY, TIMEOUT);
+    HeuristicExecutor previous = INSTANCE;
+    INSTANCE = new HeuristicExecutor(threadCount, timeout);
+    if (previous != null) {
+      previous.shutdown();
+    }
+    if (threadCount > 0) {
+      logger.info("Running the heuristics on " + threadCount + " threads with a timeout of " + timeout + " ms");
+    }
+  }
+
+  /**
+   * @return The shared executor, running the heuristics on the analysis thread if #configure has not been called
+   */
+  public static HeuristicExecutor instance() {
+    if (INSTANCE == null) {
+      synchronized (HeuristicExecutor.class) {
+        if (INSTANCE == null) {
+          INSTANCE = new HeuristicExecutor(THREAD_COUNT, TIMEOUT);
+        }
+      }
+    }
+    return INSTANCE;
+  }
+
+  /**
+   * @param threadCount The number of threads running the heuristics, 0 to run them on the calling thread
+   * @param timeout How long a heuristic may run in milliseconds, 0 means no limit. Only applies with threads.
+   */
+  HeuristicExecutor(int threadCount, long timeout) {
+    _timeout = timeout;
+    _executor = threadCount > 0 ? Executors.newFixedThreadPool(threadCount, new HeuristicThreadFactory()) : null;
+  }
+
+  /**
+   * Apply the heuristics to the data of an application.
+   *
+   * @param heuristics The heuristics of the application type
+   * @param data The data of the application
+   * @return The non null results, in the order of the heuristics
+   * @throws Exception The exception of the first failed heuristic
+   */
+  @SuppressWarnings("unchecked")
+  public List<HeuristicResult> apply(List<Heuristic> heuristics, HadoopApplicationData data) throws Exception {
+    List<HeuristicResult> results = new ArrayList<HeuristicResult>(heuristics.size());
+    if (_executor == null) {
+      for (Heuristic heuristic : heuristics) {
+        addResult(results, heuristic.apply(data));
+      }
+      return results;
+    }
+
+    List<HeuristicTask> tasks = new ArrayList<HeuristicTask>(heuristics.size());
+    try {
+      for (Heuristic heuristic : heuristics) {
+        HeuristicTask task = new HeuristicTask(heuristic, data);
+        tasks.add(task);
+        _executor.execute(task);
+      }
+      for (HeuristicTask task : tasks) {
+        addResult(results, task.await(_timeout));
+      }
+    } finally {
+      // Stop the heuristics left behind by a failed heuristic or an interrupted analysis
+      for (HeuristicTask task : tasks) {
+        task.cancel(true);
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Stop the threads, interrupting the running heuristics
+   */
+  public void shutdown() {
+    if (_executor != null) {
+      _executor.shutdownNow();
+    }
+  }
+
+  private static void addResult(List<HeuristicResult> results, HeuristicResult result) {
+    if (result != null) {
+      results.add(result);
+    }
+  }
+
+  /**
+   * A heuristic applied on the pool, which remembers when it started running
+   */
+  private static class HeuristicTask extends FutureTask<HeuristicResult> {
+    private final Heuristic _heuristic;
+    private final HadoopApplicationData _data;
+    private final long _submitTime = System.currentTimeMillis();
+    private volatile long _startTime = 0;     // 0 while the heuristic waits for a thread
+
+    HeuristicTask(final Heuristic heuristic, final HadoopApplicationData data) {
+      super(new Callable<HeuristicResult>() {
+        @Override
+        @SuppressWarnings("unchecked")
+        public HeuristicResult call() {
+          return heuristic.apply(data);
+        }
+      });
+      _heuristic = heuristic;
+      _data = data;
+    }
+
+    @Override
+    public void run() {
+      _startTime = System.currentTimeMillis();
+      super.run();
+    }
+
+    /**
+     * Wait for the result. The heuristic gets the timeout to get a thread, then the timeout to run.
+     *
+     * @return The result of the heuristic, or a timed out result if it was cancelled
+     */
+    @SuppressWarnings("unchecked")
+    HeuristicResult await(long timeout) throws Exception {
+      try {
+        if (timeout <= 0) {
+          return get();
+        }
+        while (true) {
+          long startTime = _startTime;
+          long deadline = (startTime == 0 ? _submitTime : startTime) + timeout;
+          try {
+            return get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+          } catch (TimeoutException e) {
+            // Wait again when the heuristic started in the meantime or completed before it could be cancelled
+            if (_startTime == startTime && cancel(startTime != 0)) {
+              return timeoutResult(startTime == 0 ? "No heuristic thread was free within " + timeout + " ms"
+                  : "Did not finish within " + timeout + " ms");
+            }
+          }
+        }
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof Exception) {
+          throw (Exception) cause;
+        } else if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw e;
+      }
+    }
+
+    private HeuristicResult timeoutResult(String reason) {
+      HeuristicConfigurationData confData = _heuristic.getHeuristicConfData();
+      logger.warn("Cancelled " + confData.getHeuristicName() + " of " + _data.getAppId() + ". " + reason);
+      HeuristicResult result = new HeuristicResult(confData.getClassName(), confData.getHeuristicName(),
+          Severity.NONE, 0, Collections.singletonList(new HeuristicResultDetails(TIMEOUT_DETAIL, reason, null)));
+      // Not a clean pass, the severity is unknown
+      result.setTimedOut(true);
+      return result;
+    }
+  }
+
+  private static class HeuristicThreadFactory implements ThreadFactory {
+    private final AtomicInteger _threadNum = new AtomicInteger(1);
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "heuristic-" + _threadNum.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -17,7 +17,10 @@
 package com.linkedin.drelephant.analysis;
 
 
+import com.linkedin.drelephant.math.QuantileSketch;
+import com.linkedin.drelephant.math.Statistics;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import org.apache.commons.lang.StringUtils;
@@ -30,11 +33,15 @@ public class HeuristicResult {
   public static final HeuristicResult NO_DATA = new HeuristicResult("NoDataReceived", "No Data Received", Severity.LOW,
       0, Collections.singletonList(new HeuristicResultDetails("No Data Received", "", null)));
 
+  private static final int[] REPORTED_PERCENTILES = {50, 95, 99};
+
   private String _heuristicClass;
   private String _heuristicName;
   private Severity _severity;
   private int _score;
+  private boolean _timedOut = false;
   private List<HeuristicResultDetails> _heuristicResultDetails;
+  private List<HeuristicResultMetric> _heuristicResultMetrics = new ArrayList<HeuristicResultMetric>();
 
   /**
    * Heuristic Result Constructor
@@ -101,6 +108,24 @@ public class HeuristicResult {
     return _score;
   }
 
+  /**
+   * Returns whether the heuristic was cancelled before it finished, in which case its severity tells nothing
+   *
+   * @return true if the heuristic timed out
+   */
+  public boolean isTimedOut() {
+    return _timedOut;
+  }
+
+  /**
+   * Mark the result of a heuristic that was cancelled before it finished
+   *
+   * @param timedOut Whether the heuristic timed out
+   */
+  public void setTimedOut(boolean timedOut) {
+    this._timedOut = timedOut;
+  }
+
   /**
    * Gets a list of HeuristicResultDetails
    *
@@ -124,6 +149,62 @@ public class HeuristicResult {
     _heuristicResultDetails.add(new HeuristicResultDetails(name, value, null));
   }
 
+  /**
+   * Gets the list of numeric metrics
+   *
+   * @return The metrics
+   */
+  public List<HeuristicResultMetric> getHeuristicResultMetrics() {
+    return _heuristicResultMetrics;
+  }
+
+  /**
+   * Add a numeric metric. The details are what the job pages show, the metrics are stored as numbers next to them so
+   * that they can be queried. A metric usually repeats a detail in its base unit, without the unit in its name.
+   *
+   * @throws IllegalArgumentException if the result already has a metric of that name, which could not be saved
+   */
+  public void addResultMetric(String name, MetricUnit unit, double value) {
+    for (HeuristicResultMetric metric : _heuristicResultMetrics) {
+      if (metric.getName().equals(name)) {
+        throw new IllegalArgumentException("Duplicate metric " + name + " in " + _heuristicName);
+      }
+    }
+    _heuristicResultMetrics.add(new HeuristicResultMetric(name, unit, value));
+  }
+
+  /**
+   * Add the p50, p95 and p99 of a distribution summarized by a sketch, both as details and as metrics, named after the
+   * given prefix. Nothing is added for an empty sketch.
+   */
+  public void addResultQuantiles(String name, MetricUnit unit, QuantileSketch sketch) {
+    if (sketch.getCount() == 0) {
+      return;
+    }
+    for (int percentile : REPORTED_PERCENTILES) {
+      addResultPercentile(name, unit, percentile, sketch.getPercentile(percentile));
+    }
+  }
+
+  /**
+   * Add the exact p50, p95 and p99 of values[0, count), both as details and as metrics, named after the given prefix.
+   * The values are left untouched, the percentiles are selected on a copy. Nothing is added for no values.
+   */
+  public void addResultPercentiles(String name, MetricUnit unit, long[] values, int count) {
+    if (count == 0) {
+      return;
+    }
+    long[] copy = Arrays.copyOf(values, count);
+    for (int percentile : REPORTED_PERCENTILES) {
+      addResultPercentile(name, unit, percentile, Statistics.percentile(copy, 0, count, percentile));
+    }
+  }
+
+  private void addResultPercentile(String name, MetricUnit unit, int percentile, long value) {
+    addResultDetail(name + " p" + percentile, unit.format(value));
+    addResultMetric(name + " p" + percentile, unit, value);
+  }
+
   /**
    * Set the severity of the heuristic
    *
@@ -135,7 +216,8 @@ public class HeuristicResult {
 
   @Override
   public String toString() {
-    return "{analysis: " + _heuristicClass + ", severity: " + _severity + ", details: ["
-        + StringUtils.join(_heuristicResultDetails, "    ") + "]}";
+    return "{analysis: " + _heuristicClass + ", severity: " + _severity + (_timedOut ? ", timed out" : "")
+        + ", details: [" + StringUtils.join(_heuristicResultDetails, "    ") + "], metrics: ["
+        + StringUtils.join(_heuristicResultMetrics, "    ") + "]}";
   }
 }
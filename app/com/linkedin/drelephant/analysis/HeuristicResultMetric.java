@@ -0,0 +1,51 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.analysis;
+
+
+/**
+ * A numeric metric of a Heuristic, such as a task count or an average GC ratio
+ */
+public class HeuristicResultMetric {
+
+  private String _name;
+  private MetricUnit _unit;
+  private double _value;
+
+  public HeuristicResultMetric(String name, MetricUnit unit, double value) {
+    this._name = name;
+    this._unit = unit;
+    this._value = value;
+  }
+
+  public String getName() {
+    return _name;
+  }
+
+  public MetricUnit getUnit() {
+    return _unit;
+  }
+
+  public double getValue() {
+    return _value;
+  }
+
+  @Override
+  public String toString() {
+    return _name + ": " + _unit.format(_value);
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.analysis;
+
+import com.avaje.ebean.annotation.EnumValue;
+import com.linkedin.drelephant.math.Statistics;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+import org.apache.commons.io.FileUtils;
+
+
+/**
+ * The units of the heuristic metrics. The metrics are stored as numbers and formatted by their unit when displayed.
+ */
+public enum MetricUnit {
+  @EnumValue("0")
+  COUNT(0),
+
+  @EnumValue("1")
+  BYTES(1),
+
+  @EnumValue("2")
+  MILLISECONDS(2),
+
+  @EnumValue("3")
+  RATIO(3);
+
+  private int _value;
+
+  MetricUnit(int value) {
+    this._value = value;
+  }
+
+  /**
+   * Returns the value stored for the unit
+   *
+   * @return The unit value
+   */
+  public int getValue() {
+    return _value;
+  }
+
+  /**
+   * Formats a metric value of this unit for display
+   *
+   * @param value The metric value
+   * @return The readable value
+   */
+  public String format(double value) {
+    switch (this) {
+      case BYTES:
+        return FileUtils.byteCountToDisplaySize((long) value);
+      case MILLISECONDS:
+        // The readable timespan drops the milliseconds
+        return value < Statistics.SECOND_IN_MS ? (long) value + " ms" : Statistics.readableTimespan((long) value);
+      case RATIO:
+        return new DecimalFormat("0.####", DecimalFormatSymbols.getInstance(Locale.US)).format(value);
+      default:
+        return Long.toString((long) value);
+    }
+  }
+}
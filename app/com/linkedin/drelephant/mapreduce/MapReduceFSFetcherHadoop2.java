@@ -0,0 +1,478 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.mapreduce;
+
+import com.linkedin.drelephant.analysis.AnalyticJob;
+import com.linkedin.drelephant.analysis.ElephantFetcher;
+import com.linkedin.drelephant.configurations.fetcher.FetcherConfigurationData;
+import com.linkedin.drelephant.mapreduce.data.MapReduceApplicationData;
+import com.linkedin.drelephant.mapreduce.data.MapReduceCounterData;
+import com.linkedin.drelephant.mapreduce.data.MapReduceCounterData.CounterName;
+import com.linkedin.drelephant.mapreduce.data.MapReduceTaskColumns;
+import com.linkedin.drelephant.mapreduce.data.MapReduceTaskData;
+import com.linkedin.drelephant.mapreduce.data.MapReduceTaskSketches;
+import com.linkedin.drelephant.security.HadoopSecurity;
+import com.linkedin.drelephant.util.Utils;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.security.PrivilegedExceptionAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.CounterGroup;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.JobID;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskID;
+import org.apache.hadoop.mapreduce.TaskType;
+import org.apache.hadoop.mapreduce.jobhistory.EventReader;
+import org.apache.hadoop.mapreduce.jobhistory.HistoryEvent;
+import org.apache.hadoop.mapreduce.jobhistory.JobFinishedEvent;
+import org.apache.hadoop.mapreduce.jobhistory.JobUnsuccessfulCompletionEvent;
+import org.apache.hadoop.mapreduce.jobhistory.MapAttemptFinishedEvent;
+import org.apache.hadoop.mapreduce.jobhistory.ReduceAttemptFinishedEvent;
+import org.apache.hadoop.mapreduce.jobhistory.TaskAttemptStartedEvent;
+import org.apache.hadoop.mapreduce.jobhistory.TaskAttemptUnsuccessfulCompletionEvent;
+import org.apache.hadoop.mapreduce.jobhistory.TaskFinishedEvent;
+import org.apache.log4j.Logger;
+
+
+/**
+ * This class implements the Fetcher for MapReduce Applications on Hadoop2 that reads the job history files written
+ * by the MapReduce ApplicationMaster, instead of calling the REST API of the job history server.
+ *
+ * The job configuration comes from the _conf.xml file and everything else from the .jhist file, which is read once
+ * from the beginning to the end. The counters and times of every succeeded task are kept in the columns of the job,
+ * and also go into quantile sketches of its run time and distribution counters, which the heuristics with
+ * quantile_sketch set report from.
+ *
+ * Setting task_sample_size bounds the tasks kept in the columns to a uniform random sample of that many tasks per
+ * type. The sketches still summarize every task then, and the other tasks are only counted: they all share one
+ * immutable task without ids or values.
+ *
+ * The files are looked up in the done directory of the job history server, then in its intermediate done directory
+ * for the jobs that the server has not moved yet. Both are read from the default file system unless the fetcher
+ * params point them somewhere else, e.g. file:///path/to/history for a local copy.
+ */
+public class MapReduceFSFetcherHadoop2 implements ElephantFetcher<MapReduceApplicationData> {
+  private static final Logger logger = Logger.getLogger(MapReduceFSFetcherHadoop2.class);
+
+  private static final String HISTORY_LOG_DIR_XML_FIELD = "history_log_dir";
+  private static final String INTERMEDIATE_LOG_DIR_XML_FIELD = "intermediate_log_dir";
+  private static final String HISTORY_SERVER_TIME_ZONE_XML_FIELD = "history_server_time_zone";
+  private static final String TASK_SAMPLE_SIZE_XML_FIELD = "task_sample_size";
+  private static final String HISTORY_LOOKUP_DAYS_XML_FIELD = "history_lookup_days";
+
+  // Every task is kept with its counters by default, a few hundred bytes each
+  private static final int DEFAULT_TASK_SAMPLE_SIZE = 0;
+  // The history server may see a job finish the day before its finish time in the resource manager
+  private static final int DEFAULT_HISTORY_LOOKUP_DAYS = 1;
+  private static final long DAY_MS = 24L * 3600 * 1000;
+
+  private static final String DONE_DIR_KEY = "mapreduce.jobhistory.done-dir";
+  private static final String INTERMEDIATE_DONE_DIR_KEY = "mapreduce.jobhistory.intermediate-done-dir";
+  private static final String JOB_HISTORY_WEBAPP_ADDRESS_KEY = "mapreduce.jobhistory.webapp.address";
+
+  private static final String JOB_HISTORY_FILE_EXTENSION = ".jhist";
+  private static final String CONF_FILE_SUFFIX = "_conf.xml";
+
+  // The done directory is bucketed by yyyy/MM/dd/<first 6 of the 9 digit job sequence number>
+  private static final String SERIAL_NUMBER_FORMAT = "%09d";
+  private static final int SERIAL_NUMBER_DIRECTORY_DIGITS = 6;
+
+  private static final CounterName[] COUNTER_NAMES = CounterName.values();
+
+  private final FetcherConfigurationData _fetcherConfigurationData;
+  private final HadoopSecurity _security;
+  private final FileSystem _fs;
+  private final Path _historyLogDir;
+  private final Path _intermediateLogDir;
+  private final TimeZone _timeZone;
+  private final String _jhistoryWebAddr;
+  private final int _taskSampleSize;
+  private final int _historyLookupDays;
+
+  public MapReduceFSFetcherHadoop2(FetcherConfigurationData fetcherConfData) throws IOException {
+    _fetcherConfigurationData = fetcherConfData;
+    _security = new HadoopSecurity();
+
+    Configuration conf = new Configuration();
+    conf.addResource("mapred-default.xml");
+    conf.addResource("mapred-site.xml");
+
+    _historyLogDir = new Path(getParam(HISTORY_LOG_DIR_XML_FIELD, conf.get(DONE_DIR_KEY)));
+    _fs = _historyLogDir.getFileSystem(conf);
+    String intermediateLogDir = getParam(INTERMEDIATE_LOG_DIR_XML_FIELD, conf.get(INTERMEDIATE_DONE_DIR_KEY));
+    _intermediateLogDir = intermediateLogDir == null ? null : new Path(intermediateLogDir);
+
+    String timeZone = getParam(HISTORY_SERVER_TIME_ZONE_XML_FIELD, null);
+    _timeZone = timeZone == null ? TimeZone.getDefault() : TimeZone.getTimeZone(timeZone);
+
+    _taskSampleSize = Integer.parseInt(getParam(TASK_SAMPLE_SIZE_XML_FIELD, String.valueOf(DEFAULT_TASK_SAMPLE_SIZE)));
+    if (_taskSampleSize < 0) {
+      throw new IllegalArgumentException(TASK_SAMPLE_SIZE_XML_FIELD + " must not be negative: " + _taskSampleSize);
+    }
+    _historyLookupDays =
+        Integer.parseInt(getParam(HISTORY_LOOKUP_DAYS_XML_FIELD, String.valueOf(DEFAULT_HISTORY_LOOKUP_DAYS)));
+    if (_historyLookupDays < 0) {
+      throw new IllegalArgumentException(
+          HISTORY_LOOKUP_DAYS_XML_FIELD + " must not be negative: " + _historyLookupDays);
+    }
+
+    String jhistoryAddr = conf.get(JOB_HISTORY_WEBAPP_ADDRESS_KEY);
+    _jhistoryWebAddr = jhistoryAddr == null ? null : "http://" + jhistoryAddr + "/jobhistory/job/";
+
+    logger.info("Reading the job history files from " + _fs.makeQualified(_historyLogDir) + " and "
+        + (_intermediateLogDir == null ? "no intermediate directory" : _fs.makeQualified(_intermediateLogDir))
+        + ", time zone " + _timeZone.getID() + ", looking back " + _historyLookupDays + " days, keeping "
+        + (_taskSampleSize == 0 ? "every task" : _taskSampleSize + " tasks per type"));
+  }
+
+  private String getParam(String name, String defaultValue) {
+    Map<String, String> paramMap = _fetcherConfigurationData.getParamMap();
+    String value = paramMap == null ? null : paramMap.get(name);
+    return Utils.isSet(value) ? value.trim() : defaultValue;
+  }
+
+  @Override
+  public MapReduceApplicationData fetchData(final AnalyticJob analyticJob) throws IOException, InterruptedException {
+    return _security.getUGI().doAs(new PrivilegedExceptionAction<MapReduceApplicationData>() {
+      @Override
+      public MapReduceApplicationData run() throws IOException {
+        return doFetchData(analyticJob);
+      }
+    });
+  }
+
+  private MapReduceApplicationData doFetchData(AnalyticJob analyticJob) throws IOException {
+    String appId = analyticJob.getAppId();
+    String jobId = Utils.getJobIdFromApplicationId(appId);
+    MapReduceApplicationData jobData = new MapReduceApplicationData();
+    jobData.setAppId(appId).setJobId(jobId);
+    if (_jhistoryWebAddr != null) {
+      // Change job tracking url to job history page
+      analyticJob.setTrackingUrl(_jhistoryWebAddr + jobId);
+    }
+
+    Path historyFile = findHistoryFile(jobId, analyticJob.getFinishTime(), analyticJob.getUser());
+    if (historyFile == null) {
+      throw new FileNotFoundException("Cannot find the history file of " + jobId + " under " + _historyLogDir
+          + (_intermediateLogDir == null ? "" : " or " + _intermediateLogDir));
+    }
+    jobData.setJobConf(readJobConf(new Path(historyFile.getParent(), jobId + CONF_FILE_SUFFIX)));
+
+    // Seeded by the job so that analysing it again keeps the same sample
+    HistoryEventCollector collector = new HistoryEventCollector(_taskSampleSize, new Random(jobId.hashCode()));
+    EventReader reader = new EventReader(_fs, historyFile);
+    try {
+      HistoryEvent event;
+      while ((event = reader.getNextEvent()) != null) {
+        collector.handleEvent(event);
+      }
+    } finally {
+      reader.close();
+    }
+
+    if (collector._finalStatus == null) {
+      // The AM has not finished writing the file yet, the job will be retried.
+      throw new IOException("The history file " + historyFile + " has no job completion event");
+    }
+
+    if (collector._finalStatus.equals("SUCCEEDED")) {
+      jobData.setSucceeded(true);
+      jobData.setCounters(collector._jobCounters)
+          .setMapperData(collector._mappers.toTasks(), collector._mappers._columns)
+          .setReducerData(collector._reducers.toTasks(), collector._reducers._columns)
+          .setTaskSketches(collector._mappers._sketches, collector._reducers._sketches);
+    } else {
+      jobData.setSucceeded(false);
+      jobData.setDiagnosticInfo(collector._diagnosticInfo);
+    }
+    return jobData;
+  }
+
+  /**
+   * Looks for the .jhist file of the job in the date directory of its finish time and of the history_lookup_days
+   * days before, in case the history server saw it finish earlier, then in the intermediate directory of the user.
+   * The other date directories are not searched, a glob over all of them lists the whole done directory.
+   *
+   * @return The path of the file or null if it is not found
+   */
+  private Path findHistoryFile(String jobId, long finishTime, String user) throws IOException {
+    String serialDir = getSerialNumberDirectory(jobId);
+    String pattern = jobId + "-*" + JOB_HISTORY_FILE_EXTENSION;
+
+    List<Path> dirs = new ArrayList<Path>();
+    if (finishTime > 0) {
+      for (int day = 0; day <= _historyLookupDays; day++) {
+        dirs.add(new Path(_historyLogDir,
+            getDateDirectory(finishTime - day * DAY_MS, _timeZone) + Path.SEPARATOR + serialDir));
+      }
+    }
+    if (_intermediateLogDir != null && user != null) {
+      dirs.add(new Path(_intermediateLogDir, user));
+    }
+
+    for (Path dir : dirs) {
+      FileStatus[] matches = _fs.globStatus(new Path(dir, pattern));
+      if (matches != null && matches.length > 0) {
+        return matches[0].getPath();
+      }
+    }
+    return null;
+  }
+
+  private Properties readJobConf(Path confFile) throws IOException {
+    Configuration conf = new Configuration(false);
+    Properties jobConf = new Properties();
+    FSDataInputStream in = _fs.open(confFile);
+    try {
+      conf.addResource(in);
+      // Iterating loads the resource, which has to happen before the stream is closed
+      for (Map.Entry<String, String> entry : conf) {
+        jobConf.setProperty(entry.getKey(), entry.getValue());
+      }
+    } finally {
+      in.close();
+    }
+    return jobConf;
+  }
+
+  /**
+   * @return The serial number directory of the job in the done directory, e.g. 000123 for job_1460381439677_123456
+   */
+  static String getSerialNumberDirectory(String jobId) {
+    int sequence = JobID.forName(jobId).getId();
+    return String.format(SERIAL_NUMBER_FORMAT, sequence).substring(0, SERIAL_NUMBER_DIRECTORY_DIGITS);
+  }
+
+  /**
+   * @return The yyyy/MM/dd directory of the given time in the done directory
+   */
+  static String getDateDirectory(long timeMs, TimeZone timeZone) {
+    Calendar calendar = Calendar.getInstance(timeZone);
+    calendar.setTimeInMillis(timeMs);
+    return String.format("%04d/%02d/%02d", calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1,
+        calendar.get(Calendar.DAY_OF_MONTH));
+  }
+
+  private static MapReduceCounterData toCounterData(Counters counters) {
+    MapReduceCounterData holder = new MapReduceCounterData();
+    if (counters == null) {
+      return holder;
+    }
+    for (CounterGroup group : counters) {
+      for (Counter counter : group) {
+        holder.set(group.getName(), counter.getName(), counter.getValue());
+      }
+    }
+    return holder;
+  }
+
+  /**
+   * The finished tasks of one type. Every task goes into the sketches and, unless sampleSize is set, into the
+   * columns. With a sampleSize, the columns hold a uniform sample of at most sampleSize tasks (reservoir sampling), and
+   * only the sampled tasks keep their ids.
+   */
+  private static class TaskCollector {
+    // Stands for every task that is not sampled. It cannot be changed, as it is shared by every job.
+    private static final MapReduceTaskData UNSAMPLED_TASK = new MapReduceTaskData(null, null) {
+      @Override
+      public void setCounter(MapReduceCounterData counterHolder) {
+        throw new UnsupportedOperationException("The unsampled task cannot be changed");
+      }
+
+      @Override
+      public void setTime(long[] time) {
+        throw new UnsupportedOperationException("The unsampled task cannot be changed");
+      }
+    };
+
+    private final MapReduceTaskColumns _columns = new MapReduceTaskColumns();
+    private final MapReduceTaskSketches _sketches = new MapReduceTaskSketches();
+    private final int _sampleSize;
+    private final Random _random;
+    private int _count = 0;
+    // The finish order, task id and attempt id of the task held by each row of the columns
+    private int[] _rowPositions = new int[16];
+    private String[] _rowTaskIds = new String[16];
+    private String[] _rowAttemptIds = new String[16];
+
+    /**
+     * @param sampleSize The maximum number of tasks kept in the columns, 0 to keep them all
+     */
+    private TaskCollector(int sampleSize, Random random) {
+      _sampleSize = sampleSize;
+      _random = random;
+    }
+
+    /**
+     * @param counters The counters of the task indexed by the counter name ordinal
+     */
+    private void add(TaskID taskId, TaskAttemptID attemptId, long[] time, long[] counters) {
+      _sketches.add(time[0], counters);
+
+      int position = _count++;
+      int row;
+      if (_sampleSize == 0 || _columns.size() < _sampleSize) {
+        row = _columns.addTask(time);
+        if (row == _rowPositions.length) {
+          _rowPositions = Arrays.copyOf(_rowPositions, row * 2);
+          _rowTaskIds = Arrays.copyOf(_rowTaskIds, row * 2);
+          _rowAttemptIds = Arrays.copyOf(_rowAttemptIds, row * 2);
+        }
+      } else {
+        row = _random.nextInt(position + 1);
+        if (row >= _sampleSize) {
+          return;
+        }
+        _columns.setTask(row, time);
+      }
+      _rowPositions[row] = position;
+      _rowTaskIds[row] = taskId.toString();
+      _rowAttemptIds[row] = attemptId == null ? null : attemptId.toString();
+      for (CounterName counterName : COUNTER_NAMES) {
+        _columns.setCounter(row, counterName, counters[counterName.ordinal()]);
+      }
+    }
+
+    /**
+     * @return The tasks in the order they finished, reading the columns. When sampled, the tasks left out of the
+     * sample are all the same unsampled task.
+     */
+    private MapReduceTaskData[] toTasks() {
+      MapReduceTaskData[] tasks = new MapReduceTaskData[_count];
+      if (_columns.size() < _count) {
+        Arrays.fill(tasks, UNSAMPLED_TASK);
+      }
+      for (int row = 0; row < _columns.size(); row++) {
+        tasks[_rowPositions[row]] = new MapReduceTaskData(_rowTaskIds[row], _rowAttemptIds[row], _columns, row);
+      }
+      return tasks;
+    }
+  }
+
+  /**
+   * Collects the job data from the events of a history file, in the order they were written.
+   *
+   * Only the attempts that are still running at the current point of the file are kept in memory. The times of an
+   * attempt are dropped as soon as its task finishes or the attempt fails. The counters and times of the finished
+   * tasks go straight to the sketches and the sampled columns, and only the sampled tasks keep their ids.
+   */
+  private static class HistoryEventCollector {
+    // start, finish, shuffle finish and sort finish times of the attempts
+    private final Map<TaskAttemptID, long[]> _attemptTimes = new HashMap<TaskAttemptID, long[]>();
+    private final TaskCollector _mappers;
+    private final TaskCollector _reducers;
+    private final long[] _taskCounters = new long[COUNTER_NAMES.length];
+    private MapReduceCounterData _jobCounters;
+    private String _finalStatus;
+    private String _diagnosticInfo;
+
+    private HistoryEventCollector(int taskSampleSize, Random random) {
+      _mappers = new TaskCollector(taskSampleSize, random);
+      _reducers = new TaskCollector(taskSampleSize, random);
+    }
+
+    private void handleEvent(HistoryEvent event) {
+      if (event instanceof TaskAttemptStartedEvent) {
+        TaskAttemptStartedEvent started = (TaskAttemptStartedEvent) event;
+        _attemptTimes.put(started.getTaskAttemptId(), new long[] { started.getStartTime(), 0, 0, 0 });
+      } else if (event instanceof MapAttemptFinishedEvent) {
+        MapAttemptFinishedEvent finished = (MapAttemptFinishedEvent) event;
+        long[] times = _attemptTimes.get(finished.getAttemptId());
+        if (times != null) {
+          times[1] = finished.getFinishTime();
+        }
+      } else if (event instanceof ReduceAttemptFinishedEvent) {
+        ReduceAttemptFinishedEvent finished = (ReduceAttemptFinishedEvent) event;
+        long[] times = _attemptTimes.get(finished.getAttemptId());
+        if (times != null) {
+          times[1] = finished.getFinishTime();
+          times[2] = finished.getShuffleFinishTime();
+          times[3] = finished.getSortFinishTime();
+        }
+      } else if (event instanceof TaskAttemptUnsuccessfulCompletionEvent) {
+        TaskAttemptUnsuccessfulCompletionEvent unsuccessful = (TaskAttemptUnsuccessfulCompletionEvent) event;
+        _attemptTimes.remove(unsuccessful.getTaskAttemptId());
+        String error = unsuccessful.getError();
+        // Prefer the first stack trace, same as the REST fetcher does
+        if (Utils.isSet(error) && (_diagnosticInfo == null
+            || (!_diagnosticInfo.startsWith("Error:") && error.startsWith("Error:")))) {
+          _diagnosticInfo = error;
+        }
+      } else if (event instanceof TaskFinishedEvent) {
+        handleTaskFinished((TaskFinishedEvent) event);
+      } else if (event instanceof JobFinishedEvent) {
+        _jobCounters = toCounterData(((JobFinishedEvent) event).getTotalCounters());
+        _finalStatus = "SUCCEEDED";
+      } else if (event instanceof JobUnsuccessfulCompletionEvent) {
+        _finalStatus = ((JobUnsuccessfulCompletionEvent) event).getStatus();
+      }
+    }
+
+    private void handleTaskFinished(TaskFinishedEvent finished) {
+      TaskType type = finished.getTaskType();
+      if (type != TaskType.MAP && type != TaskType.REDUCE) {
+        return;
+      }
+      TaskAttemptID attemptId = finished.getSuccessfulTaskAttemptId();
+      long[] attemptTimes = attemptId == null ? null : _attemptTimes.remove(attemptId);
+
+      long[] time;
+      if (attemptTimes == null) {
+        time = new long[] { 0, 0, 0 };
+      } else if (type == TaskType.MAP) {
+        // No shuffle sort time in Mapper
+        time = new long[] { attemptTimes[1] - attemptTimes[0], 0, 0 };
+      } else {
+        time = new long[] { attemptTimes[1] - attemptTimes[0], attemptTimes[2] - attemptTimes[0],
+            attemptTimes[3] - attemptTimes[2] };
+      }
+
+      Arrays.fill(_taskCounters, 0);
+      Counters counters = finished.getCounters();
+      if (counters != null) {
+        for (CounterGroup group : counters) {
+          for (Counter counter : group) {
+            CounterName counterName = CounterName.getCounterFromName(counter.getName());
+            if (counterName != null) {
+              _taskCounters[counterName.ordinal()] = counter.getValue();
+            }
+          }
+        }
+      }
+
+      TaskCollector tasks = type == TaskType.MAP ? _mappers : _reducers;
+      tasks.add(finished.getTaskId(), attemptId, time, _taskCounters);
+    }
+  }
+}
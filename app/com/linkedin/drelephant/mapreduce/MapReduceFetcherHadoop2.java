@@ -21,30 +21,35 @@ import com.linkedin.drelephant.analysis.ElephantFetcher;
 import com.linkedin.drelephant.mapreduce.data.MapReduceApplicationData;
 import com.linkedin.drelephant.mapreduce.data.MapReduceCounterData;
 import com.linkedin.drelephant.mapreduce.data.MapReduceTaskData;
-import com.linkedin.drelephant.math.Statistics;
 import com.linkedin.drelephant.configurations.fetcher.FetcherConfigurationData;
+import com.linkedin.drelephant.util.HadoopRestClient;
 import com.linkedin.drelephant.util.Utils;
 
 import java.io.IOException;
-import java.net.HttpURLConnection;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
-import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.security.authentication.client.AuthenticatedURL;
 import org.apache.hadoop.security.authentication.client.AuthenticationException;
 import org.apache.log4j.Logger;
 import org.codehaus.jackson.JsonNode;
-import org.codehaus.jackson.map.ObjectMapper;
 
 
 /**
@@ -52,13 +57,21 @@ import org.codehaus.jackson.map.ObjectMapper;
  */
 public class MapReduceFetcherHadoop2 implements ElephantFetcher<MapReduceApplicationData> {
   private static final Logger logger = Logger.getLogger(ElephantFetcher.class);
-  private static final int MAX_SAMPLE_SIZE = 200;
+  static final int MAX_SAMPLE_SIZE = 200;
   // We provide one minute job fetch delay due to the job sending lag from AM/NM to JobHistoryServer HDFS
 
+  // Number of threads fetching the per task data of the jobs. 0 fetches the tasks serially on the analysis thread.
+  private static final String TASK_FETCH_THREAD_COUNT_XML_FIELD = "task_fetch_thread_count";
+  private static final int DEFAULT_TASK_FETCH_THREAD_COUNT = 8;
+  // Whether to drop the task counters that no heuristic reads, custom user counters included
+  private static final String DROP_UNKNOWN_TASK_COUNTERS_XML_FIELD = "drop_unknown_task_counters";
+
   private URLFactory _urlFactory;
   private JSONFactory _jsonFactory;
   private String _jhistoryWebAddr;
   private FetcherConfigurationData _fetcherConfigurationData;
+  private ExecutorService _taskFetchService;
+  private boolean _dropUnknownTaskCounters;
 
   public MapReduceFetcherHadoop2(FetcherConfigurationData fetcherConfData) throws IOException {
     this._fetcherConfigurationData = fetcherConfData;
@@ -71,6 +84,110 @@ public class MapReduceFetcherHadoop2 implements ElephantFetcher<MapReduceApplica
 
     _jsonFactory = new JSONFactory();
     _jhistoryWebAddr = "http://" + jhistoryAddr + "/jobhistory/job/";
+
+    Map<String, String> paramMap = _fetcherConfigurationData.getParamMap();
+    int taskFetchThreadCount =
+        getIntParam(paramMap, TASK_FETCH_THREAD_COUNT_XML_FIELD, DEFAULT_TASK_FETCH_THREAD_COUNT);
+    _taskFetchService = newTaskFetchService(taskFetchThreadCount);
+    logger.info("The number of task fetch threads is set to " + taskFetchThreadCount);
+
+    String dropUnknownTaskCounters = paramMap == null ? null : paramMap.get(DROP_UNKNOWN_TASK_COUNTERS_XML_FIELD);
+    _dropUnknownTaskCounters =
+        Utils.isSet(dropUnknownTaskCounters) && Boolean.parseBoolean(dropUnknownTaskCounters.trim());
+    logger.info("Unknown task counters are " + (_dropUnknownTaskCounters ? "dropped" : "kept"));
+  }
+
+  /**
+   * Reads a non negative integer parameter of the fetcher, falling back to the default value when it is not set or
+   * invalid.
+   */
+  static int getIntParam(Map<String, String> paramMap, String name, int defaultValue) {
+    String value = paramMap == null ? null : paramMap.get(name);
+    if (!Utils.isSet(value)) {
+      return defaultValue;
+    }
+    try {
+      int parsed = Integer.parseInt(value.trim());
+      if (parsed < 0) {
+        logger.warn("Fetcher parameter " + name + " is negative. Resetting it to 0");
+        parsed = 0;
+      }
+      return parsed;
+    } catch (NumberFormatException e) {
+      logger.error("Invalid fetcher parameter " + name + ". Value is " + value + ". Resetting it to default value: "
+          + defaultValue);
+      return defaultValue;
+    }
+  }
+
+  /**
+   * @param threadCount The number of task fetch threads
+   * @return The pool fetching the tasks, or null to fetch them on the analysis thread when the count is 0
+   */
+  static ExecutorService newTaskFetchService(int threadCount) {
+    return threadCount > 0 ? Executors.newFixedThreadPool(threadCount, new TaskFetchThreadFactory()) : null;
+  }
+
+  /**
+   * Fetches the data of one task
+   */
+  interface TaskFetch {
+    void fetch(String jobId, MapReduceTaskData data) throws IOException, AuthenticationException;
+  }
+
+  /**
+   * Fetches the data of at most MAX_SAMPLE_SIZE tasks, picked at random when the job has more. The sampled tasks are
+   * the first of the list.
+   *
+   * @param taskFetchService The task fetch threads, or null to fetch the tasks on the calling thread
+   * @param jobId The job id
+   * @param taskList The tasks of the job, shuffled when they are sampled
+   * @param fetch Fetches the data of one task
+   */
+  static void fetchTasks(ExecutorService taskFetchService, String jobId, List<MapReduceTaskData> taskList,
+      TaskFetch fetch) throws IOException, AuthenticationException {
+    if (taskList.size() > MAX_SAMPLE_SIZE) {
+      logger.info(jobId + " needs sampling.");
+      Collections.shuffle(taskList);
+    }
+
+    int sampleSize = Math.min(taskList.size(), MAX_SAMPLE_SIZE);
+
+    if (taskFetchService == null) {
+      for (int i = 0; i < sampleSize; i++) {
+        fetch.fetch(jobId, taskList.get(i));
+      }
+      return;
+    }
+
+    // Fetch the sampled tasks concurrently, so that the time spent is bounded by the slowest tasks rather than the
+    // sum of all the requests. The per host limit of HadoopRestClient keeps the job history server from overloading.
+    List<Future<Void>> futures = new ArrayList<Future<Void>>(sampleSize);
+    try {
+      for (int i = 0; i < sampleSize; i++) {
+        futures.add(taskFetchService.submit(new TaskFetcher(fetch, jobId, taskList.get(i))));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while fetching the tasks of " + jobId);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof AuthenticationException) {
+        throw (AuthenticationException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new RuntimeException("Failed to fetch the tasks of " + jobId, cause);
+    } finally {
+      for (Future<Void> future : futures) {
+        future.cancel(true);
+      }
+    }
   }
 
   @Override
@@ -81,47 +198,43 @@ public class MapReduceFetcherHadoop2 implements ElephantFetcher<MapReduceApplica
     jobData.setAppId(appId).setJobId(jobId);
     // Change job tracking url to job history page
     analyticJob.setTrackingUrl(_jhistoryWebAddr + jobId);
-    try {
 
-      // Fetch job config
-      Properties jobConf = _jsonFactory.getProperties(_urlFactory.getJobConfigURL(jobId));
-      jobData.setJobConf(jobConf);
+    // Fetch job config
+    Properties jobConf = _jsonFactory.getProperties(_urlFactory.getJobConfigURL(jobId));
+    jobData.setJobConf(jobConf);
 
-      URL jobURL = _urlFactory.getJobURL(jobId);
-      String state = _jsonFactory.getState(jobURL);
-      if (state.equals("SUCCEEDED")) {
+    URL jobURL = _urlFactory.getJobURL(jobId);
+    String state = _jsonFactory.getState(jobURL);
+    if (state.equals("SUCCEEDED")) {
 
-        jobData.setSucceeded(true);
+      jobData.setSucceeded(true);
 
-        // Fetch job counter
-        MapReduceCounterData jobCounter = _jsonFactory.getJobCounter(_urlFactory.getJobCounterURL(jobId));
+      // Fetch job counter
+      MapReduceCounterData jobCounter = _jsonFactory.getJobCounter(_urlFactory.getJobCounterURL(jobId));
 
-        // Fetch task data
-        URL taskListURL = _urlFactory.getTaskListURL(jobId);
-        List<MapReduceTaskData> mapperList = new ArrayList<MapReduceTaskData>();
-        List<MapReduceTaskData> reducerList = new ArrayList<MapReduceTaskData>();
-        _jsonFactory.getTaskDataAll(taskListURL, jobId, mapperList, reducerList);
+      // Fetch task data
+      URL taskListURL = _urlFactory.getTaskListURL(jobId);
+      List<MapReduceTaskData> mapperList = new ArrayList<MapReduceTaskData>();
+      List<MapReduceTaskData> reducerList = new ArrayList<MapReduceTaskData>();
+      _jsonFactory.getTaskDataAll(taskListURL, jobId, mapperList, reducerList);
 
-        MapReduceTaskData[] mapperData = mapperList.toArray(new MapReduceTaskData[mapperList.size()]);
-        MapReduceTaskData[] reducerData = reducerList.toArray(new MapReduceTaskData[reducerList.size()]);
+      MapReduceTaskData[] mapperData = mapperList.toArray(new MapReduceTaskData[mapperList.size()]);
+      MapReduceTaskData[] reducerData = reducerList.toArray(new MapReduceTaskData[reducerList.size()]);
 
-        jobData.setCounters(jobCounter).setMapperData(mapperData).setReducerData(reducerData);
-      } else if (state.equals("FAILED")) {
+      jobData.setCounters(jobCounter).setMapperData(mapperData).setReducerData(reducerData);
+    } else if (state.equals("FAILED")) {
 
-        jobData.setSucceeded(false);
-        String diagnosticInfo;
-        try {
-          diagnosticInfo = parseException(jobData.getJobId(),  _jsonFactory.getDiagnosticInfo(jobURL));
-        } catch(Exception e) {
-          diagnosticInfo = null;
-        }
-        jobData.setDiagnosticInfo(diagnosticInfo);
-      } else {
-        // Should not reach here
-        throw new RuntimeException("Job state not supported. Should be either SUCCEEDED or FAILED");
+      jobData.setSucceeded(false);
+      String diagnosticInfo;
+      try {
+        diagnosticInfo = parseException(jobData.getJobId(),  _jsonFactory.getDiagnosticInfo(jobURL));
+      } catch(Exception e) {
+        diagnosticInfo = null;
       }
-    } finally {
-      ThreadContextMR2.updateAuthToken();
+      jobData.setDiagnosticInfo(diagnosticInfo);
+    } else {
+      // Should not reach here
+      throw new RuntimeException("Job state not supported. Should be either SUCCEEDED or FAILED");
     }
 
     return jobData;
@@ -210,49 +323,38 @@ public class MapReduceFetcherHadoop2 implements ElephantFetcher<MapReduceApplica
     }
 
     private Properties getProperties(URL url) throws IOException, AuthenticationException {
-      Properties jobConf = new Properties();
-
-      JsonNode rootNode = ThreadContextMR2.readJsonNode(url);
-      JsonNode configs = rootNode.path("conf").path("property");
-
-      for (JsonNode conf : configs) {
-        String key = conf.get("name").getValueAsText();
-        String val = conf.get("value").getValueAsText();
-        jobConf.setProperty(key, val);
-      }
+      final Properties jobConf = new Properties();
+      ThreadContextMR2.read(url, new HadoopRestClient.ResponseReader<Void>() {
+        @Override
+        public Void read(InputStream in) throws IOException {
+          MapReduceJsonDecoder.readProperties(in, jobConf);
+          return null;
+        }
+      });
       return jobConf;
     }
 
     private MapReduceCounterData getJobCounter(URL url) throws IOException, AuthenticationException {
-      MapReduceCounterData holder = new MapReduceCounterData();
-
-      JsonNode rootNode = ThreadContextMR2.readJsonNode(url);
-      JsonNode groups = rootNode.path("jobCounters").path("counterGroup");
-
-      for (JsonNode group : groups) {
-        for (JsonNode counter : group.path("counter")) {
-          String counterName = counter.get("name").getValueAsText();
-          Long counterValue = counter.get("totalCounterValue").getLongValue();
-          String groupName = group.get("counterGroupName").getValueAsText();
-          holder.set(groupName, counterName, counterValue);
+      final MapReduceCounterData holder = new MapReduceCounterData();
+      ThreadContextMR2.read(url, new HadoopRestClient.ResponseReader<Void>() {
+        @Override
+        public Void read(InputStream in) throws IOException {
+          MapReduceJsonDecoder.readJobCounters(in, holder);
+          return null;
         }
-      }
+      });
       return holder;
     }
 
     private MapReduceCounterData getTaskCounter(URL url) throws IOException, AuthenticationException {
-      JsonNode rootNode = ThreadContextMR2.readJsonNode(url);
-      JsonNode groups = rootNode.path("jobTaskCounters").path("taskCounterGroup");
-      MapReduceCounterData holder = new MapReduceCounterData();
-
-      for (JsonNode group : groups) {
-        for (JsonNode counter : group.path("counter")) {
-          String name = counter.get("name").getValueAsText();
-          String groupName = group.get("counterGroupName").getValueAsText();
-          Long value = counter.get("value").getLongValue();
-          holder.set(groupName, name, value);
+      final MapReduceCounterData holder = new MapReduceCounterData(!_dropUnknownTaskCounters);
+      ThreadContextMR2.read(url, new HadoopRestClient.ResponseReader<Void>() {
+        @Override
+        public Void read(InputStream in) throws IOException {
+          MapReduceJsonDecoder.readTaskCounters(in, holder);
+          return null;
         }
-      }
+      });
       return holder;
     }
 
@@ -278,53 +380,39 @@ public class MapReduceFetcherHadoop2 implements ElephantFetcher<MapReduceApplica
       return time;
     }
 
-    private void getTaskDataAll(URL url, String jobId, List<MapReduceTaskData> mapperList,
-        List<MapReduceTaskData> reducerList) throws IOException, AuthenticationException {
-
-      JsonNode rootNode = ThreadContextMR2.readJsonNode(url);
-      JsonNode tasks = rootNode.path("tasks").path("task");
+    private void getTaskDataAll(URL url, String jobId, final List<MapReduceTaskData> mapperList,
+        final List<MapReduceTaskData> reducerList) throws IOException, AuthenticationException {
 
-      for (JsonNode task : tasks) {
-        String state = task.get("state").getValueAsText();
-        if (!state.equals("SUCCEEDED")) {
-          // This is a failed task.
-          continue;
-        }
-        String taskId = task.get("id").getValueAsText();
-        String attemptId = task.get("successfulAttempt").getValueAsText();
-        boolean isMapper = task.get("type").getValueAsText().equals("MAP");
-
-        if (isMapper) {
-          mapperList.add(new MapReduceTaskData(taskId, attemptId));
-        } else {
-          reducerList.add(new MapReduceTaskData(taskId, attemptId));
+      ThreadContextMR2.read(url, new HadoopRestClient.ResponseReader<Void>() {
+        @Override
+        public Void read(InputStream in) throws IOException {
+          MapReduceJsonDecoder.readTasks(in, mapperList, reducerList);
+          return null;
         }
-      }
+      });
 
       getTaskData(jobId, mapperList);
       getTaskData(jobId, reducerList);
     }
 
     private void getTaskData(String jobId, List<MapReduceTaskData> taskList) throws IOException, AuthenticationException {
-      if (taskList.size() > MAX_SAMPLE_SIZE) {
-        logger.info(jobId + " needs sampling.");
-        Collections.shuffle(taskList);
-      }
-
-      int sampleSize = Math.min(taskList.size(), MAX_SAMPLE_SIZE);
-
-      for(int i=0; i < sampleSize; i++) {
-        MapReduceTaskData data = taskList.get(i);
+      fetchTasks(_taskFetchService, jobId, taskList, new TaskFetch() {
+        @Override
+        public void fetch(String jobId, MapReduceTaskData data) throws IOException, AuthenticationException {
+          fetchTask(jobId, data);
+        }
+      });
+    }
 
-        URL taskCounterURL = getTaskCounterURL(jobId, data.getTaskId());
-        MapReduceCounterData taskCounter = getTaskCounter(taskCounterURL);
+    private void fetchTask(String jobId, MapReduceTaskData data) throws IOException, AuthenticationException {
+      URL taskCounterURL = getTaskCounterURL(jobId, data.getTaskId());
+      MapReduceCounterData taskCounter = getTaskCounter(taskCounterURL);
 
-        URL taskAttemptURL = getTaskAttemptURL(jobId, data.getTaskId(), data.getAttemptId());
-        long[] taskExecTime = getTaskExecTime(taskAttemptURL);
+      URL taskAttemptURL = getTaskAttemptURL(jobId, data.getTaskId(), data.getAttemptId());
+      long[] taskExecTime = getTaskExecTime(taskAttemptURL);
 
-        data.setCounter(taskCounter);
-        data.setTime(taskExecTime);
-      }
+      data.setCounter(taskCounter);
+      data.setTime(taskExecTime);
     }
 
     private String getTaskFailedStackTrace(URL taskAllAttemptsUrl) throws IOException, AuthenticationException {
@@ -346,21 +434,42 @@ public class MapReduceFetcherHadoop2 implements ElephantFetcher<MapReduceApplica
       throw new RuntimeException("No failed task attempt in this failed task.");
     }
   }
-}
 
-final class ThreadContextMR2 {
-  private static final Logger logger = Logger.getLogger(ThreadContextMR2.class);
-  private static final AtomicInteger THREAD_ID = new AtomicInteger(1);
+  /**
+   * Fetches the counters and the execution time of one task on a task fetch thread. The thread keeps its own
+   * authentication token in HadoopRestClient and reuses it across jobs.
+   */
+  private static class TaskFetcher implements Callable<Void> {
+    private final TaskFetch _fetch;
+    private final String _jobId;
+    private final MapReduceTaskData _data;
+
+    TaskFetcher(TaskFetch fetch, String jobId, MapReduceTaskData data) {
+      _fetch = fetch;
+      _jobId = jobId;
+      _data = data;
+    }
 
-  private static final ThreadLocal<Integer> _LOCAL_THREAD_ID = new ThreadLocal<Integer>() {
     @Override
-    public Integer initialValue() {
-      return THREAD_ID.getAndIncrement();
+    public Void call() throws IOException, AuthenticationException {
+      _fetch.fetch(_jobId, _data);
+      return null;
     }
-  };
+  }
 
-  private static final ThreadLocal<Long> _LOCAL_LAST_UPDATED = new ThreadLocal<Long>();
-  private static final ThreadLocal<Long> _LOCAL_UPDATE_INTERVAL = new ThreadLocal<Long>();
+  private static class TaskFetchThreadFactory implements ThreadFactory {
+    private final AtomicInteger _threadNum = new AtomicInteger(1);
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "mr-task-fetcher-" + _threadNum.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
+
+final class ThreadContextMR2 {
 
   private static final ThreadLocal<Pattern> _LOCAL_DIAGNOSTIC_PATTERN = new ThreadLocal<Pattern>() {
     @Override
@@ -371,34 +480,6 @@ final class ThreadContextMR2 {
     }
   };
 
-  private static final ThreadLocal<AuthenticatedURL.Token> _LOCAL_AUTH_TOKEN =
-      new ThreadLocal<AuthenticatedURL.Token>() {
-        @Override
-        public AuthenticatedURL.Token initialValue() {
-          _LOCAL_LAST_UPDATED.set(System.currentTimeMillis());
-          // Random an interval for each executor to avoid update token at the same time
-          _LOCAL_UPDATE_INTERVAL.set(Statistics.MINUTE_IN_MS * 30 + new Random().nextLong()
-              % (3 * Statistics.MINUTE_IN_MS));
-          logger.info("Executor " + _LOCAL_THREAD_ID.get() + " update interval " + _LOCAL_UPDATE_INTERVAL.get() * 1.0
-              / Statistics.MINUTE_IN_MS);
-          return new AuthenticatedURL.Token();
-        }
-      };
-
-  private static final ThreadLocal<AuthenticatedURL> _LOCAL_AUTH_URL = new ThreadLocal<AuthenticatedURL>() {
-    @Override
-    public AuthenticatedURL initialValue() {
-      return new AuthenticatedURL();
-    }
-  };
-
-  private static final ThreadLocal<ObjectMapper> _LOCAL_MAPPER = new ThreadLocal<ObjectMapper>() {
-    @Override
-    public ObjectMapper initialValue() {
-      return new ObjectMapper();
-    }
-  };
-
   private ThreadContextMR2() {
     // Empty on purpose
   }
@@ -408,17 +489,11 @@ final class ThreadContextMR2 {
   }
 
   public static JsonNode readJsonNode(URL url) throws IOException, AuthenticationException {
-    HttpURLConnection conn = _LOCAL_AUTH_URL.get().openConnection(url, _LOCAL_AUTH_TOKEN.get());
-    return _LOCAL_MAPPER.get().readTree(conn.getInputStream());
+    return HadoopRestClient.instance().readJsonNode(url);
   }
 
-  public static void updateAuthToken() {
-    long curTime = System.currentTimeMillis();
-    if (curTime - _LOCAL_LAST_UPDATED.get() > _LOCAL_UPDATE_INTERVAL.get()) {
-      logger.info("Executor " + _LOCAL_THREAD_ID.get() + " updates its AuthenticatedToken.");
-      _LOCAL_AUTH_TOKEN.set(new AuthenticatedURL.Token());
-      _LOCAL_AUTH_URL.set(new AuthenticatedURL());
-      _LOCAL_LAST_UPDATED.set(curTime);
-    }
+  public static <T> T read(URL url, HadoopRestClient.ResponseReader<T> reader)
+      throws IOException, AuthenticationException {
+    return HadoopRestClient.instance().read(url, reader);
   }
 }
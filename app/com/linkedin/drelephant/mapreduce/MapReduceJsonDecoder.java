@@ -0,0 +1,260 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.mapreduce;
+
+import com.linkedin.drelephant.mapreduce.data.MapReduceCounterData;
+import com.linkedin.drelephant.mapreduce.data.MapReduceTaskData;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+
+
+/**
+ * Decodes the large responses of the job history server REST API with the token based Jackson parser.
+ *
+ * The responses are read straight into Properties, MapReduceCounterData and MapReduceTaskData without building a
+ * JsonNode tree first, so the memory used no longer grows with the size of /conf or with the number of tasks of the
+ * job. Fields that are not needed are skipped without being materialized.
+ */
+final class MapReduceJsonDecoder {
+
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  private MapReduceJsonDecoder() {
+    // Empty on purpose
+  }
+
+  /**
+   * Reads the response of /jobs/{jobid}/conf into the job configuration
+   *
+   * @param in The response body
+   * @param jobConf The properties to fill
+   */
+  static void readProperties(InputStream in, Properties jobConf) throws IOException {
+    JsonParser parser = JSON_FACTORY.createJsonParser(in);
+    try {
+      if (!seek(parser, "conf", "property")) {
+        return;
+      }
+      while (nextElement(parser)) {
+        String name = null;
+        String value = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          String field = parser.getCurrentName();
+          parser.nextToken();
+          if (field.equals("name")) {
+            name = parser.getText();
+          } else if (field.equals("value")) {
+            value = parser.getText();
+          } else {
+            parser.skipChildren();
+          }
+        }
+        if (name != null && value != null) {
+          jobConf.setProperty(name, value);
+        }
+      }
+    } finally {
+      parser.close();
+    }
+  }
+
+  /**
+   * Reads the response of /jobs/{jobid}/counters into the counter holder
+   *
+   * @param in The response body
+   * @param holder The counters to fill
+   */
+  static void readJobCounters(InputStream in, MapReduceCounterData holder) throws IOException {
+    readCounters(in, holder, "jobCounters", "counterGroup", "totalCounterValue");
+  }
+
+  /**
+   * Reads the response of /jobs/{jobid}/tasks/{taskid}/counters into the counter holder
+   *
+   * @param in The response body
+   * @param holder The counters to fill
+   */
+  static void readTaskCounters(InputStream in, MapReduceCounterData holder) throws IOException {
+    readCounters(in, holder, "jobTaskCounters", "taskCounterGroup", "value");
+  }
+
+  /**
+   * Reads the succeeded tasks from the response of /jobs/{jobid}/tasks
+   *
+   * @param in The response body
+   * @param mapperList The list to add the map tasks to
+   * @param reducerList The list to add the reduce tasks to
+   */
+  static void readTasks(InputStream in, List<MapReduceTaskData> mapperList, List<MapReduceTaskData> reducerList)
+      throws IOException {
+    JsonParser parser = JSON_FACTORY.createJsonParser(in);
+    try {
+      if (!seek(parser, "tasks", "task")) {
+        return;
+      }
+      while (nextElement(parser)) {
+        String taskId = null;
+        String attemptId = null;
+        String state = null;
+        String type = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          String field = parser.getCurrentName();
+          parser.nextToken();
+          if (field.equals("id")) {
+            taskId = parser.getText();
+          } else if (field.equals("successfulAttempt")) {
+            attemptId = parser.getText();
+          } else if (field.equals("state")) {
+            state = parser.getText();
+          } else if (field.equals("type")) {
+            type = parser.getText();
+          } else {
+            parser.skipChildren();
+          }
+        }
+        if (!"SUCCEEDED".equals(state)) {
+          // This is a failed task.
+          continue;
+        }
+        if ("MAP".equals(type)) {
+          mapperList.add(new MapReduceTaskData(taskId, attemptId));
+        } else {
+          reducerList.add(new MapReduceTaskData(taskId, attemptId));
+        }
+      }
+    } finally {
+      parser.close();
+    }
+  }
+
+  private static void readCounters(InputStream in, MapReduceCounterData holder, String rootField, String groupField,
+      String valueField) throws IOException {
+    JsonParser parser = JSON_FACTORY.createJsonParser(in);
+    try {
+      if (!seek(parser, rootField, groupField)) {
+        return;
+      }
+      List<String> pendingNames = new ArrayList<String>();
+      List<Long> pendingValues = new ArrayList<Long>();
+      while (nextElement(parser)) {
+        String groupName = null;
+        pendingNames.clear();
+        pendingValues.clear();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          String field = parser.getCurrentName();
+          parser.nextToken();
+          if (field.equals("counterGroupName")) {
+            groupName = parser.getText();
+          } else if (field.equals("counter")) {
+            readCounterList(parser, holder, groupName, valueField, pendingNames, pendingValues);
+          } else {
+            parser.skipChildren();
+          }
+        }
+        // The group name came after the counters, set them now
+        for (int i = 0; i < pendingNames.size(); i++) {
+          holder.set(groupName, pendingNames.get(i), pendingValues.get(i));
+        }
+      }
+    } finally {
+      parser.close();
+    }
+  }
+
+  private static void readCounterList(JsonParser parser, MapReduceCounterData holder, String groupName,
+      String valueField, List<String> pendingNames, List<Long> pendingValues) throws IOException {
+    if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+      parser.skipChildren();
+      return;
+    }
+    while (nextElement(parser)) {
+      String name = null;
+      long value = 0;
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        parser.nextToken();
+        if (field.equals("name")) {
+          name = parser.getText();
+        } else if (field.equals(valueField)) {
+          value = parser.getLongValue();
+        } else {
+          parser.skipChildren();
+        }
+      }
+      if (groupName != null) {
+        holder.set(groupName, name, value);
+      } else {
+        pendingNames.add(name);
+        pendingValues.add(value);
+      }
+    }
+  }
+
+  /**
+   * Moves the parser to the array at the nested field path, skipping everything else on the way.
+   *
+   * @return true if the array exists, in which case the parser is at its start
+   */
+  private static boolean seek(JsonParser parser, String... path) throws IOException {
+    if (parser.nextToken() != JsonToken.START_OBJECT) {
+      return false;
+    }
+    for (int depth = 0; depth < path.length; depth++) {
+      boolean found = false;
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        JsonToken value = parser.nextToken();
+        if (field.equals(path[depth])) {
+          JsonToken expected = depth < path.length - 1 ? JsonToken.START_OBJECT : JsonToken.START_ARRAY;
+          if (value != expected) {
+            return false;
+          }
+          found = true;
+          break;
+        }
+        parser.skipChildren();
+      }
+      if (!found) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Moves to the next object of the array the parser is in. Anything in the array that is not an object is skipped.
+   *
+   * @return true if the parser is at the start of the next object, false at the end of the array
+   */
+  private static boolean nextElement(JsonParser parser) throws IOException {
+    JsonToken next = parser.nextToken();
+    while (next != null && next != JsonToken.END_ARRAY) {
+      if (next == JsonToken.START_OBJECT) {
+        return true;
+      }
+      parser.skipChildren();
+      next = parser.nextToken();
+    }
+    return false;
+  }
+}
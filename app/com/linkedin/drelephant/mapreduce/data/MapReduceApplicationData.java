@@ -39,6 +39,10 @@ public class MapReduceApplicationData implements HadoopApplicationData {
   private MapReduceCounterData _counterHolder;
   private MapReduceTaskData[] _mapperData;
   private MapReduceTaskData[] _reducerData;
+  private MapReduceTaskColumns _mapperColumns;
+  private MapReduceTaskColumns _reducerColumns;
+  private MapReduceTaskSketches _mapperSketches;
+  private MapReduceTaskSketches _reducerSketches;
   private Properties _jobConf;
   private boolean _isRetry = false;
 
@@ -98,12 +102,43 @@ public class MapReduceApplicationData implements HadoopApplicationData {
   }
 
   public MapReduceApplicationData setMapperData(MapReduceTaskData[] mappers) {
+    return setMapperData(mappers, null);
+  }
+
+  /**
+   * @param mappers The mappers
+   * @param columns The columns of the sampled mappers, or null to build them from the mappers when first read
+   */
+  public synchronized MapReduceApplicationData setMapperData(MapReduceTaskData[] mappers,
+      MapReduceTaskColumns columns) {
     this._mapperData = mappers;
+    this._mapperColumns = columns;
     return this;
   }
 
   public MapReduceApplicationData setReducerData(MapReduceTaskData[] reducers) {
+    return setReducerData(reducers, null);
+  }
+
+  /**
+   * @param reducers The reducers
+   * @param columns The columns of the sampled reducers, or null to build them from the reducers when first read
+   */
+  public synchronized MapReduceApplicationData setReducerData(MapReduceTaskData[] reducers,
+      MapReduceTaskColumns columns) {
     this._reducerData = reducers;
+    this._reducerColumns = columns;
+    return this;
+  }
+
+  /**
+   * @param mapperSketches The sketches of every mapper, when the fetcher read them all
+   * @param reducerSketches The sketches of every reducer, when the fetcher read them all
+   */
+  public MapReduceApplicationData setTaskSketches(MapReduceTaskSketches mapperSketches,
+      MapReduceTaskSketches reducerSketches) {
+    this._mapperSketches = mapperSketches;
+    this._reducerSketches = reducerSketches;
     return this;
   }
 
@@ -124,6 +159,40 @@ public class MapReduceApplicationData implements HadoopApplicationData {
     return _reducerData;
   }
 
+  /**
+   * @return The counters and times of the sampled mappers, column by column
+   */
+  public synchronized MapReduceTaskColumns getMapperColumns() {
+    if (_mapperColumns == null) {
+      _mapperColumns = MapReduceTaskColumns.fromTasks(_mapperData);
+    }
+    return _mapperColumns;
+  }
+
+  /**
+   * @return The counters and times of the sampled reducers, column by column
+   */
+  public synchronized MapReduceTaskColumns getReducerColumns() {
+    if (_reducerColumns == null) {
+      _reducerColumns = MapReduceTaskColumns.fromTasks(_reducerData);
+    }
+    return _reducerColumns;
+  }
+
+  /**
+   * @return The sketches of every mapper, or null if the fetcher only read a sample of them
+   */
+  public MapReduceTaskSketches getMapperSketches() {
+    return _mapperSketches;
+  }
+
+  /**
+   * @return The sketches of every reducer, or null if the fetcher only read a sample of them
+   */
+  public MapReduceTaskSketches getReducerSketches() {
+    return _reducerSketches;
+  }
+
   @Override
   public String getAppId() {
     return _appId;
@@ -18,46 +18,65 @@ package com.linkedin.drelephant.mapreduce.data;
 
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
 
 /**
  * This class manages all the MapReduce Counters
+ *
+ * The counters of {@link CounterName} are kept in a long[] indexed by the counter name ordinal, which is all the
+ * heuristics read. Any other counter, custom user counters included, goes to a map of group to counters that is only
+ * allocated with the first of them, or is dropped when the holder does not keep unknown counters.
  */
 public class MapReduceCounterData {
 
-  // This is a map of group to all the counters in the group and their values.
-  private final Map<String, Map<String, Long>> _pubCounters;
+  private static final CounterName[] COUNTER_NAMES = CounterName.values();
+
+  // Values of the known counters and the groups they were set in, indexed by the counter name ordinal. A null group
+  // means the counter is not set.
+  private final long[] _knownCounters = new long[COUNTER_NAMES.length];
+  private final String[] _knownGroups = new String[COUNTER_NAMES.length];
+  private final boolean _keepUnknownCounters;
+  // This is a map of group to all the other counters in the group and their values, null until one is set.
+  private Map<String, Map<String, Long>> _otherCounters;
 
   public String toString() {
-    return _pubCounters.toString();
+    Map<String, Map<String, Long>> counters = new HashMap<String, Map<String, Long>>();
+    for (String groupName : getGroupNames()) {
+      counters.put(groupName, getAllCountersInGroup(groupName));
+    }
+    return counters.toString();
   }
 
   public MapReduceCounterData() {
-    _pubCounters = new HashMap<String, Map<String, Long>>(8);
+    this(true);
+  }
+
+  /**
+   * @param keepUnknownCounters Whether to keep the counters that are not in {@link CounterName} or drop them
+   */
+  public MapReduceCounterData(boolean keepUnknownCounters) {
+    _keepUnknownCounters = keepUnknownCounters;
   }
 
   /**
    * @return the value of the counter, 0 if not present.
    * This method is only used for job heuristics
-   * Due to h1 & h2 counter group incompatibility, we iterate every counter group (4 by default)
-   * to find a matching counter name, otherwise we have to hardcode the h1&h2 version of counter group
-   * and try twice with two names for each counter in this method.
-   * This approach is less efficient, but cleaner.
+   * Due to h1 & h2 counter group incompatibility, a counter of {@link CounterName} is matched by its name in any
+   * counter group, so there is no need to hardcode the h1&h2 version of counter group.
    */
   public long get(CounterName counterName) {
-    // For each counter group, try to match the counter name
-    for(Map<String, Long> counterGrp : _pubCounters.values()) {
-      if(counterGrp.containsKey(counterName._name)) {
-        return counterGrp.get(counterName._name);
-      }
-    }
-    return 0;
+    return _knownCounters[counterName.ordinal()];
   }
 
   public void set(CounterName counterName, long value) {
-    set(counterName.getGroupName(), counterName.getName(), value);
+    int index = counterName.ordinal();
+    if (_knownGroups[index] == null) {
+      _knownGroups[index] = counterName.getGroupName();
+    }
+    _knownCounters[index] = value;
   }
 
   /**
@@ -68,28 +87,57 @@ public class MapReduceCounterData {
    * @param value
    */
   public void set(String groupName, String counterName, long value) {
-    Map<String, Long> counterMap = _pubCounters.get(groupName);
+    CounterName knownCounter = CounterName._counterNameMap.get(counterName);
+    if (knownCounter != null) {
+      int index = knownCounter.ordinal();
+      // The first group with the counter name wins, the same counter name in another group is an unknown counter
+      if (_knownGroups[index] == null || _knownGroups[index].equals(groupName)) {
+        _knownGroups[index] = groupName;
+        _knownCounters[index] = value;
+        return;
+      }
+    }
+    if (!_keepUnknownCounters) {
+      return;
+    }
+    if (_otherCounters == null) {
+      _otherCounters = new HashMap<String, Map<String, Long>>(4);
+    }
+    Map<String, Long> counterMap = _otherCounters.get(groupName);
     if (counterMap == null) {
       counterMap = new HashMap<String, Long>(4);
-      _pubCounters.put(groupName, counterMap);
+      _otherCounters.put(groupName, counterMap);
     }
     counterMap.put(counterName, value);
   }
 
   public Set<String> getGroupNames() {
-    Set<String> groupNames = _pubCounters.keySet();
+    Set<String> groupNames = new HashSet<String>();
+    for (String groupName : _knownGroups) {
+      if (groupName != null) {
+        groupNames.add(groupName);
+      }
+    }
+    if (_otherCounters != null) {
+      groupNames.addAll(_otherCounters.keySet());
+    }
     return Collections.unmodifiableSet(groupNames);
   }
 
   /**
    * Get the values of all counters in a group
    * @param groupName
-   * @return A map containing all the values of counters in a group.
+   * @return A new map containing all the values of counters in a group.
    */
   public Map<String, Long> getAllCountersInGroup(String groupName) {
-    Map<String, Long> counterMap = _pubCounters.get(groupName);
-    if (counterMap == null) {
-      counterMap = new HashMap<String, Long>(1);
+    Map<String, Long> counterMap = new HashMap<String, Long>(4);
+    if (_otherCounters != null && _otherCounters.containsKey(groupName)) {
+      counterMap.putAll(_otherCounters.get(groupName));
+    }
+    for (int i = 0; i < COUNTER_NAMES.length; i++) {
+      if (_knownGroups[i] != null && _knownGroups[i].equals(groupName)) {
+        counterMap.put(COUNTER_NAMES[i]._name, _knownCounters[i]);
+      }
     }
     return counterMap;
   }
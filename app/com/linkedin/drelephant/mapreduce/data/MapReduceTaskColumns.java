@@ -0,0 +1,186 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.mapreduce.data;
+
+import com.linkedin.drelephant.mapreduce.data.MapReduceCounterData.CounterName;
+import java.util.Arrays;
+
+
+/**
+ * Columnar store of the counters and times of the sampled tasks of a job: one long[] per known counter, indexed by
+ * the counter name ordinal, and one long[] per time, all indexed by task. The columns only keep the counters of
+ * {@link CounterName}, a few hundred bytes per task without a {@link MapReduceCounterData} per task.
+ *
+ * The fetchers fill the columns once, then the heuristics scan whole columns. The arrays returned by the getters may
+ * be longer than the number of tasks, only their first {@link #size()} values are set.
+ */
+public class MapReduceTaskColumns {
+  private static final CounterName[] COUNTER_NAMES = CounterName.values();
+  private static final int DEFAULT_CAPACITY = 16;
+
+  private final long[][] _counters = new long[COUNTER_NAMES.length][];
+  private long[] _totalTimeMs;
+  private long[] _shuffleTimeMs;
+  private long[] _sortTimeMs;
+  private int _size = 0;
+
+  public MapReduceTaskColumns() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public MapReduceTaskColumns(int capacity) {
+    capacity = Math.max(capacity, 1);
+    for (int i = 0; i < _counters.length; i++) {
+      _counters[i] = new long[capacity];
+    }
+    _totalTimeMs = new long[capacity];
+    _shuffleTimeMs = new long[capacity];
+    _sortTimeMs = new long[capacity];
+  }
+
+  /**
+   * Build the columns of the sampled tasks of an array, in their order.
+   */
+  public static MapReduceTaskColumns fromTasks(MapReduceTaskData[] tasks) {
+    if (tasks == null) {
+      return new MapReduceTaskColumns();
+    }
+    int sampled = 0;
+    for (MapReduceTaskData task : tasks) {
+      if (task.isSampled()) {
+        sampled++;
+      }
+    }
+    MapReduceTaskColumns columns = new MapReduceTaskColumns(sampled);
+    for (MapReduceTaskData task : tasks) {
+      if (task.isSampled()) {
+        columns.add(task.getCounters(),
+            new long[] { task.getTotalRunTimeMs(), task.getShuffleTimeMs(), task.getSortTimeMs() });
+      }
+    }
+    return columns;
+  }
+
+  /**
+   * Add a task, its counters start at 0.
+   *
+   * @param time The total, shuffle and sort times in ms
+   * @return The index of the task
+   */
+  public int addTask(long[] time) {
+    if (_size == _totalTimeMs.length) {
+      int capacity = _size * 2;
+      for (int i = 0; i < _counters.length; i++) {
+        _counters[i] = Arrays.copyOf(_counters[i], capacity);
+      }
+      _totalTimeMs = Arrays.copyOf(_totalTimeMs, capacity);
+      _shuffleTimeMs = Arrays.copyOf(_shuffleTimeMs, capacity);
+      _sortTimeMs = Arrays.copyOf(_sortTimeMs, capacity);
+    }
+    _totalTimeMs[_size] = time[0];
+    _shuffleTimeMs[_size] = time[1];
+    _sortTimeMs[_size] = time[2];
+    return _size++;
+  }
+
+  /**
+   * Replace the task at an index, its counters are reset to 0. Used to keep a bounded sample of the tasks.
+   *
+   * @param time The total, shuffle and sort times in ms
+   */
+  public void setTask(int index, long[] time) {
+    for (int i = 0; i < _counters.length; i++) {
+      _counters[i][index] = 0;
+    }
+    _totalTimeMs[index] = time[0];
+    _shuffleTimeMs[index] = time[1];
+    _sortTimeMs[index] = time[2];
+  }
+
+  /**
+   * Add a task with the known counters of the holder, looked up the same way as {@link MapReduceCounterData#get}.
+   *
+   * @return The index of the task
+   */
+  public int add(MapReduceCounterData counterHolder, long[] time) {
+    int index = addTask(time);
+    if (counterHolder != null) {
+      for (CounterName counterName : COUNTER_NAMES) {
+        _counters[counterName.ordinal()][index] = counterHolder.get(counterName);
+      }
+    }
+    return index;
+  }
+
+  public void setCounter(int index, CounterName counterName, long value) {
+    _counters[counterName.ordinal()][index] = value;
+  }
+
+  /**
+   * @return The number of tasks
+   */
+  public int size() {
+    return _size;
+  }
+
+  /**
+   * @return The values of the counter, indexed by task
+   */
+  public long[] getCounter(CounterName counterName) {
+    return _counters[counterName.ordinal()];
+  }
+
+  public long getCounter(int index, CounterName counterName) {
+    return _counters[counterName.ordinal()][index];
+  }
+
+  /**
+   * Rebuild a counter holder for one task, with the known counters only.
+   */
+  public MapReduceCounterData getCounters(int index) {
+    MapReduceCounterData counterHolder = new MapReduceCounterData();
+    for (CounterName counterName : COUNTER_NAMES) {
+      counterHolder.set(counterName, _counters[counterName.ordinal()][index]);
+    }
+    return counterHolder;
+  }
+
+  /**
+   * @return The total run times in ms, indexed by task
+   */
+  public long[] getTotalRunTimeMs() {
+    return _totalTimeMs;
+  }
+
+  /**
+   * @return The shuffle times in ms, indexed by task
+   */
+  public long[] getShuffleTimeMs() {
+    return _shuffleTimeMs;
+  }
+
+  /**
+   * @return The sort times in ms, indexed by task
+   */
+  public long[] getSortTimeMs() {
+    return _sortTimeMs;
+  }
+
+  public long getCodeExecutionTimeMs(int index) {
+    return _totalTimeMs[index] - _shuffleTimeMs[index] - _sortTimeMs[index];
+  }
+}
@@ -29,6 +29,9 @@ public class MapReduceTaskData {
   private long _shuffleTimeMs = 0;
   private long _sortTimeMs = 0;
   private boolean _sampled = false;
+  // Set when the counters and times of the task are kept in the columns of the job rather than in this object
+  private MapReduceTaskColumns _columns;
+  private int _index;
 
   public MapReduceTaskData(MapReduceCounterData counterHolder, long[] time) {
     this._counterHolder = counterHolder;
@@ -47,6 +50,17 @@ public class MapReduceTaskData {
     this._attemptId = taskAttemptId;
   }
 
+  /**
+   * A task whose counters and times are read from the row of the columns at index.
+   */
+  public MapReduceTaskData(String taskId, String taskAttemptId, MapReduceTaskColumns columns, int index) {
+    this._taskId = taskId;
+    this._attemptId = taskAttemptId;
+    this._columns = columns;
+    this._index = index;
+    this._sampled = true;
+  }
+
   public void setCounter(MapReduceCounterData counterHolder) {
     this._counterHolder = counterHolder;
     this._sampled = true;
@@ -59,24 +73,27 @@ public class MapReduceTaskData {
     this._sampled = true;
   }
 
+  /**
+   * @return The counters. For a task kept in columns, a new holder of the known counters on each call.
+   */
   public MapReduceCounterData getCounters() {
-    return _counterHolder;
+    return _columns != null ? _columns.getCounters(_index) : _counterHolder;
   }
 
   public long getTotalRunTimeMs() {
-    return _totalTimeMs;
+    return _columns != null ? _columns.getTotalRunTimeMs()[_index] : _totalTimeMs;
   }
 
   public long getCodeExecutionTimeMs() {
-    return _totalTimeMs - _shuffleTimeMs - _sortTimeMs;
+    return getTotalRunTimeMs() - getShuffleTimeMs() - getSortTimeMs();
   }
 
   public long getShuffleTimeMs() {
-    return _shuffleTimeMs;
+    return _columns != null ? _columns.getShuffleTimeMs()[_index] : _shuffleTimeMs;
   }
 
   public long getSortTimeMs() {
-    return _sortTimeMs;
+    return _columns != null ? _columns.getSortTimeMs()[_index] : _sortTimeMs;
   }
 
   public boolean isSampled() {
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.mapreduce.data;
+
+import com.linkedin.drelephant.mapreduce.data.MapReduceCounterData.CounterName;
+import com.linkedin.drelephant.math.QuantileSketch;
+import java.util.EnumMap;
+import java.util.Map;
+
+
+/**
+ * Quantile sketches of the run times and of the distribution counters over every task of a job. They summarize the
+ * columns of the job in a few thousand values per sketch, and still cover every task when the fetcher only keeps a
+ * sample of them in the columns.
+ */
+public class MapReduceTaskSketches {
+  // The counters read by the time, memory and data skew heuristics
+  private static final CounterName[] SKETCHED_COUNTERS = { CounterName.HDFS_BYTES_READ,
+      CounterName.REDUCE_SHUFFLE_BYTES, CounterName.PHYSICAL_MEMORY_BYTES, CounterName.VIRTUAL_MEMORY_BYTES };
+
+  private final QuantileSketch _totalTimeMs = new QuantileSketch();
+  private final Map<CounterName, QuantileSketch> _counters =
+      new EnumMap<CounterName, QuantileSketch>(CounterName.class);
+
+  public MapReduceTaskSketches() {
+    for (CounterName counterName : SKETCHED_COUNTERS) {
+      _counters.put(counterName, new QuantileSketch());
+    }
+  }
+
+  /**
+   * Add a task
+   *
+   * @param totalTimeMs The total run time of the task
+   * @param counters The counters of the task indexed by the counter name ordinal, 0 when not set
+   */
+  public void add(long totalTimeMs, long[] counters) {
+    _totalTimeMs.update(totalTimeMs);
+    for (Map.Entry<CounterName, QuantileSketch> entry : _counters.entrySet()) {
+      entry.getValue().update(counters[entry.getKey().ordinal()]);
+    }
+  }
+
+  /**
+   * @return The number of tasks
+   */
+  public long getCount() {
+    return _totalTimeMs.getCount();
+  }
+
+  /**
+   * @return The total run times in ms of the tasks
+   */
+  public QuantileSketch getTotalRunTimeMs() {
+    return _totalTimeMs;
+  }
+
+  /**
+   * @return The values of the counter over the tasks
+   * @throws IllegalArgumentException if the counter is not sketched
+   */
+  public QuantileSketch getCounter(CounterName counterName) {
+    QuantileSketch sketch = _counters.get(counterName);
+    if (sketch == null) {
+      throw new IllegalArgumentException("The counter " + counterName + " is not sketched");
+    }
+    return sketch;
+  }
+}
@@ -16,22 +16,23 @@
 
 package com.linkedin.drelephant.mapreduce.heuristics;
 
-import com.google.common.primitives.Longs;
 import com.linkedin.drelephant.analysis.HDFSContext;
 import com.linkedin.drelephant.analysis.Heuristic;
 import com.linkedin.drelephant.analysis.HeuristicResult;
+import com.linkedin.drelephant.analysis.MetricUnit;
 import com.linkedin.drelephant.analysis.Severity;
 import com.linkedin.drelephant.mapreduce.data.MapReduceCounterData;
 import com.linkedin.drelephant.mapreduce.data.MapReduceApplicationData;
+import com.linkedin.drelephant.mapreduce.data.MapReduceTaskColumns;
 import com.linkedin.drelephant.mapreduce.data.MapReduceTaskData;
+import com.linkedin.drelephant.mapreduce.data.MapReduceTaskSketches;
+import com.linkedin.drelephant.math.QuantileSketch;
 import com.linkedin.drelephant.math.Statistics;
 
 import com.linkedin.drelephant.configurations.heuristic.HeuristicConfigurationData;
 import com.linkedin.drelephant.util.Utils;
 import java.util.Arrays;
-import java.util.ArrayList;
 import java.util.Map;
-import java.util.List;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Logger;
@@ -47,11 +48,13 @@ public abstract class GenericDataSkewHeuristic implements Heuristic<MapReduceApp
   private static final String NUM_TASKS_SEVERITY = "num_tasks_severity";
   private static final String DEVIATION_SEVERITY = "deviation_severity";
   private static final String FILES_SEVERITY = "files_severity";
+  private static final String QUANTILE_SKETCH = "quantile_sketch";
 
   // Default value of parameters
   private double[] numTasksLimits = {10, 50, 100, 200};   // Number of map or reduce tasks
   private double[] deviationLimits = {2, 4, 8, 16};       // Deviation in i/p bytes btw 2 groups
   private double[] filesLimits = {1d/8, 1d/4, 1d/2, 1d};  // Fraction of HDFS Block Size
+  private boolean quantileSketch = false;                 // Read the sketches of every task when fetched
 
   private MapReduceCounterData.CounterName _counterName;
   private HeuristicConfigurationData _heuristicConfData;
@@ -83,6 +86,9 @@ public abstract class GenericDataSkewHeuristic implements Heuristic<MapReduceApp
     for (int i = 0; i < filesLimits.length; i++) {
       filesLimits[i] = filesLimits[i] * HDFSContext.HDFS_BLOCK_SIZE;
     }
+
+    quantileSketch = Boolean.parseBoolean(paramMap.get(QUANTILE_SKETCH));
+    logger.info(heuristicName + " will use " + QUANTILE_SKETCH + ": " + quantileSketch);
   }
 
   protected GenericDataSkewHeuristic(MapReduceCounterData.CounterName counterName,
@@ -95,6 +101,10 @@ public abstract class GenericDataSkewHeuristic implements Heuristic<MapReduceApp
 
   protected abstract MapReduceTaskData[] getTasks(MapReduceApplicationData data);
 
+  protected abstract MapReduceTaskColumns getTaskColumns(MapReduceApplicationData data);
+
+  protected abstract MapReduceTaskSketches getTaskSketches(MapReduceApplicationData data);
+
   @Override
   public HeuristicConfigurationData getHeuristicConfData() {
     return _heuristicConfData;
@@ -108,24 +118,36 @@ public abstract class GenericDataSkewHeuristic implements Heuristic<MapReduceApp
     }
 
     MapReduceTaskData[] tasks = getTasks(data);
-
-    //Gather data
-    List<Long> inputBytes = new ArrayList<Long>();
-
-    for (int i = 0; i < tasks.length; i++) {
-      if (tasks[i].isSampled()) {
-        inputBytes.add(tasks[i].getCounters().get(_counterName));
-      }
+    MapReduceTaskColumns columns = getTaskColumns(data);
+    int sampled = columns.size();
+    long[] inputBytes = columns.getCounter(_counterName);
+    MapReduceTaskSketches sketches = getTaskSketches(data);
+
+    long groupA;
+    long groupB;
+    long avg1;
+    long avg2;
+    QuantileSketch inputBytesSketch = null;
+    if (quantileSketch && sketches != null && sketches.getCount() > sampled) {
+      //Analyze every task, the groups are split by the middle and their sizes and averages are estimated by the sketch
+      inputBytesSketch = sketches.getCounter(_counterName);
+      long middle = Statistics.findTwoGroupsMiddle(inputBytesSketch);
+      long[] groupSizes = inputBytesSketch.getHistogram(middle);
+      long[] groupAverages = inputBytesSketch.getMeans(middle);
+      groupA = groupSizes[0];
+      groupB = groupSizes[1];
+      avg1 = groupAverages[0];
+      avg2 = groupAverages[1];
+    } else {
+      //Analyze data on a copy of the column, group A is inputBytes[0, split) and group B is inputBytes[split, sampled)
+      inputBytes = Arrays.copyOf(inputBytes, sampled);
+      int split = Statistics.partitionTwoGroups(inputBytes, 0, sampled);
+      groupA = split;
+      groupB = sampled - split;
+      avg1 = Statistics.average(inputBytes, 0, split);
+      avg2 = Statistics.average(inputBytes, split, sampled);
     }
 
-    // Ratio of total tasks / sampled tasks
-    double scale = ((double)tasks.length) / inputBytes.size();
-    //Analyze data. TODO: This is a temp fix. findTwogroups should support list as input
-    long[][] groups = Statistics.findTwoGroups(Longs.toArray(inputBytes));
-
-    long avg1 = Statistics.average(groups[0]);
-    long avg2 = Statistics.average(groups[1]);
-
     long min = Math.min(avg1, avg2);
     long diff = Math.abs(avg2 - avg1);
 
@@ -136,14 +158,25 @@ public abstract class GenericDataSkewHeuristic implements Heuristic<MapReduceApp
 
     //This reduces severity if number of tasks is insignificant
     severity = Severity.min(severity, Severity.getSeverityAscending(
-        groups[0].length, numTasksLimits[0], numTasksLimits[1], numTasksLimits[2], numTasksLimits[3]));
+        groupA, numTasksLimits[0], numTasksLimits[1], numTasksLimits[2], numTasksLimits[3]));
 
     HeuristicResult result = new HeuristicResult(_heuristicConfData.getClassName(),
         _heuristicConfData.getHeuristicName(), severity, Utils.getHeuristicScore(severity, tasks.length));
 
     result.addResultDetail("Number of tasks", Integer.toString(tasks.length));
-    result.addResultDetail("Group A", groups[0].length + " tasks @ " + FileUtils.byteCountToDisplaySize(avg1) + " avg");
-    result.addResultDetail("Group B", groups[1].length + " tasks @ " + FileUtils.byteCountToDisplaySize(avg2) + " avg");
+    result.addResultDetail("Group A", groupA + " tasks @ " + FileUtils.byteCountToDisplaySize(avg1) + " avg");
+    result.addResultDetail("Group B", groupB + " tasks @ " + FileUtils.byteCountToDisplaySize(avg2) + " avg");
+    result.addResultMetric("Number of tasks", MetricUnit.COUNT, tasks.length);
+    result.addResultMetric("Group A tasks", MetricUnit.COUNT, groupA);
+    result.addResultMetric("Group A avg input size", MetricUnit.BYTES, avg1);
+    result.addResultMetric("Group B tasks", MetricUnit.COUNT, groupB);
+    result.addResultMetric("Group B avg input size", MetricUnit.BYTES, avg2);
+    if (inputBytesSketch != null) {
+      result.addResultQuantiles("Task input size", MetricUnit.BYTES, inputBytesSketch);
+    } else if (quantileSketch) {
+      // Few enough tasks to be all in the columns, their percentiles are exact
+      result.addResultPercentiles("Task input size", MetricUnit.BYTES, inputBytes, sampled);
+    }
 
     return result;
   }
@@ -18,14 +18,14 @@ package com.linkedin.drelephant.mapreduce.heuristics;
 
 import com.linkedin.drelephant.configurations.heuristic.HeuristicConfigurationData;
 import com.linkedin.drelephant.util.Utils;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 import com.linkedin.drelephant.analysis.Heuristic;
 import com.linkedin.drelephant.analysis.HeuristicResult;
+import com.linkedin.drelephant.analysis.MetricUnit;
 import com.linkedin.drelephant.analysis.Severity;
 import com.linkedin.drelephant.mapreduce.data.MapReduceCounterData;
 import com.linkedin.drelephant.mapreduce.data.MapReduceApplicationData;
+import com.linkedin.drelephant.mapreduce.data.MapReduceTaskColumns;
 import com.linkedin.drelephant.mapreduce.data.MapReduceTaskData;
 import com.linkedin.drelephant.math.Statistics;
 import java.util.Map;
@@ -78,6 +78,8 @@ public abstract class GenericGCHeuristic implements Heuristic<MapReduceApplicati
 
   protected abstract MapReduceTaskData[] getTasks(MapReduceApplicationData data);
 
+  protected abstract MapReduceTaskColumns getTaskColumns(MapReduceApplicationData data);
+
   @Override
   public HeuristicConfigurationData getHeuristicConfData() {
     return _heuristicConfData;
@@ -91,21 +93,15 @@ public abstract class GenericGCHeuristic implements Heuristic<MapReduceApplicati
     }
 
     MapReduceTaskData[] tasks = getTasks(data);
-    List<Long> gcMs = new ArrayList<Long>();
-    List<Long> cpuMs = new ArrayList<Long>();
-    List<Long> runtimesMs = new ArrayList<Long>();
-
-    for (MapReduceTaskData task : tasks) {
-      if (task.isSampled()) {
-        runtimesMs.add(task.getTotalRunTimeMs());
-        gcMs.add(task.getCounters().get(MapReduceCounterData.CounterName.GC_MILLISECONDS));
-        cpuMs.add(task.getCounters().get(MapReduceCounterData.CounterName.CPU_MILLISECONDS));
-      }
-    }
+    MapReduceTaskColumns columns = getTaskColumns(data);
+    int sampled = columns.size();
+
+    long[] cpuMs = columns.getCounter(MapReduceCounterData.CounterName.CPU_MILLISECONDS);
+    long[] gcMs = columns.getCounter(MapReduceCounterData.CounterName.GC_MILLISECONDS);
 
-    long avgRuntimeMs = Statistics.average(runtimesMs);
-    long avgCpuMs = Statistics.average(cpuMs);
-    long avgGcMs = Statistics.average(gcMs);
+    long avgRuntimeMs = Statistics.average(columns.getTotalRunTimeMs(), 0, sampled);
+    long avgCpuMs = Statistics.average(cpuMs, 0, sampled);
+    long avgGcMs = Statistics.average(gcMs, 0, sampled);
     double ratio = avgCpuMs != 0 ? avgGcMs*(1.0)/avgCpuMs: 0;
 
     Severity severity;
@@ -123,6 +119,11 @@ public abstract class GenericGCHeuristic implements Heuristic<MapReduceApplicati
     result.addResultDetail("Avg task CPU time (ms)", Long.toString(avgCpuMs));
     result.addResultDetail("Avg task GC time (ms)", Long.toString(avgGcMs));
     result.addResultDetail("Task GC/CPU ratio", Double.toString(ratio));
+    result.addResultMetric("Number of tasks", MetricUnit.COUNT, tasks.length);
+    result.addResultMetric("Avg task runtime", MetricUnit.MILLISECONDS, avgRuntimeMs);
+    result.addResultMetric("Avg task CPU time", MetricUnit.MILLISECONDS, avgCpuMs);
+    result.addResultMetric("Avg task GC time", MetricUnit.MILLISECONDS, avgGcMs);
+    result.addResultMetric("Task GC/CPU ratio", MetricUnit.RATIO, ratio);
     return result;
   }
 
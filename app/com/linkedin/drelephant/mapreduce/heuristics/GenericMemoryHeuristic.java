@@ -18,15 +18,17 @@ package com.linkedin.drelephant.mapreduce.heuristics;
 
 import com.linkedin.drelephant.configurations.heuristic.HeuristicConfigurationData;
 import com.linkedin.drelephant.util.Utils;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 import com.linkedin.drelephant.analysis.Heuristic;
 import com.linkedin.drelephant.analysis.HeuristicResult;
+import com.linkedin.drelephant.analysis.MetricUnit;
 import com.linkedin.drelephant.analysis.Severity;
 import com.linkedin.drelephant.mapreduce.data.MapReduceCounterData;
 import com.linkedin.drelephant.mapreduce.data.MapReduceApplicationData;
+import com.linkedin.drelephant.mapreduce.data.MapReduceTaskColumns;
 import com.linkedin.drelephant.mapreduce.data.MapReduceTaskData;
+import com.linkedin.drelephant.mapreduce.data.MapReduceTaskSketches;
+import com.linkedin.drelephant.math.QuantileSketch;
 import com.linkedin.drelephant.math.Statistics;
 
 import java.util.Map;
@@ -45,10 +47,12 @@ public abstract class GenericMemoryHeuristic implements Heuristic<MapReduceAppli
   private static final String MEM_RATIO_SEVERITY = "memory_ratio_severity";
   private static final String CONTAINER_MEM_SEVERITY = "container_memory_severity";
   private static final String CONTAINER_MEM_DEFAULT_MB = "container_memory_default_mb";
+  private static final String QUANTILE_SKETCH = "quantile_sketch";
 
   // Default value of parameters
   private double[] memRatioLimits = {0.6d, 0.5d, 0.4d, 0.3d}; // Avg Physical Mem of Tasks / Container Mem
   private double[] memoryLimits = {1.1d, 1.5d, 2.0d, 2.5d};   // Container Memory Severity Limits
+  private boolean quantileSketch = false;                     // Read the sketches of every task when fetched
 
   private String _containerMemConf;
   private HeuristicConfigurationData _heuristicConfData;
@@ -80,6 +84,9 @@ public abstract class GenericMemoryHeuristic implements Heuristic<MapReduceAppli
     for (int i = 0; i < memoryLimits.length; i++) {
       memoryLimits[i] = memoryLimits[i] * containerMemDefaultBytes;
     }
+
+    quantileSketch = Boolean.parseBoolean(paramMap.get(QUANTILE_SKETCH));
+    logger.info(heuristicName + " will use " + QUANTILE_SKETCH + ": " + quantileSketch);
   }
 
   protected GenericMemoryHeuristic(String containerMemConf, HeuristicConfigurationData heuristicConfData) {
@@ -91,6 +98,10 @@ public abstract class GenericMemoryHeuristic implements Heuristic<MapReduceAppli
 
   protected abstract MapReduceTaskData[] getTasks(MapReduceApplicationData data);
 
+  protected abstract MapReduceTaskColumns getTaskColumns(MapReduceApplicationData data);
+
+  protected abstract MapReduceTaskSketches getTaskSketches(MapReduceApplicationData data);
+
   @Override
   public HeuristicConfigurationData getHeuristicConfData() {
     return _heuristicConfData;
@@ -124,30 +135,41 @@ public abstract class GenericMemoryHeuristic implements Heuristic<MapReduceAppli
     containerMem *= FileUtils.ONE_MB;
 
     MapReduceTaskData[] tasks = getTasks(data);
-    List<Long> taskPMems = new ArrayList<Long>();
-    List<Long> taskVMems = new ArrayList<Long>();
-    List<Long> runtimesMs = new ArrayList<Long>();
+    MapReduceTaskColumns columns = getTaskColumns(data);
+    int sampled = columns.size();
+    long[] taskPMems = columns.getCounter(MapReduceCounterData.CounterName.PHYSICAL_MEMORY_BYTES);
+    long[] taskVMems = columns.getCounter(MapReduceCounterData.CounterName.VIRTUAL_MEMORY_BYTES);
+    long[] runtimesMs = columns.getTotalRunTimeMs();
+    MapReduceTaskSketches sketches = getTaskSketches(data);
     long taskPMin = Long.MAX_VALUE;
     long taskPMax = 0;
-    for (MapReduceTaskData task : tasks) {
-      if (task.isSampled()) {
-        runtimesMs.add(task.getTotalRunTimeMs());
-        long taskPMem = task.getCounters().get(MapReduceCounterData.CounterName.PHYSICAL_MEMORY_BYTES);
-        long taskVMem = task.getCounters().get(MapReduceCounterData.CounterName.VIRTUAL_MEMORY_BYTES);
-        taskPMems.add(taskPMem);
-        taskPMin = Math.min(taskPMin, taskPMem);
-        taskPMax = Math.max(taskPMax, taskPMem);
-        taskVMems.add(taskVMem);
+    long taskPMemAvg;
+    long taskVMemAvg;
+    long averageTimeMs;
+    QuantileSketch taskPMemSketch = null;
+
+    if (quantileSketch && sketches != null && sketches.getCount() > sampled) {
+      // The columns only hold a sample of the tasks, the sketches summarize all of them
+      taskPMemSketch = sketches.getCounter(MapReduceCounterData.CounterName.PHYSICAL_MEMORY_BYTES);
+      taskPMin = taskPMemSketch.getMin();
+      taskPMax = taskPMemSketch.getMax();
+      taskPMemAvg = taskPMemSketch.getMean();
+      taskVMemAvg = sketches.getCounter(MapReduceCounterData.CounterName.VIRTUAL_MEMORY_BYTES).getMean();
+      averageTimeMs = sketches.getTotalRunTimeMs().getMean();
+    } else {
+      for (int i = 0; i < sampled; i++) {
+        taskPMin = Math.min(taskPMin, taskPMems[i]);
+        taskPMax = Math.max(taskPMax, taskPMems[i]);
       }
-    }
 
-    if(taskPMin == Long.MAX_VALUE) {
-      taskPMin = 0;
-    }
+      if(taskPMin == Long.MAX_VALUE) {
+        taskPMin = 0;
+      }
 
-    long taskPMemAvg = Statistics.average(taskPMems);
-    long taskVMemAvg = Statistics.average(taskVMems);
-    long averageTimeMs = Statistics.average(runtimesMs);
+      taskPMemAvg = Statistics.average(taskPMems, 0, sampled);
+      taskVMemAvg = Statistics.average(taskVMems, 0, sampled);
+      averageTimeMs = Statistics.average(runtimesMs, 0, sampled);
+    }
 
     Severity severity;
     if (tasks.length == 0) {
@@ -166,6 +188,20 @@ public abstract class GenericMemoryHeuristic implements Heuristic<MapReduceAppli
     result.addResultDetail("Min Physical Memory (MB)", Long.toString(taskPMin / FileUtils.ONE_MB));
     result.addResultDetail("Avg Virtual Memory (MB)", Long.toString(taskVMemAvg / FileUtils.ONE_MB));
     result.addResultDetail("Requested Container Memory", FileUtils.byteCountToDisplaySize(containerMem));
+    // The metrics keep the bytes, their unit formats them
+    result.addResultMetric("Number of tasks", MetricUnit.COUNT, tasks.length);
+    result.addResultMetric("Avg task runtime", MetricUnit.MILLISECONDS, averageTimeMs);
+    result.addResultMetric("Avg Physical Memory", MetricUnit.BYTES, taskPMemAvg);
+    result.addResultMetric("Max Physical Memory", MetricUnit.BYTES, taskPMax);
+    result.addResultMetric("Min Physical Memory", MetricUnit.BYTES, taskPMin);
+    result.addResultMetric("Avg Virtual Memory", MetricUnit.BYTES, taskVMemAvg);
+    result.addResultMetric("Requested Container Memory", MetricUnit.BYTES, containerMem);
+    if (taskPMemSketch != null) {
+      result.addResultQuantiles("Task physical memory", MetricUnit.BYTES, taskPMemSketch);
+    } else if (quantileSketch) {
+      // Few enough tasks to be all in the columns, their percentiles are exact
+      result.addResultPercentiles("Task physical memory", MetricUnit.BYTES, taskPMems, sampled);
+    }
 
     return result;
   }
@@ -24,6 +24,7 @@ import java.util.concurrent.TimeUnit;
 
 import com.linkedin.drelephant.analysis.Heuristic;
 import com.linkedin.drelephant.analysis.HeuristicResult;
+import com.linkedin.drelephant.analysis.MetricUnit;
 import com.linkedin.drelephant.analysis.Severity;
 
 
@@ -63,6 +64,8 @@ public class JobQueueLimitHeuristic implements Heuristic<MapReduceApplicationDat
       result.addResultDetail("Queue: ", queueName, null);
       result.addResultDetail("Number of Map tasks", Integer.toString(mapTasks.length));
       result.addResultDetail("Number of Reduce tasks", Integer.toString(redTasks.length));
+      result.addResultMetric("Number of Map tasks", MetricUnit.COUNT, mapTasks.length);
+      result.addResultMetric("Number of Reduce tasks", MetricUnit.COUNT, redTasks.length);
 
       // Calculate Severity of Mappers
       mapTasksSeverity = getTasksSeverity(mapTasks, queueTimeoutLimitMs);
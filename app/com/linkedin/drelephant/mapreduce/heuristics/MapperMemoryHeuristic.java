@@ -17,7 +17,9 @@
 package com.linkedin.drelephant.mapreduce.heuristics;
 
 import com.linkedin.drelephant.mapreduce.data.MapReduceApplicationData;
+import com.linkedin.drelephant.mapreduce.data.MapReduceTaskColumns;
 import com.linkedin.drelephant.mapreduce.data.MapReduceTaskData;
+import com.linkedin.drelephant.mapreduce.data.MapReduceTaskSketches;
 import com.linkedin.drelephant.configurations.heuristic.HeuristicConfigurationData;
 
 
@@ -32,4 +34,14 @@ public class MapperMemoryHeuristic extends GenericMemoryHeuristic {
   protected MapReduceTaskData[] getTasks(MapReduceApplicationData data) {
     return data.getMapperData();
   }
+
+  @Override
+  protected MapReduceTaskColumns getTaskColumns(MapReduceApplicationData data) {
+    return data.getMapperColumns();
+  }
+
+  @Override
+  protected MapReduceTaskSketches getTaskSketches(MapReduceApplicationData data) {
+    return data.getMapperSketches();
+  }
 }
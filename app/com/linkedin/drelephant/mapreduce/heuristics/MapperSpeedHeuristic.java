@@ -21,14 +21,14 @@ import com.linkedin.drelephant.mapreduce.data.MapReduceCounterData;
 
 import com.linkedin.drelephant.configurations.heuristic.HeuristicConfigurationData;
 import com.linkedin.drelephant.util.Utils;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 
 import com.linkedin.drelephant.analysis.HDFSContext;
 import com.linkedin.drelephant.analysis.Heuristic;
 import com.linkedin.drelephant.analysis.HeuristicResult;
+import com.linkedin.drelephant.analysis.MetricUnit;
 import com.linkedin.drelephant.analysis.Severity;
+import com.linkedin.drelephant.mapreduce.data.MapReduceTaskColumns;
 import com.linkedin.drelephant.mapreduce.data.MapReduceTaskData;
 import com.linkedin.drelephant.math.Statistics;
 
@@ -93,21 +93,18 @@ public class MapperSpeedHeuristic implements Heuristic<MapReduceApplicationData>
     }
 
     MapReduceTaskData[] tasks = data.getMapperData();
-
-    List<Long> inputByteSizes = new ArrayList<Long>();
-    List<Long> speeds = new ArrayList<Long>();
-    List<Long> runtimesMs = new ArrayList<Long>();
-
-    for (MapReduceTaskData task : tasks) {
-
-      if (task.isSampled()) {
-        long inputBytes = task.getCounters().get(MapReduceCounterData.CounterName.HDFS_BYTES_READ);
-        long runtimeMs = task.getTotalRunTimeMs();
-        inputByteSizes.add(inputBytes);
-        runtimesMs.add(runtimeMs);
-        //Speed is bytes per second
-        speeds.add((1000 * inputBytes) / (runtimeMs));
-      }
+    MapReduceTaskColumns columns = data.getMapperColumns();
+    int sampled = columns.size();
+
+    // The medians reorder their input, so they work on copies of the columns
+    long[] inputByteSizes =
+        Arrays.copyOf(columns.getCounter(MapReduceCounterData.CounterName.HDFS_BYTES_READ), sampled);
+    long[] runtimesMs = Arrays.copyOf(columns.getTotalRunTimeMs(), sampled);
+    long[] speeds = new long[sampled];
+
+    for (int i = 0; i < sampled; i++) {
+      //Speed is bytes per second
+      speeds[i] = (1000 * inputByteSizes[i]) / (runtimesMs[i]);
     }
 
     long medianSpeed;
@@ -115,9 +112,9 @@ public class MapperSpeedHeuristic implements Heuristic<MapReduceApplicationData>
     long medianRuntimeMs;
 
     if (tasks.length != 0) {
-      medianSpeed = Statistics.median(speeds);
-      medianSize = Statistics.median(inputByteSizes);
-      medianRuntimeMs = Statistics.median(runtimesMs);
+      medianSpeed = Statistics.median(speeds, 0, sampled);
+      medianSize = Statistics.median(inputByteSizes, 0, sampled);
+      medianRuntimeMs = Statistics.median(runtimesMs, 0, sampled);
     } else {
       medianSpeed = 0;
       medianSize = 0;
@@ -136,6 +133,11 @@ public class MapperSpeedHeuristic implements Heuristic<MapReduceApplicationData>
     result.addResultDetail("Median task input size", FileUtils.byteCountToDisplaySize(medianSize));
     result.addResultDetail("Median task runtime", Statistics.readableTimespan(medianRuntimeMs));
     result.addResultDetail("Median task speed", FileUtils.byteCountToDisplaySize(medianSpeed) + "/s");
+    result.addResultMetric("Number of tasks", MetricUnit.COUNT, tasks.length);
+    result.addResultMetric("Median task input size", MetricUnit.BYTES, medianSize);
+    result.addResultMetric("Median task runtime", MetricUnit.MILLISECONDS, medianRuntimeMs);
+    // Bytes per second
+    result.addResultMetric("Median task speed", MetricUnit.BYTES, medianSpeed);
 
     return result;
   }
@@ -18,8 +18,10 @@ package com.linkedin.drelephant.mapreduce.heuristics;
 
 import com.linkedin.drelephant.analysis.Heuristic;
 import com.linkedin.drelephant.analysis.HeuristicResult;
+import com.linkedin.drelephant.analysis.MetricUnit;
 import com.linkedin.drelephant.analysis.Severity;
 import com.linkedin.drelephant.mapreduce.data.MapReduceCounterData;
+import com.linkedin.drelephant.mapreduce.data.MapReduceTaskColumns;
 import com.linkedin.drelephant.mapreduce.data.MapReduceTaskData;
 import com.linkedin.drelephant.mapreduce.data.MapReduceApplicationData;
 import com.linkedin.drelephant.configurations.heuristic.HeuristicConfigurationData;
@@ -83,17 +85,17 @@ public class MapperSpillHeuristic implements Heuristic<MapReduceApplicationData>
     }
 
     MapReduceTaskData[] tasks = data.getMapperData();
+    MapReduceTaskColumns columns = data.getMapperColumns();
+    long[] spills = columns.getCounter(MapReduceCounterData.CounterName.SPILLED_RECORDS);
+    long[] outputRecords = columns.getCounter(MapReduceCounterData.CounterName.MAP_OUTPUT_RECORDS);
 
     long totalSpills = 0;
     long totalOutputRecords = 0;
     double ratioSpills = 0.0;
 
-    for (MapReduceTaskData task : tasks) {
-
-      if (task.isSampled()) {
-        totalSpills += task.getCounters().get(MapReduceCounterData.CounterName.SPILLED_RECORDS);
-        totalOutputRecords += task.getCounters().get(MapReduceCounterData.CounterName.MAP_OUTPUT_RECORDS);
-      }
+    for (int i = 0; i < columns.size(); i++) {
+      totalSpills += spills[i];
+      totalOutputRecords += outputRecords[i];
     }
 
     //If both totalSpills and totalOutputRecords are zero then set ratioSpills to zero.
@@ -118,6 +120,12 @@ public class MapperSpillHeuristic implements Heuristic<MapReduceApplicationData>
     result.addResultDetail("Avg output records per task",
         tasks.length == 0 ? "0" : Long.toString(totalOutputRecords / tasks.length));
     result.addResultDetail("Ratio of spilled records to output records", Double.toString(ratioSpills));
+    result.addResultMetric("Number of tasks", MetricUnit.COUNT, tasks.length);
+    result.addResultMetric("Avg spilled records per task", MetricUnit.COUNT,
+        tasks.length == 0 ? 0 : totalSpills / tasks.length);
+    result.addResultMetric("Avg output records per task", MetricUnit.COUNT,
+        tasks.length == 0 ? 0 : totalOutputRecords / tasks.length);
+    result.addResultMetric("Ratio of spilled records to output records", MetricUnit.RATIO, ratioSpills);
 
     return result;
 
@@ -20,14 +20,16 @@ import com.linkedin.drelephant.mapreduce.data.MapReduceApplicationData;
 import com.linkedin.drelephant.mapreduce.data.MapReduceCounterData;
 import com.linkedin.drelephant.configurations.heuristic.HeuristicConfigurationData;
 import com.linkedin.drelephant.util.Utils;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 
 import com.linkedin.drelephant.analysis.Heuristic;
 import com.linkedin.drelephant.analysis.HeuristicResult;
+import com.linkedin.drelephant.analysis.MetricUnit;
 import com.linkedin.drelephant.analysis.Severity;
+import com.linkedin.drelephant.mapreduce.data.MapReduceTaskColumns;
 import com.linkedin.drelephant.mapreduce.data.MapReduceTaskData;
+import com.linkedin.drelephant.mapreduce.data.MapReduceTaskSketches;
+import com.linkedin.drelephant.math.QuantileSketch;
 import com.linkedin.drelephant.math.Statistics;
 
 import java.util.Map;
@@ -42,11 +44,13 @@ public class MapperTimeHeuristic implements Heuristic<MapReduceApplicationData>
   private static final String SHORT_RUNTIME_SEVERITY = "short_runtime_severity_in_min";
   private static final String LONG_RUNTIME_SEVERITY = "long_runtime_severity_in_min";
   private static final String NUM_TASKS_SEVERITY = "num_tasks_severity";
+  private static final String QUANTILE_SKETCH = "quantile_sketch";
 
   // Default value of parameters
   private double[] shortRuntimeLimits = {10, 4, 2, 1};     // Limits(ms) for tasks with shorter runtime
   private double[] longRuntimeLimits = {15, 30, 60, 120};  // Limits(ms) for tasks with longer runtime
   private double[] numTasksLimits = {50, 101, 500, 1000};  // Number of Map tasks.
+  private boolean quantileSketch = false;                  // Read the sketches of every task when fetched
 
   private HeuristicConfigurationData _heuristicConfData;
 
@@ -80,6 +84,9 @@ public class MapperTimeHeuristic implements Heuristic<MapReduceApplicationData>
     }
     logger.info(heuristicName + " will use " + NUM_TASKS_SEVERITY + " with the following threshold settings: " + Arrays
         .toString(numTasksLimits));
+
+    quantileSketch = Boolean.parseBoolean(paramMap.get(QUANTILE_SKETCH));
+    logger.info(heuristicName + " will use " + QUANTILE_SKETCH + ": " + quantileSketch);
   }
 
   public MapperTimeHeuristic(HeuristicConfigurationData heuristicConfData) {
@@ -100,30 +107,41 @@ public class MapperTimeHeuristic implements Heuristic<MapReduceApplicationData>
     }
 
     MapReduceTaskData[] tasks = data.getMapperData();
+    MapReduceTaskColumns columns = data.getMapperColumns();
+    int sampled = columns.size();
+    long[] inputBytes = columns.getCounter(MapReduceCounterData.CounterName.HDFS_BYTES_READ);
+    long[] runtimesMs = columns.getTotalRunTimeMs();
+    MapReduceTaskSketches sketches = data.getMapperSketches();
 
-    List<Long> inputBytes = new ArrayList<Long>();
-    List<Long> runtimesMs = new ArrayList<Long>();
     long taskMinMs = Long.MAX_VALUE;
     long taskMaxMs = 0;
+    long averageSize;
+    long averageTimeMs;
+    QuantileSketch inputBytesSketch = null;
+    QuantileSketch runtimeSketch = null;
+
+    if (quantileSketch && sketches != null && sketches.getCount() > sampled) {
+      // The columns only hold a sample of the tasks, the sketches summarize all of them
+      inputBytesSketch = sketches.getCounter(MapReduceCounterData.CounterName.HDFS_BYTES_READ);
+      runtimeSketch = sketches.getTotalRunTimeMs();
+      taskMinMs = runtimeSketch.getMin();
+      taskMaxMs = runtimeSketch.getMax();
+      averageSize = inputBytesSketch.getMean();
+      averageTimeMs = runtimeSketch.getMean();
+    } else {
+      for (int i = 0; i < sampled; i++) {
+        taskMinMs = Math.min(taskMinMs, runtimesMs[i]);
+        taskMaxMs = Math.max(taskMaxMs, runtimesMs[i]);
+      }
 
-    for (MapReduceTaskData task : tasks) {
-
-      if (task.isSampled()) {
-        inputBytes.add(task.getCounters().get(MapReduceCounterData.CounterName.HDFS_BYTES_READ));
-        long taskTime = task.getTotalRunTimeMs();
-        runtimesMs.add(taskTime);
-        taskMinMs = Math.min(taskMinMs, taskTime);
-        taskMaxMs = Math.max(taskMaxMs, taskTime);
+      if(taskMinMs == Long.MAX_VALUE) {
+        taskMinMs = 0;
       }
-    }
 
-    if(taskMinMs == Long.MAX_VALUE) {
-      taskMinMs = 0;
+      averageSize = Statistics.average(inputBytes, 0, sampled);
+      averageTimeMs = Statistics.average(runtimesMs, 0, sampled);
     }
 
-    long averageSize = Statistics.average(inputBytes);
-    long averageTimeMs = Statistics.average(runtimesMs);
-
     Severity shortTaskSeverity = shortTaskSeverity(tasks.length, averageTimeMs);
     Severity longTaskSeverity = longTaskSeverity(tasks.length, averageTimeMs);
     Severity severity = Severity.max(shortTaskSeverity, longTaskSeverity);
@@ -136,6 +154,19 @@ public class MapperTimeHeuristic implements Heuristic<MapReduceApplicationData>
     result.addResultDetail("Average task runtime", Statistics.readableTimespan(averageTimeMs));
     result.addResultDetail("Max task runtime", Statistics.readableTimespan(taskMaxMs));
     result.addResultDetail("Min task runtime", Statistics.readableTimespan(taskMinMs));
+    result.addResultMetric("Number of tasks", MetricUnit.COUNT, tasks.length);
+    result.addResultMetric("Average task input size", MetricUnit.BYTES, averageSize);
+    result.addResultMetric("Average task runtime", MetricUnit.MILLISECONDS, averageTimeMs);
+    result.addResultMetric("Max task runtime", MetricUnit.MILLISECONDS, taskMaxMs);
+    result.addResultMetric("Min task runtime", MetricUnit.MILLISECONDS, taskMinMs);
+    if (runtimeSketch != null) {
+      result.addResultQuantiles("Task input size", MetricUnit.BYTES, inputBytesSketch);
+      result.addResultQuantiles("Task runtime", MetricUnit.MILLISECONDS, runtimeSketch);
+    } else if (quantileSketch) {
+      // Few enough tasks to be all in the columns, their percentiles are exact
+      result.addResultPercentiles("Task input size", MetricUnit.BYTES, inputBytes, sampled);
+      result.addResultPercentiles("Task runtime", MetricUnit.MILLISECONDS, runtimesMs, sampled);
+    }
 
     return result;
   }
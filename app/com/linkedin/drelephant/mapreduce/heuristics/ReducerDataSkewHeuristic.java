@@ -18,7 +18,9 @@ package com.linkedin.drelephant.mapreduce.heuristics;
 
 import com.linkedin.drelephant.mapreduce.data.MapReduceCounterData;
 import com.linkedin.drelephant.mapreduce.data.MapReduceApplicationData;
+import com.linkedin.drelephant.mapreduce.data.MapReduceTaskColumns;
 import com.linkedin.drelephant.mapreduce.data.MapReduceTaskData;
+import com.linkedin.drelephant.mapreduce.data.MapReduceTaskSketches;
 import com.linkedin.drelephant.configurations.heuristic.HeuristicConfigurationData;
 
 
@@ -35,4 +37,14 @@ public class ReducerDataSkewHeuristic extends GenericDataSkewHeuristic {
   protected MapReduceTaskData[] getTasks(MapReduceApplicationData data) {
     return data.getReducerData();
   }
+
+  @Override
+  protected MapReduceTaskColumns getTaskColumns(MapReduceApplicationData data) {
+    return data.getReducerColumns();
+  }
+
+  @Override
+  protected MapReduceTaskSketches getTaskSketches(MapReduceApplicationData data) {
+    return data.getReducerSketches();
+  }
 }
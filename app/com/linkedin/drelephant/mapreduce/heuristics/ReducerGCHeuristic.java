@@ -17,6 +17,7 @@
 package com.linkedin.drelephant.mapreduce.heuristics;
 
 import com.linkedin.drelephant.mapreduce.data.MapReduceApplicationData;
+import com.linkedin.drelephant.mapreduce.data.MapReduceTaskColumns;
 import com.linkedin.drelephant.mapreduce.data.MapReduceTaskData;
 import com.linkedin.drelephant.configurations.heuristic.HeuristicConfigurationData;
 
@@ -31,4 +32,9 @@ public class ReducerGCHeuristic extends GenericGCHeuristic {
   protected MapReduceTaskData[] getTasks(MapReduceApplicationData data) {
     return data.getReducerData();
   }
+
+  @Override
+  protected MapReduceTaskColumns getTaskColumns(MapReduceApplicationData data) {
+    return data.getReducerColumns();
+  }
 }
@@ -17,16 +17,18 @@
 package com.linkedin.drelephant.mapreduce.heuristics;
 
 import com.linkedin.drelephant.mapreduce.data.MapReduceApplicationData;
+import com.linkedin.drelephant.mapreduce.data.MapReduceTaskColumns;
 import com.linkedin.drelephant.mapreduce.data.MapReduceTaskData;
+import com.linkedin.drelephant.mapreduce.data.MapReduceTaskSketches;
 import com.linkedin.drelephant.configurations.heuristic.HeuristicConfigurationData;
 import com.linkedin.drelephant.util.Utils;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 
 import com.linkedin.drelephant.analysis.Heuristic;
 import com.linkedin.drelephant.analysis.HeuristicResult;
+import com.linkedin.drelephant.analysis.MetricUnit;
 import com.linkedin.drelephant.analysis.Severity;
+import com.linkedin.drelephant.math.QuantileSketch;
 import com.linkedin.drelephant.math.Statistics;
 import java.util.Map;
 import org.apache.log4j.Logger;
@@ -39,11 +41,13 @@ public class ReducerTimeHeuristic implements Heuristic<MapReduceApplicationData>
   private static final String SHORT_RUNTIME_SEVERITY = "short_runtime_severity_in_min";
   private static final String LONG_RUNTIME_SEVERITY = "long_runtime_severity_in_min";
   private static final String NUM_TASKS_SEVERITY = "num_tasks_severity";
+  private static final String QUANTILE_SKETCH = "quantile_sketch";
 
   // Default value of parameters
   private double[] shortRuntimeLimits = {10, 4, 2, 1};       // Limits(ms) for tasks with shorter runtime
   private double[] longRuntimeLimits = {15, 30, 60, 120};    // Limits(ms) for tasks with longer runtime
   private double[] numTasksLimits = {50, 101, 500, 1000};    // Number of Reduce tasks.
+  private boolean quantileSketch = false;                    // Read the sketches of every task when fetched
 
   private HeuristicConfigurationData _heuristicConfData;
 
@@ -78,6 +82,8 @@ public class ReducerTimeHeuristic implements Heuristic<MapReduceApplicationData>
     logger.info(heuristicName + " will use " + NUM_TASKS_SEVERITY + " with the following threshold settings: " + Arrays
         .toString(numTasksLimits));
 
+    quantileSketch = Boolean.parseBoolean(paramMap.get(QUANTILE_SKETCH));
+    logger.info(heuristicName + " will use " + QUANTILE_SKETCH + ": " + quantileSketch);
   }
 
   public ReducerTimeHeuristic(HeuristicConfigurationData heuristicConfData) {
@@ -98,27 +104,36 @@ public class ReducerTimeHeuristic implements Heuristic<MapReduceApplicationData>
     }
 
     MapReduceTaskData[] tasks = data.getReducerData();
+    MapReduceTaskColumns columns = data.getReducerColumns();
+    int sampled = columns.size();
+    long[] runTimesMs = columns.getTotalRunTimeMs();
+    MapReduceTaskSketches sketches = data.getReducerSketches();
 
-    List<Long> runTimesMs = new ArrayList<Long>();
     long taskMinMs = Long.MAX_VALUE;
     long taskMaxMs = 0;
+    long averageRuntimeMs;
+    QuantileSketch runtimeSketch = null;
+
+    if (quantileSketch && sketches != null && sketches.getCount() > sampled) {
+      // The columns only hold a sample of the tasks, the sketch summarizes all of them
+      runtimeSketch = sketches.getTotalRunTimeMs();
+      taskMinMs = runtimeSketch.getMin();
+      taskMaxMs = runtimeSketch.getMax();
+      averageRuntimeMs = runtimeSketch.getMean();
+    } else {
+      for (int i = 0; i < sampled; i++) {
+        taskMinMs = Math.min(taskMinMs, runTimesMs[i]);
+        taskMaxMs = Math.max(taskMaxMs, runTimesMs[i]);
+      }
 
-    for (MapReduceTaskData task : tasks) {
-      if (task.isSampled()) {
-        long taskTime = task.getTotalRunTimeMs();
-        runTimesMs.add(taskTime);
-        taskMinMs = Math.min(taskMinMs, taskTime);
-        taskMaxMs = Math.max(taskMaxMs, taskTime);
+      if(taskMinMs == Long.MAX_VALUE) {
+        taskMinMs = 0;
       }
-    }
 
-    if(taskMinMs == Long.MAX_VALUE) {
-      taskMinMs = 0;
+      //Analyze data
+      averageRuntimeMs = Statistics.average(runTimesMs, 0, sampled);
     }
 
-    //Analyze data
-    long averageRuntimeMs = Statistics.average(runTimesMs);
-
     Severity shortTimeSeverity = shortTimeSeverity(averageRuntimeMs, tasks.length);
     Severity longTimeSeverity = longTimeSeverity(averageRuntimeMs, tasks.length);
     Severity severity = Severity.max(shortTimeSeverity, longTimeSeverity);
@@ -130,6 +145,16 @@ public class ReducerTimeHeuristic implements Heuristic<MapReduceApplicationData>
     result.addResultDetail("Average task runtime", Statistics.readableTimespan(averageRuntimeMs));
     result.addResultDetail("Max task runtime", Statistics.readableTimespan(taskMaxMs));
     result.addResultDetail("Min task runtime", Statistics.readableTimespan(taskMinMs));
+    result.addResultMetric("Number of tasks", MetricUnit.COUNT, tasks.length);
+    result.addResultMetric("Average task runtime", MetricUnit.MILLISECONDS, averageRuntimeMs);
+    result.addResultMetric("Max task runtime", MetricUnit.MILLISECONDS, taskMaxMs);
+    result.addResultMetric("Min task runtime", MetricUnit.MILLISECONDS, taskMinMs);
+    if (runtimeSketch != null) {
+      result.addResultQuantiles("Task runtime", MetricUnit.MILLISECONDS, runtimeSketch);
+    } else if (quantileSketch) {
+      // Few enough tasks to be all in the columns, their percentiles are exact
+      result.addResultPercentiles("Task runtime", MetricUnit.MILLISECONDS, runTimesMs, sampled);
+    }
     return result;
   }
 
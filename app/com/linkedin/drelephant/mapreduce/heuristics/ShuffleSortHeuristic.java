@@ -19,13 +19,13 @@ package com.linkedin.drelephant.mapreduce.heuristics;
 import com.linkedin.drelephant.mapreduce.data.MapReduceApplicationData;
 import com.linkedin.drelephant.configurations.heuristic.HeuristicConfigurationData;
 import com.linkedin.drelephant.util.Utils;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 
 import com.linkedin.drelephant.analysis.Heuristic;
 import com.linkedin.drelephant.analysis.HeuristicResult;
+import com.linkedin.drelephant.analysis.MetricUnit;
 import com.linkedin.drelephant.analysis.Severity;
+import com.linkedin.drelephant.mapreduce.data.MapReduceTaskColumns;
 import com.linkedin.drelephant.mapreduce.data.MapReduceTaskData;
 import com.linkedin.drelephant.math.Statistics;
 import java.util.Map;
@@ -88,23 +88,18 @@ public class ShuffleSortHeuristic implements Heuristic<MapReduceApplicationData>
     }
 
     MapReduceTaskData[] tasks = data.getReducerData();
+    MapReduceTaskColumns columns = data.getReducerColumns();
+    int sampled = columns.size();
 
-    List<Long> execTimeMs = new ArrayList<Long>();
-    List<Long> shuffleTimeMs = new ArrayList<Long>();
-    List<Long> sortTimeMs = new ArrayList<Long>();
-
-    for (MapReduceTaskData task : tasks) {
-      if (task.isSampled()) {
-        execTimeMs.add(task.getCodeExecutionTimeMs());
-        shuffleTimeMs.add(task.getShuffleTimeMs());
-        sortTimeMs.add(task.getSortTimeMs());
-      }
+    long[] execTimeMs = new long[sampled];
+    for (int i = 0; i < sampled; i++) {
+      execTimeMs[i] = columns.getCodeExecutionTimeMs(i);
     }
 
     //Analyze data
-    long avgExecTimeMs = Statistics.average(execTimeMs);
-    long avgShuffleTimeMs = Statistics.average(shuffleTimeMs);
-    long avgSortTimeMs = Statistics.average(sortTimeMs);
+    long avgExecTimeMs = Statistics.average(execTimeMs, 0, sampled);
+    long avgShuffleTimeMs = Statistics.average(columns.getShuffleTimeMs(), 0, sampled);
+    long avgSortTimeMs = Statistics.average(columns.getSortTimeMs(), 0, sampled);
 
     Severity shuffleSeverity = getShuffleSortSeverity(avgShuffleTimeMs, avgExecTimeMs);
     Severity sortSeverity = getShuffleSortSeverity(avgSortTimeMs, avgExecTimeMs);
@@ -119,6 +114,10 @@ public class ShuffleSortHeuristic implements Heuristic<MapReduceApplicationData>
     result.addResultDetail("Average shuffle time", Statistics.readableTimespan(avgShuffleTimeMs) + " " + shuffleFactor);
     String sortFactor = Statistics.describeFactor(avgSortTimeMs, avgExecTimeMs, "x");
     result.addResultDetail("Average sort time", Statistics.readableTimespan(avgSortTimeMs) + " " + sortFactor);
+    result.addResultMetric("Number of tasks", MetricUnit.COUNT, data.getReducerData().length);
+    result.addResultMetric("Average code runtime", MetricUnit.MILLISECONDS, avgExecTimeMs);
+    result.addResultMetric("Average shuffle time", MetricUnit.MILLISECONDS, avgShuffleTimeMs);
+    result.addResultMetric("Average sort time", MetricUnit.MILLISECONDS, avgSortTimeMs);
 
     return result;
   }
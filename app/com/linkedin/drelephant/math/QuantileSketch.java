@@ -0,0 +1,333 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.math;
+
+import java.util.Arrays;
+
+
+/**
+ * A mergeable quantile sketch of long values in the style of KLL (Karnin, Lang and Liberty), which summarizes any
+ * number of values in memory bounded by the accuracy parameter k.
+ * <p/>
+ * Values are added to level 0. When a level reaches its capacity it is sorted and every other value is promoted to
+ * the next level, where it stands for twice as many values. The capacities shrink geometrically from the top level
+ * down, so the sketch keeps fewer than 3k values whatever the count. With the default k the rank of an estimated
+ * percentile is within about 1.5% of the count. Up to k values nothing is compacted and every answer is exact.
+ * <p/>
+ * The count, sum, min and max are tracked exactly. The sketch is not thread safe, build one per thread and merge them.
+ */
+public final class QuantileSketch {
+
+  public static final int DEFAULT_K = 200;
+
+  private static final int MIN_LEVEL_CAPACITY = 8;
+
+  private final int _k;
+  private long[][] _levels = new long[1][MIN_LEVEL_CAPACITY];
+  private int[] _sizes = new int[1];
+  private int[] _capacities = new int[1];
+  private long _count = 0;
+  private double _sum = 0d;
+  private long _min = Long.MAX_VALUE;
+  private long _max = Long.MIN_VALUE;
+  // Per level, alternates which value of each sorted pair is promoted. A random choice would do as well, but
+  // alternating keeps the results reproducible
+  private boolean[] _promoteOdd = new boolean[1];
+
+  // Sorted values and cumulative weights for the queries, built on demand
+  private long[] _sortedValues = null;
+  private long[] _cumulativeWeights = null;
+
+  public QuantileSketch() {
+    this(DEFAULT_K);
+  }
+
+  public QuantileSketch(int k) {
+    if (k < MIN_LEVEL_CAPACITY) {
+      throw new IllegalArgumentException("The sketch k " + k + " is smaller than " + MIN_LEVEL_CAPACITY + ".");
+    }
+    _k = k;
+    _capacities[0] = k;
+  }
+
+  public void update(long value) {
+    append(0, value);
+    _count++;
+    _sum += value;
+    _min = Math.min(_min, value);
+    _max = Math.max(_max, value);
+    _sortedValues = null;
+    if (_sizes[0] >= _capacities[0]) {
+      compress();
+    }
+  }
+
+  /**
+   * Add all the values summarized by another sketch, which is left untouched.
+   */
+  public void merge(QuantileSketch other) {
+    if (other._count == 0) {
+      return;
+    }
+    while (_levels.length < other._levels.length) {
+      addLevel();
+    }
+    for (int level = 0; level < other._levels.length; level++) {
+      for (int i = 0; i < other._sizes[level]; i++) {
+        append(level, other._levels[level][i]);
+      }
+    }
+    _count += other._count;
+    _sum += other._sum;
+    _min = Math.min(_min, other._min);
+    _max = Math.max(_max, other._max);
+    _sortedValues = null;
+    compress();
+  }
+
+  public long getCount() {
+    return _count;
+  }
+
+  /**
+   * @return The exact minimum, 0 for an empty sketch
+   */
+  public long getMin() {
+    return _count == 0 ? 0L : _min;
+  }
+
+  /**
+   * @return The exact maximum, 0 for an empty sketch
+   */
+  public long getMax() {
+    return _count == 0 ? 0L : _max;
+  }
+
+  /**
+   * @return The exact mean, 0 for an empty sketch as in {@link Statistics#average(long[])}
+   */
+  public long getMean() {
+    return (long) (_sum / (double) _count);
+  }
+
+  /**
+   * Estimate the nearest rank percentile, the smallest value greater or equal to percentile percent of the values.
+   *
+   * @param percentile The percentile, between 0 and 100
+   * @return The estimated percentile, exact for 0 and 100
+   */
+  public long getPercentile(double percentile) {
+    if (_count == 0) {
+      throw new IllegalArgumentException("Percentile of an empty list is not defined.");
+    }
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("Percentile " + percentile + " is not between 0 and 100.");
+    }
+    if (percentile == 0) {
+      return _min;
+    }
+    if (percentile == 100) {
+      return _max;
+    }
+    sort();
+    long rank = Math.max((long) Math.ceil(percentile / 100 * _count), 1L);
+    int index = Arrays.binarySearch(_cumulativeWeights, rank);
+    return _sortedValues[index >= 0 ? index : -index - 1];
+  }
+
+  /**
+   * Estimate how many values fall in each bucket delimited by the split points: below splitPoints[0], then from
+   * splitPoints[i - 1] included to splitPoints[i] excluded, then from the last split point up.
+   *
+   * @param splitPoints The increasing bucket limits
+   * @return The counts of the splitPoints.length + 1 buckets, which add up to the count
+   */
+  public long[] getHistogram(long... splitPoints) {
+    long[] counts = new long[splitPoints.length + 1];
+    sort();
+    long previous = 0;
+    for (int i = 0; i < splitPoints.length; i++) {
+      long weight = weightBelow(splitPoints[i]);
+      counts[i] = weight - previous;
+      previous = weight;
+    }
+    counts[splitPoints.length] = _count - previous;
+    return counts;
+  }
+
+  /**
+   * Estimate the mean of the values in each bucket delimited by the split points, as in
+   * {@link #getHistogram(long...)}.
+   *
+   * @param splitPoints The increasing bucket limits
+   * @return The means of the splitPoints.length + 1 buckets, 0 for an empty bucket
+   */
+  public long[] getMeans(long... splitPoints) {
+    double[] sums = new double[splitPoints.length + 1];
+    long[] weights = new long[splitPoints.length + 1];
+    sort();
+    int bucket = 0;
+    for (int i = 0; i < _sortedValues.length; i++) {
+      while (bucket < splitPoints.length && _sortedValues[i] >= splitPoints[bucket]) {
+        bucket++;
+      }
+      long weight = _cumulativeWeights[i] - (i == 0 ? 0 : _cumulativeWeights[i - 1]);
+      sums[bucket] += (double) _sortedValues[i] * weight;
+      weights[bucket] += weight;
+    }
+    long[] means = new long[sums.length];
+    for (int i = 0; i < means.length; i++) {
+      means[i] = (long) (sums[i] / (double) weights[i]);
+    }
+    return means;
+  }
+
+  /**
+   * @return The number of values the sketch holds, which stays below 3k
+   */
+  int getRetainedCount() {
+    int retained = 0;
+    for (int size : _sizes) {
+      retained += size;
+    }
+    return retained;
+  }
+
+  private long weightBelow(long value) {
+    int index = Arrays.binarySearch(_sortedValues, value);
+    if (index < 0) {
+      index = -index - 1;
+    } else {
+      // Step back over the values equal to the limit, they belong to the next bucket
+      while (index > 0 && _sortedValues[index - 1] == value) {
+        index--;
+      }
+    }
+    return index == 0 ? 0 : _cumulativeWeights[index - 1];
+  }
+
+  private void append(int level, long value) {
+    if (_sizes[level] == _levels[level].length) {
+      _levels[level] = Arrays.copyOf(_levels[level], _levels[level].length * 2);
+    }
+    _levels[level][_sizes[level]++] = value;
+  }
+
+  private void addLevel() {
+    int levelCount = _levels.length + 1;
+    _levels = Arrays.copyOf(_levels, levelCount);
+    _levels[levelCount - 1] = new long[MIN_LEVEL_CAPACITY];
+    _sizes = Arrays.copyOf(_sizes, levelCount);
+    _promoteOdd = Arrays.copyOf(_promoteOdd, levelCount);
+    _capacities = new int[levelCount];
+    for (int level = 0; level < levelCount; level++) {
+      int depth = levelCount - 1 - level;
+      _capacities[level] = Math.max(MIN_LEVEL_CAPACITY, (int) Math.ceil(_k * Math.pow(2d / 3d, depth)));
+    }
+  }
+
+  private void compress() {
+    for (int level = 0; level < _levels.length; level++) {
+      if (_sizes[level] >= _capacities[level]) {
+        compact(level);
+      }
+    }
+  }
+
+  /**
+   * Promote every other value of the sorted level to the next level, each of them now standing for two values. With
+   * an odd size the smallest value stays behind so that the total weight is kept.
+   */
+  private void compact(int level) {
+    if (level + 1 == _levels.length) {
+      addLevel();
+    }
+    long[] values = _levels[level];
+    int size = _sizes[level];
+    Arrays.sort(values, 0, size);
+    int start = size % 2;
+    for (int i = start + (_promoteOdd[level] ? 1 : 0); i < size; i += 2) {
+      append(level + 1, values[i]);
+    }
+    _promoteOdd[level] = !_promoteOdd[level];
+    _sizes[level] = start;
+  }
+
+  private void sort() {
+    if (_sortedValues != null) {
+      return;
+    }
+    int retained = getRetainedCount();
+    long[] values = new long[retained];
+    long[] weights = new long[retained];
+    int index = 0;
+    for (int level = 0; level < _levels.length; level++) {
+      for (int i = 0; i < _sizes[level]; i++) {
+        values[index] = _levels[level][i];
+        weights[index] = 1L << level;
+        index++;
+      }
+    }
+    sortByValue(values, weights);
+    for (int i = 1; i < retained; i++) {
+      weights[i] += weights[i - 1];
+    }
+    _sortedValues = values;
+    _cumulativeWeights = weights;
+  }
+
+  /**
+   * Sort the values along with their weights, with a merge sort of their indexes.
+   */
+  private static void sortByValue(long[] values, long[] weights) {
+    long[] mergedValues = new long[values.length];
+    long[] mergedWeights = new long[values.length];
+    int[] order = new int[values.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    mergeSort(values, order, new int[order.length], 0, order.length);
+    for (int i = 0; i < order.length; i++) {
+      mergedValues[i] = values[order[i]];
+      mergedWeights[i] = weights[order[i]];
+    }
+    System.arraycopy(mergedValues, 0, values, 0, values.length);
+    System.arraycopy(mergedWeights, 0, weights, 0, weights.length);
+  }
+
+  private static void mergeSort(long[] values, int[] order, int[] buffer, int from, int to) {
+    if (to - from < 2) {
+      return;
+    }
+    int middle = (from + to) >>> 1;
+    mergeSort(values, order, buffer, from, middle);
+    mergeSort(values, order, buffer, middle, to);
+    int i = from;
+    int j = middle;
+    int k = from;
+    while (i < middle && j < to) {
+      buffer[k++] = values[order[i]] <= values[order[j]] ? order[i++] : order[j++];
+    }
+    while (i < middle) {
+      buffer[k++] = order[i++];
+    }
+    while (j < to) {
+      buffer[k++] = order[j++];
+    }
+    System.arraycopy(buffer, from, order, from, to - from);
+  }
+}
@@ -17,7 +17,6 @@
 package com.linkedin.drelephant.math;
 
 import java.lang.reflect.Array;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -32,6 +31,9 @@ public final class Statistics {
   public static final long SECOND_IN_MS = 1000L;
   public static final long MINUTE_IN_MS = 60L * SECOND_IN_MS;
 
+  // Number of times the middle between the two groups is refined
+  private static final int TWO_GROUPS_LEVELS = 2;
+
   private Statistics() {
   }
 
@@ -52,63 +54,97 @@ public final class Statistics {
 
     long avg = average(values);
 
-    //Find deviated elements
-
+    //Find deviated elements, counting them first so that the result is the only allocation
     long minimumDiff = Math.max(buffer, (long) (avg * factor));
-    List<Integer> deviatedElements = new ArrayList<Integer>();
-
+    int count = 0;
     for (int i = 0; i < values.length; i++) {
-      long diff = values[i] - avg;
-      if (diff > minimumDiff) {
-        deviatedElements.add(i);
+      if (values[i] - avg > minimumDiff) {
+        count++;
       }
     }
 
-    int[] result = new int[deviatedElements.size()];
-    for (int i = 0; i < result.length; i++) {
-      result[i] = deviatedElements.get(i);
+    int[] result = new int[count];
+    count = 0;
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] - avg > minimumDiff) {
+        result[count++] = i;
+      }
     }
 
     return result;
   }
 
   public static long[][] findTwoGroups(long[] values) {
-    return findTwoGroupsRecursive(values, average(values), 2);
+    return findTwoGroupsRecursive(values, average(values), TWO_GROUPS_LEVELS);
   }
 
+  /**
+   * Split a copy of the values in two groups, the values smaller than the middle and the others. The middle is
+   * refined levels times with the difference between the averages of the two groups.
+   *
+   * @see #partitionTwoGroups(long[], int, int) for the version which works in place
+   */
   public static long[][] findTwoGroupsRecursive(long[] values, long middle, int levels) {
-    if (levels > 0) {
-      long[][] result = twoMeans(values, middle);
-      long newMiddle = average(result[1]) - average(result[0]);
-      return findTwoGroupsRecursive(values, newMiddle, levels - 1);
-    }
-    return twoMeans(values, middle);
+    long[] copy = values.clone();
+    int split = partitionTwoGroups(copy, 0, copy.length, middle, levels);
+    long[][] result = new long[2][];
+    result[0] = Arrays.copyOfRange(copy, 0, split);
+    result[1] = Arrays.copyOfRange(copy, split, copy.length);
+    return result;
   }
 
-  private static long[][] twoMeans(long[] values, long middle) {
-    List<Long> smaller = new ArrayList<Long>();
-    List<Long> larger = new ArrayList<Long>();
-    for (int i = 0; i < values.length; i++) {
-      if (values[i] < middle) {
-        smaller.add(values[i]);
-      } else {
-        larger.add(values[i]);
-      }
-    }
+  /**
+   * Split values[from, to) in place in the same two groups as {@link #findTwoGroups(long[])}, without allocating.
+   * The values of the smaller group are moved to values[from, split) and the others to values[split, to), in no
+   * particular order.
+   *
+   * @param values The values, reordered in place
+   * @param from The first index, inclusive
+   * @param to The last index, exclusive
+   * @return The split index
+   */
+  public static int partitionTwoGroups(long[] values, int from, int to) {
+    return partitionTwoGroups(values, from, to, average(values, from, to), TWO_GROUPS_LEVELS);
+  }
 
-    long[][] result = new long[2][];
-    result[0] = toArray(smaller);
-    result[1] = toArray(larger);
+  private static int partitionTwoGroups(long[] values, int from, int to, long middle, int levels) {
+    for (; levels > 0; levels--) {
+      int split = partition(values, from, to, middle);
+      middle = average(values, split, to) - average(values, from, split);
+    }
+    return partition(values, from, to, middle);
+  }
 
-    return result;
+  /**
+   * Find the middle between the same two groups as {@link #findTwoGroups(long[])} among the values summarized by a
+   * sketch, from the estimated group means.
+   *
+   * @param sketch The values
+   * @return The middle, the values smaller than it make the first group
+   */
+  public static long findTwoGroupsMiddle(QuantileSketch sketch) {
+    long middle = sketch.getMean();
+    for (int levels = TWO_GROUPS_LEVELS; levels > 0; levels--) {
+      long[] means = sketch.getMeans(middle);
+      middle = means[1] - means[0];
+    }
+    return middle;
   }
 
-  private static long[] toArray(List<Long> input) {
-    long[] result = new long[input.size()];
-    for (int i = 0; i < result.length; i++) {
-      result[i] = input.get(i);
+  /**
+   * Move the values smaller than middle before the others and return the index of the first other value.
+   */
+  private static int partition(long[] values, int from, int to, long middle) {
+    int i = from;
+    int j = to - 1;
+    while (i <= j) {
+      if (values[i] < middle) {
+        i++;
+      } else {
+        swap(values, i, j--);
+      }
     }
-    return result;
+    return i;
   }
 
   /**
@@ -118,12 +154,24 @@ public final class Statistics {
    * @return The average(values)
    */
   public static long average(long[] values) {
+    return average(values, 0, values.length);
+  }
+
+  /**
+   * Compute average for values[from, to)
+   *
+   * @param values the values
+   * @param from The first index, inclusive
+   * @param to The last index, exclusive
+   * @return The average, 0 for an empty range
+   */
+  public static long average(long[] values, int from, int to) {
     //Find average
     double sum = 0d;
-    for (long value : values) {
-      sum += value;
+    for (int i = from; i < to; i++) {
+      sum += values[i];
     }
-    return (long) (sum / (double) values.length);
+    return (long) (sum / (double) (to - from));
   }
 
   /**
@@ -142,7 +190,76 @@ public final class Statistics {
   }
 
   /**
-   * Find the median of the given list
+   * Compute the population variance of values[from, to) in a single pass, with Welford's method.
+   *
+   * @param values the values
+   * @param from The first index, inclusive
+   * @param to The last index, exclusive
+   * @return The variance, 0 for an empty range
+   */
+  public static double variance(long[] values, int from, int to) {
+    Moments moments = new Moments();
+    for (int i = from; i < to; i++) {
+      moments.add(values[i]);
+    }
+    return moments.getVariance();
+  }
+
+  /**
+   * The count, mean, variance, min and max of values added one at a time, updated in a single pass with Welford's
+   * method, so that they are known without keeping the values or reading them again.
+   */
+  public static final class Moments {
+    private int _count = 0;
+    private double _mean = 0d;
+    private double _squares = 0d;
+    private long _min = Long.MAX_VALUE;
+    private long _max = Long.MIN_VALUE;
+
+    public void add(long value) {
+      _count++;
+      double delta = value - _mean;
+      _mean += delta / _count;
+      _squares += delta * (value - _mean);
+      _min = Math.min(_min, value);
+      _max = Math.max(_max, value);
+    }
+
+    public int getCount() {
+      return _count;
+    }
+
+    /**
+     * @return The mean, 0 without values
+     */
+    public double getMean() {
+      return _mean;
+    }
+
+    /**
+     * @return The population variance, 0 without values
+     */
+    public double getVariance() {
+      return _count == 0 ? 0d : _squares / _count;
+    }
+
+    /**
+     * @return The smallest value, 0 without values
+     */
+    public long getMin() {
+      return _count == 0 ? 0L : _min;
+    }
+
+    /**
+     * @return The largest value, 0 without values
+     */
+    public long getMax() {
+      return _count == 0 ? 0L : _max;
+    }
+  }
+
+  /**
+   * Find the median of the given list. The list is left untouched.
    *
    * @param values The values
    * @return The median(values)
@@ -151,13 +268,100 @@ public final class Statistics {
     if (values.size() == 0) {
       throw new IllegalArgumentException("Median of an empty list is not defined.");
     }
-    Collections.sort(values);
-    int middle = values.size() / 2;
-    if (values.size() % 2 == 0) {
-      return (values.get(middle - 1) + values.get(middle)) / 2;
-    } else {
-      return values.get(middle);
+    long[] copy = new long[values.size()];
+    for (int i = 0; i < copy.length; i++) {
+      copy[i] = values.get(i);
+    }
+    return median(copy, 0, copy.length);
+  }
+
+  /**
+   * Find the median of values[from, to) by selection, in linear time on average. The range is partially
+   * reordered in place.
+   *
+   * @param values The values, reordered in place
+   * @param from The first index, inclusive
+   * @param to The last index, exclusive
+   * @return The median, the average of the two middle values for an even count
+   */
+  public static long median(long[] values, int from, int to) {
+    if (to <= from) {
+      throw new IllegalArgumentException("Median of an empty list is not defined.");
+    }
+    int middle = from + (to - from) / 2;
+    long upper = select(values, from, to, middle);
+    if ((to - from) % 2 != 0) {
+      return upper;
+    }
+    // The selection left the smaller half before the middle, the lower middle value is its maximum
+    long lower = values[from];
+    for (int i = from + 1; i < middle; i++) {
+      lower = Math.max(lower, values[i]);
+    }
+    return (lower + upper) / 2;
+  }
+
+  /**
+   * Find the nearest rank percentile of values[from, to) by selection. The range is partially reordered in place.
+   *
+   * @param values The values, reordered in place
+   * @param from The first index, inclusive
+   * @param to The last index, exclusive
+   * @param percentile The percentile, between 0 and 100
+   * @return The smallest value greater or equal to percentile percent of the values
+   */
+  public static long percentile(long[] values, int from, int to, double percentile) {
+    if (to <= from) {
+      throw new IllegalArgumentException("Percentile of an empty list is not defined.");
+    }
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("Percentile " + percentile + " is not between 0 and 100.");
     }
+    int rank = (int) Math.ceil(percentile / 100 * (to - from));
+    return select(values, from, to, from + Math.max(rank, 1) - 1);
+  }
+
+  /**
+   * Quickselect: reorder values[from, to) so that values[k] holds the value it would hold if the range was sorted,
+   * with smaller or equal values before it and greater or equal values after it.
+   */
+  private static long select(long[] values, int from, int to, int k) {
+    int low = from;
+    int high = to - 1;
+    while (low < high) {
+      long pivot = medianOfThree(values[low], values[(low + high) >>> 1], values[high]);
+      int i = low;
+      int j = high;
+      while (i <= j) {
+        while (values[i] < pivot) {
+          i++;
+        }
+        while (values[j] > pivot) {
+          j--;
+        }
+        if (i <= j) {
+          swap(values, i++, j--);
+        }
+      }
+      if (k <= j) {
+        high = j;
+      } else if (k >= i) {
+        low = i;
+      } else {
+        break;
+      }
+    }
+    return values[k];
+  }
+
+  private static long medianOfThree(long a, long b, long c) {
+    return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+  }
+
+  private static void swap(long[] values, int i, int j) {
+    long temp = values[i];
+    values[i] = values[j];
+    values[j] = temp;
   }
 
   /**
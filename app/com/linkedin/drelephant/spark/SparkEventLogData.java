@@ -0,0 +1,112 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.spark;
+
+import com.linkedin.drelephant.analysis.ApplicationType;
+import com.linkedin.drelephant.spark.data.SparkApplicationData;
+import com.linkedin.drelephant.spark.data.SparkEnvironmentData;
+import com.linkedin.drelephant.spark.data.SparkExecutorData;
+import com.linkedin.drelephant.spark.data.SparkGeneralData;
+import com.linkedin.drelephant.spark.data.SparkJobProgressData;
+import com.linkedin.drelephant.spark.data.SparkStorageData;
+import java.util.Properties;
+
+
+/**
+ * The data of a Spark application, as aggregated by the SparkEventLogReader from its event log.
+ */
+public class SparkEventLogData implements SparkApplicationData {
+  private static final ApplicationType APPLICATION_TYPE = new ApplicationType("SPARK");
+
+  private final SparkGeneralData _generalData;
+  private final SparkEnvironmentData _environmentData;
+  private final SparkExecutorData _executorData;
+  private final SparkJobProgressData _jobProgressData;
+  private final SparkStorageData _storageData;
+  private boolean _isThrottled = false;
+
+  public SparkEventLogData() {
+    this(new SparkGeneralData(), new SparkEnvironmentData(), new SparkExecutorData(), new SparkJobProgressData(),
+        new SparkStorageData());
+  }
+
+  public SparkEventLogData(SparkGeneralData generalData, SparkEnvironmentData environmentData,
+      SparkExecutorData executorData, SparkJobProgressData jobProgressData, SparkStorageData storageData) {
+    _generalData = generalData;
+    _environmentData = environmentData;
+    _executorData = executorData;
+    _jobProgressData = jobProgressData;
+    _storageData = storageData;
+  }
+
+  /**
+   * Marks the application as not analysed because its event log is over the size limit
+   */
+  public void throttle() {
+    _isThrottled = true;
+  }
+
+  @Override
+  public boolean isThrottled() {
+    return _isThrottled;
+  }
+
+  @Override
+  public SparkGeneralData getGeneralData() {
+    return _generalData;
+  }
+
+  @Override
+  public SparkEnvironmentData getEnvironmentData() {
+    return _environmentData;
+  }
+
+  @Override
+  public SparkExecutorData getExecutorData() {
+    return _executorData;
+  }
+
+  @Override
+  public SparkJobProgressData getJobProgressData() {
+    return _jobProgressData;
+  }
+
+  @Override
+  public SparkStorageData getStorageData() {
+    return _storageData;
+  }
+
+  @Override
+  public Properties getConf() {
+    return getEnvironmentData().getSparkProperties();
+  }
+
+  @Override
+  public String getAppId() {
+    return getGeneralData().getApplicationId();
+  }
+
+  @Override
+  public ApplicationType getApplicationType() {
+    return APPLICATION_TYPE;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return !isThrottled() && getExecutorData().getExecutors().isEmpty();
+  }
+}
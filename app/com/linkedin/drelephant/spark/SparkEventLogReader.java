@@ -0,0 +1,1004 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.spark;
+
+import com.linkedin.drelephant.spark.data.SparkEnvironmentData;
+import com.linkedin.drelephant.spark.data.SparkExecutorData;
+import com.linkedin.drelephant.spark.data.SparkExecutorData.ExecutorInfo;
+import com.linkedin.drelephant.spark.data.SparkGeneralData;
+import com.linkedin.drelephant.spark.data.SparkJobProgressData;
+import com.linkedin.drelephant.spark.data.SparkJobProgressData.JobInfo;
+import com.linkedin.drelephant.spark.data.SparkJobProgressData.StageInfo;
+import com.linkedin.drelephant.spark.data.SparkStorageData;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import org.apache.log4j.Logger;
+import org.apache.spark.storage.RDDInfo;
+import org.apache.spark.storage.StorageStatus;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+
+
+/**
+ * Reads a Spark event log in one pass with the token based Jackson parser and aggregates the events into the data
+ * the Spark heuristics use, as the JobProgressListener, ExecutorsListener, EnvironmentListener and
+ * ApplicationEventListener of a ReplayListenerBus replay would.
+ *
+ * Only the event types and fields that are needed are decoded, everything else is skipped without being
+ * materialized. Tasks are folded into the counters of their stage, job and executor as they are read, so the memory
+ * used depends on the number of jobs, stages and executors of the application and on the blocks cached at a time,
+ * but not on the number of tasks or the size of the log.
+ *
+ * The block level details of the storage data (RDDInfo and StorageStatus) are not rebuilt, only the per executor
+ * totals in the executor data.
+ *
+ * The reading stops at the application end once no job and no task is running anymore, since the events after it
+ * cannot change the summaries of the stages, jobs and executors. A log whose application end comes before the end of
+ * some tasks is read on until they have all ended.
+ */
+public class SparkEventLogReader {
+  private static final Logger logger = Logger.getLogger(SparkEventLogReader.class);
+
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  private static final String SPARK_ADMIN_ACLS = "spark.admin.acls";
+  private static final String SPARK_VIEW_ACLS = "spark.ui.view.acls";
+  private static final String SPARK_JOB_GROUP_ID = "spark.jobGroup.id";
+  private static final String SPARK_JOB_DESCRIPTION = "spark.job.description";
+
+  private final SparkGeneralData _generalData = new SparkGeneralData();
+  private final SparkEnvironmentData _environmentData = new SparkEnvironmentData();
+  private final SparkJobProgressData _jobProgressData = new SparkJobProgressData();
+
+  // The running jobs of each stage
+  private final Map<Integer, Set<Integer>> _stageIdToActiveJobIds = new HashMap<Integer, Set<Integer>>();
+  // The number of tasks of each stage, and the submission time of its latest attempt if it was ever submitted
+  private final Map<Integer, Integer> _stageIdToNumTasks = new HashMap<Integer, Integer>();
+  private final Map<Integer, Long> _stageIdToSubmissionTime = new HashMap<Integer, Long>();
+
+  // Task counters of every executor that ever ran a task
+  private final Map<String, ExecutorInfo> _executorIdToInfo = new HashMap<String, ExecutorInfo>();
+  // The executors with a live block manager, in the order they were added
+  private final Map<String, BlockManager> _executorIdToBlockManager = new LinkedHashMap<String, BlockManager>();
+  private final Map<String, Long> _executorIdToMaxUsedMem = new HashMap<String, Long>();
+
+  // Whether the application end was read, and the number of tasks started and not ended yet
+  private boolean _applicationEnded = false;
+  private int _numActiveTasks = 0;
+
+  private SparkEventLogReader() {
+  }
+
+  /**
+   * Reads a whole event log
+   *
+   * @param in The event log, one json event per line, already decompressed. It is not closed.
+   * @return The data of the application
+   * @throws IOException The log cannot be read or is not valid json
+   */
+  public static SparkEventLogData read(InputStream in) throws IOException {
+    SparkEventLogReader reader = new SparkEventLogReader();
+    reader.readEvents(in);
+    return reader.toData();
+  }
+
+  private void readEvents(InputStream in) throws IOException {
+    JsonParser parser = JSON_FACTORY.createJsonParser(in);
+    parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+    try {
+      while (parser.nextToken() == JsonToken.START_OBJECT) {
+        // Spark always writes the event type as the first field
+        if (parser.nextToken() != JsonToken.FIELD_NAME || !parser.getCurrentName().equals("Event")) {
+          if (parser.getCurrentToken() == JsonToken.FIELD_NAME) {
+            parser.nextToken();
+            parser.skipChildren();
+            skipFields(parser);
+          }
+          continue;
+        }
+        parser.nextToken();
+        handleEvent(parser.getText(), parser);
+        if (isComplete()) {
+          logger.debug("Stopped reading the event log of " + _generalData.getApplicationId()
+              + " at the application end.");
+          break;
+        }
+      }
+    } finally {
+      parser.close();
+    }
+  }
+
+  /**
+   * @return true if the application has ended and every job and task it started has ended too
+   */
+  private boolean isComplete() {
+    return _applicationEnded && _numActiveTasks <= 0 && _stageIdToActiveJobIds.isEmpty();
+  }
+
+  /**
+   * Reads the remaining fields of an event. The parser is at the event type and is left at the end of the event.
+   */
+  private void handleEvent(String event, JsonParser parser) throws IOException {
+    if (event.equals("SparkListenerTaskEnd")) {
+      onTaskEnd(parser);
+    } else if (event.equals("SparkListenerTaskStart")) {
+      onTaskStart(parser);
+    } else if (event.equals("SparkListenerStageSubmitted")) {
+      onStageSubmitted(parser);
+    } else if (event.equals("SparkListenerStageCompleted")) {
+      onStageCompleted(parser);
+    } else if (event.equals("SparkListenerJobStart")) {
+      onJobStart(parser);
+    } else if (event.equals("SparkListenerJobEnd")) {
+      onJobEnd(parser);
+    } else if (event.equals("SparkListenerBlockManagerAdded")) {
+      onBlockManagerAdded(parser);
+    } else if (event.equals("SparkListenerBlockManagerRemoved")) {
+      onBlockManagerRemoved(parser);
+    } else if (event.equals("SparkListenerUnpersistRDD")) {
+      onUnpersistRDD(parser);
+    } else if (event.equals("SparkListenerEnvironmentUpdate")) {
+      onEnvironmentUpdate(parser);
+    } else if (event.equals("SparkListenerApplicationStart")) {
+      onApplicationStart(parser);
+    } else if (event.equals("SparkListenerApplicationEnd")) {
+      onApplicationEnd(parser);
+    } else {
+      skipFields(parser);
+    }
+  }
+
+  private void onApplicationStart(JsonParser parser) throws IOException {
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+      if (field.equals("App Name")) {
+        _generalData.setApplicationName(parser.getText());
+      } else if (field.equals("App ID")) {
+        _generalData.setApplicationId(parser.getText());
+      } else if (field.equals("Timestamp")) {
+        _generalData.setStartTime(parser.getLongValue());
+      } else if (field.equals("User")) {
+        _generalData.setSparkUser(parser.getText());
+      } else {
+        parser.skipChildren();
+      }
+    }
+  }
+
+  private void onApplicationEnd(JsonParser parser) throws IOException {
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+      if (field.equals("Timestamp")) {
+        _generalData.setEndTime(parser.getLongValue());
+      } else {
+        parser.skipChildren();
+      }
+    }
+    _applicationEnded = true;
+  }
+
+  private void onEnvironmentUpdate(JsonParser parser) throws IOException {
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+      if (field.equals("Spark Properties")) {
+        readProperties(parser, _environmentData.getSparkProperties());
+      } else if (field.equals("System Properties")) {
+        readProperties(parser, _environmentData.getSystemProperties());
+      } else {
+        // JVM information and classpath entries are not used by any heuristic
+        parser.skipChildren();
+      }
+    }
+    String adminAcls = _environmentData.getSparkProperty(SPARK_ADMIN_ACLS);
+    if (adminAcls != null) {
+      _generalData.setAdminAcls(stringToSet(adminAcls));
+    }
+    String viewAcls = _environmentData.getSparkProperty(SPARK_VIEW_ACLS);
+    if (viewAcls != null) {
+      _generalData.setViewAcls(stringToSet(viewAcls));
+    }
+  }
+
+  private void onBlockManagerAdded(JsonParser parser) throws IOException {
+    String[] blockManagerId = null;
+    long maxMem = 0;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+      if (field.equals("Block Manager ID")) {
+        blockManagerId = readBlockManagerId(parser);
+      } else if (field.equals("Maximum Memory")) {
+        maxMem = parser.getLongValue();
+      } else {
+        parser.skipChildren();
+      }
+    }
+    if (blockManagerId != null && blockManagerId[0] != null) {
+      _executorIdToBlockManager.put(blockManagerId[0], new BlockManager(blockManagerId[1], maxMem));
+    }
+  }
+
+  private void onBlockManagerRemoved(JsonParser parser) throws IOException {
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+      if (field.equals("Block Manager ID")) {
+        String[] blockManagerId = readBlockManagerId(parser);
+        _executorIdToBlockManager.remove(blockManagerId[0]);
+      } else {
+        parser.skipChildren();
+      }
+    }
+  }
+
+  private void onUnpersistRDD(JsonParser parser) throws IOException {
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+      if (field.equals("RDD ID")) {
+        String prefix = "rdd_" + parser.getIntValue() + "_";
+        for (BlockManager blockManager : _executorIdToBlockManager.values()) {
+          blockManager.removeBlocks(prefix);
+        }
+      } else {
+        parser.skipChildren();
+      }
+    }
+  }
+
+  private void onJobStart(JsonParser parser) throws IOException {
+    JobInfo job = new JobInfo();
+    job.jobGroup = "";
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+      if (field.equals("Job ID")) {
+        job.jobId = parser.getIntValue();
+      } else if (field.equals("Submission Time")) {
+        job.startTime = parser.getLongValue();
+      } else if (field.equals("Stage Infos") && parser.getCurrentToken() == JsonToken.START_ARRAY) {
+        while (nextElement(parser)) {
+          job.numTasks += readJobStageInfo(parser);
+        }
+      } else if (field.equals("Stage IDs") && parser.getCurrentToken() == JsonToken.START_ARRAY) {
+        while (parser.nextToken() == JsonToken.VALUE_NUMBER_INT) {
+          job.addStageId(parser.getIntValue());
+        }
+      } else if (field.equals("Properties")) {
+        String jobGroup = readField(parser, SPARK_JOB_GROUP_ID);
+        if (jobGroup != null) {
+          job.jobGroup = jobGroup;
+        }
+      } else {
+        parser.skipChildren();
+      }
+    }
+
+    _jobProgressData.addJobInfo(job.jobId, job);
+    for (int stageId : job.stageIds) {
+      Set<Integer> jobIds = _stageIdToActiveJobIds.get(stageId);
+      if (jobIds == null) {
+        jobIds = new HashSet<Integer>();
+        _stageIdToActiveJobIds.put(stageId, jobIds);
+      }
+      jobIds.add(job.jobId);
+    }
+  }
+
+  /**
+   * Reads a stage of a job start event, so that the stages that never run still have a name.
+   *
+   * @return The number of tasks of the stage if it has not completed yet, else 0
+   */
+  private int readJobStageInfo(JsonParser parser) throws IOException {
+    int stageId = -1;
+    int attemptId = 0;
+    int numTasks = 0;
+    String name = null;
+    boolean completed = false;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+      if (field.equals("Stage ID")) {
+        stageId = parser.getIntValue();
+      } else if (field.equals("Stage Attempt ID")) {
+        attemptId = parser.getIntValue();
+      } else if (field.equals("Stage Name")) {
+        name = parser.getText();
+      } else if (field.equals("Number of Tasks")) {
+        numTasks = parser.getIntValue();
+      } else if (field.equals("Completion Time")) {
+        completed = parser.getCurrentToken() != JsonToken.VALUE_NULL;
+      } else {
+        // Skips the RDD infos, which are most of the size of the stage infos
+        parser.skipChildren();
+      }
+    }
+    if (stageId < 0) {
+      return 0;
+    }
+    StageInfo stage = _jobProgressData.getStageInfo(stageId, attemptId);
+    if (stage == null) {
+      stage = getStage(stageId, attemptId);
+      stage.name = name == null ? "" : name;
+    }
+    _stageIdToNumTasks.put(stageId, numTasks);
+    return completed ? 0 : numTasks;
+  }
+
+  private void onJobEnd(JsonParser parser) throws IOException {
+    int jobId = -1;
+    long completionTime = 0;
+    String result = null;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+      if (field.equals("Job ID")) {
+        jobId = parser.getIntValue();
+      } else if (field.equals("Completion Time")) {
+        completionTime = parser.getLongValue();
+      } else if (field.equals("Job Result")) {
+        result = readField(parser, "Result");
+      } else {
+        parser.skipChildren();
+      }
+    }
+
+    JobInfo job = _jobProgressData.getJobInfo(jobId);
+    if (job == null) {
+      logger.debug("Ignoring the end of job " + jobId + " which never started.");
+      return;
+    }
+    job.endTime = completionTime;
+    if ("JobSucceeded".equals(result)) {
+      _jobProgressData.addCompletedJob(jobId);
+    } else {
+      _jobProgressData.addFailedJob(jobId);
+    }
+    for (int stageId : job.stageIds) {
+      Set<Integer> jobIds = _stageIdToActiveJobIds.get(stageId);
+      if (jobIds == null) {
+        continue;
+      }
+      jobIds.remove(jobId);
+      if (jobIds.isEmpty()) {
+        _stageIdToActiveJobIds.remove(stageId);
+      }
+      if (!_stageIdToSubmissionTime.containsKey(stageId)) {
+        // The stage was still pending, it will never run
+        Integer numTasks = _stageIdToNumTasks.get(stageId);
+        job.numSkippedStages++;
+        job.numSkippedTasks += numTasks == null ? 0 : numTasks;
+      }
+    }
+  }
+
+  private void onStageSubmitted(JsonParser parser) throws IOException {
+    StageEvent stageEvent = null;
+    String description = null;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+      if (field.equals("Stage Info")) {
+        stageEvent = readStageEvent(parser);
+      } else if (field.equals("Properties")) {
+        description = readField(parser, SPARK_JOB_DESCRIPTION);
+      } else {
+        parser.skipChildren();
+      }
+    }
+    if (stageEvent == null) {
+      return;
+    }
+
+    StageInfo stage = getStage(stageEvent._stageId, stageEvent._attemptId);
+    if (stageEvent._name != null) {
+      stage.name = stageEvent._name;
+    }
+    if (description != null) {
+      stage.description = description;
+    }
+    _stageIdToNumTasks.put(stageEvent._stageId, stageEvent._numTasks);
+    _stageIdToSubmissionTime.put(stageEvent._stageId, stageEvent._submissionTime);
+
+    for (JobInfo job : getActiveJobs(stageEvent._stageId)) {
+      job.numActiveStages++;
+      // A stage that runs again is no longer completed
+      job.completedStageIndices.remove(stageEvent._stageId);
+    }
+  }
+
+  private void onStageCompleted(JsonParser parser) throws IOException {
+    StageEvent stageEvent = null;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+      if (field.equals("Stage Info")) {
+        stageEvent = readStageEvent(parser);
+      } else {
+        parser.skipChildren();
+      }
+    }
+    if (stageEvent == null) {
+      return;
+    }
+
+    StageInfo stage = getStage(stageEvent._stageId, stageEvent._attemptId);
+    if (stageEvent._name != null) {
+      stage.name = stageEvent._name;
+    }
+    long submissionTime = stageEvent._submissionTime == null ? 0L : stageEvent._submissionTime;
+    long completionTime = stageEvent._completionTime == null ? submissionTime : stageEvent._completionTime;
+    stage.duration = completionTime - submissionTime;
+
+    boolean succeeded = !stageEvent._failed;
+    if (succeeded) {
+      _jobProgressData.addCompletedStages(stageEvent._stageId, stageEvent._attemptId);
+    } else {
+      _jobProgressData.addFailedStages(stageEvent._stageId, stageEvent._attemptId);
+    }
+    for (JobInfo job : getActiveJobs(stageEvent._stageId)) {
+      job.numActiveStages--;
+      if (!succeeded) {
+        job.numFailedStages++;
+      } else if (stageEvent._submissionTime != null) {
+        job.completedStageIndices.add(stageEvent._stageId);
+      }
+    }
+  }
+
+  private void onTaskStart(JsonParser parser) throws IOException {
+    int stageId = -1;
+    int attemptId = 0;
+    String executorId = null;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+      if (field.equals("Stage ID")) {
+        stageId = parser.getIntValue();
+      } else if (field.equals("Stage Attempt ID")) {
+        attemptId = parser.getIntValue();
+      } else if (field.equals("Task Info")) {
+        executorId = readField(parser, "Executor ID");
+      } else {
+        parser.skipChildren();
+      }
+    }
+
+    getStage(stageId, attemptId).numActiveTasks++;
+    _numActiveTasks++;
+    for (JobInfo job : getActiveJobs(stageId)) {
+      job.numActiveTasks++;
+    }
+    if (executorId != null) {
+      getExecutor(executorId).activeTasks++;
+    }
+  }
+
+  private void onTaskEnd(JsonParser parser) throws IOException {
+    int stageId = -1;
+    int attemptId = 0;
+    String reason = null;
+    TaskEvent task = null;
+    TaskMetrics metrics = null;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+      if (field.equals("Stage ID")) {
+        stageId = parser.getIntValue();
+      } else if (field.equals("Stage Attempt ID")) {
+        attemptId = parser.getIntValue();
+      } else if (field.equals("Task End Reason")) {
+        reason = readField(parser, "Reason");
+      } else if (field.equals("Task Info")) {
+        task = readTaskEvent(parser);
+      } else if (field.equals("Task Metrics") && parser.getCurrentToken() == JsonToken.START_OBJECT) {
+        // The executor of the task comes before its metrics, so the updated blocks can be applied right away
+        metrics = readTaskMetrics(parser, task == null ? null : task._executorId);
+      } else {
+        parser.skipChildren();
+      }
+    }
+    if (task == null) {
+      return;
+    }
+    boolean succeeded = "Success".equals(reason);
+
+    StageInfo stage = getStage(stageId, attemptId);
+    stage.numActiveTasks--;
+    _numActiveTasks--;
+    if (task._failed) {
+      stage.numFailedTasks++;
+    } else if (task._finishTime != 0) {
+      stage.numCompleteTasks++;
+    }
+    if (metrics != null) {
+      stage.executorRunTime += metrics._executorRunTime;
+      stage.inputBytes += metrics._inputBytes;
+      stage.outputBytes += metrics._outputBytes;
+      stage.shuffleReadBytes += metrics._shuffleRemoteBytesRead + metrics._shuffleLocalBytesRead;
+      stage.shuffleWriteBytes += metrics._shuffleBytesWritten;
+      stage.memoryBytesSpilled += metrics._memoryBytesSpilled;
+      stage.diskBytesSpilled += metrics._diskBytesSpilled;
+    }
+
+    for (JobInfo job : getActiveJobs(stageId)) {
+      job.numActiveTasks--;
+      if (succeeded) {
+        job.numCompletedTasks++;
+      } else {
+        job.numFailedTasks++;
+      }
+    }
+
+    if (task._executorId != null) {
+      ExecutorInfo executor = getExecutor(task._executorId);
+      executor.activeTasks--;
+      if ("ExceptionFailure".equals(reason)) {
+        executor.failedTasks++;
+      } else {
+        executor.completedTasks++;
+      }
+      executor.duration += task._finishTime - task._launchTime;
+      if (metrics != null) {
+        executor.inputBytes += metrics._inputBytes;
+        executor.outputBytes += metrics._outputBytes;
+        executor.shuffleRead += metrics._shuffleRemoteBytesRead;
+        executor.shuffleWrite += metrics._shuffleBytesWritten;
+      }
+    }
+  }
+
+  private TaskEvent readTaskEvent(JsonParser parser) throws IOException {
+    TaskEvent task = new TaskEvent();
+    if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+      parser.skipChildren();
+      return task;
+    }
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+      if (field.equals("Executor ID")) {
+        task._executorId = parser.getText();
+      } else if (field.equals("Launch Time")) {
+        task._launchTime = parser.getLongValue();
+      } else if (field.equals("Finish Time")) {
+        task._finishTime = parser.getLongValue();
+      } else if (field.equals("Failed")) {
+        task._failed = parser.getCurrentToken() == JsonToken.VALUE_TRUE;
+      } else {
+        parser.skipChildren();
+      }
+    }
+    return task;
+  }
+
+  private TaskMetrics readTaskMetrics(JsonParser parser, String executorId) throws IOException {
+    TaskMetrics metrics = new TaskMetrics();
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+      if (field.equals("Executor Run Time")) {
+        metrics._executorRunTime = parser.getLongValue();
+      } else if (field.equals("Memory Bytes Spilled")) {
+        metrics._memoryBytesSpilled = parser.getLongValue();
+      } else if (field.equals("Disk Bytes Spilled")) {
+        metrics._diskBytesSpilled = parser.getLongValue();
+      } else if (field.equals("Input Metrics")) {
+        metrics._inputBytes = readLongField(parser, "Bytes Read");
+      } else if (field.equals("Output Metrics")) {
+        metrics._outputBytes = readLongField(parser, "Bytes Written");
+      } else if (field.equals("Shuffle Write Metrics")) {
+        metrics._shuffleBytesWritten = readLongField(parser, "Shuffle Bytes Written");
+      } else if (field.equals("Shuffle Read Metrics") && parser.getCurrentToken() == JsonToken.START_OBJECT) {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          String readField = parser.getCurrentName();
+          parser.nextToken();
+          if (readField.equals("Remote Bytes Read")) {
+            metrics._shuffleRemoteBytesRead = parser.getLongValue();
+          } else if (readField.equals("Local Bytes Read")) {
+            metrics._shuffleLocalBytesRead = parser.getLongValue();
+          } else {
+            parser.skipChildren();
+          }
+        }
+      } else if (field.equals("Updated Blocks") && parser.getCurrentToken() == JsonToken.START_ARRAY) {
+        readUpdatedBlocks(parser, executorId);
+      } else {
+        parser.skipChildren();
+      }
+    }
+    return metrics;
+  }
+
+  private void readUpdatedBlocks(JsonParser parser, String executorId) throws IOException {
+    BlockManager blockManager = executorId == null ? null : _executorIdToBlockManager.get(executorId);
+    while (nextElement(parser)) {
+      String blockId = null;
+      boolean cached = false;
+      long memSize = 0;
+      long diskSize = 0;
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        parser.nextToken();
+        if (field.equals("Block ID")) {
+          blockId = parser.getText();
+        } else if (field.equals("Status") && parser.getCurrentToken() == JsonToken.START_OBJECT) {
+          while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String statusField = parser.getCurrentName();
+            parser.nextToken();
+            if (statusField.equals("Storage Level")) {
+              cached = readIsCached(parser);
+            } else if (statusField.equals("Memory Size")) {
+              memSize = parser.getLongValue();
+            } else if (statusField.equals("Disk Size")) {
+              diskSize = parser.getLongValue();
+            } else {
+              parser.skipChildren();
+            }
+          }
+        } else {
+          parser.skipChildren();
+        }
+      }
+      if (blockManager == null || blockId == null) {
+        continue;
+      }
+      if (cached) {
+        blockManager.updateBlock(blockId, memSize, diskSize);
+      } else {
+        blockManager.removeBlock(blockId);
+      }
+    }
+    if (blockManager != null) {
+      Long maxUsedMem = _executorIdToMaxUsedMem.get(executorId);
+      if (maxUsedMem == null || blockManager._memUsed > maxUsedMem) {
+        _executorIdToMaxUsedMem.put(executorId, blockManager._memUsed);
+      }
+    }
+  }
+
+  /**
+   * @return false if the storage level is NONE, i.e. the block was dropped
+   */
+  private static boolean readIsCached(JsonParser parser) throws IOException {
+    if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+      parser.skipChildren();
+      return false;
+    }
+    boolean cached = false;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+      if (field.startsWith("Use ") && parser.getCurrentToken() == JsonToken.VALUE_TRUE) {
+        // Use Disk, Use Memory, Use ExternalBlockStore or Use Tachyon depending on the Spark version
+        cached = true;
+      } else {
+        parser.skipChildren();
+      }
+    }
+    return cached;
+  }
+
+  private StageEvent readStageEvent(JsonParser parser) throws IOException {
+    if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+      parser.skipChildren();
+      return null;
+    }
+    StageEvent stageEvent = new StageEvent();
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      JsonToken value = parser.nextToken();
+      if (field.equals("Stage ID")) {
+        stageEvent._stageId = parser.getIntValue();
+      } else if (field.equals("Stage Attempt ID")) {
+        stageEvent._attemptId = parser.getIntValue();
+      } else if (field.equals("Stage Name")) {
+        stageEvent._name = parser.getText();
+      } else if (field.equals("Number of Tasks")) {
+        stageEvent._numTasks = parser.getIntValue();
+      } else if (field.equals("Submission Time") && value != JsonToken.VALUE_NULL) {
+        stageEvent._submissionTime = parser.getLongValue();
+      } else if (field.equals("Completion Time") && value != JsonToken.VALUE_NULL) {
+        stageEvent._completionTime = parser.getLongValue();
+      } else if (field.equals("Failure Reason") && value != JsonToken.VALUE_NULL) {
+        stageEvent._failed = true;
+        parser.skipChildren();
+      } else {
+        parser.skipChildren();
+      }
+    }
+    return stageEvent;
+  }
+
+  /**
+   * @return The executor id and the host:port of a block manager id object
+   */
+  private static String[] readBlockManagerId(JsonParser parser) throws IOException {
+    String[] blockManagerId = new String[2];
+    if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+      parser.skipChildren();
+      return blockManagerId;
+    }
+    String host = null;
+    String port = null;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+      if (field.equals("Executor ID")) {
+        blockManagerId[0] = parser.getText();
+      } else if (field.equals("Host")) {
+        host = parser.getText();
+      } else if (field.equals("Port")) {
+        port = parser.getText();
+      } else {
+        parser.skipChildren();
+      }
+    }
+    blockManagerId[1] = host + ":" + port;
+    return blockManagerId;
+  }
+
+  /**
+   * Reads all the string values of the object the parser is at
+   */
+  private static void readProperties(JsonParser parser, Properties properties) throws IOException {
+    if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+      parser.skipChildren();
+      return;
+    }
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String name = parser.getCurrentName();
+      JsonToken value = parser.nextToken();
+      if (value.isScalarValue() && value != JsonToken.VALUE_NULL) {
+        properties.put(name, parser.getText());
+      } else {
+        parser.skipChildren();
+      }
+    }
+  }
+
+  /**
+   * @return The text of one field of the object the parser is at, or null if the field is not there
+   */
+  private static String readField(JsonParser parser, String name) throws IOException {
+    if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+      parser.skipChildren();
+      return null;
+    }
+    String result = null;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      JsonToken value = parser.nextToken();
+      if (field.equals(name) && value.isScalarValue() && value != JsonToken.VALUE_NULL) {
+        result = parser.getText();
+      } else {
+        parser.skipChildren();
+      }
+    }
+    return result;
+  }
+
+  private static long readLongField(JsonParser parser, String name) throws IOException {
+    if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+      parser.skipChildren();
+      return 0;
+    }
+    long result = 0;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      JsonToken value = parser.nextToken();
+      if (field.equals(name) && value == JsonToken.VALUE_NUMBER_INT) {
+        result = parser.getLongValue();
+      } else {
+        parser.skipChildren();
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Skips the remaining fields of the object the parser is in
+   */
+  private static void skipFields(JsonParser parser) throws IOException {
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      parser.nextToken();
+      parser.skipChildren();
+    }
+  }
+
+  /**
+   * Moves to the next object of the array the parser is in. Anything in the array that is not an object is skipped.
+   *
+   * @return true if the parser is at the start of the next object, false at the end of the array
+   */
+  private static boolean nextElement(JsonParser parser) throws IOException {
+    JsonToken next = parser.nextToken();
+    while (next != null && next != JsonToken.END_ARRAY) {
+      if (next == JsonToken.START_OBJECT) {
+        return true;
+      }
+      parser.skipChildren();
+      next = parser.nextToken();
+    }
+    return false;
+  }
+
+  private static Set<String> stringToSet(String str) {
+    Set<String> set = new HashSet<String>();
+    for (String item : str.split(",")) {
+      set.add(item);
+    }
+    return set;
+  }
+
+  private StageInfo getStage(int stageId, int attemptId) {
+    StageInfo stage = _jobProgressData.getStageInfo(stageId, attemptId);
+    if (stage == null) {
+      stage = new StageInfo();
+      stage.name = "";
+      stage.description = "";
+      _jobProgressData.addStageInfo(stageId, attemptId, stage);
+    }
+    return stage;
+  }
+
+  private ExecutorInfo getExecutor(String executorId) {
+    ExecutorInfo executor = _executorIdToInfo.get(executorId);
+    if (executor == null) {
+      executor = new ExecutorInfo();
+      executor.execId = executorId;
+      _executorIdToInfo.put(executorId, executor);
+    }
+    return executor;
+  }
+
+  private Iterable<JobInfo> getActiveJobs(int stageId) {
+    Set<Integer> jobIds = _stageIdToActiveJobIds.get(stageId);
+    if (jobIds == null) {
+      return Collections.emptyList();
+    }
+    List<JobInfo> jobs = new ArrayList<JobInfo>(jobIds.size());
+    for (int jobId : jobIds) {
+      JobInfo job = _jobProgressData.getJobInfo(jobId);
+      if (job != null) {
+        jobs.add(job);
+      }
+    }
+    return jobs;
+  }
+
+  private SparkEventLogData toData() {
+    // Like the executors page, only the executors with a live block manager are reported
+    SparkExecutorData executorData = new SparkExecutorData();
+    for (Map.Entry<String, BlockManager> entry : _executorIdToBlockManager.entrySet()) {
+      String executorId = entry.getKey();
+      BlockManager blockManager = entry.getValue();
+      ExecutorInfo info = getExecutor(executorId);
+      info.hostPort = blockManager._hostPort;
+      info.rddBlocks = blockManager._blocks.size();
+      info.maxMem = blockManager._maxMem;
+      info.diskUsed = blockManager._diskUsed;
+      Long maxUsedMem = _executorIdToMaxUsedMem.get(executorId);
+      info.memUsed = maxUsedMem == null ? 0L : maxUsedMem;
+      info.totalTasks = info.activeTasks + info.failedTasks + info.completedTasks;
+      executorData.setExecutorInfo(executorId, info);
+    }
+
+    SparkStorageData storageData = new SparkStorageData();
+    storageData.setRddInfoList(new ArrayList<RDDInfo>());
+    storageData.setStorageStatusList(new ArrayList<StorageStatus>());
+
+    return new SparkEventLogData(_generalData, _environmentData, executorData, _jobProgressData, storageData);
+  }
+
+  /**
+   * The cached blocks of an executor
+   */
+  private static class BlockManager {
+    private final String _hostPort;
+    private final long _maxMem;
+    // memory and disk size of each block
+    private final Map<String, long[]> _blocks = new HashMap<String, long[]>();
+    private long _memUsed = 0;
+    private long _diskUsed = 0;
+
+    BlockManager(String hostPort, long maxMem) {
+      _hostPort = hostPort;
+      _maxMem = maxMem;
+    }
+
+    private void updateBlock(String blockId, long memSize, long diskSize) {
+      removeBlock(blockId);
+      _blocks.put(blockId, new long[] { memSize, diskSize });
+      _memUsed += memSize;
+      _diskUsed += diskSize;
+    }
+
+    private void removeBlock(String blockId) {
+      long[] sizes = _blocks.remove(blockId);
+      if (sizes != null) {
+        _memUsed -= sizes[0];
+        _diskUsed -= sizes[1];
+      }
+    }
+
+    private void removeBlocks(String prefix) {
+      Iterator<Map.Entry<String, long[]>> it = _blocks.entrySet().iterator();
+      while (it.hasNext()) {
+        Map.Entry<String, long[]> entry = it.next();
+        if (entry.getKey().startsWith(prefix)) {
+          _memUsed -= entry.getValue()[0];
+          _diskUsed -= entry.getValue()[1];
+          it.remove();
+        }
+      }
+    }
+  }
+
+  /**
+   * The fields of a stage info that are used
+   */
+  private static class StageEvent {
+    private int _stageId = -1;
+    private int _attemptId = 0;
+    private String _name;
+    private int _numTasks = 0;
+    private Long _submissionTime;
+    private Long _completionTime;
+    private boolean _failed = false;
+  }
+
+  /**
+   * The fields of a task info that are used
+   */
+  private static class TaskEvent {
+    private String _executorId;
+    private long _launchTime;
+    private long _finishTime;
+    private boolean _failed;
+  }
+
+  /**
+   * The fields of the task metrics that are used
+   */
+  private static class TaskMetrics {
+    private long _executorRunTime;
+    private long _memoryBytesSpilled;
+    private long _diskBytesSpilled;
+    private long _inputBytes;
+    private long _outputBytes;
+    private long _shuffleRemoteBytesRead;
+    private long _shuffleLocalBytesRead;
+    private long _shuffleBytesWritten;
+  }
+}
@@ -221,7 +221,6 @@ public class SparkJobProgressData {
   public static class StageInfo {
     public int numActiveTasks;
     public int numCompleteTasks;
-    public final Set<Integer> completedIndices = new HashSet<Integer>();
     public int numFailedTasks;
 
     // Total accumulated executor runtime
@@ -250,10 +249,10 @@ public class SparkJobProgressData {
 
     @Override
     public String toString() {
-      return String.format("{numActiveTasks:%s, numCompleteTasks:%s, completedIndices:%s, numFailedTasks:%s,"
-              + " executorRunTime:%s, inputBytes:%s, outputBytes:%s, shuffleReadBytes:%s, shuffleWriteBytes:%s,"
-              + " memoryBytesSpilled:%s, diskBytesSpilled:%s, name:%s, description:%s}",
-          numActiveTasks, numCompleteTasks, getListString(completedIndices), numFailedTasks, executorRunTime,
+      return String.format("{numActiveTasks:%s, numCompleteTasks:%s, numFailedTasks:%s, executorRunTime:%s,"
+              + " inputBytes:%s, outputBytes:%s, shuffleReadBytes:%s, shuffleWriteBytes:%s, memoryBytesSpilled:%s,"
+              + " diskBytesSpilled:%s, name:%s, description:%s}",
+          numActiveTasks, numCompleteTasks, numFailedTasks, executorRunTime,
           inputBytes, outputBytes, shuffleReadBytes, shuffleWriteBytes, memoryBytesSpilled, diskBytesSpilled, name,
           description);
     }
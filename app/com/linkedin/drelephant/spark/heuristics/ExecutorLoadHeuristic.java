@@ -75,47 +75,26 @@ public class ExecutorLoadHeuristic implements Heuristic<SparkApplicationData> {
     loadParameters();
   }
 
+  /**
+   * The average, min and max of the values of one metric over the executors, observed in a single pass
+   */
   private class ValueObserver {
-    private final long[] _values;
-    private Long _min;
-    private Long _max;
-    private Long _avg;
-
-    public ValueObserver(int size) {
-      _values = new long[size];
-    }
-
-    public void set(int index, long value) {
-      _values[index] = value;
-      if (_min == null) {
-        _min = value;
-      } else {
-        _min = Math.min(value, _min);
-      }
+    private final Statistics.Moments _moments = new Statistics.Moments();
 
-      if (_max == null) {
-        _max = value;
-      } else {
-        _max = Math.max(value, _max);
-      }
+    public void add(long value) {
+      _moments.add(value);
     }
 
     public long getMin() {
-      return _min == null ? 0L : _min;
+      return _moments.getMin();
     }
 
     public long getMax() {
-      return _max == null ? 0L : _max;
+      return _moments.getMax();
     }
 
     public long getAvg() {
-      if (_avg == null) {
-        if (_values == null) {
-          return 0L;
-        }
-        _avg = Statistics.average(_values);
-      }
-      return _avg;
+      return (long) _moments.getMean();
     }
 
     /**
@@ -143,16 +122,11 @@ public class ExecutorLoadHeuristic implements Heuristic<SparkApplicationData> {
     SparkExecutorData executorData = data.getExecutorData();
     Set<String> executors = executorData.getExecutors();
 
-    int numNonDriverExe = executors.size();
-    if (executors.contains(EXECUTOR_DRIVER_NAME)) {
-      numNonDriverExe -= 1;
-    }
-    ValueObserver peakMems = new ValueObserver(numNonDriverExe);
-    ValueObserver durations = new ValueObserver(numNonDriverExe);
-    ValueObserver inputBytes = new ValueObserver(numNonDriverExe);
-    ValueObserver outputBytes = new ValueObserver(numNonDriverExe);
+    ValueObserver peakMems = new ValueObserver();
+    ValueObserver durations = new ValueObserver();
+    ValueObserver inputBytes = new ValueObserver();
+    ValueObserver outputBytes = new ValueObserver();
 
-    int i = 0;
     for (String exeId : executors) {
       if (!exeId.equals(EXECUTOR_DRIVER_NAME)) {
         SparkExecutorData.ExecutorInfo info = executorData.getExecutorInfo(exeId);
@@ -161,15 +135,14 @@ public class ExecutorLoadHeuristic implements Heuristic<SparkApplicationData> {
          * The deviation of memory usage in KB level is too fluctuating to track.
          */
         if (info.memUsed < MEMORY_OBSERVATION_THRESHOLD) {
-          peakMems.set(i, 0L);
+          peakMems.add(0L);
         } else {
-          peakMems.set(i, info.memUsed);
+          peakMems.add(info.memUsed);
         }
 
-        durations.set(i, info.duration);
-        inputBytes.set(i, info.inputBytes);
-        outputBytes.set(i, info.outputBytes);
-        i += 1;
+        durations.add(info.duration);
+        inputBytes.add(info.inputBytes);
+        outputBytes.add(info.outputBytes);
       }
     }
 
@@ -0,0 +1,313 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.util;
+
+import com.linkedin.drelephant.math.Statistics;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPInputStream;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.security.authentication.client.AuthenticatedURL;
+import org.apache.hadoop.security.authentication.client.AuthenticationException;
+import org.apache.hadoop.security.authentication.client.ConnectionConfigurator;
+import org.apache.log4j.Logger;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+
+
+/**
+ * The HTTP client shared by the fetchers and the job generator to call the REST APIs of the Hadoop daemons (resource
+ * manager, job history server, name nodes).
+ *
+ * - Each thread keeps its own SPNEGO token and reuses it until it expires, so the Kerberos handshake only happens
+ *   once every half an hour per thread instead of on every call.
+ * - Responses are always read to the end and closed, which lets the JDK keep the connections alive and reuse them,
+ *   instead of leaving sockets behind in CLOSE_WAIT.
+ * - Responses are requested gzip compressed, and connections have connect and read timeouts.
+ * - The number of in-flight requests to a single host is capped across all the threads.
+ */
+public final class HadoopRestClient {
+  private static final Logger logger = Logger.getLogger(HadoopRestClient.class);
+
+  private static final String CONNECT_TIMEOUT_KEY = "drelephant.http.connect.timeout";
+  private static final String READ_TIMEOUT_KEY = "drelephant.http.read.timeout";
+  private static final String MAX_REQUESTS_PER_HOST_KEY = "drelephant.http.max.requests.per.host";
+
+  private static final int CONNECT_TIMEOUT = 10 * 1000;     // Timeout to open a connection in milliseconds
+  private static final int READ_TIMEOUT = 60 * 1000;        // Timeout to wait for data in milliseconds
+  private static final int MAX_REQUESTS_PER_HOST = 16;      // Max concurrent requests to a host, 0 means no limit
+
+  // The JDK keeps at most this many idle connections alive per host
+  private static final String JDK_KEEP_ALIVE_KEY = "http.keepAlive";
+  private static final String JDK_MAX_CONNECTIONS_KEY = "http.maxConnections";
+
+  private static final int DRAIN_BUFFER_SIZE = 4096;
+
+  private static volatile HadoopRestClient INSTANCE;
+
+  private final int _connectTimeout;
+  private final int _readTimeout;
+  private final int _maxRequestsPerHost;
+  private final ObjectMapper _objectMapper = new ObjectMapper();
+  private final Map<String, Semaphore> _hostPermits = new ConcurrentHashMap<String, Semaphore>();
+
+  private final ThreadLocal<ThreadState> _threadState = new ThreadLocal<ThreadState>() {
+    @Override
+    protected ThreadState initialValue() {
+      return new ThreadState();
+    }
+  };
+
+  /**
+   * Reads the response body of a request
+   *
+   * @param <T> The type of the result
+   */
+  public interface ResponseReader<T> {
+    /**
+     * @param in The response body, already decompressed. It is drained and closed by the client afterwards.
+     * @return The result of reading the body
+     * @throws IOException
+     */
+    T read(InputStream in) throws IOException;
+  }
+
+  /**
+   * Configure the shared client from the general configuration. Should be called before any fetcher is created.
+   *
+   * @param configuration The general configuration
+   */
+  public static void configure(Configuration configuration) {
+    INSTANCE = new HadoopRestClient(
+        Utils.getNonNegativeInt(configuration, CONNECT_TIMEOUT_KEY, CONNECT_TIMEOUT),
+        Utils.getNonNegativeInt(configuration, READ_TIMEOUT_KEY, READ_TIMEOUT),
+        Utils.getNonNegativeInt(configuration, MAX_REQUESTS_PER_HOST_KEY, MAX_REQUESTS_PER_HOST));
+  }
+
+  /**
+   * @return The shared client, configured with the default values if #configure has not been called
+   */
+  public static HadoopRestClient instance() {
+    if (INSTANCE == null) {
+      synchronized (HadoopRestClient.class) {
+        if (INSTANCE == null) {
+          INSTANCE = new HadoopRestClient(CONNECT_TIMEOUT, READ_TIMEOUT, MAX_REQUESTS_PER_HOST);
+        }
+      }
+    }
+    return INSTANCE;
+  }
+
+  HadoopRestClient(int connectTimeout, int readTimeout, int maxRequestsPerHost) {
+    _connectTimeout = connectTimeout;
+    _readTimeout = readTimeout;
+    _maxRequestsPerHost = maxRequestsPerHost;
+
+    // The JDK keep-alive cache reads these once, so they only apply if set before the first connection is made.
+    if (System.getProperty(JDK_KEEP_ALIVE_KEY) == null) {
+      System.setProperty(JDK_KEEP_ALIVE_KEY, "true");
+    }
+    if (maxRequestsPerHost > 0 && System.getProperty(JDK_MAX_CONNECTIONS_KEY) == null) {
+      System.setProperty(JDK_MAX_CONNECTIONS_KEY, String.valueOf(maxRequestsPerHost));
+    }
+    logger.info("HTTP client connect timeout " + connectTimeout + " ms, read timeout " + readTimeout
+        + " ms, max requests per host " + maxRequestsPerHost);
+  }
+
+  /**
+   * Connect to url and return the JsonNode
+   *
+   * @param url The url to connect to
+   * @return The parsed json
+   * @throws IOException Unable to get the stream
+   * @throws AuthenticationException Authentication problem
+   */
+  public JsonNode readJsonNode(URL url) throws IOException, AuthenticationException {
+    return read(url, new ResponseReader<JsonNode>() {
+      @Override
+      public JsonNode read(InputStream in) throws IOException {
+        return _objectMapper.readTree(in);
+      }
+    });
+  }
+
+  /**
+   * Connect to url and read the response body with the given reader
+   *
+   * @param url The url to connect to
+   * @param reader The reader of the response body
+   * @return The result of the reader
+   * @throws FileNotFoundException The server does not know the resource (404 response)
+   * @throws IOException Unable to get the stream or a non 200 response
+   * @throws AuthenticationException Authentication problem
+   */
+  public <T> T read(URL url, ResponseReader<T> reader) throws IOException, AuthenticationException {
+    Semaphore permits = getHostPermits(url.getAuthority());
+    if (permits != null) {
+      try {
+        permits.acquire();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting to connect to " + url.getAuthority());
+      }
+    }
+    try {
+      ThreadState state = _threadState.get();
+      state.refreshIfExpired();
+      try {
+        return doRead(state, url, reader);
+      } catch (ExpiredTokenException e) {
+        // The server no longer accepts our token, authenticate again once
+        logger.info("Authentication token rejected by " + url.getAuthority() + ", authenticating again.");
+        state.refresh();
+        return doRead(state, url, reader);
+      }
+    } finally {
+      if (permits != null) {
+        permits.release();
+      }
+    }
+  }
+
+  private <T> T doRead(ThreadState state, URL url, ResponseReader<T> reader)
+      throws IOException, AuthenticationException {
+    HttpURLConnection conn = state._authenticatedURL.openConnection(url, state._token);
+    conn.setRequestProperty("Accept-Encoding", "gzip");
+
+    int responseCode = conn.getResponseCode();
+    if (responseCode != HttpURLConnection.HTTP_OK) {
+      drain(conn.getErrorStream());
+      if (responseCode == HttpURLConnection.HTTP_UNAUTHORIZED && state._token.isSet()) {
+        throw new ExpiredTokenException("Request to " + url + " was rejected with status " + responseCode);
+      }
+      if (responseCode == HttpURLConnection.HTTP_NOT_FOUND) {
+        throw new FileNotFoundException("Request to " + url + " failed with status " + responseCode);
+      }
+      throw new IOException("Request to " + url + " failed with status " + responseCode + " "
+          + conn.getResponseMessage());
+    }
+    AuthenticatedURL.extractToken(conn, state._token);
+
+    InputStream raw = conn.getInputStream();
+    try {
+      InputStream in = raw;
+      if ("gzip".equalsIgnoreCase(conn.getContentEncoding())) {
+        in = new GZIPInputStream(raw);
+      }
+      return reader.read(in);
+    } finally {
+      drain(raw);
+    }
+  }
+
+  /**
+   * Read the remaining of the stream and close it, so that the JDK can return the connection to its keep-alive
+   * cache.
+   */
+  private static void drain(InputStream in) {
+    if (in == null) {
+      return;
+    }
+    try {
+      byte[] buffer = new byte[DRAIN_BUFFER_SIZE];
+      while (in.read(buffer) >= 0) {
+        // discard
+      }
+    } catch (IOException e) {
+      logger.debug("Failed to drain the response stream", e);
+    } finally {
+      try {
+        in.close();
+      } catch (IOException e) {
+        logger.debug("Failed to close the response stream", e);
+      }
+    }
+  }
+
+  private Semaphore getHostPermits(String host) {
+    if (_maxRequestsPerHost <= 0 || host == null) {
+      return null;
+    }
+    Semaphore permits = _hostPermits.get(host);
+    if (permits == null) {
+      synchronized (_hostPermits) {
+        permits = _hostPermits.get(host);
+        if (permits == null) {
+          permits = new Semaphore(_maxRequestsPerHost, true);
+          _hostPermits.put(host, permits);
+        }
+      }
+    }
+    return permits;
+  }
+
+  /**
+   * The authentication state of a thread
+   */
+  private class ThreadState {
+    // Generate a token update interval with a random deviation so that the threads do not update their tokens at
+    // the same time.
+    private final long _updateInterval =
+        Statistics.MINUTE_IN_MS * 30 + new Random().nextLong() % (3 * Statistics.MINUTE_IN_MS);
+    private long _lastUpdated;
+    private AuthenticatedURL.Token _token;
+    private AuthenticatedURL _authenticatedURL;
+
+    ThreadState() {
+      refresh();
+    }
+
+    private void refreshIfExpired() {
+      if (System.currentTimeMillis() - _lastUpdated > _updateInterval) {
+        logger.info("Thread " + Thread.currentThread().getName() + " updates its AuthenticatedToken.");
+        refresh();
+      }
+    }
+
+    private void refresh() {
+      _token = new AuthenticatedURL.Token();
+      _authenticatedURL = new AuthenticatedURL(null, new ConnectionConfigurator() {
+        @Override
+        public HttpURLConnection configure(HttpURLConnection conn) throws IOException {
+          conn.setConnectTimeout(_connectTimeout);
+          conn.setReadTimeout(_readTimeout);
+          return conn;
+        }
+      });
+      _lastUpdated = System.currentTimeMillis();
+    }
+  }
+
+  /**
+   * Thrown when the server rejects a token that was previously accepted
+   */
+  private static class ExpiredTokenException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    ExpiredTokenException(String message) {
+      super(message);
+    }
+  }
+}
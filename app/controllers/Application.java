@@ -16,14 +16,19 @@
 
 package controllers;
 
+import com.avaje.ebean.Expr;
 import com.avaje.ebean.ExpressionList;
 import com.avaje.ebean.Query;
 import com.fasterxml.jackson.core.JsonGenerationException;
 import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.linkedin.drelephant.ElephantContext;
+import com.linkedin.drelephant.analysis.AppResultCache;
+import com.linkedin.drelephant.analysis.AppResultCounts;
+import com.linkedin.drelephant.analysis.AppResultScores;
 import com.linkedin.drelephant.analysis.Severity;
 import com.linkedin.drelephant.configurations.heuristic.HeuristicConfigurationData;
 import com.linkedin.drelephant.util.Utils;
@@ -42,7 +47,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
 import models.AppHeuristicResult;
+import models.AppHeuristicResultDetails;
 import models.AppResult;
 import org.apache.http.client.utils.URLEncodedUtils;
 import org.apache.http.message.BasicNameValuePair;
@@ -72,7 +79,7 @@ import com.google.gson.*;
 public class Application extends Controller {
   private static final Logger logger = Logger.getLogger(Application.class);
   private static final long DAY = 24 * 60 * 60 * 1000;
-  private static final long FETCH_DELAY = 60 * 1000;
+  static final long FETCH_DELAY = 60 * 1000;
 
   private static final int PAGE_LENGTH = 20;                  // Num of jobs in a search page
   private static final int PAGE_BAR_LENGTH = 5;               // Num of pages shown in the page bar
@@ -98,11 +105,49 @@ public class Application extends Controller {
   public static final String COMPARE_FLOW_ID1 = "flow-exec-id1";
   public static final String COMPARE_FLOW_ID2 = "flow-exec-id2";
   public static final String PAGE = "page";
+  public static final String PAGE_TOKEN = "page-token";
+  public static final String NEXT_PAGE_TOKEN_HEADER = "X-Next-Page-Token";
 
-  private static long _lastFetch = 0;
-  private static int _numJobsAnalyzed = 0;
-  private static int _numJobsCritical = 0;
-  private static int _numJobsSevere = 0;
+  private static volatile DashboardCounts _dashboardCounts = null;
+
+  /**
+   * The application counts shown on the dashboard, as of the time they were fetched
+   */
+  static class DashboardCounts {
+    final long _fetchTime;
+    final long _numJobsAnalyzed;
+    final long _numJobsCritical;
+    final long _numJobsSevere;
+
+    DashboardCounts(long fetchTime) {
+      Map<Severity, Long> counts = AppResultCounts.countBySeverity(fetchTime - DAY);
+      long total = 0;
+      for (long count : counts.values()) {
+        total += count;
+      }
+      _fetchTime = fetchTime;
+      _numJobsAnalyzed = total;
+      _numJobsCritical = counts.containsKey(Severity.CRITICAL) ? counts.get(Severity.CRITICAL) : 0;
+      _numJobsSevere = counts.containsKey(Severity.SEVERE) ? counts.get(Severity.SEVERE) : 0;
+    }
+  }
+
+  /**
+   * Returns the dashboard counts, fetching them again after FETCH_DELAY. Only one request fetches them at a time.
+   */
+  static DashboardCounts getDashboardCounts(long now) {
+    DashboardCounts counts = _dashboardCounts;
+    if (counts == null || now - counts._fetchTime > FETCH_DELAY) {
+      synchronized (DashboardCounts.class) {
+        counts = _dashboardCounts;
+        if (counts == null || now - counts._fetchTime > FETCH_DELAY) {
+          counts = new DashboardCounts(now);
+          _dashboardCounts = counts;
+        }
+      }
+    }
+    return counts;
+  }
 
   /**
    * Controls the Home page of Dr. Elephant.
@@ -113,21 +158,8 @@ public class Application extends Controller {
     long now = System.currentTimeMillis();
     long finishDate = now - DAY;
 
-    // Update statistics only after FETCH_DELAY
-    if (now - _lastFetch > FETCH_DELAY) {
-      _numJobsAnalyzed = AppResult.find.where()
-          .gt(AppResult.TABLE.FINISH_TIME, finishDate)
-          .findRowCount();
-      _numJobsCritical = AppResult.find.where()
-          .gt(AppResult.TABLE.FINISH_TIME, finishDate)
-          .eq(AppResult.TABLE.SEVERITY, Severity.CRITICAL.getValue())
-          .findRowCount();
-      _numJobsSevere = AppResult.find.where()
-          .gt(AppResult.TABLE.FINISH_TIME, finishDate)
-          .eq(AppResult.TABLE.SEVERITY, Severity.SEVERE.getValue())
-          .findRowCount();
-      _lastFetch = now;
-    }
+    // Counted from the hourly counts, updated only after FETCH_DELAY
+    DashboardCounts counts = getDashboardCounts(now);
 
     // Fetch only required fields for jobs analysed in the last 24 hours up to a max of 50 jobs
     List<AppResult> results = AppResult.find
@@ -139,7 +171,7 @@ public class Application extends Controller {
         .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS, AppHeuristicResult.getSearchFields())
         .findList();
 
-    return ok(homePage.render(_numJobsAnalyzed, _numJobsSevere, _numJobsCritical,
+    return ok(homePage.render(counts._numJobsAnalyzed, counts._numJobsSevere, counts._numJobsCritical,
         searchResults.render("Latest analysis", results)));
   }
 
@@ -188,24 +220,66 @@ public class Application extends Controller {
         paginationStats.setCurrentPage(1);
       }
     }
+    SearchCursor cursor = null;
+    if (searchString.containsKey(PAGE_TOKEN) && paginationStats.getCurrentPage() > 1) {
+      try {
+        cursor = SearchCursor.fromToken(searchString.get(PAGE_TOKEN)[0]);
+      } catch (IllegalArgumentException ex) {
+        logger.error("Error parsing page token. Seeking the page by its number.");
+      }
+    }
     int currentPage = paginationStats.getCurrentPage();
     int paginationBarStartIndex = paginationStats.getPaginationBarStartIndex();
+    paginationStats.setQueryString(getQueryString());
 
     // Filter jobs by search parameters
-    Query<AppResult> query = generateSearchQuery(AppResult.getSearchFields(), getSearchParams());
-    List<AppResult> results = query
-        .setFirstRow((paginationBarStartIndex - 1) * pageLength)
-        .setMaxRows((paginationStats.getPageBarLength() - 1) * pageLength + 1)
-        .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS, AppHeuristicResult.getSearchFields())
-        .findList();
-    paginationStats.setQueryString(getQueryString());
-    if (results.isEmpty() || currentPage > paginationStats.computePaginationBarEndIndex(results.size())) {
+    Map<String, String> searchParams = getSearchParams();
+    boolean byStartTime = isSortedByStartTime(searchParams);
+    List<AppResult> results;
+    int firstPage;
+    if (cursor != null) {
+      // Seek to the current page and read the rest of the bar from there. The positions of the pages of the bar
+      // before the current page are read backwards from it.
+      firstPage = currentPage;
+      int pagesAfter = paginationStats.getPageBarLength() - 1 - (currentPage - paginationBarStartIndex);
+      results = generateSearchQuery(AppResult.getSearchFields(), searchParams, cursor, false)
+          .setMaxRows(pagesAfter * pageLength + 1)
+          .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS, AppHeuristicResult.getSearchFields())
+          .findList();
+      List<AppResult> previousResults = generateSearchQuery(
+          AppResult.TABLE.ID + "," + AppResult.TABLE.START_TIME + "," + AppResult.TABLE.FINISH_TIME, searchParams,
+          cursor, true)
+          .setMaxRows((currentPage - paginationBarStartIndex) * pageLength)
+          .findList();
+      paginationStats.setPageToken(currentPage, cursor.toToken());
+      for (int page = currentPage - 1; page > 1 && page >= paginationBarStartIndex; page--) {
+        int last = (currentPage - page) * pageLength - 1;
+        if (last < previousResults.size()) {
+          paginationStats.setPageToken(page, SearchCursor.of(previousResults.get(last), byStartTime).toToken());
+        }
+      }
+    } else {
+      firstPage = paginationBarStartIndex;
+      results = generateSearchQuery(AppResult.getSearchFields(), searchParams)
+          .setFirstRow((paginationBarStartIndex - 1) * pageLength)
+          .setMaxRows((paginationStats.getPageBarLength() - 1) * pageLength + 1)
+          .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS, AppHeuristicResult.getSearchFields())
+          .findList();
+    }
+    for (int last = pageLength - 1; last < results.size(); last += pageLength) {
+      paginationStats.setPageToken(firstPage + (last + 1) / pageLength,
+          SearchCursor.of(results.get(last), byStartTime).toToken());
+    }
+
+    int resultsBefore = (firstPage - paginationBarStartIndex) * pageLength;
+    if (results.isEmpty()
+        || currentPage > paginationStats.computePaginationBarEndIndex(resultsBefore + results.size())) {
       return ok(searchPage.render(null, jobDetails.render(null)));
     } else {
+      int firstResult = (currentPage - firstPage) * pageLength;
       return ok(searchPage.render(paginationStats,
           searchResults.render("Results",
-              results.subList((currentPage - paginationBarStartIndex) * pageLength, Math.min(results.size(),
-                  (currentPage - paginationBarStartIndex + 1) * pageLength)))));
+              results.subList(firstResult, Math.min(results.size(), firstResult + pageLength)))));
     }
   }
 
@@ -220,7 +294,7 @@ public class Application extends Controller {
     for (Map.Entry<String, String[]> entry : entries) {
       final String key = entry.getKey();
       final String value = entry.getValue()[0];
-      if (!key.equals(PAGE)) {
+      if (!key.equals(PAGE) && !key.equals(PAGE_TOKEN)) {
         fields.add(new BasicNameValuePair(key, value));
       }
     }
@@ -259,8 +333,27 @@ public class Application extends Controller {
    * @return An sql expression on App Result
    */
   public static Query<AppResult> generateSearchQuery(String selectParams, Map<String, String> searchParams) {
-    if (searchParams == null || searchParams.isEmpty()) {
-      return AppResult.find.select(selectParams).order().desc(AppResult.TABLE.FINISH_TIME);
+    return generateSearchQuery(selectParams, searchParams, null, false);
+  }
+
+  /**
+   * Build SQL predicates for Search Query, starting from a position in the search order
+   *
+   * @param selectParams The fields to select from the table
+   * @param searchParams The fields to query on the table
+   * @param cursor The position after which the results are returned, or null to start from the first result
+   * @param backward Whether to return the results before the position instead, the nearest first
+   * @return An sql expression on App Result
+   */
+  public static Query<AppResult> generateSearchQuery(String selectParams, Map<String, String> searchParams,
+      SearchCursor cursor, boolean backward) {
+    if ((searchParams == null || searchParams.isEmpty()) && cursor == null && !backward) {
+      return AppResult.find.select(selectParams)
+          .order().desc(AppResult.TABLE.FINISH_TIME)
+          .order().desc(AppResult.TABLE.ID);
+    }
+    if (searchParams == null) {
+      searchParams = new HashMap<String, String>();
     }
     ExpressionList<AppResult> query = AppResult.find.select(selectParams).where();
 
@@ -320,14 +413,36 @@ public class Application extends Controller {
       }
     }
 
-    // If queried by start time then sort the results by start time.
-    if (Utils.isSet(startedTimeBegin) || Utils.isSet(startedTimeEnd)) {
-      return query.order().desc(AppResult.TABLE.START_TIME);
+    // If queried by start time then sort the results by start time. The id breaks the ties for the cursors.
+    String orderField = isSortedByStartTime(searchParams) ? AppResult.TABLE.START_TIME : AppResult.TABLE.FINISH_TIME;
+    if (cursor != null) {
+      // The bound on the time alone lets the database seek along the time index
+      if (backward) {
+        query = query.ge(orderField, cursor.getTime())
+            .or(Expr.gt(orderField, cursor.getTime()),
+                Expr.and(Expr.eq(orderField, cursor.getTime()), Expr.gt(AppResult.TABLE.ID, cursor.getId())));
+      } else {
+        query = query.le(orderField, cursor.getTime())
+            .or(Expr.lt(orderField, cursor.getTime()),
+                Expr.and(Expr.eq(orderField, cursor.getTime()), Expr.lt(AppResult.TABLE.ID, cursor.getId())));
+      }
+    }
+    if (backward) {
+      return query.order().asc(orderField).order().asc(AppResult.TABLE.ID);
     } else {
-      return query.order().desc(AppResult.TABLE.FINISH_TIME);
+      return query.order().desc(orderField).order().desc(AppResult.TABLE.ID);
     }
   }
 
+  /**
+   * @param searchParams The fields to query on the table
+   * @return true if the search is ordered by start time, false if by finish time
+   */
+  private static boolean isSortedByStartTime(Map<String, String> searchParams) {
+    return searchParams != null
+        && (Utils.isSet(searchParams.get(STARTED_TIME_BEGIN)) || Utils.isSet(searchParams.get(STARTED_TIME_END)));
+  }
+
   /**
    Controls the Compare Feature
    */
@@ -406,6 +521,45 @@ public class Application extends Controller {
     return jobDefMap;
   }
 
+  /**
+   * Build the query of the latest JOB_HISTORY_LIMIT results of a flow
+   *
+   * @param flowDefId The flow definition id
+   * @return The query, without the heuristic results
+   */
+  static Query<AppResult> generateFlowHistoryQuery(String flowDefId) {
+    return AppResult.find
+        .select(
+            AppResult.getSearchFields() + "," + AppResult.TABLE.FLOW_EXEC_ID + "," + AppResult.TABLE.FLOW_EXEC_URL + ","
+                + AppResult.TABLE.JOB_DEF_ID + "," + AppResult.TABLE.JOB_DEF_URL + "," + AppResult.TABLE.JOB_NAME)
+        .where().eq(AppResult.TABLE.FLOW_DEF_ID, flowDefId)
+        .order().desc(AppResult.TABLE.FINISH_TIME)
+        .setMaxRows(JOB_HISTORY_LIMIT);
+  }
+
+  /**
+   * Build the query of the latest JOB_HISTORY_LIMIT results of a job
+   *
+   * @param jobDefId The job definition id
+   * @return The query, without the heuristic results
+   */
+  static Query<AppResult> generateJobHistoryQuery(String jobDefId) {
+    return AppResult.find
+        .select(AppResult.getSearchFields() + "," + AppResult.TABLE.FLOW_EXEC_ID + "," + AppResult.TABLE.FLOW_EXEC_URL)
+        .where().eq(AppResult.TABLE.JOB_DEF_ID, jobDefId)
+        .order().desc(AppResult.TABLE.FINISH_TIME).setMaxRows(JOB_HISTORY_LIMIT);
+  }
+
+  /**
+   * Build the query of the results of a job execution
+   *
+   * @param jobExecId The job execution id
+   * @return The query, without the heuristic results
+   */
+  static Query<AppResult> generateJobExecQuery(String jobExecId) {
+    return AppResult.find.select("*").where().eq(AppResult.TABLE.JOB_EXEC_ID, jobExecId).query();
+  }
+
   /**
    * Controls the flow history. Displays max MAX_HISTORY_LIMIT executions
    */
@@ -418,13 +572,7 @@ public class Application extends Controller {
     }
 
     // Fetch available flow executions with latest JOB_HISTORY_LIMIT mr jobs.
-    List<AppResult> results = AppResult.find
-        .select(
-            AppResult.getSearchFields() + "," + AppResult.TABLE.FLOW_EXEC_ID + "," + AppResult.TABLE.FLOW_EXEC_URL + ","
-                + AppResult.TABLE.JOB_DEF_ID + "," + AppResult.TABLE.JOB_DEF_URL + "," + AppResult.TABLE.JOB_NAME)
-        .where().eq(AppResult.TABLE.FLOW_DEF_ID, flowDefId)
-        .order().desc(AppResult.TABLE.FINISH_TIME)
-        .setMaxRows(JOB_HISTORY_LIMIT)
+    List<AppResult> results = generateFlowHistoryQuery(flowDefId)
         .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS, AppHeuristicResult.getSearchFields())
         .findList();
     if (results.size() == 0) {
@@ -475,12 +623,11 @@ public class Application extends Controller {
     }
 
     // Fetch all job executions
-    List<AppResult> results = AppResult.find
-        .select(AppResult.getSearchFields() + "," + AppResult.TABLE.FLOW_EXEC_ID + "," + AppResult.TABLE.FLOW_EXEC_URL)
-        .where().eq(AppResult.TABLE.JOB_DEF_ID, jobDefId)
-        .order().desc(AppResult.TABLE.FINISH_TIME).setMaxRows(JOB_HISTORY_LIMIT)
+    List<AppResult> results = generateJobHistoryQuery(jobDefId)
         .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS, "*")
-        .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS + "." + AppHeuristicResult.TABLE.APP_HEURISTIC_RESULT_DETAILS, "*")
+        // Only the detail values are shown, not the detail texts
+        .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS + "." + AppHeuristicResult.TABLE.APP_HEURISTIC_RESULT_DETAILS,
+            AppHeuristicResultDetails.getSearchFields())
         .findList();
     if (results.size() == 0) {
       return notFound("Unable to find record on job url: " + jobDefId);
@@ -611,17 +758,57 @@ public class Application extends Controller {
       id = id.replaceAll("job", "application");
     }
 
-    AppResult result = AppResult.find.select("*")
-        .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS, "*")
-        .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS + "." + AppHeuristicResult.TABLE.APP_HEURISTIC_RESULT_DETAILS, "*")
-        .where()
-        .idEq(id).findUnique();
+    final String appId = id;
+    return cachedJson(AppResultCache.Kind.APP, appId, new Callable<JsonNode>() {
+      @Override
+      public JsonNode call() {
+        AppResult result = AppResult.find.select("*")
+            .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS, "*")
+            .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS + "." + AppHeuristicResult.TABLE.APP_HEURISTIC_RESULT_DETAILS,
+                "*")
+            .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS + "." + AppHeuristicResult.TABLE.APP_HEURISTIC_RESULT_METRICS,
+                "*")
+            .where()
+            .idEq(appId).findUnique();
+        return result != null ? Json.toJson(result) : null;
+      }
+    }, "Unable to find record on id: " + appId);
+  }
 
-    if (result != null) {
-      return ok(Json.toJson(result));
-    } else {
-      return notFound("Unable to find record on id: " + id);
+  /**
+   * Serves a result through the result cache. The result is sent with its entity tag, and is not sent again to a
+   * client that already has it.
+   *
+   * @param kind The kind of id
+   * @param id The id
+   * @param loader Loads the result from the database, or returns null if there is none
+   * @param notFoundMessage The message if there is no result
+   * @return The result
+   */
+  private static Result cachedJson(AppResultCache.Kind kind, String id, final Callable<JsonNode> loader,
+      String notFoundMessage) {
+    AppResultCache.Entry entry;
+    try {
+      entry = AppResultCache.instance().get(kind, id, new Callable<String>() {
+        @Override
+        public String call() throws Exception {
+          JsonNode json = loader.call();
+          return json != null ? json.toString() : null;
+        }
+      });
+    } catch (Exception e) {
+      logger.error("Error loading the results of " + kind + " " + id, e);
+      return internalServerError("Error loading the results of " + id);
+    }
+
+    if (entry == null) {
+      return notFound(notFoundMessage);
     }
+    response().setHeader(ETAG, entry.getETag());
+    if (entry.matches(request().getHeader(IF_NONE_MATCH))) {
+      return status(NOT_MODIFIED);
+    }
+    return ok(entry.getJson()).as("application/json; charset=utf-8");
   }
 
   /**
@@ -634,17 +821,20 @@ public class Application extends Controller {
       return badRequest("No job exec url provided.");
     }
 
-    List<AppResult> result = AppResult.find.select("*")
-        .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS, "*")
-        .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS + "." + AppHeuristicResult.TABLE.APP_HEURISTIC_RESULT_DETAILS, "*")
-        .where().eq(AppResult.TABLE.JOB_EXEC_ID, jobExecId)
-        .findList();
-
-    if (result.size() == 0) {
-      return notFound("Unable to find record on job exec url: " + jobExecId);
-    }
-
-    return ok(Json.toJson(result));
+    final String execId = jobExecId;
+    return cachedJson(AppResultCache.Kind.JOB_EXEC, execId, new Callable<JsonNode>() {
+      @Override
+      public JsonNode call() {
+        List<AppResult> result = generateJobExecQuery(execId)
+            .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS, "*")
+            .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS + "." + AppHeuristicResult.TABLE.APP_HEURISTIC_RESULT_DETAILS,
+                "*")
+            .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS + "." + AppHeuristicResult.TABLE.APP_HEURISTIC_RESULT_METRICS,
+                "*")
+            .findList();
+        return result.size() > 0 ? Json.toJson(result) : null;
+      }
+    }, "Unable to find record on job exec url: " + execId);
   }
 
   /**
@@ -657,26 +847,34 @@ public class Application extends Controller {
       return badRequest("No flow exec url provided.");
     }
 
-    List<AppResult> results = AppResult.find.select("*")
-        .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS, "*")
-        .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS + "." + AppHeuristicResult.TABLE.APP_HEURISTIC_RESULT_DETAILS, "*")
-        .where().eq(AppResult.TABLE.FLOW_EXEC_ID, flowExecId)
-        .findList();
-
-    if (results.size() == 0) {
-      return notFound("Unable to find record on flow exec url: " + flowExecId);
-    }
-
-    Map<IdUrlPair, List<AppResult>> groupMap = groupJobs(results, GroupBy.JOB_EXECUTION_ID);
+    final String execId = flowExecId;
+    return cachedJson(AppResultCache.Kind.FLOW_EXEC, execId, new Callable<JsonNode>() {
+      @Override
+      public JsonNode call() {
+        List<AppResult> results = AppResult.find.select("*")
+            .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS, "*")
+            .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS + "." + AppHeuristicResult.TABLE.APP_HEURISTIC_RESULT_DETAILS,
+                "*")
+            .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS + "." + AppHeuristicResult.TABLE.APP_HEURISTIC_RESULT_METRICS,
+                "*")
+            .where().eq(AppResult.TABLE.FLOW_EXEC_ID, execId)
+            .findList();
+
+        if (results.size() == 0) {
+          return null;
+        }
 
-    Map<String, List<AppResult>> resMap = new HashMap<String, List<AppResult>>();
-    for (Map.Entry<IdUrlPair, List<AppResult>> entry : groupMap.entrySet()) {
-      IdUrlPair jobExecPair = entry.getKey();
-      List<AppResult> value = entry.getValue();
-      resMap.put(jobExecPair.getId(), value);
-    }
+        Map<IdUrlPair, List<AppResult>> groupMap = groupJobs(results, GroupBy.JOB_EXECUTION_ID);
 
-    return ok(Json.toJson(resMap));
+        Map<String, List<AppResult>> resMap = new HashMap<String, List<AppResult>>();
+        for (Map.Entry<IdUrlPair, List<AppResult>> entry : groupMap.entrySet()) {
+          IdUrlPair jobExecPair = entry.getKey();
+          List<AppResult> value = entry.getValue();
+          resMap.put(jobExecPair.getId(), value);
+        }
+        return Json.toJson(resMap);
+      }
+    }, "Unable to find record on flow exec url: " + execId);
   }
 
   static enum GroupBy {
@@ -756,6 +954,8 @@ public class Application extends Controller {
           .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS, "*")
           .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS + "."
               + AppHeuristicResult.TABLE.APP_HEURISTIC_RESULT_DETAILS, "*")
+          .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS + "."
+              + AppHeuristicResult.TABLE.APP_HEURISTIC_RESULT_METRICS, "*")
           .where()
           .idEq(appId).findUnique();
       if (result != null) {
@@ -769,6 +969,8 @@ public class Application extends Controller {
           .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS, "*")
           .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS + "."
               + AppHeuristicResult.TABLE.APP_HEURISTIC_RESULT_DETAILS, "*")
+          .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS + "."
+              + AppHeuristicResult.TABLE.APP_HEURISTIC_RESULT_METRICS, "*")
           .where().eq(AppResult.TABLE.FLOW_EXEC_ID, flowExecId)
           .findList();
       if (results.size() == 0) {
@@ -786,21 +988,59 @@ public class Application extends Controller {
       }
     }
 
-    Query<AppResult> query = generateSearchQuery("*", getSearchParams());
-    List<AppResult> results = query
-        .setFirstRow((page - 1) * REST_PAGE_LENGTH)
-        .setMaxRows(REST_PAGE_LENGTH)
-        .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS, "*")
-        .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS + "." + AppHeuristicResult.TABLE.APP_HEURISTIC_RESULT_DETAILS, "*")
-        .findList();
+    // A page token seeks to the page, and takes precedence over the page number
+    SearchCursor cursor;
+    try {
+      cursor = SearchCursor.fromToken(form.get(PAGE_TOKEN));
+    } catch (IllegalArgumentException e) {
+      return badRequest(e.getMessage());
+    }
+
+    // Without a projection, the whole results are returned
+    ResultProjection projection;
+    try {
+      projection = ResultProjection.parse(form.get(ResultProjection.FIELDS), form.get(ResultProjection.EXPAND));
+    } catch (IllegalArgumentException e) {
+      return badRequest(e.getMessage());
+    }
+
+    Map<String, String> searchParams = getSearchParams();
+    Query<AppResult> query =
+        generateSearchQuery(projection != null ? projection.getSelect() : "*", searchParams, cursor, false);
+    if (cursor == null) {
+      query = query.setFirstRow((page - 1) * REST_PAGE_LENGTH);
+    }
+    query = query.setMaxRows(REST_PAGE_LENGTH);
+    query = projection != null ? projection.fetch(query) : fetchWholeResults(query);
+    List<AppResult> results = query.findList();
 
     if (results.size() == 0) {
       return notFound("No records");
     } else {
-      return ok(Json.toJson(results));
+      if (results.size() == REST_PAGE_LENGTH) {
+        AppResult last = results.get(results.size() - 1);
+        response().setHeader(NEXT_PAGE_TOKEN_HEADER,
+            SearchCursor.of(last, isSortedByStartTime(searchParams)).toToken());
+      }
+      return ok(projection != null ? projection.toJson(results) : Json.toJson(results));
     }
   }
 
+  /**
+   * Fetches the heuristic results of the results with all their details and metrics
+   *
+   * @param query The query selecting the whole results
+   * @return The query
+   */
+  static Query<AppResult> fetchWholeResults(Query<AppResult> query) {
+    return query
+        .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS, "*")
+        .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS + "." + AppHeuristicResult.TABLE.APP_HEURISTIC_RESULT_DETAILS,
+            "*")
+        .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS + "." + AppHeuristicResult.TABLE.APP_HEURISTIC_RESULT_METRICS,
+            "*");
+  }
+
   /**
    * The Rest API for Compare Feature
    * E.g., localhost:8080/rest/compare?flow-exec-id1=abc&flow-exec-id2=xyz
@@ -821,6 +1061,8 @@ public class Application extends Controller {
           .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS, "*")
           .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS + "."
               + AppHeuristicResult.TABLE.APP_HEURISTIC_RESULT_DETAILS, "*")
+          .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS + "."
+              + AppHeuristicResult.TABLE.APP_HEURISTIC_RESULT_METRICS, "*")
           .findList();
       results2 = AppResult.find
           .select("*").where()
@@ -828,6 +1070,8 @@ public class Application extends Controller {
           .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS, "*")
           .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS + "."
               + AppHeuristicResult.TABLE.APP_HEURISTIC_RESULT_DETAILS, "*")
+          .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS + "."
+              + AppHeuristicResult.TABLE.APP_HEURISTIC_RESULT_METRICS, "*")
           .findList();
     }
 
@@ -898,55 +1142,32 @@ public class Application extends Controller {
       return ok(new Gson().toJson(datasets));
     }
 
-    // Fetch available flow executions with latest JOB_HISTORY_LIMIT mr jobs.
-    List<AppResult> results = AppResult.find
-        .select("*")
-        .where().eq(AppResult.TABLE.FLOW_DEF_ID, flowDefId)
-        .order().desc(AppResult.TABLE.FINISH_TIME)
-        .setMaxRows(JOB_HISTORY_LIMIT)
-            // The 2nd and 3rd table are not required for plotting the graph
-            //.fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS, AppHeuristicResult.getSearchFields())
-            //.fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS + "."
-            //    + AppHeuristicResult.TABLE.APP_HEURISTIC_RESULT_DETAILS, "*")
-        .findList();
-    if (results.size() == 0) {
+    // The last executions, with the scores of their jobs in the order they finished
+    List<AppResultScores.Score> flowScores = AppResultScores.getFlowScores(flowDefId, MAX_HISTORY_LIMIT);
+    if (flowScores.size() == 0) {
       logger.info("No results for Job url");
     }
-    Map<IdUrlPair, List<AppResult>> flowExecIdToJobsMap =  limitHistoryResults(
-        groupJobs(results, GroupBy.FLOW_EXECUTION_ID), results.size(), MAX_HISTORY_LIMIT);
+    Map<String, JsonArray> flowExecIdToJobScores = new HashMap<String, JsonArray>();
+    for (AppResultScores.Score flowScore : flowScores) {
+      flowExecIdToJobScores.put(flowScore.getFlowExecId(), new JsonArray());
+    }
+    for (AppResultScores.Score score : AppResultScores.getJobScores(flowExecIdToJobScores.keySet())) {
+      // A job in jobscores list
+      JsonObject jobScore = new JsonObject();
+      jobScore.addProperty("jobscore", score.getScore());
+      jobScore.addProperty("jobdefurl", score.getJobDefUrl());
+      jobScore.addProperty("jobexecurl", score.getJobExecUrl());
+
+      flowExecIdToJobScores.get(score.getFlowExecId()).add(jobScore);
+    }
 
     // Compute the graph data starting from the earliest available execution to latest
-    List<IdUrlPair> keyList = new ArrayList<IdUrlPair>(flowExecIdToJobsMap.keySet());
-    for(int i = keyList.size() - 1; i >= 0; i--) {
-      IdUrlPair flowExecPair = keyList.get(i);
-      int flowPerfScore = 0;
-      JsonArray jobScores = new JsonArray();
-      List<AppResult> mrJobsList = Lists.reverse(flowExecIdToJobsMap.get(flowExecPair));
-      Map<IdUrlPair, List<AppResult>> jobDefIdToJobsMap = groupJobs(mrJobsList, GroupBy.JOB_DEFINITION_ID);
-
-      // Compute the execution records. Note that each entry in the jobDefIdToJobsMap will have at least one AppResult
-      for (IdUrlPair jobDefPair : jobDefIdToJobsMap.keySet()) {
-        // Compute job perf score
-        int jobPerfScore = 0;
-        for (AppResult job : jobDefIdToJobsMap.get(jobDefPair)) {
-          jobPerfScore += job.score;
-        }
-
-        // A job in jobscores list
-        JsonObject jobScore = new JsonObject();
-        jobScore.addProperty("jobscore", jobPerfScore);
-        jobScore.addProperty("jobdefurl", jobDefPair.getUrl());
-        jobScore.addProperty("jobexecurl", jobDefIdToJobsMap.get(jobDefPair).get(0).jobExecUrl);
-
-        jobScores.add(jobScore);
-        flowPerfScore += jobPerfScore;
-      }
-
+    for (AppResultScores.Score flowScore : Lists.reverse(flowScores)) {
       // Execution record
       JsonObject dataset = new JsonObject();
-      dataset.addProperty("flowtime", mrJobsList.get(mrJobsList.size() - 1).finishTime);
-      dataset.addProperty("score", flowPerfScore);
-      dataset.add("jobscores", jobScores);
+      dataset.addProperty("flowtime", flowScore.getFinishTime());
+      dataset.addProperty("score", flowScore.getScore());
+      dataset.add("jobscores", flowExecIdToJobScores.get(flowScore.getFlowExecId()));
 
       datasets.add(dataset);
     }
@@ -1000,48 +1221,40 @@ public class Application extends Controller {
       return ok(new Gson().toJson(datasets));
     }
 
-    // Fetch available flow executions with latest JOB_HISTORY_LIMIT mr jobs.
-    List<AppResult> results = AppResult.find
-        .select(AppResult.getSearchFields() + "," + AppResult.TABLE.FLOW_EXEC_ID + "," + AppResult.TABLE.FLOW_EXEC_URL)
-        .where().eq(AppResult.TABLE.JOB_DEF_ID, jobDefId)
-        .order().desc(AppResult.TABLE.FINISH_TIME).setMaxRows(JOB_HISTORY_LIMIT)
-        .fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS, "*")
-        .findList();
-    if (results.size() == 0) {
+    // The last executions of the job, with the scores of their mr jobs
+    List<AppResultScores.Score> jobScores = AppResultScores.getJobScores(jobDefId, MAX_HISTORY_LIMIT);
+    if (jobScores.size() == 0) {
       logger.info("No results for Job url");
     }
-    Map<IdUrlPair, List<AppResult>> flowExecIdToJobsMap =  limitHistoryResults(
-        groupJobs(results, GroupBy.FLOW_EXECUTION_ID), results.size(), MAX_HISTORY_LIMIT);
-
-    // Compute the graph data starting from the earliest available execution to latest
-    List<IdUrlPair> keyList = new ArrayList<IdUrlPair>(flowExecIdToJobsMap.keySet());
-    for(int i = keyList.size() - 1; i >= 0; i--) {
-      IdUrlPair flowExecPair = keyList.get(i);
-      int jobPerfScore = 0;
-      JsonArray stageScores = new JsonArray();
-      List<AppResult> mrJobsList = Lists.reverse(flowExecIdToJobsMap.get(flowExecPair));
-      for (AppResult appResult : flowExecIdToJobsMap.get(flowExecPair)) {
-
-        // Each MR job triggered by jobDefId for flowExecId
-        int mrPerfScore = 0;
-        for (AppHeuristicResult appHeuristicResult : appResult.yarnAppHeuristicResults) {
-          mrPerfScore += appHeuristicResult.score;
-        }
-
-        // A particular mr stage
+    Map<String, JsonArray> flowExecIdToStageScores = new HashMap<String, JsonArray>();
+    for (AppResultScores.Score jobScore : jobScores) {
+      flowExecIdToStageScores.put(jobScore.getFlowExecId(), new JsonArray());
+    }
+    if (!jobScores.isEmpty()) {
+      List<AppResult> results = AppResult.find
+          .select(AppResult.TABLE.ID + "," + AppResult.TABLE.SCORE + "," + AppResult.TABLE.FLOW_EXEC_ID)
+          .where()
+          .eq(AppResult.TABLE.JOB_DEF_ID, jobDefId)
+          .in(AppResult.TABLE.FLOW_EXEC_ID, flowExecIdToStageScores.keySet())
+          .order().desc(AppResult.TABLE.FINISH_TIME)
+          .findList();
+      for (AppResult appResult : results) {
+        // A particular mr stage, its score is the sum of its heuristic scores
         JsonObject stageScore = new JsonObject();
         stageScore.addProperty("stageid", appResult.id);
-        stageScore.addProperty("stagescore", mrPerfScore);
+        stageScore.addProperty("stagescore", appResult.score);
 
-        stageScores.add(stageScore);
-        jobPerfScore += mrPerfScore;
+        flowExecIdToStageScores.get(appResult.flowExecId).add(stageScore);
       }
+    }
 
+    // Compute the graph data starting from the earliest available execution to latest
+    for (AppResultScores.Score jobScore : Lists.reverse(jobScores)) {
       // Execution record
       JsonObject dataset = new JsonObject();
-      dataset.addProperty("flowtime", mrJobsList.get(mrJobsList.size() - 1).finishTime);
-      dataset.addProperty("score", jobPerfScore);
-      dataset.add("stagescores", stageScores);
+      dataset.addProperty("flowtime", jobScore.getFinishTime());
+      dataset.addProperty("score", jobScore.getScore());
+      dataset.add("stagescores", flowExecIdToStageScores.get(jobScore.getFlowExecId()));
 
       datasets.add(dataset);
     }
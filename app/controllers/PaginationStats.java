@@ -16,8 +16,15 @@
 
 package controllers;
 
+import java.util.HashMap;
+import java.util.Map;
+
+
 /**
- * This class handles the pagination of results in search page
+ * This class handles the pagination of results in search page.
+ *
+ * The pages whose position in the results is known carry a page token, so that they are fetched by seeking to their
+ * position rather than by skipping all the results before them.
  */
 public class PaginationStats {
   public int currentPage = 1;
@@ -26,6 +33,7 @@ public class PaginationStats {
   public int pageLength;
   public int pageBarLength;
   public String queryString = null;
+  private final Map<Integer, String> pageTokens = new HashMap<Integer, String>();
 
   /**
    * The constructor for the PaginationStats
@@ -115,4 +123,38 @@ public class PaginationStats {
   public int getPageLength() {
     return pageLength;
   }
+
+  /**
+   * Sets the token of the position of a page
+   *
+   * @param page The page number
+   * @param token The position of the last result before the page
+   */
+  public void setPageToken(int page, String token) {
+    pageTokens.put(page, token);
+  }
+
+  /**
+   * Returns the token of the position of a page
+   *
+   * @param page The page number
+   * @return The token, or null if the page is only known by its number
+   */
+  public String getPageToken(int page) {
+    return pageTokens.get(page);
+  }
+
+  /**
+   * Returns the query parameters of a page, its number and its token when known
+   *
+   * @param page The page number
+   * @return The query parameters of the page
+   */
+  public String getPageQuery(int page) {
+    String token = getPageToken(page);
+    if (token == null) {
+      return Application.PAGE + "=" + page;
+    }
+    return Application.PAGE + "=" + page + "&" + Application.PAGE_TOKEN + "=" + token;
+  }
 }
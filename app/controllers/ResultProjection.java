@@ -0,0 +1,225 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package controllers;
+
+import com.avaje.ebean.Query;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.linkedin.drelephant.util.Utils;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import models.AppHeuristicResult;
+import models.AppHeuristicResultDetails;
+import models.AppHeuristicResultMetric;
+import models.AppResult;
+import play.libs.Json;
+
+
+/**
+ * The parts of the analysis results a listing endpoint loads and returns, given by its fields and expand parameters.
+ *
+ * By default only the columns of the results are loaded. The heuristic results, and their detail values and metrics,
+ * are loaded when expanded. The detail texts, e.g. stack traces, are never loaded by a listing, they are fetched on
+ * demand with the result of a single application.
+ *
+ * The results are serialized from the loaded properties only, so that the properties left out are not lazy loaded.
+ */
+public class ResultProjection {
+  public static final String FIELDS = "fields";
+  public static final String EXPAND = "expand";
+  public static final String EXPAND_HEURISTICS = "heuristics";
+  public static final String EXPAND_DETAILS = "details";
+
+  private static final Map<String, Field> APP_RESULT_FIELDS = getFields(AppResult.class);
+  private static final String HEURISTIC_RESULT_FIELDS = Utils.commaSeparated(AppHeuristicResult.TABLE.HEURISTIC_CLASS,
+      AppHeuristicResult.TABLE.HEURISTIC_NAME, AppHeuristicResult.TABLE.SEVERITY, AppHeuristicResult.TABLE.SCORE,
+      AppHeuristicResult.TABLE.TIMED_OUT);
+
+  private final List<Field> _fields;
+  private final boolean _heuristics;
+  private final boolean _details;
+
+  /**
+   * Parses the fields and expand parameters
+   *
+   * @param fields The comma separated result fields, or null for all of them
+   * @param expand The comma separated parts to expand, heuristics and details, or null for none
+   * @return The projection, or null if neither parameter is set, in which case the whole results are returned
+   * @throws IllegalArgumentException if a field or a part is unknown
+   */
+  public static ResultProjection parse(String fields, String expand) {
+    if (!Utils.isSet(fields) && !Utils.isSet(expand)) {
+      return null;
+    }
+
+    List<Field> projectedFields = new ArrayList<Field>();
+    if (Utils.isSet(fields)) {
+      for (String name : fields.split(",")) {
+        Field field = APP_RESULT_FIELDS.get(name.trim());
+        if (field == null) {
+          throw new IllegalArgumentException("Unknown field " + name + ", should be among "
+              + APP_RESULT_FIELDS.keySet());
+        }
+        if (!projectedFields.contains(field)) {
+          projectedFields.add(field);
+        }
+      }
+    } else {
+      projectedFields.addAll(APP_RESULT_FIELDS.values());
+    }
+
+    boolean heuristics = false;
+    boolean details = false;
+    if (Utils.isSet(expand)) {
+      for (String part : expand.split(",")) {
+        part = part.trim();
+        if (part.equals(EXPAND_HEURISTICS)) {
+          heuristics = true;
+        } else if (part.equals(EXPAND_DETAILS)) {
+          heuristics = true;
+          details = true;
+        } else {
+          throw new IllegalArgumentException("Unknown expansion " + part + ", should be among "
+              + Arrays.asList(EXPAND_HEURISTICS, EXPAND_DETAILS));
+        }
+      }
+    }
+    return new ResultProjection(projectedFields, heuristics, details);
+  }
+
+  private ResultProjection(List<Field> fields, boolean heuristics, boolean details) {
+    _fields = fields;
+    _heuristics = heuristics;
+    _details = details;
+  }
+
+  /**
+   * @return The properties of the results to select
+   */
+  public String getSelect() {
+    StringBuilder select = new StringBuilder(AppResult.TABLE.ID);
+    for (Field field : _fields) {
+      if (!field.getName().equals(AppResult.TABLE.ID)) {
+        select.append(',').append(field.getName());
+      }
+    }
+    return select.toString();
+  }
+
+  /**
+   * Fetches the expanded parts of the results
+   *
+   * @param query The query selecting getSelect()
+   * @return The query
+   */
+  public Query<AppResult> fetch(Query<AppResult> query) {
+    if (_heuristics) {
+      query = query.fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS, HEURISTIC_RESULT_FIELDS);
+    }
+    if (_details) {
+      query = query.fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS + "."
+          + AppHeuristicResult.TABLE.APP_HEURISTIC_RESULT_DETAILS, AppHeuristicResultDetails.getSearchFields());
+      query = query.fetch(AppResult.TABLE.APP_HEURISTIC_RESULTS + "."
+          + AppHeuristicResult.TABLE.APP_HEURISTIC_RESULT_METRICS, AppHeuristicResultMetric.getSearchFields());
+    }
+    return query;
+  }
+
+  /**
+   * Serializes the projected parts of the results
+   *
+   * @param results The results loaded with this projection
+   * @return The json array of the results
+   */
+  public JsonNode toJson(List<AppResult> results) {
+    ArrayNode array = Json.newObject().arrayNode();
+    for (AppResult result : results) {
+      ObjectNode node = array.addObject();
+      for (Field field : _fields) {
+        node.put(field.getName(), Json.toJson(getValue(field, result)));
+      }
+      if (_heuristics) {
+        ArrayNode heuristicArray = node.putArray(AppResult.TABLE.APP_HEURISTIC_RESULTS);
+        if (result.yarnAppHeuristicResults != null) {
+          for (AppHeuristicResult heuristicResult : result.yarnAppHeuristicResults) {
+            heuristicArray.add(toJson(heuristicResult));
+          }
+        }
+      }
+    }
+    return array;
+  }
+
+  private JsonNode toJson(AppHeuristicResult heuristicResult) {
+    ObjectNode node = Json.newObject();
+    node.put(AppHeuristicResult.TABLE.HEURISTIC_CLASS, heuristicResult.heuristicClass);
+    node.put(AppHeuristicResult.TABLE.HEURISTIC_NAME, heuristicResult.heuristicName);
+    node.put(AppHeuristicResult.TABLE.SEVERITY, Json.toJson(heuristicResult.severity));
+    node.put(AppHeuristicResult.TABLE.SCORE, heuristicResult.score);
+    node.put(AppHeuristicResult.TABLE.TIMED_OUT, heuristicResult.timedOut);
+    if (_details) {
+      ArrayNode detailArray = node.putArray(AppHeuristicResult.TABLE.APP_HEURISTIC_RESULT_DETAILS);
+      if (heuristicResult.yarnAppHeuristicResultDetails != null) {
+        for (AppHeuristicResultDetails detail : heuristicResult.yarnAppHeuristicResultDetails) {
+          ObjectNode detailNode = detailArray.addObject();
+          detailNode.put(AppHeuristicResultDetails.TABLE.NAME, detail.name);
+          detailNode.put(AppHeuristicResultDetails.TABLE.VALUE, detail.value);
+        }
+      }
+      ArrayNode metricArray = node.putArray(AppHeuristicResult.TABLE.APP_HEURISTIC_RESULT_METRICS);
+      if (heuristicResult.yarnAppHeuristicResultMetrics != null) {
+        for (AppHeuristicResultMetric metric : heuristicResult.yarnAppHeuristicResultMetrics) {
+          ObjectNode metricNode = metricArray.addObject();
+          metricNode.put(AppHeuristicResultMetric.TABLE.NAME, metric.name);
+          metricNode.put(AppHeuristicResultMetric.TABLE.UNIT, Json.toJson(metric.unit));
+          metricNode.put(AppHeuristicResultMetric.TABLE.VALUE, metric.value);
+        }
+      }
+    }
+    return node;
+  }
+
+  private static Object getValue(Field field, AppResult result) {
+    try {
+      return field.get(result);
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException("Cannot read field " + field.getName(), e);
+    }
+  }
+
+  /**
+   * @return The public instance fields of a model by name, except its relations and the fields added by the
+   *         enhancement
+   */
+  private static Map<String, Field> getFields(Class<?> modelClass) {
+    Map<String, Field> fields = new LinkedHashMap<String, Field>();
+    for (Field field : modelClass.getFields()) {
+      int modifiers = field.getModifiers();
+      if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !field.getName().startsWith("_")
+          && !List.class.isAssignableFrom(field.getType())) {
+        fields.put(field.getName(), field);
+      }
+    }
+    return fields;
+  }
+}
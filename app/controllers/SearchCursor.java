@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package controllers;
+
+import java.nio.charset.Charset;
+import models.AppResult;
+import org.apache.commons.codec.binary.Base64;
+
+
+/**
+ * The position of a result in the search order, which is by finish or start time, then by id. It is handed out as an
+ * opaque token, so that the next page is fetched by seeking to the position instead of skipping the earlier results.
+ */
+public class SearchCursor {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final String SEPARATOR = ":";
+
+  private final long _time;
+  private final String _id;
+
+  public SearchCursor(long time, String id) {
+    _time = time;
+    _id = id;
+  }
+
+  /**
+   * @param result A result of the search
+   * @param byStartTime Whether the search is ordered by start time instead of finish time
+   * @return The position of the result
+   */
+  public static SearchCursor of(AppResult result, boolean byStartTime) {
+    return new SearchCursor(byStartTime ? result.startTime : result.finishTime, result.id);
+  }
+
+  /**
+   * Parses a token given out by toToken
+   *
+   * @param token The token
+   * @return The position, or null if there is no token
+   * @throws IllegalArgumentException if the token is invalid
+   */
+  public static SearchCursor fromToken(String token) {
+    if (token == null || token.trim().isEmpty()) {
+      return null;
+    }
+    String value = new String(Base64.decodeBase64(token.trim()), UTF_8);
+    int separator = value.indexOf(SEPARATOR);
+    if (separator <= 0 || separator == value.length() - 1) {
+      throw new IllegalArgumentException("Invalid page token " + token);
+    }
+    try {
+      return new SearchCursor(Long.parseLong(value.substring(0, separator)), value.substring(separator + 1));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid page token " + token, e);
+    }
+  }
+
+  /**
+   * @return The position as a URL safe token
+   */
+  public String toToken() {
+    return Base64.encodeBase64URLSafeString((_time + SEPARATOR + _id).getBytes(UTF_8));
+  }
+
+  public long getTime() {
+    return _time;
+  }
+
+  public String getId() {
+    return _id;
+  }
+}
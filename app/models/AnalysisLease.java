@@ -0,0 +1,55 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package models;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import play.db.ebean.Model;
+
+
+/**
+ * The claim of a cluster node on the analysis of an application. The owning node renews the lease with its
+ * heartbeats; once the lease expires, any other node may take the application over.
+ */
+@Entity
+@Table(name = "analysis_lease")
+public class AnalysisLease extends Model {
+
+  private static final long serialVersionUID = 1L;
+
+  public static class TABLE {
+    public static final String TABLE_NAME = "analysis_lease";
+    public static final String APP_ID = "appId";
+    public static final String NODE_ID = "nodeId";
+    public static final String LEASE_EXPIRY = "leaseExpiry";
+  }
+
+  @Id
+  @Column(length = AppResult.ID_LIMIT, unique = true, nullable = false)
+  public String appId;
+
+  @Column(length = ClusterNode.ID_LIMIT, nullable = false)
+  public String nodeId;
+
+  @Column(nullable = false)
+  public long leaseExpiry;
+
+  public static Finder<String, AnalysisLease> find = new Finder<String, AnalysisLease>(String.class, AnalysisLease.class);
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package models;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import play.db.ebean.Model;
+
+
+/**
+ * An application whose analysis failed and is waiting to be retried. Kept in the database so that the retries
+ * survive a restart of the daemon.
+ */
+@Entity
+@Table(name = "analysis_retry")
+public class AnalysisRetry extends Model {
+
+  private static final long serialVersionUID = 1L;
+
+  public static class TABLE {
+    public static final String TABLE_NAME = "analysis_retry";
+    public static final String APP_ID = "appId";
+    public static final String NODE_ID = "nodeId";
+    public static final String APP_TYPE = "appType";
+    public static final String USERNAME = "username";
+    public static final String NAME = "name";
+    public static final String QUEUE_NAME = "queueName";
+    public static final String TRACKING_URL = "trackingUrl";
+    public static final String START_TIME = "startTime";
+    public static final String FINISH_TIME = "finishTime";
+    public static final String FAILED = "failed";
+    public static final String RETRIES = "retries";
+  }
+
+  @Id
+  @Column(length = AppResult.ID_LIMIT, unique = true, nullable = false)
+  public String appId;
+
+  @Column(length = ClusterNode.ID_LIMIT, nullable = false)
+  public String nodeId;
+
+  @Column(length = AppResult.JOBTYPE_LIMIT, nullable = false)
+  public String appType;
+
+  @Column(length = AppResult.USERNAME_LIMIT, nullable = false)
+  public String username;
+
+  @Column(length = AppResult.APP_NAME_LIMIT, nullable = false)
+  public String name;
+
+  @Column(length = AppResult.QUEUE_NAME_LIMIT, nullable = true)
+  public String queueName;
+
+  @Column(length = AppResult.TRACKING_URL_LIMIT, nullable = true)
+  public String trackingUrl;
+
+  @Column(nullable = false)
+  public long startTime;
+
+  @Column(nullable = false)
+  public long finishTime;
+
+  @Column(nullable = false)
+  public boolean failed;
+
+  @Column(nullable = false)
+  public int retries;
+
+  public static Finder<String, AnalysisRetry> find = new Finder<String, AnalysisRetry>(String.class, AnalysisRetry.class);
+}
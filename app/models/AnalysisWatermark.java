@@ -0,0 +1,53 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package models;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import play.db.ebean.Model;
+
+
+/**
+ * The finish time up to which a daemon has fetched and analyzed the applications, so that a restart resumes the
+ * fetching from there. In cluster mode, each node keeps its own watermark. The backfills and the compaction of the
+ * old results keep their checkpoints here too, under their own ids.
+ */
+@Entity
+@Table(name = "analysis_watermark")
+public class AnalysisWatermark extends Model {
+
+  private static final long serialVersionUID = 1L;
+
+  public static class TABLE {
+    public static final String TABLE_NAME = "analysis_watermark";
+    public static final String NODE_ID = "nodeId";
+    public static final String FINISH_TIME = "finishTime";
+  }
+
+  @Id
+  @Column(length = ClusterNode.ID_LIMIT, unique = true, nullable = false)
+  public String nodeId;
+
+  @Column(nullable = false)
+  public long finishTime;
+
+  public static Finder<String, AnalysisWatermark> find =
+      new Finder<String, AnalysisWatermark>(String.class, AnalysisWatermark.class);
+}
@@ -49,10 +49,13 @@ public class AppHeuristicResult extends Model {
     public static final String TABLE_NAME = "yarn_app_heuristic_result";
     public static final String ID = "id";
     public static final String APP_RESULT_ID = "yarnAppResult";
+    public static final String HEURISTIC_CLASS = "heuristicClass";
     public static final String HEURISTIC_NAME = "heuristicName";
     public static final String SEVERITY = "severity";
     public static final String SCORE = "score";
+    public static final String TIMED_OUT = "timedOut";
     public static final String APP_HEURISTIC_RESULT_DETAILS = "yarnAppHeuristicResultDetails";
+    public static final String APP_HEURISTIC_RESULT_METRICS = "yarnAppHeuristicResultMetrics";
   }
 
   public static String getSearchFields() {
@@ -79,8 +82,16 @@ public class AppHeuristicResult extends Model {
   @Column(nullable = false)
   public int score;
 
+  // Cancelled before it finished, the severity tells nothing
+  @Column(nullable = false)
+  public boolean timedOut;
+
   @JsonManagedReference
   @OneToMany(cascade = CascadeType.ALL, mappedBy = "yarnAppHeuristicResult")
   public List<AppHeuristicResultDetails> yarnAppHeuristicResultDetails;
 
+  @JsonManagedReference
+  @OneToMany(cascade = CascadeType.ALL, mappedBy = "yarnAppHeuristicResult")
+  public List<AppHeuristicResultMetric> yarnAppHeuristicResultMetrics;
+
 }
\ No newline at end of file
@@ -28,6 +28,7 @@ import javax.persistence.Table;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
 
+import com.linkedin.drelephant.util.Utils;
 import play.db.ebean.Model;
 
 
@@ -49,6 +50,10 @@ public class AppHeuristicResultDetails extends Model {
     public static final String DETAILS = "details";
   }
 
+  public static String getSearchFields() {
+    return Utils.commaSeparated(AppHeuristicResultDetails.TABLE.NAME, AppHeuristicResultDetails.TABLE.VALUE);
+  }
+
   @JsonBackReference
   @ManyToOne(cascade = CascadeType.ALL)
   public AppHeuristicResult yarnAppHeuristicResult;
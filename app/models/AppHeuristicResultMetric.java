@@ -0,0 +1,63 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package models;
+
+import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.linkedin.drelephant.analysis.MetricUnit;
+import com.linkedin.drelephant.util.Utils;
+import javax.persistence.CascadeType;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+import play.db.ebean.Model;
+
+
+@Entity
+@Table(name = "yarn_app_heuristic_result_metric")
+public class AppHeuristicResultMetric extends Model {
+
+  private static final long serialVersionUID = 1L;
+
+  public static final int NAME_LIMIT = 128;
+
+  public static class TABLE {
+    public static final String TABLE_NAME = "yarn_app_heuristic_result_metric";
+    public static final String APP_HEURISTIC_RESULT_ID = "yarnAppHeuristicResult";
+    public static final String NAME = "name";
+    public static final String UNIT = "unit";
+    public static final String VALUE = "value";
+  }
+
+  public static String getSearchFields() {
+    return Utils.commaSeparated(AppHeuristicResultMetric.TABLE.NAME, AppHeuristicResultMetric.TABLE.UNIT,
+        AppHeuristicResultMetric.TABLE.VALUE);
+  }
+
+  @JsonBackReference
+  @ManyToOne(cascade = CascadeType.ALL)
+  public AppHeuristicResult yarnAppHeuristicResult;
+
+  @Column(length = NAME_LIMIT, nullable = false)
+  public String name;
+
+  @Column(nullable = false)
+  public MetricUnit unit;
+
+  @Column(nullable = false)
+  public double value;
+}
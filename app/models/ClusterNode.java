@@ -0,0 +1,53 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package models;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import play.db.ebean.Model;
+
+
+/**
+ * A Dr. Elephant daemon taking part in the analysis when running in cluster mode. A node is considered alive as long
+ * as it keeps updating its heartbeat time.
+ */
+@Entity
+@Table(name = "cluster_node")
+public class ClusterNode extends Model {
+
+  private static final long serialVersionUID = 1L;
+
+  public static final int ID_LIMIT = 100;
+
+  public static class TABLE {
+    public static final String TABLE_NAME = "cluster_node";
+    public static final String ID = "id";
+    public static final String HEARTBEAT_TIME = "heartbeatTime";
+  }
+
+  @Id
+  @Column(length = ID_LIMIT, unique = true, nullable = false)
+  public String id;
+
+  @Column(nullable = false)
+  public long heartbeatTime;
+
+  public static Finder<String, ClusterNode> find = new Finder<String, ClusterNode>(String.class, ClusterNode.class);
+}
@@ -17,7 +17,7 @@
 package org.apache.spark.deploy.history
 
 
-import java.net.{HttpURLConnection, URL, URI}
+import java.net.{URL, URI}
 import java.security.PrivilegedAction
 import java.io.{IOException, BufferedInputStream, InputStream}
 import java.{io, util}
@@ -25,26 +25,21 @@ import java.util.ArrayList
 import javax.ws.rs.core.UriBuilder
 import com.linkedin.drelephant.configurations.fetcher.FetcherConfigurationData
 import com.linkedin.drelephant.security.HadoopSecurity
+import com.linkedin.drelephant.spark.{SparkEventLogData, SparkEventLogReader}
 import com.linkedin.drelephant.spark.data.SparkApplicationData
-import com.linkedin.drelephant.util.{MemoryFormatUtils, Utils}
+import com.linkedin.drelephant.util.{HadoopRestClient, MemoryFormatUtils, Utils}
 import com.linkedin.drelephant.analysis.{ApplicationType, AnalyticJob, ElephantFetcher}
 import org.apache.commons.io.FileUtils
 
 import org.apache.hadoop.conf.Configuration
 import org.apache.hadoop.fs.{Path, FileSystem}
 import org.apache.hadoop.hdfs.web.WebHdfsFileSystem
-import org.apache.hadoop.security.authentication.client.{AuthenticatedURL, AuthenticationException}
+import org.apache.hadoop.security.authentication.client.AuthenticationException
 import org.apache.log4j.Logger
 import org.apache.spark.SparkConf
-import org.apache.spark.scheduler.{EventLoggingListener, ReplayListenerBus, ApplicationEventListener}
-import org.apache.spark.storage.{StorageStatusTrackingListener, StorageStatusListener}
-import org.apache.spark.ui.env.EnvironmentListener
-import org.apache.spark.ui.exec.ExecutorsListener
-import org.apache.spark.ui.jobs.JobProgressListener
-import org.apache.spark.ui.storage.StorageListener
+import org.apache.spark.scheduler.EventLoggingListener
 import org.apache.spark.io.CompressionCodec
 import org.codehaus.jackson.JsonNode
-import org.codehaus.jackson.map.ObjectMapper
 
 import scala.collection.mutable.ArrayBuffer
 
@@ -162,11 +157,7 @@ class SparkFSFetcher(fetcherConfData: FetcherConfigurationData) extends Elephant
    * @return The jsonNode parsed from the url
    */
   def readJsonNode(url: URL): JsonNode = {
-    val _token: AuthenticatedURL.Token = new AuthenticatedURL.Token();
-    val _authenticatedURL: AuthenticatedURL = new AuthenticatedURL();
-    val _objectMapper: ObjectMapper = new ObjectMapper();
-    val conn: HttpURLConnection = _authenticatedURL.openConnection(url, _token)
-    return _objectMapper.readTree(conn.getInputStream)
+    HadoopRestClient.instance().readJsonNode(url)
   }
 
 
@@ -186,48 +177,15 @@ class SparkFSFetcher(fetcherConfData: FetcherConfigurationData) extends Elephant
 
   def fetchData(analyticJob: AnalyticJob): SparkApplicationData = {
     val appId = analyticJob.getAppId()
-    _security.doAs[SparkDataCollection](new PrivilegedAction[SparkDataCollection] {
-      override def run(): SparkDataCollection = {
+    _security.doAs[SparkEventLogData](new PrivilegedAction[SparkEventLogData] {
+      override def run(): SparkEventLogData = {
         /* Most of Spark logs will be in directory structure: /LOG_DIR/[application_id].
          *
          * Some logs (Spark 1.3+) are in /LOG_DIR/[application_id].snappy
          *
-         * Currently we won't be able to parse them even we manually set up the codec. There is problem
-         * in JsonProtocol#sparkEventFromJson that it does not handle unmatched SparkListenerEvent, which means
-         * it is only backward compatible but not forward. And switching the dependency to Spark 1.3 will raise more
-         * problems due to the fact that we are touching the internal codes.
-         *
-         * In short, this fetcher only works with Spark <=1.2, and we should switch to JSON endpoints with Spark's
-         * future release.
+         * The log is read by SparkEventLogReader, which only decodes the events and fields the heuristics use and
+         * aggregates them as it goes, instead of replaying every event through the Spark UI listeners.
          */
-        val replayBus = new ReplayListenerBus()
-        val applicationEventListener = new ApplicationEventListener
-        val jobProgressListener = new JobProgressListener(new SparkConf())
-        val environmentListener = new EnvironmentListener
-        val storageStatusListener = new StorageStatusListener
-        val executorsListener = new ExecutorsListener(storageStatusListener)
-        val storageListener = new StorageListener(storageStatusListener)
-
-        // This is a customized listener that tracks peak used memory
-        // The original listener only tracks the current in use memory which is useless in offline scenario.
-        val storageStatusTrackingListener = new StorageStatusTrackingListener()
-        replayBus.addListener(storageStatusTrackingListener)
-
-        val dataCollection = new SparkDataCollection(applicationEventListener = applicationEventListener,
-          jobProgressListener = jobProgressListener,
-          environmentListener = environmentListener,
-          storageStatusListener = storageStatusListener,
-          executorsListener = executorsListener,
-          storageListener = storageListener,
-          storageStatusTrackingListener = storageStatusTrackingListener)
-
-        replayBus.addListener(applicationEventListener)
-        replayBus.addListener(jobProgressListener)
-        replayBus.addListener(environmentListener)
-        replayBus.addListener(storageStatusListener)
-        replayBus.addListener(executorsListener)
-        replayBus.addListener(storageListener)
-
         val logPath = new Path(_logDir, appId)
         val logInput: InputStream =
           if (isLegacyLogDirectory(logPath)) {
@@ -247,6 +205,7 @@ class SparkFSFetcher(fetcherConfData: FetcherConfigurationData) extends Elephant
           }
 
         if (logInput == null) {
+          val dataCollection = new SparkEventLogData()
           dataCollection.throttle()
           // Since the data set is empty, we need to set the application id,
           // so that we could detect this is Spark job type
@@ -254,16 +213,19 @@ class SparkFSFetcher(fetcherConfData: FetcherConfigurationData) extends Elephant
           dataCollection.getConf().setProperty("spark.app.id", appId)
 
           logger.info("The event log of Spark application: " + appId + " is over the limit size of "
-              + defEventLogSizeInMb + " MB, the parsing process gets throttled.")
+              + confEventLogSizeInMb + " MB, the parsing process gets throttled.")
+          dataCollection
         } else {
-          logger.info("Replaying Spark logs for application: " + appId)
-
-          replayBus.replay(logInput, logPath.toString(), false)
-
-          logger.info("Replay completed for application: " + appId)
+          logger.info("Reading Spark logs for application: " + appId)
+
+          try {
+            val dataCollection = SparkEventLogReader.read(logInput)
+            logger.info("Reading completed for application: " + appId)
+            dataCollection
+          } finally {
+            logInput.close()
+          }
         }
-
-        dataCollection
       }
     })
   }
@@ -314,8 +276,8 @@ class SparkFSFetcher(fetcherConfData: FetcherConfigurationData) extends Elephant
 
   /**
    * Checks if the log parser should be throttled when the file is too large.
-   * Note: the current Spark's implementation of ReplayListenerBus will take more than 80 minutes to read a compressed
-   * 500 MB event log file. Allowing such reading might block the entire Dr Elephant thread pool.
+   * Note: replaying the logs with Spark's ReplayListenerBus used to take more than 80 minutes for a compressed 500 MB
+   * event log file. The streaming reader does not have this problem, so the limit is now only a safety net.
    *
    * @param eventLogPath The event log path
    * @return If the event log parsing should be throttled
@@ -338,7 +300,7 @@ private object SparkFSFetcher {
   private val logger = Logger.getLogger(SparkFSFetcher.getClass)
 
   var defEventLogDir = "/system/spark-history"
-  var defEventLogSizeInMb = 100d; // 100MB
+  var defEventLogSizeInMb = 10240d; // 10GB
   var defSparkLogExt = "_1.snappy"
 
   val LOG_SIZE_XML_FIELD = "event_log_size_limit_in_mb"
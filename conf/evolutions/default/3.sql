@@ -0,0 +1,26 @@
+# --- Tables used by the daemons to share the analysis when running in cluster mode
+# --- !Ups
+
+CREATE TABLE cluster_node (
+  id              VARCHAR(100)  NOT NULL              COMMENT 'The id of the daemon, e.g., host:port or pid@host',
+  heartbeat_time  BIGINT        UNSIGNED NOT NULL     COMMENT 'The last time the daemon reported itself alive',
+
+  PRIMARY KEY (id)
+);
+
+CREATE TABLE analysis_lease (
+  app_id          VARCHAR(50)   NOT NULL              COMMENT 'The application id, e.g., application_1236543456321_1234567',
+  node_id         VARCHAR(100)  NOT NULL              COMMENT 'The id of the daemon analyzing the application',
+  lease_expiry    BIGINT        UNSIGNED NOT NULL     COMMENT 'The time after which other daemons may take the application over',
+
+  PRIMARY KEY (app_id)
+);
+
+create index analysis_lease_i1 on analysis_lease (node_id);
+create index analysis_lease_i2 on analysis_lease (lease_expiry);
+
+# --- !Downs
+
+DROP TABLE analysis_lease;
+
+DROP TABLE cluster_node;
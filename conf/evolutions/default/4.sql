@@ -0,0 +1,33 @@
+# --- Persisted fetch watermark and analysis retries, so that a restart resumes where the daemon left off
+# --- !Ups
+
+CREATE TABLE analysis_watermark (
+  node_id         VARCHAR(100)  NOT NULL              COMMENT 'The id of the daemon, default when not running in cluster mode',
+  finish_time     BIGINT        UNSIGNED NOT NULL     COMMENT 'All the applications finished up to this time have been analyzed or are waiting for a retry',
+
+  PRIMARY KEY (node_id)
+);
+
+CREATE TABLE analysis_retry (
+  app_id          VARCHAR(50)   NOT NULL              COMMENT 'The application id, e.g., application_1236543456321_1234567',
+  node_id         VARCHAR(100)  NOT NULL              COMMENT 'The id of the daemon retrying the analysis',
+  app_type        VARCHAR(20)   NOT NULL              COMMENT 'The application type, e.g., MAPREDUCE, SPARK',
+  username        VARCHAR(50)   NOT NULL              COMMENT 'The user who started the application',
+  name            VARCHAR(100)  NOT NULL              COMMENT 'The application name',
+  queue_name      VARCHAR(50)   DEFAULT NULL          COMMENT 'The queue the application was submitted to',
+  tracking_url    VARCHAR(255)  DEFAULT NULL          COMMENT 'The web URL that can be used to track the application',
+  start_time      BIGINT        UNSIGNED NOT NULL     COMMENT 'The time in which application started',
+  finish_time     BIGINT        UNSIGNED NOT NULL     COMMENT 'The time in which application finished',
+  failed          TINYINT(1)    NOT NULL DEFAULT 0    COMMENT 'Whether the application finished with a FAILED final status',
+  retries         TINYINT(2)    UNSIGNED NOT NULL     COMMENT 'The number of times the analysis has been retried',
+
+  PRIMARY KEY (app_id)
+);
+
+create index analysis_retry_i1 on analysis_retry (node_id);
+
+# --- !Downs
+
+DROP TABLE analysis_retry;
+
+DROP TABLE analysis_watermark;
@@ -0,0 +1,22 @@
+# --- Hourly counts of the analyzed applications, kept up to date by the result writer
+# --- !Ups
+
+CREATE TABLE yarn_app_result_count (
+  bucket_time     BIGINT        UNSIGNED NOT NULL     COMMENT 'The start of the hour in which the applications finished',
+  severity        TINYINT(2)    UNSIGNED NOT NULL     COMMENT 'The aggregate severity of the applications',
+  job_type        VARCHAR(20)   NOT NULL              COMMENT 'The Job Type e.g, Pig, Hive, Spark, HadoopJava',
+  queue_name      VARCHAR(50)   NOT NULL DEFAULT ''   COMMENT 'The queue the applications were submitted to',
+  username        VARCHAR(50)   NOT NULL              COMMENT 'The user who started the applications',
+  app_count       INT(11)       UNSIGNED NOT NULL     COMMENT 'The number of applications',
+
+  PRIMARY KEY (bucket_time, severity, job_type, queue_name, username)
+);
+
+INSERT INTO yarn_app_result_count (bucket_time, severity, job_type, queue_name, username, app_count)
+  SELECT finish_time - finish_time % 3600000, severity, job_type, IFNULL(queue_name, ''), username, COUNT(*)
+  FROM yarn_app_result
+  GROUP BY finish_time - finish_time % 3600000, severity, job_type, IFNULL(queue_name, ''), username;
+
+# --- !Downs
+
+DROP TABLE yarn_app_result_count;
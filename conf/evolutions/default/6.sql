@@ -0,0 +1,22 @@
+# --- Composite indexes matching the filters and sort orders of the search, the history pages and the rest api
+# --- !Ups
+
+create index yarn_app_result_i9 on yarn_app_result (queue_name,finish_time);
+create index yarn_app_result_i10 on yarn_app_result (job_type,finish_time);
+create index yarn_app_result_i11 on yarn_app_result (severity,finish_time);
+create index yarn_app_result_i12 on yarn_app_result (username,start_time);
+create index yarn_app_result_i13 on yarn_app_result (flow_def_id,finish_time);
+create index yarn_app_result_i14 on yarn_app_result (job_def_id,finish_time);
+create index yarn_app_result_i15 on yarn_app_result (job_exec_id);
+create index yarn_app_heuristic_result_i3 on yarn_app_heuristic_result (heuristic_name,severity,yarn_app_result_id);
+
+# --- !Downs
+
+drop index yarn_app_result_i9 on yarn_app_result;
+drop index yarn_app_result_i10 on yarn_app_result;
+drop index yarn_app_result_i11 on yarn_app_result;
+drop index yarn_app_result_i12 on yarn_app_result;
+drop index yarn_app_result_i13 on yarn_app_result;
+drop index yarn_app_result_i14 on yarn_app_result;
+drop index yarn_app_result_i15 on yarn_app_result;
+drop index yarn_app_heuristic_result_i3 on yarn_app_heuristic_result;
@@ -0,0 +1,46 @@
+# --- Scores of the flow and job executions, kept up to date by the result writer for the history graphs
+# --- !Ups
+
+CREATE TABLE flow_exec_score (
+  flow_exec_id    VARCHAR(255)  NOT NULL              COMMENT 'A unique reference to a specific flow execution',
+  flow_def_id     VARCHAR(800)  NOT NULL              COMMENT 'A unique reference to the entire flow independent of any execution',
+  finish_time     BIGINT        UNSIGNED NOT NULL     COMMENT 'The finish time of the last application of the execution',
+  score           INT(11)       UNSIGNED NOT NULL     COMMENT 'The sum of the scores of the applications of the execution',
+
+  PRIMARY KEY (flow_exec_id)
+);
+
+create index flow_exec_score_i1 on flow_exec_score (flow_def_id,finish_time);
+
+CREATE TABLE job_exec_score (
+  flow_exec_id      VARCHAR(255)  NOT NULL              COMMENT 'A unique reference to a specific flow execution',
+  job_def_id        VARCHAR(800)  NOT NULL              COMMENT 'A unique reference to the job in the entire flow independent of the execution',
+  job_def_hash      CHAR(40)      NOT NULL              COMMENT 'The SHA-1 of the job definition id, which is too long for a unique key',
+  job_def_url       VARCHAR(800)  NOT NULL DEFAULT ''   COMMENT 'A url to the job definition on the scheduler',
+  job_exec_url      VARCHAR(800)  NOT NULL DEFAULT ''   COMMENT 'A url to the job execution of the first application',
+  first_finish_time BIGINT        UNSIGNED NOT NULL     COMMENT 'The finish time of the first application of the job',
+  finish_time       BIGINT        UNSIGNED NOT NULL     COMMENT 'The finish time of the last application of the job',
+  score             INT(11)       UNSIGNED NOT NULL     COMMENT 'The sum of the scores of the applications of the job'
+);
+
+create unique index job_exec_score_i1 on job_exec_score (flow_exec_id,job_def_hash);
+create index job_exec_score_i2 on job_exec_score (job_def_id,finish_time);
+
+INSERT INTO flow_exec_score (flow_exec_id, flow_def_id, finish_time, score)
+  SELECT flow_exec_id, MIN(flow_def_id), MAX(finish_time), SUM(score)
+  FROM yarn_app_result
+  WHERE flow_exec_id <> ''
+  GROUP BY flow_exec_id;
+
+INSERT INTO job_exec_score (flow_exec_id, job_def_id, job_def_hash, job_def_url, job_exec_url, first_finish_time,
+    finish_time, score)
+  SELECT flow_exec_id, job_def_id, SHA1(job_def_id), MIN(job_def_url), MIN(job_exec_url), MIN(finish_time),
+    MAX(finish_time), SUM(score)
+  FROM yarn_app_result
+  WHERE flow_exec_id <> '' AND job_def_id <> ''
+  GROUP BY flow_exec_id, job_def_id;
+
+# --- !Downs
+
+DROP TABLE job_exec_score;
+DROP TABLE flow_exec_score;
@@ -0,0 +1,18 @@
+# --- Numeric metrics of the heuristic results, stored as numbers so that they can be range queried and trended
+# --- !Ups
+
+CREATE TABLE yarn_app_heuristic_result_metric (
+  yarn_app_heuristic_result_id  INT(11)       NOT NULL                COMMENT 'The application heuristic result id',
+  name                          VARCHAR(128)  NOT NULL                COMMENT 'The metric name',
+  unit                          TINYINT(2)    UNSIGNED NOT NULL       COMMENT 'The metric unit: 0(COUNT), 1(BYTES), 2(MILLISECONDS) or 3(RATIO)',
+  value                         DOUBLE        NOT NULL                COMMENT 'The metric value',
+
+  PRIMARY KEY (yarn_app_heuristic_result_id,name),
+  CONSTRAINT yarn_app_heuristic_result_metric_f1 FOREIGN KEY (yarn_app_heuristic_result_id) REFERENCES yarn_app_heuristic_result (id)
+);
+
+create index yarn_app_heuristic_result_metric_i1 on yarn_app_heuristic_result_metric (name,value);
+
+# --- !Downs
+
+DROP TABLE yarn_app_heuristic_result_metric;
@@ -0,0 +1,8 @@
+# --- Heuristics cancelled by the timeout of the heuristic executor, so that they are not taken for a clean pass
+# --- !Ups
+
+ALTER TABLE yarn_app_heuristic_result ADD COLUMN timed_out TINYINT(1) NOT NULL DEFAULT 0 COMMENT 'Whether the heuristic was cancelled before it finished';
+
+# --- !Downs
+
+ALTER TABLE yarn_app_heuristic_result DROP COLUMN timed_out;
@@ -25,6 +25,7 @@ object Dependencies {
   lazy val gsonVersion = "2.2.4"
   lazy val guavaVersion = "18.0"          // Hadoop defaultly are using guava 11.0, might raise NoSuchMethodException
   lazy val jacksonMapperAslVersion = "1.7.3"
+  lazy val jmhVersion = "1.12"
   lazy val jsoupVersion = "1.7.3"
   lazy val mysqlConnectorVersion = "5.1.36"
 
@@ -68,10 +69,14 @@ object Dependencies {
     "org.apache.hadoop" % "hadoop-common" % hadoopVersion % Test,
     "org.apache.hadoop" % "hadoop-hdfs" % hadoopVersion % "compileonly",
     "org.apache.hadoop" % "hadoop-hdfs" % hadoopVersion % Test,
+    "org.apache.hadoop" % "hadoop-mapreduce-client-core" % hadoopVersion % "compileonly",
+    "org.apache.hadoop" % "hadoop-mapreduce-client-core" % hadoopVersion % Test,
     "org.codehaus.jackson" % "jackson-mapper-asl" % jacksonMapperAslVersion,
     "org.jsoup" % "jsoup" % jsoupVersion,
     "org.mockito" % "mockito-core" % "1.10.19",
-    "org.jmockit" % "jmockit" % "1.23" % Test
+    "org.jmockit" % "jmockit" % "1.23" % Test,
+    "org.openjdk.jmh" % "jmh-core" % jmhVersion % Test,
+    "org.openjdk.jmh" % "jmh-generator-annprocess" % jmhVersion % Test
   ) :+ sparkExclusion 
 
   var dependencies = Seq(javaJdbc, javaEbean, cache)
@@ -0,0 +1,323 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.analysis;
+
+import com.avaje.ebean.Ebean;
+import java.io.FileNotFoundException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import models.AnalysisWatermark;
+import models.AppResult;
+import org.apache.hadoop.conf.Configuration;
+import org.codehaus.jackson.JsonNode;
+import org.junit.Test;
+
+import static common.DBTestUtil.fakeDBApplication;
+import static common.TestConstants.*;
+import static common.TestUtil.newAppResult;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static play.test.Helpers.running;
+
+
+/**
+ * This class tests the windows, chunks, checkpoints and retries of the backfill without a database or a cluster, and
+ * its replacement of the existing results in an in-memory database
+ */
+public class AnalysisBackfillTest {
+
+  /**
+   * A job analyzed without fetching its data, failing if its id says so
+   */
+  private static class FakeJob extends AnalyticJob {
+    private final Severity _severity;
+    private final int _score;
+
+    FakeJob(Severity severity, int score) {
+      _severity = severity;
+      _score = score;
+    }
+
+    @Override
+    public AppResult getAnalysis() throws Exception {
+      if (getAppId().endsWith("_bad")) {
+        throw new Exception("Analysis failed");
+      }
+      return newAppResult(getAppId(), TEST_FLOW_EXEC_ID1, TEST_JOB_DEF_ID1, 1000, _severity, _score, "Mapper Skew",
+          "Reducer Time");
+    }
+  }
+
+  /**
+   * A generator listing two applications per window, and knowing all the applications but the unknown ones. The
+   * flaky applications fail to be fetched the first time.
+   */
+  private static class FakeGenerator implements AnalyticJobGenerator {
+    private final List<String> _windows = Collections.synchronizedList(new ArrayList<String>());
+    private final Set<String> _fetched = Collections.synchronizedSet(new HashSet<String>());
+    private final Severity _severity;
+    private final int _score;
+
+    FakeGenerator() {
+      this(Severity.LOW, 1);
+    }
+
+    FakeGenerator(Severity severity, int score) {
+      _severity = severity;
+      _score = score;
+    }
+
+    @Override
+    public void configure(Configuration configuration) {
+    }
+
+    @Override
+    public void updateResourceManagerAddresses() {
+    }
+
+    @Override
+    public List<AnalyticJob> fetchAnalyticJobs() {
+      return new ArrayList<AnalyticJob>();
+    }
+
+    @Override
+    public List<AnalyticJob> fetchAnalyticJobs(long finishedTimeBegin, long finishedTimeEnd) {
+      _windows.add(finishedTimeBegin + "-" + finishedTimeEnd);
+      return Arrays.<AnalyticJob>asList(new FakeJob(_severity, _score).setAppId("app_" + finishedTimeBegin + "_1"),
+          new FakeJob(_severity, _score).setAppId("app_" + finishedTimeBegin + "_2"));
+    }
+
+    @Override
+    public AnalyticJob fetchAnalyticJob(String appId) {
+      return fetchAnalyticJob(appId, false);
+    }
+
+    @Override
+    public AnalyticJob fetchAnalyticJob(String appId, boolean includeAnalyzed) {
+      if (appId.endsWith("_flaky") && _fetched.add(appId)) {
+        throw new IllegalStateException("History server unavailable");
+      }
+      return appId.endsWith("_unknown") ? null : new FakeJob(_severity, _score).setAppId(appId);
+    }
+
+    @Override
+    public void rewind(long interval) {
+    }
+
+    @Override
+    public void addIntoRetries(AnalyticJob job) {
+    }
+
+    @Override
+    public void markDone(AnalyticJob job) {
+    }
+  }
+
+  /**
+   * A resource manager generator whose resource manager no longer retains any application, answering 404 for all
+   */
+  private static class EvictedGenerator extends AnalyticJobGeneratorHadoop2 {
+
+    EvictedGenerator() throws Exception {
+      Configuration configuration = new Configuration(false);
+      configuration.set("yarn.resourcemanager.webapp.address", "localhost:8088");
+      configure(configuration);
+    }
+
+    @Override
+    JsonNode readJsonNode(URL url) throws FileNotFoundException {
+      throw new FileNotFoundException("Request to " + url + " failed with status 404");
+    }
+  }
+
+  /**
+   * A backfill recording its checkpoints and results instead of saving them
+   */
+  private static class RecordingBackfill extends AnalysisBackfill {
+    private long _checkpoint;
+    private final List<Long> _checkpoints = new ArrayList<Long>();
+    private RecordingWriter _recordingWriter;
+
+    RecordingBackfill(long finishTimeBegin, long finishTimeEnd, List<String> appIds, long checkpoint) {
+      this(finishTimeBegin, finishTimeEnd, appIds, checkpoint, 10);
+    }
+
+    RecordingBackfill(long finishTimeBegin, long finishTimeEnd, List<String> appIds, long checkpoint,
+        long retryInterval) {
+      super(finishTimeBegin, finishTimeEnd, appIds, 4, 1000, 2, 10, retryInterval);
+      _checkpoint = checkpoint;
+    }
+
+    @Override
+    long loadCheckpoint() {
+      return _checkpoint;
+    }
+
+    @Override
+    void saveCheckpoint(long checkpoint) {
+      _checkpoints.add(checkpoint);
+    }
+
+    @Override
+    AppResultWriter createWriter(AppResultWriter.Listener listener) {
+      _recordingWriter = new RecordingWriter(10, 10, listener, true, false);
+      return _recordingWriter;
+    }
+  }
+
+  /**
+   * A backfill saving its checkpoints and results in the database, with a short flush interval
+   */
+  private static AnalysisBackfill newDBBackfill(List<String> appIds) {
+    return new AnalysisBackfill(0, 0, appIds, 2, 1000, 10, 10, 10) {
+      @Override
+      AppResultWriter createWriter(AppResultWriter.Listener listener) {
+        return new AppResultWriter(10, 10, listener, true);
+      }
+    };
+  }
+
+  private static long count(String table) {
+    return Ebean.createSqlQuery("SELECT COUNT(*) AS row_count FROM " + table).findUnique().getLong("row_count");
+  }
+
+  @Test
+  public void testBackfillsRangeByWindow() {
+    FakeGenerator generator = new FakeGenerator();
+    RecordingBackfill backfill = new RecordingBackfill(1000, 3999, new ArrayList<String>(), 0);
+    assertTrue(backfill.isEnabled());
+    backfill.run(generator, null);
+
+    assertEquals(Arrays.asList("1000-1999", "2000-2999", "3000-3999"), generator._windows);
+    assertEquals(Arrays.asList(1999L, 2999L, 3999L), backfill._checkpoints);
+    assertEquals(6, backfill._recordingWriter._inserted.size());
+  }
+
+  @Test
+  public void testResumesRangeFromCheckpoint() {
+    FakeGenerator generator = new FakeGenerator();
+    RecordingBackfill backfill = new RecordingBackfill(1000, 3500, new ArrayList<String>(), 2999);
+    backfill.run(generator, null);
+
+    assertEquals(Arrays.asList("3000-3500"), generator._windows);
+    assertEquals(Arrays.asList(3500L), backfill._checkpoints);
+    assertEquals(2, backfill._recordingWriter._inserted.size());
+  }
+
+  @Test
+  public void testBackfillsAppsByChunk() {
+    List<String> appIds = Arrays.asList("app_1", "app_2_unknown", "app_3_bad", "app_4", "app_5");
+    RecordingBackfill backfill = new RecordingBackfill(0, 0, appIds, 0);
+    assertTrue(backfill.isEnabled());
+    backfill.run(new FakeGenerator(), null);
+
+    // The unknown and failed applications are skipped
+    assertEquals(Arrays.asList(2L, 4L, 5L), backfill._checkpoints);
+    Collections.sort(backfill._recordingWriter._inserted);
+    assertEquals(Arrays.asList("app_1", "app_4", "app_5"), backfill._recordingWriter._inserted);
+
+    // A checkpoint counts the applications done
+    backfill = new RecordingBackfill(0, 0, appIds, 4);
+    backfill.run(new FakeGenerator(), null);
+    assertEquals(Arrays.asList(5L), backfill._checkpoints);
+    assertEquals(Arrays.asList("app_5"), backfill._recordingWriter._inserted);
+  }
+
+  @Test
+  public void testCheckpointIds() {
+    assertFalse(new RecordingBackfill(0, 0, new ArrayList<String>(), 0).isEnabled());
+    assertFalse(new RecordingBackfill(2000, 1000, new ArrayList<String>(), 0).isEnabled());
+    assertEquals("backfill-1000-2000", new RecordingBackfill(1000, 2000, new ArrayList<String>(), 0).getCheckpointId());
+
+    String ids = new RecordingBackfill(0, 0, Arrays.asList("app_1", "app_2"), 0).getCheckpointId();
+    assertTrue(ids.startsWith("backfill-"));
+    assertTrue(ids.length() <= 100);
+    assertFalse(ids.equals(new RecordingBackfill(0, 0, Arrays.asList("app_1", "app_3"), 0).getCheckpointId()));
+  }
+
+  @Test
+  public void testRetriesFetchAfterInterval() {
+    RecordingBackfill backfill = new RecordingBackfill(0, 0, Arrays.asList("app_1_flaky", "app_2"), 0, 200);
+    long startTime = System.currentTimeMillis();
+    backfill.run(new FakeGenerator(), null);
+
+    assertTrue(System.currentTimeMillis() - startTime >= 200);
+    Collections.sort(backfill._recordingWriter._inserted);
+    assertEquals(Arrays.asList("app_1_flaky", "app_2"), backfill._recordingWriter._inserted);
+  }
+
+  @Test
+  public void testSkipsAppsNoLongerRetained() {
+    running(fakeDBApplication(), new Runnable() {
+      public void run() {
+        try {
+          // The unknown applications are not fetched again after the retry interval
+          RecordingBackfill backfill =
+              new RecordingBackfill(0, 0, Arrays.asList("application_1_0001", "application_1_0002"), 0, 60 * 1000);
+          long startTime = System.currentTimeMillis();
+          backfill.run(new EvictedGenerator(), null);
+
+          assertTrue(System.currentTimeMillis() - startTime < 30 * 1000);
+          assertEquals(Arrays.asList(2L), backfill._checkpoints);
+          assertTrue(backfill._recordingWriter._inserted.isEmpty());
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+      }
+    });
+  }
+
+  @Test
+  public void testReplacesResultsInDB() {
+    running(fakeDBApplication(), new Runnable() {
+      public void run() {
+        List<String> appIds = Arrays.asList("app_1", "app_2");
+        AnalysisBackfill backfill = newDBBackfill(appIds);
+        backfill.run(new FakeGenerator(Severity.MODERATE, 1), null);
+        assertEquals(2 * 2 * 1, AppResultScores.getFlowScores(TEST_FLOW_DEF_ID1, 10).get(0).getScore());
+
+        // The same backfill started over replaces the results, their heuristic results, counts and scores
+        AnalysisWatermark.find.byId(backfill.getCheckpointId()).delete();
+        newDBBackfill(appIds).run(new FakeGenerator(Severity.SEVERE, 3), null);
+
+        assertEquals(2, count("yarn_app_result"));
+        assertEquals(4, count("yarn_app_heuristic_result"));
+        assertEquals(4, count("yarn_app_heuristic_result_details"));
+        assertEquals(4, count("yarn_app_heuristic_result_metric"));
+        assertEquals(2L, (long) AppResultCounts.countBy(AppResultCounts.USERNAME, 0).get(TEST_USERNAME));
+        Map<Severity, Long> severities = AppResultCounts.countBySeverity(0);
+        assertEquals(2L, (long) severities.get(Severity.SEVERE));
+        Long moderate = severities.get(Severity.MODERATE);
+        assertTrue(moderate == null || moderate == 0);
+
+        List<AppResultScores.Score> flows = AppResultScores.getFlowScores(TEST_FLOW_DEF_ID1, 10);
+        assertEquals(1, flows.size());
+        assertEquals(2 * 2 * 3, flows.get(0).getScore());
+        List<AppResultScores.Score> jobs = AppResultScores.getJobScores(Arrays.asList(TEST_FLOW_EXEC_ID1));
+        assertEquals(1, jobs.size());
+        assertEquals(2 * 2 * 3, jobs.get(0).getScore());
+      }
+    });
+  }
+}
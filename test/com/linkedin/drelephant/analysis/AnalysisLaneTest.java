@@ -0,0 +1,123 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.analysis;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * This class tests the scaling of the analysis lanes
+ */
+public class AnalysisLaneTest {
+
+  private static AnalyticJob newJob(String appId) {
+    return new AnalyticJob().setAppId(appId).setStartTime(1000).setFinishTime(2000);
+  }
+
+  /**
+   * A processor blocking every analysis until released
+   */
+  private static class BlockingProcessor implements AnalysisLane.JobProcessor {
+    private final CountDownLatch _release = new CountDownLatch(1);
+    private final AtomicInteger _started = new AtomicInteger(0);
+    private final AtomicInteger _processed = new AtomicInteger(0);
+
+    @Override
+    public void process(AnalyticJob job, String workerName) {
+      _started.incrementAndGet();
+      try {
+        _release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      _processed.incrementAndGet();
+    }
+  }
+
+  private static void waitFor(AtomicInteger counter, int value) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (counter.get() < value && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+  }
+
+  @Test
+  public void testScalesUpToMaxThreads() throws InterruptedException {
+    BlockingProcessor processor = new BlockingProcessor();
+    AnalysisLane lane = new AnalysisLane("TEST", new AnalyticJobQueue(100, new AnalyticJobPriorityComparator()), 1, 3,
+        0, processor);
+    lane.start();
+    try {
+      assertEquals(1, lane.getWorkers());
+      for (int i = 0; i < 10; i++) {
+        Thread.sleep(5);
+        assertTrue(lane.offer(newJob("app_" + i), 0, TimeUnit.MILLISECONDS));
+      }
+      waitFor(processor._started, 3);
+      assertEquals(3, lane.getWorkers());
+      assertEquals(3, processor._started.get());
+
+      processor._release.countDown();
+      waitFor(processor._processed, 10);
+      assertEquals(10, processor._processed.get());
+    } finally {
+      lane.stop();
+    }
+  }
+
+  @Test
+  public void testDoesNotScaleUnderLatency() throws InterruptedException {
+    BlockingProcessor processor = new BlockingProcessor();
+    AnalysisLane lane = new AnalysisLane("TEST", new AnalyticJobQueue(100, new AnalyticJobPriorityComparator()), 1, 3,
+        60000, processor);
+    lane.start();
+    try {
+      for (int i = 0; i < 10; i++) {
+        lane.offer(newJob("app_" + i), 0, TimeUnit.MILLISECONDS);
+      }
+      waitFor(processor._started, 1);
+      assertEquals(1, lane.getWorkers());
+    } finally {
+      processor._release.countDown();
+      lane.stop();
+    }
+  }
+
+  @Test
+  public void testStartsOnDemandWithoutMinThreads() throws InterruptedException {
+    BlockingProcessor processor = new BlockingProcessor();
+    processor._release.countDown();
+    AnalysisLane lane = new AnalysisLane("TEST", new AnalyticJobQueue(100, new AnalyticJobPriorityComparator()), 0, 2,
+        60000, processor);
+    lane.start();
+    try {
+      assertEquals(0, lane.getWorkers());
+      lane.offer(newJob("app_0"), 0, TimeUnit.MILLISECONDS);
+      waitFor(processor._processed, 1);
+      assertEquals(1, processor._processed.get());
+      assertEquals(1, lane.getWorkers());
+    } finally {
+      lane.stop();
+    }
+  }
+}
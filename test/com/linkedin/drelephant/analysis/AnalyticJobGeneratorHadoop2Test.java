@@ -0,0 +1,332 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.analysis;
+
+import com.linkedin.drelephant.configurations.heuristic.HeuristicConfigurationData;
+import java.io.FileNotFoundException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import models.AnalysisRetry;
+import models.AnalysisWatermark;
+import org.apache.hadoop.conf.Configuration;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.node.ArrayNode;
+import org.codehaus.jackson.node.ObjectNode;
+import org.junit.Test;
+
+import static common.DBTestUtil.fakeDBApplication;
+import static common.TestConstants.*;
+import static common.TestUtil.newAppResult;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static play.test.Helpers.running;
+
+
+/**
+ * This class tests the fetch windows of the generator against a fake resource manager and an in-memory database
+ */
+public class AnalyticJobGeneratorHadoop2Test {
+
+  private static final String APP_ID1 = "application_1460381439677_0001";
+  private static final String APP_ID2 = "application_1460381439677_0002";
+  private static final String APP_ID3 = "application_1460381439677_0003";
+  private static final String APP_ID4 = "application_1460381439677_0004";
+  private static final long HOUR = 60 * 60 * 1000;
+  private static final String NODE_ID = "default";
+
+  /**
+   * A generator reading the finished applications from a map instead of the resource manager, which answers 404 for
+   * the other applications. Every application type is supported, and the Mapper Skew heuristic tells the MapReduce
+   * results.
+   */
+  private static class FakeGenerator extends AnalyticJobGeneratorHadoop2 {
+    private final ObjectMapper _objectMapper = new ObjectMapper();
+    private final Map<String, Long> _finishTimes = new LinkedHashMap<String, Long>();
+
+    FakeGenerator() throws Exception {
+      Configuration configuration = new Configuration(false);
+      configuration.set("yarn.resourcemanager.webapp.address", "localhost:8088");
+      configure(configuration);
+    }
+
+    void addApp(String appId, long finishTime) {
+      _finishTimes.put(appId, finishTime);
+    }
+
+    @Override
+    JsonNode readJsonNode(URL url) throws FileNotFoundException {
+      if (url.getQuery() == null) {
+        String appId = url.getPath().substring(url.getPath().lastIndexOf('/') + 1);
+        if (!_finishTimes.containsKey(appId)) {
+          throw new FileNotFoundException("Request to " + url + " failed with status 404");
+        }
+        ObjectNode root = _objectMapper.createObjectNode();
+        putApp(root.putObject("app"), appId, _finishTimes.get(appId));
+        return root;
+      }
+
+      Map<String, String> query = new LinkedHashMap<String, String>();
+      for (String param : url.getQuery().split("&")) {
+        String[] pair = param.split("=");
+        query.put(pair[0], pair[1]);
+      }
+      long begin = Long.parseLong(query.get("finishedTimeBegin"));
+      long end = Long.parseLong(query.get("finishedTimeEnd"));
+
+      ObjectNode root = _objectMapper.createObjectNode();
+      ArrayNode apps = root.putObject("apps").putArray("app");
+      if (!"SUCCEEDED".equals(query.get("finalStatus"))) {
+        return root;
+      }
+      for (Map.Entry<String, Long> entry : _finishTimes.entrySet()) {
+        if (entry.getValue() >= begin && entry.getValue() <= end) {
+          putApp(apps.addObject(), entry.getKey(), entry.getValue());
+        }
+      }
+      return root;
+    }
+
+    private void putApp(ObjectNode app, String appId, long finishTime) {
+      app.put("id", appId);
+      app.put("user", TEST_USERNAME);
+      app.put("name", TEST_JOB_NAME);
+      app.put("queue", TEST_DEFAULT_QUEUE_NAME);
+      app.put("startedTime", finishTime - 1000);
+      app.put("finishedTime", finishTime);
+      app.put("finalStatus", "SUCCEEDED");
+      app.put("applicationType", "MAPREDUCE");
+    }
+
+    @Override
+    ApplicationType getApplicationType(String typeName) {
+      return new ApplicationType(typeName);
+    }
+
+    @Override
+    List<HeuristicConfigurationData> getHeuristicsConfigurationData() {
+      return Arrays.asList(new HeuristicConfigurationData("Mapper Skew",
+          "com.linkedin.drelephant.mapreduce.heuristics.MapperSkew", null, new ApplicationType("MAPREDUCE"),
+          new HashMap<String, String>()));
+    }
+  }
+
+  private static List<String> appIds(List<AnalyticJob> jobs) {
+    List<String> appIds = new ArrayList<String>();
+    for (AnalyticJob job : jobs) {
+      appIds.add(job.getAppId());
+    }
+    return appIds;
+  }
+
+  private static void saveRetry(String appId, String nodeId, long finishTime) {
+    AnalysisRetry retry = new AnalysisRetry();
+    retry.appId = appId;
+    retry.nodeId = nodeId;
+    retry.appType = "MAPREDUCE";
+    retry.username = TEST_USERNAME;
+    retry.name = TEST_JOB_NAME;
+    retry.startTime = finishTime - 1000;
+    retry.finishTime = finishTime;
+    retry.retries = 1;
+    retry.save();
+  }
+
+  private static long watermark() {
+    return AnalysisWatermark.find.byId(NODE_ID).finishTime;
+  }
+
+  @Test
+  public void testWatermarkHeldByPendingJobs() {
+    running(fakeDBApplication(), new Runnable() {
+      public void run() {
+        try {
+          long finishTime = System.currentTimeMillis() - HOUR / 6;
+          FakeGenerator generator = new FakeGenerator();
+          generator.addApp(APP_ID1, finishTime);
+          generator.addApp(APP_ID2, finishTime + 1000);
+          List<AnalyticJob> jobs = generator.fetchAnalyticJobs();
+          assertEquals(Arrays.asList(APP_ID1, APP_ID2), appIds(jobs));
+          assertEquals(finishTime - 1, watermark());
+
+          // The oldest job is analyzed, the other one still holds the watermark back
+          generator.markDone(jobs.get(0));
+          assertTrue(generator.fetchAnalyticJobs().isEmpty());
+          assertEquals(finishTime + 999, watermark());
+
+          // A retry is persisted, it no longer holds the watermark back
+          jobs.get(1).retry();
+          generator.addIntoRetries(jobs.get(1));
+          assertEquals(Arrays.asList(APP_ID2), appIds(generator.fetchAnalyticJobs()));
+          assertTrue(watermark() > finishTime + HOUR / 12);
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+      }
+    });
+  }
+
+  @Test
+  public void testRetriesRestoredPerNode() {
+    running(fakeDBApplication(), new Runnable() {
+      public void run() {
+        try {
+          long finishTime = System.currentTimeMillis() - HOUR / 6;
+          saveRetry(APP_ID1, NODE_ID, finishTime);
+          saveRetry(APP_ID2, "node2", finishTime);
+          FakeGenerator generator = new FakeGenerator();
+          generator.addApp(APP_ID1, finishTime);
+          generator.addApp(APP_ID3, finishTime);
+
+          // The restored retry is not fetched again as a new job, and the retry of the other node is left alone
+          List<AnalyticJob> jobs = generator.fetchAnalyticJobs();
+          assertEquals(Arrays.asList(APP_ID3, APP_ID1), appIds(jobs));
+          assertEquals(1, jobs.get(1).getRetries());
+          assertEquals(NODE_ID, AnalysisRetry.find.byId(APP_ID1).nodeId);
+          assertEquals("node2", AnalysisRetry.find.byId(APP_ID2).nodeId);
+
+          // Nor while it is being retried
+          generator.rewind(HOUR);
+          assertTrue(generator.fetchAnalyticJobs().isEmpty());
+
+          generator.markDone(jobs.get(1));
+          assertEquals(null, AnalysisRetry.find.byId(APP_ID1));
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+      }
+    });
+  }
+
+  @Test
+  public void testAnalyzedLookedUpInBatches() {
+    running(fakeDBApplication(), new Runnable() {
+      public void run() {
+        try {
+          long finishTime = System.currentTimeMillis() - HOUR / 6;
+          FakeGenerator generator = new FakeGenerator();
+          List<String> analyzed = new ArrayList<String>();
+          for (int i = 0; i < 1200; i++) {
+            String appId = String.format("application_1460381439677_%04d", i);
+            generator.addApp(appId, finishTime);
+            // At both ends of each batch of 500 ids
+            if (i % 500 == 0 || i % 500 == 499 || i == 1199) {
+              newAppResult(appId, TEST_FLOW_EXEC_ID1, TEST_JOB_DEF_ID1, finishTime, Severity.LOW, 1).save();
+              analyzed.add(appId);
+            }
+          }
+
+          List<String> appIds = appIds(generator.fetchAnalyticJobs());
+          assertEquals(1200 - analyzed.size(), appIds.size());
+          for (String appId : analyzed) {
+            assertFalse(appIds.contains(appId));
+          }
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+      }
+    });
+  }
+
+  @Test
+  public void testRewindSkipsQueuedJobs() {
+    running(fakeDBApplication(), new Runnable() {
+      public void run() {
+        try {
+          long finishTime = System.currentTimeMillis() - HOUR / 6;
+          FakeGenerator generator = new FakeGenerator();
+          generator.addApp(APP_ID1, finishTime);
+          generator.addApp(APP_ID2, finishTime);
+          generator.addApp(APP_ID3, finishTime);
+          List<AnalyticJob> jobs = generator.fetchAnalyticJobs();
+          assertEquals(Arrays.asList(APP_ID1, APP_ID2, APP_ID3), appIds(jobs));
+
+          // The first job is analyzed, the second waits for a retry and the third is still being analyzed
+          newAppResult(APP_ID1, TEST_FLOW_EXEC_ID1, TEST_JOB_DEF_ID1, finishTime, Severity.LOW, 1).save();
+          generator.markDone(jobs.get(0));
+          jobs.get(1).retry();
+          generator.addIntoRetries(jobs.get(1));
+
+          // A node left the cluster, the window is read again
+          generator.addApp(APP_ID4, finishTime);
+          generator.rewind(HOUR);
+          jobs = generator.fetchAnalyticJobs();
+          assertEquals(Arrays.asList(APP_ID4, APP_ID2), appIds(jobs));
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+      }
+    });
+  }
+
+  @Test
+  public void testUnknownAppSkipped() {
+    running(fakeDBApplication(), new Runnable() {
+      public void run() {
+        try {
+          FakeGenerator generator = new FakeGenerator();
+          generator.addApp(APP_ID1, System.currentTimeMillis() - HOUR);
+
+          // The resource manager answers 404, and no job history server is configured
+          assertNull(generator.fetchAnalyticJob(APP_ID2, true));
+          assertEquals(APP_ID1, generator.fetchAnalyticJob(APP_ID1, true).getAppId());
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+      }
+    });
+  }
+
+  @Test
+  public void testAnalyzedAppRebuiltFromResult() {
+    running(fakeDBApplication(), new Runnable() {
+      public void run() {
+        try {
+          long finishTime = System.currentTimeMillis() - 90 * 24 * HOUR;
+          newAppResult(APP_ID1, TEST_FLOW_EXEC_ID1, TEST_JOB_DEF_ID1, finishTime, Severity.LOW, 1, "Mapper Skew")
+              .save();
+          // The resource manager no longer retains it
+          FakeGenerator generator = new FakeGenerator();
+
+          assertNull(generator.fetchAnalyticJob(APP_ID1));
+          AnalyticJob job = generator.fetchAnalyticJob(APP_ID1, true);
+          assertEquals(APP_ID1, job.getAppId());
+          assertEquals("MAPREDUCE", job.getAppType().getName());
+          assertEquals(TEST_USERNAME, job.getUser());
+          assertEquals(TEST_DEFAULT_QUEUE_NAME, job.getQueueName());
+          assertEquals(finishTime - 1000, job.getStartTime());
+          assertEquals(finishTime, job.getFinishTime());
+          assertEquals("http://hostname/jobhistory/job/" + APP_ID1, job.getTrackingUrl());
+
+          // And in a range, along with the applications the resource manager still retains
+          generator.addApp(APP_ID2, finishTime + 1000);
+          List<AnalyticJob> jobs = generator.fetchAnalyticJobs(finishTime - HOUR, finishTime + HOUR);
+          assertEquals(Arrays.asList(APP_ID2, APP_ID1), appIds(jobs));
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+      }
+    });
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.analysis;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * This class tests the AnalyticJobQueue and its default ordering
+ */
+public class AnalyticJobQueueTest {
+
+  private static AnalyticJob newJob(String appId, boolean failed, long startTime, long finishTime) {
+    return new AnalyticJob().setAppId(appId).setFailed(failed).setStartTime(startTime).setFinishTime(finishTime);
+  }
+
+  @Test
+  public void testDefaultOrdering() throws InterruptedException {
+    AnalyticJobQueue queue = new AnalyticJobQueue(10, new AnalyticJobPriorityComparator());
+    queue.put(newJob("old_success", false, 1000, 2000));
+    queue.put(newJob("new_success", false, 1000, 5000));
+    queue.put(newJob("old_failure", true, 1000, 2000));
+    queue.put(newJob("new_short_success", false, 4000, 6000));
+    queue.put(newJob("new_long_success", false, 1000, 6000));
+
+    assertEquals(5, queue.size());
+    assertEquals("old_failure", queue.take().getAppId());
+    assertEquals("new_short_success", queue.take().getAppId());
+    assertEquals("new_long_success", queue.take().getAppId());
+    assertEquals("new_success", queue.take().getAppId());
+    assertEquals("old_success", queue.take().getAppId());
+    assertEquals(0, queue.size());
+  }
+
+  @Test
+  public void testEqualJobsAreTakenInInsertionOrder() throws InterruptedException {
+    AnalyticJobQueue queue = new AnalyticJobQueue(10, new AnalyticJobPriorityComparator());
+    for (int i = 0; i < 5; i++) {
+      queue.put(newJob("app_" + i, false, 1000, 2000));
+    }
+    for (int i = 0; i < 5; i++) {
+      assertEquals("app_" + i, queue.take().getAppId());
+    }
+  }
+
+  @Test
+  public void testCapacity() throws InterruptedException {
+    AnalyticJobQueue queue = new AnalyticJobQueue(2, new AnalyticJobPriorityComparator());
+    assertTrue(queue.offer(newJob("app_1", false, 1000, 2000), 0, TimeUnit.MILLISECONDS));
+    assertTrue(queue.offer(newJob("app_2", false, 1000, 2000), 0, TimeUnit.MILLISECONDS));
+    assertEquals(0, queue.remainingCapacity());
+    assertFalse(queue.offer(newJob("app_3", false, 1000, 2000), 10, TimeUnit.MILLISECONDS));
+
+    assertEquals("app_1", queue.take().getAppId());
+    assertEquals(1, queue.remainingCapacity());
+    assertTrue(queue.offer(newJob("app_3", false, 1000, 2000), 0, TimeUnit.MILLISECONDS));
+    assertEquals(2, queue.size());
+  }
+
+  @Test
+  public void testPutBlocksUntilSpaceIsAvailable() throws InterruptedException {
+    final AnalyticJobQueue queue = new AnalyticJobQueue(1, new AnalyticJobPriorityComparator());
+    queue.put(newJob("app_1", false, 1000, 2000));
+
+    Thread producer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          queue.put(newJob("app_2", false, 1000, 2000));
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    });
+    producer.start();
+    producer.join(100);
+    assertTrue(producer.isAlive());
+
+    assertEquals("app_1", queue.take().getAppId());
+    producer.join(1000);
+    assertFalse(producer.isAlive());
+    assertEquals("app_2", queue.take().getAppId());
+  }
+
+  @Test
+  public void testStatistics() throws InterruptedException {
+    AnalyticJobQueue queue = new AnalyticJobQueue(10, new AnalyticJobPriorityComparator());
+    assertEquals(0, queue.getOldestAge());
+    assertNull(queue.poll(0, TimeUnit.MILLISECONDS));
+
+    queue.put(newJob("app_1", false, 1000, 2000));
+    queue.put(newJob("app_2", false, 1000, 2000));
+    Thread.sleep(20);
+    assertTrue(queue.getOldestAge() >= 20);
+
+    queue.take();
+    assertEquals(2, queue.getTotalEnqueued());
+    assertEquals(1, queue.getTotalDequeued());
+    assertTrue(queue.getLastWaitTime() >= 20);
+    assertTrue(queue.getAverageWaitTime() >= 20);
+  }
+
+  @Test
+  public void testOldestAgeIsNotThePriorityHead() throws InterruptedException {
+    AnalyticJobQueue queue = new AnalyticJobQueue(10, new AnalyticJobPriorityComparator());
+    queue.put(newJob("old_success", false, 1000, 2000));
+    Thread.sleep(30);
+    queue.put(newJob("new_failure", true, 1000, 5000));
+
+    assertEquals("new_failure", queue.take().getAppId());
+    assertTrue(queue.getOldestAge() >= 30);
+    assertEquals("old_success", queue.take().getAppId());
+    assertEquals(0, queue.getOldestAge());
+  }
+}
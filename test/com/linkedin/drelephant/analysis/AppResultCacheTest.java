@@ -0,0 +1,107 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.analysis;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import models.AppResult;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class AppResultCacheTest {
+
+  private static class CountingLoader implements Callable<String> {
+    private final AtomicInteger _loads = new AtomicInteger();
+    private final String _json;
+
+    CountingLoader(String json) {
+      _json = json;
+    }
+
+    @Override
+    public String call() {
+      _loads.incrementAndGet();
+      return _json;
+    }
+  }
+
+  @Test
+  public void testReadThrough() throws Exception {
+    AppResultCache cache = new AppResultCache(1024 * 1024, 60 * 1000);
+    CountingLoader loader = new CountingLoader("{\"id\":\"application_1_1\"}");
+
+    AppResultCache.Entry entry = cache.get(AppResultCache.Kind.APP, "application_1_1", loader);
+    assertEquals("{\"id\":\"application_1_1\"}", entry.getJson());
+    assertEquals(entry.getETag(), cache.get(AppResultCache.Kind.APP, "application_1_1", loader).getETag());
+    assertEquals(1, loader._loads.get());
+
+    // Missing results are looked up again
+    CountingLoader missing = new CountingLoader(null);
+    assertEquals(null, cache.get(AppResultCache.Kind.APP, "application_1_2", missing));
+    assertEquals(null, cache.get(AppResultCache.Kind.APP, "application_1_2", missing));
+    assertEquals(2, missing._loads.get());
+  }
+
+  @Test
+  public void testInvalidate() throws Exception {
+    AppResultCache cache = new AppResultCache(1024 * 1024, 60 * 1000);
+    CountingLoader loader = new CountingLoader("[]");
+    cache.get(AppResultCache.Kind.FLOW_EXEC, "flow_1", loader);
+    cache.get(AppResultCache.Kind.FLOW_EXEC, "flow_2", loader);
+
+    // A new application of a flow execution invalidates the flow execution
+    AppResult result = new AppResult();
+    result.id = "application_1_3";
+    result.jobExecId = "job_1";
+    result.flowExecId = "flow_1";
+    cache.invalidate(result);
+    cache.get(AppResultCache.Kind.FLOW_EXEC, "flow_1", loader);
+    cache.get(AppResultCache.Kind.FLOW_EXEC, "flow_2", loader);
+    assertEquals(3, loader._loads.get());
+  }
+
+  @Test
+  public void testWeight() throws Exception {
+    // Room for about two entries
+    AppResultCache cache = new AppResultCache(3000, 60 * 1000);
+    StringBuilder json = new StringBuilder();
+    for (int i = 0; i < 500; i++) {
+      json.append('x');
+    }
+    CountingLoader loader = new CountingLoader(json.toString());
+    for (int i = 0; i < 10; i++) {
+      cache.get(AppResultCache.Kind.APP, "application_1_" + i, loader);
+    }
+    cache.get(AppResultCache.Kind.APP, "application_1_0", loader);
+    assertEquals(11, loader._loads.get());
+  }
+
+  @Test
+  public void testMatches() {
+    AppResultCache.Entry entry = new AppResultCache.Entry("{}");
+    assertTrue(entry.getETag().startsWith("\""));
+    assertTrue(entry.matches(entry.getETag()));
+    assertTrue(entry.matches("\"other\", W/" + entry.getETag()));
+    assertTrue(entry.matches("*"));
+    assertFalse(entry.matches(null));
+    assertFalse(entry.matches("\"other\""));
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.analysis;
+
+import com.avaje.ebean.Ebean;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import models.AppResult;
+import org.junit.Test;
+import play.db.DB;
+
+import static common.DBTestUtil.fakeDBApplication;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static play.test.Helpers.running;
+
+
+public class AppResultCountsTest {
+
+  private static final long HOUR = AppResultCounts.BUCKET_SIZE;
+  // The start of an hour bucket
+  private static final long BUCKET = 1000 * HOUR;
+
+  private static AppResult newResult(String username, String queueName, Severity severity, long finishTime) {
+    AppResult result = new AppResult();
+    result.username = username;
+    result.queueName = queueName;
+    result.jobType = "HadoopJava";
+    result.severity = severity;
+    result.finishTime = finishTime;
+    return result;
+  }
+
+  @Test
+  public void testAddAndRemoveFold() {
+    running(fakeDBApplication(), new Runnable() {
+      public void run() {
+        update(true, Arrays.asList(
+            newResult("user1", "default", Severity.LOW, BUCKET + 1),
+            newResult("user1", "default", Severity.LOW, BUCKET + HOUR - 1),
+            newResult("user2", "default", Severity.LOW, BUCKET + 2)));
+        // Added to the existing rows
+        update(true, Arrays.asList(newResult("user1", "default", Severity.LOW, BUCKET + 3)));
+        // The results of the same bucket and dimensions share a row
+        assertEquals(2, Ebean.createSqlQuery("SELECT COUNT(*) AS row_count FROM yarn_app_result_count").findUnique()
+            .getLong("row_count").longValue());
+
+        update(false, Arrays.asList(
+            newResult("user1", "default", Severity.LOW, BUCKET + 10),
+            newResult("user1", "default", Severity.LOW, BUCKET + 20)));
+        // A count never goes below 0
+        update(false, Arrays.asList(
+            newResult("user2", "default", Severity.LOW, BUCKET + 10),
+            newResult("user2", "default", Severity.LOW, BUCKET + 20)));
+
+        Map<String, Long> counts = AppResultCounts.countBy(AppResultCounts.USERNAME, 0);
+        assertEquals(1L, (long) counts.get("user1"));
+        assertEquals(0L, (long) counts.get("user2"));
+      }
+    });
+  }
+
+  @Test
+  public void testCountByBucket() {
+    running(fakeDBApplication(), new Runnable() {
+      public void run() {
+        update(true, Arrays.asList(
+            newResult("user1", "default", Severity.CRITICAL, BUCKET - 1),
+            newResult("user1", null, Severity.CRITICAL, BUCKET),
+            newResult("user2", "default", Severity.LOW, BUCKET + HOUR / 2),
+            newResult("user2", "default", Severity.LOW, BUCKET + HOUR - 1),
+            newResult("user2", "default", Severity.LOW, BUCKET + HOUR)));
+
+        // The window starts at the bucket of its start time
+        Map<String, Long> counts = AppResultCounts.countBy(AppResultCounts.USERNAME, BUCKET + HOUR / 2);
+        assertEquals(Arrays.asList("user2", "user1"), Arrays.asList(counts.keySet().toArray()));
+        assertEquals(3L, (long) counts.get("user2"));
+        assertEquals(1L, (long) counts.get("user1"));
+        assertEquals(counts, AppResultCounts.countBy(AppResultCounts.USERNAME, BUCKET));
+
+        // The results without a queue are counted under an empty queue name
+        counts = AppResultCounts.countBy(AppResultCounts.QUEUE_NAME, BUCKET);
+        assertEquals(3L, (long) counts.get("default"));
+        assertEquals(1L, (long) counts.get(""));
+
+        Map<Severity, Long> severities = AppResultCounts.countBySeverity(BUCKET - 1);
+        assertEquals(2L, (long) severities.get(Severity.CRITICAL));
+        assertEquals(3L, (long) severities.get(Severity.LOW));
+        assertFalse(severities.containsKey(Severity.NONE));
+        assertNull(AppResultCounts.countBySeverity(BUCKET + 2 * HOUR).get(Severity.LOW));
+      }
+    });
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCountByUnknownDimension() {
+    // Checked before the dimension goes into the query
+    AppResultCounts.countBy("username FROM yarn_app_result --", 0);
+  }
+
+  /**
+   * Adds the results to the counts or removes them, in a transaction
+   */
+  private static void update(boolean add, List<AppResult> results) {
+    try {
+      Connection connection = DB.getConnection(false);
+      try {
+        if (add) {
+          AppResultCounts.add(connection, results);
+        } else {
+          AppResultCounts.remove(connection, results);
+        }
+        connection.commit();
+      } finally {
+        connection.close();
+      }
+    } catch (SQLException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
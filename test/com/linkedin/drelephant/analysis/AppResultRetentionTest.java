@@ -0,0 +1,182 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.analysis;
+
+import com.avaje.ebean.Ebean;
+import com.avaje.ebean.SqlRow;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import models.AppResult;
+import org.junit.Test;
+
+import static common.DBTestUtil.fakeDBApplication;
+import static common.TestConstants.*;
+import static common.TestUtil.newAppResult;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static play.test.Helpers.running;
+
+
+/**
+ * This class tests the batching of the result retention without a database, and its statements on an in-memory
+ * database
+ */
+public class AppResultRetentionTest {
+
+  private static final long DAY = 24 * 60 * 60 * 1000L;
+
+  /**
+   * A retention over a number of old results, recording its batches
+   */
+  private static class RecordingRetention extends AppResultRetention {
+    private int _expired;
+    private int _compactable;
+    private int _counts;
+    private final List<Integer> _deleted = new ArrayList<Integer>();
+    private final List<Integer> _compacted = new ArrayList<Integer>();
+    private final List<Long> _countsBefore = new ArrayList<Long>();
+
+    RecordingRetention(long retention, long compaction, int expired, int compactable, int counts) {
+      super(retention, compaction, 1000, 10, 0, null);
+      _expired = expired;
+      _compactable = compactable;
+      _counts = counts;
+    }
+
+    @Override
+    int deleteBatch(long before, int size) {
+      int count = Math.min(_expired, size);
+      _expired -= count;
+      _deleted.add(count);
+      return count;
+    }
+
+    @Override
+    int compactBatch(long before, int size) {
+      int count = Math.min(_compactable, size);
+      _compactable -= count;
+      _compacted.add(count);
+      return count;
+    }
+
+    @Override
+    int deleteSummariesBatch(long before, int size) {
+      int count = Math.min(_counts, size);
+      _counts -= count;
+      _countsBefore.add(before);
+      return count;
+    }
+  }
+
+  @Test
+  public void testDeletesInBatches() throws Exception {
+    RecordingRetention retention = new RecordingRetention(30 * DAY, 0, 25, 100, 10);
+    long now = 100 * DAY + 12345;
+    retention.purge(now);
+
+    assertEquals(3, retention._deleted.size());
+    assertEquals(5, (int) retention._deleted.get(2));
+    assertEquals(0, retention._expired);
+    // A full batch of counts is followed by an empty one, and the counts are deleted by whole hours
+    assertEquals(2, retention._countsBefore.size());
+    assertEquals(AppResultCounts.getBucketTime(now - 30 * DAY), (long) retention._countsBefore.get(0));
+    assertTrue(retention._compacted.isEmpty());
+  }
+
+  @Test
+  public void testCompactsInBatches() throws Exception {
+    RecordingRetention retention = new RecordingRetention(0, 7 * DAY, 25, 20, 10);
+    retention.purge(100 * DAY);
+
+    assertTrue(retention._deleted.isEmpty());
+    assertTrue(retention._countsBefore.isEmpty());
+    // Two full batches, then an empty one
+    assertEquals(3, retention._compacted.size());
+    assertEquals(0, retention._compactable);
+  }
+
+  @Test
+  public void testDisabled() throws Exception {
+    RecordingRetention retention = new RecordingRetention(0, 0, 25, 20, 10);
+    retention.purge(100 * DAY);
+
+    assertTrue(!retention.isEnabled());
+    assertTrue(retention._deleted.isEmpty());
+    assertTrue(retention._compacted.isEmpty());
+  }
+
+  @Test
+  public void testDeletesAndCompactsInDB() {
+    running(fakeDBApplication(), new Runnable() {
+      public void run() {
+        try {
+          new AppResultWriter(10, 10, null).insertBatch(Arrays.asList(
+              newResult("app_1", TEST_FLOW_EXEC_ID1, 1 * DAY),
+              newResult("app_2", TEST_FLOW_EXEC_ID1, 2 * DAY),
+              newResult("app_3", TEST_FLOW_EXEC_ID2, 12 * DAY),
+              newResult("app_4", TEST_FLOW_EXEC_ID2, 20 * DAY)));
+          Ebean.createSqlUpdate("UPDATE yarn_app_heuristic_result_details SET details = 'stacktrace'").execute();
+          // One result per batch, so that each step runs several batches
+          new AppResultRetention(15 * DAY, 5 * DAY, 1000, 1, 0, null).purge(25 * DAY);
+        } catch (SQLException e) {
+          throw new RuntimeException(e);
+        }
+
+        // The first two results are deleted, the third is compacted and keeps its heuristic results, metrics and the
+        // values of its details
+        List<SqlRow> rows = Ebean.createSqlQuery("SELECT id FROM yarn_app_result ORDER BY id").findList();
+        assertEquals(2, rows.size());
+        assertEquals("app_3", rows.get(0).getString("id"));
+        assertEquals("app_4", rows.get(1).getString("id"));
+        assertEquals(4, count("yarn_app_heuristic_result"));
+        assertEquals(4, count("yarn_app_heuristic_result_metric"));
+        rows = Ebean.createSqlQuery("SELECT value, details FROM yarn_app_heuristic_result_details ORDER BY value")
+            .findList();
+        assertEquals(4, rows.size());
+        assertEquals("app_3 Mapper Skew", rows.get(0).getString("value"));
+        assertEquals(null, rows.get(0).getString("details"));
+        assertEquals(null, rows.get(1).getString("details"));
+        assertEquals("app_4 Mapper Skew", rows.get(2).getString("value"));
+        assertEquals("stacktrace", rows.get(2).getString("details"));
+        assertEquals("stacktrace", rows.get(3).getString("details"));
+        // The compaction resumes from the last result compacted
+        assertEquals(12 * DAY, AppResultRetention.loadCompactionCheckpoint());
+
+        // The counts and the scores of the first flow execution are gone along with its results
+        assertEquals(2, count("yarn_app_result_count"));
+        List<AppResultScores.Score> flows = AppResultScores.getFlowScores(TEST_FLOW_DEF_ID1, 10);
+        assertEquals(1, flows.size());
+        assertEquals(TEST_FLOW_EXEC_ID2, flows.get(0).getFlowExecId());
+        List<AppResultScores.Score> jobs =
+            AppResultScores.getJobScores(Arrays.asList(TEST_FLOW_EXEC_ID1, TEST_FLOW_EXEC_ID2));
+        assertEquals(1, jobs.size());
+        assertEquals(TEST_FLOW_EXEC_ID2, jobs.get(0).getFlowExecId());
+      }
+    });
+  }
+
+  private static AppResult newResult(String appId, String flowExecId, long finishTime) {
+    return newAppResult(appId, flowExecId, TEST_JOB_DEF_ID1, finishTime, Severity.SEVERE, 2, "Mapper Skew",
+        "Reducer Time");
+  }
+
+  private static long count(String table) {
+    return Ebean.createSqlQuery("SELECT COUNT(*) AS row_count FROM " + table).findUnique().getLong("row_count");
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.analysis;
+
+import com.avaje.ebean.Ebean;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import models.AppResult;
+import org.junit.Test;
+import play.db.DB;
+
+import static common.DBTestUtil.fakeDBApplication;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static play.test.Helpers.running;
+
+
+public class AppResultScoresTest {
+
+  private static AppResult newResult(String flowExecId, String jobDefId, long finishTime, int score) {
+    AppResult result = new AppResult();
+    result.flowExecId = flowExecId;
+    result.flowDefId = "flow";
+    result.jobDefId = jobDefId;
+    result.jobDefUrl = jobDefId + "_url";
+    result.jobExecUrl = flowExecId + "_" + jobDefId + "_" + finishTime;
+    result.finishTime = finishTime;
+    result.score = score;
+    return result;
+  }
+
+  @Test
+  public void testFold() {
+    List<AppResult> results = Arrays.asList(
+        newResult("exec1", "job1", 300, 10),
+        newResult("exec1", "job1", 100, 20),
+        newResult("exec1", "job2", 200, 5),
+        newResult("exec2", "job1", 400, 1),
+        newResult("", "job1", 500, 100),
+        newResult("exec3", "", 600, 7));
+    Map<String, AppResultScores.Score> flowScores = new LinkedHashMap<String, AppResultScores.Score>();
+    Map<List<String>, AppResultScores.Score> jobScores = new LinkedHashMap<List<String>, AppResultScores.Score>();
+    AppResultScores.fold(results, flowScores, jobScores);
+
+    // The results without a flow execution are not scored
+    assertEquals(Arrays.asList("exec1", "exec2", "exec3"), Arrays.asList(flowScores.keySet().toArray()));
+    AppResultScores.Score flowScore = flowScores.get("exec1");
+    assertEquals("flow", flowScore.getFlowDefId());
+    assertNull(flowScore.getJobDefId());
+    assertEquals(300, flowScore.getFinishTime());
+    assertEquals(35, flowScore.getScore());
+    assertEquals(7, flowScores.get("exec3").getScore());
+
+    assertEquals(3, jobScores.size());
+    AppResultScores.Score jobScore = jobScores.get(Arrays.asList("exec1", "job1"));
+    assertEquals("job1_url", jobScore.getJobDefUrl());
+    // The job execution url is the one of the first application
+    assertEquals("exec1_job1_100", jobScore.getJobExecUrl());
+    assertEquals(100, jobScore.getFirstFinishTime());
+    assertEquals(300, jobScore.getFinishTime());
+    assertEquals(30, jobScore.getScore());
+    assertEquals(5, jobScores.get(Arrays.asList("exec1", "job2")).getScore());
+    assertEquals(1, jobScores.get(Arrays.asList("exec2", "job1")).getScore());
+  }
+
+  @Test
+  public void testAddUpsertsScores() {
+    running(fakeDBApplication(), new Runnable() {
+      public void run() {
+        update(true, Arrays.asList(
+            newResult("exec1", "job1", 300, 10),
+            newResult("exec1", "job2", 200, 5)));
+        // The flow execution and the jobs are upserted on their unique keys
+        update(true, Arrays.asList(
+            newResult("exec1", "job1", 100, 20),
+            newResult("exec2", "job1", 400, 1)));
+
+        List<AppResultScores.Score> flows = AppResultScores.getFlowScores("flow", 10);
+        assertEquals(2, flows.size());
+        assertEquals("exec2", flows.get(0).getFlowExecId());
+        assertEquals(400, flows.get(0).getFinishTime());
+        assertEquals(1, flows.get(0).getScore());
+        assertEquals("exec1", flows.get(1).getFlowExecId());
+        assertEquals(300, flows.get(1).getFinishTime());
+        assertEquals(35, flows.get(1).getScore());
+        assertEquals(1, AppResultScores.getFlowScores("flow", 1).size());
+
+        assertEquals(3, Ebean.createSqlQuery("SELECT COUNT(*) AS row_count FROM job_exec_score").findUnique()
+            .getLong("row_count").longValue());
+        // Keyed by the hash of the job definition id, as the evolution computes it
+        assertEquals("803e16c8f2d5e702463cb1fa5270a534eebc8e47", AppResultScores.hash("job1"));
+        assertEquals(2, Ebean.createSqlQuery(
+            "SELECT COUNT(*) AS row_count FROM job_exec_score WHERE job_def_hash = :hash")
+            .setParameter("hash", AppResultScores.hash("job1")).findUnique().getLong("row_count").longValue());
+        List<AppResultScores.Score> jobs = AppResultScores.getJobScores(Arrays.asList("exec1"));
+        assertEquals(2, jobs.size());
+        assertEquals("job1", jobs.get(0).getJobDefId());
+        assertEquals("job1_url", jobs.get(0).getJobDefUrl());
+        assertEquals("exec1_job1_100", jobs.get(0).getJobExecUrl());
+        assertEquals(100, jobs.get(0).getFirstFinishTime());
+        assertEquals(300, jobs.get(0).getFinishTime());
+        assertEquals(30, jobs.get(0).getScore());
+        assertEquals("job2", jobs.get(1).getJobDefId());
+        assertEquals(5, jobs.get(1).getScore());
+
+        // The executions of a job, the latest first
+        jobs = AppResultScores.getJobScores("job1", 10);
+        assertEquals(2, jobs.size());
+        assertEquals("exec2", jobs.get(0).getFlowExecId());
+        assertEquals("exec1", jobs.get(1).getFlowExecId());
+        assertEquals(30, jobs.get(1).getScore());
+      }
+    });
+  }
+
+  @Test
+  public void testRemove() {
+    running(fakeDBApplication(), new Runnable() {
+      public void run() {
+        update(true, Arrays.asList(
+            newResult("exec1", "job1", 300, 10),
+            newResult("exec1", "job1", 100, 20),
+            newResult("exec2", "job1", 400, 1)));
+        update(false, Arrays.asList(newResult("exec1", "job1", 300, 10)));
+        // A score never goes below 0
+        update(false, Arrays.asList(newResult("exec2", "job1", 400, 5)));
+
+        List<AppResultScores.Score> flows = AppResultScores.getFlowScores("flow", 10);
+        assertEquals(20, flows.get(1).getScore());
+        assertEquals(0, flows.get(0).getScore());
+        List<AppResultScores.Score> jobs = AppResultScores.getJobScores("job1", 10);
+        assertEquals(0, jobs.get(0).getScore());
+        assertEquals(20, jobs.get(1).getScore());
+      }
+    });
+  }
+
+  /**
+   * Adds the results to the scores or removes them, in a transaction
+   */
+  private static void update(boolean add, List<AppResult> results) {
+    try {
+      Connection connection = DB.getConnection(false);
+      try {
+        if (add) {
+          AppResultScores.add(connection, results);
+        } else {
+          AppResultScores.remove(connection, results);
+        }
+        connection.commit();
+      } finally {
+        connection.close();
+      }
+    } catch (SQLException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.analysis;
+
+import com.avaje.ebean.Ebean;
+import com.avaje.ebean.SqlRow;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import models.AppResult;
+import org.junit.Test;
+
+import static common.DBTestUtil.fakeDBApplication;
+import static common.TestConstants.*;
+import static common.TestUtil.newAppResult;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static play.test.Helpers.running;
+
+
+/**
+ * This class tests the batching of the result writer without a database, and its inserts into an in-memory database
+ */
+public class AppResultWriterTest {
+
+  private static final String JOB_DEF_A = TEST_JOB_DEF_ID1;
+  private static final String JOB_DEF_B = TEST_FLOW_DEF_ID1 + "&job=job-b";
+  private static final String HEURISTIC_RESULTS_SQL = "SELECT r.yarn_app_result_id, r.heuristic_name, "
+      + "d.value AS detail, m.name AS metric FROM yarn_app_heuristic_result r "
+      + "JOIN yarn_app_heuristic_result_details d ON d.yarn_app_heuristic_result_id = r.id "
+      + "JOIN yarn_app_heuristic_result_metric m ON m.yarn_app_heuristic_result_id = r.id ORDER BY r.id";
+
+  private static void write(AppResultWriter writer, String appId) throws InterruptedException {
+    AppResult result = new AppResult();
+    result.id = appId;
+    writer.write(new AnalyticJob().setAppId(appId), result);
+  }
+
+  @Test
+  public void testFlushesFullBatches() throws InterruptedException {
+    RecordingListener listener = new RecordingListener();
+    RecordingWriter writer = new RecordingWriter(10, 60000, listener, false, false);
+    for (int i = 0; i < 25; i++) {
+      write(writer, "app_" + i);
+    }
+    writer.start();
+    writer.stop(10000);
+
+    assertEquals(25, listener._saved.size());
+    assertEquals(0, listener._failed.size());
+    assertEquals(3, writer._batches.size());
+    assertEquals(10, (int) writer._batches.get(0));
+    assertEquals(10, (int) writer._batches.get(1));
+    assertEquals(5, (int) writer._batches.get(2));
+  }
+
+  @Test
+  public void testFlushesAfterInterval() throws InterruptedException {
+    RecordingListener listener = new RecordingListener();
+    RecordingWriter writer = new RecordingWriter(100, 50, listener, false, false);
+    writer.start();
+    try {
+      write(writer, "app_0");
+      write(writer, "app_1");
+      long deadline = System.currentTimeMillis() + 10000;
+      while (listener._saved.size() < 2 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertEquals(2, listener._saved.size());
+      assertTrue(writer._batches.size() <= 2);
+    } finally {
+      writer.stop(10000);
+    }
+  }
+
+  @Test
+  public void testFallsBackToSingleSaves() throws InterruptedException {
+    RecordingListener listener = new RecordingListener();
+    RecordingWriter writer = new RecordingWriter(10, 60000, listener, false, true);
+    write(writer, "app_0");
+    write(writer, "app_1_bad");
+    write(writer, "app_2");
+    writer.start();
+    writer.stop(10000);
+
+    assertEquals(2, listener._saved.size());
+    assertTrue(listener._saved.contains("app_0"));
+    assertTrue(listener._saved.contains("app_2"));
+    assertEquals(1, listener._failed.size());
+    assertEquals("app_1_bad", listener._failed.get(0));
+  }
+
+  @Test
+  public void testListenerErrorDoesNotSaveAgain() throws InterruptedException {
+    RecordingListener listener = new RecordingListener(true);
+    RecordingWriter writer = new RecordingWriter(10, 60000, listener, false, false);
+    write(writer, "app_0");
+    write(writer, "app_1");
+    writer.start();
+    writer.stop(10000);
+
+    // The batch is committed, so the results are neither saved one by one nor reported as failed
+    assertEquals(Arrays.asList("app_0", "app_1"), listener._saved);
+    assertEquals(0, listener._failed.size());
+    assertEquals(0, writer._singleSaves.size());
+  }
+
+  @Test
+  public void testInsertsBatch() {
+    running(fakeDBApplication(), new Runnable() {
+      public void run() {
+        AppResultWriter writer = new AppResultWriter(10, 10, new RecordingListener());
+        try {
+          writer.insertBatch(Arrays.asList(
+              newAppResult("app_1", TEST_FLOW_EXEC_ID1, JOB_DEF_A, 1000, Severity.MODERATE, 2, "Mapper Skew",
+                  "Reducer Time"),
+              newAppResult("app_2", TEST_FLOW_EXEC_ID1, JOB_DEF_B, 2000, Severity.SEVERE, 3, "Mapper Skew"),
+              newAppResult("app_3", "", "", 3000, Severity.LOW, 0, "Mapper Skew")));
+          // A second batch adds to the scores of the same flow execution and job
+          writer.insertBatch(Arrays.asList(
+              newAppResult("app_4", TEST_FLOW_EXEC_ID1, JOB_DEF_A, 5000, Severity.MODERATE, 1, "Reducer Time")));
+        } catch (SQLException e) {
+          throw new RuntimeException(e);
+        }
+
+        // Each detail and metric belongs to the heuristic result it was created with
+        List<SqlRow> rows = Ebean.createSqlQuery(HEURISTIC_RESULTS_SQL).findList();
+        assertEquals(5, rows.size());
+        for (SqlRow row : rows) {
+          String heuristicName = row.getString("heuristic_name");
+          assertEquals(row.getString("yarn_app_result_id") + " " + heuristicName, row.getString("detail"));
+          assertEquals(heuristicName, row.getString("metric"));
+        }
+
+        Map<String, Long> counts = AppResultCounts.countBy(AppResultCounts.USERNAME, 0);
+        assertEquals(4L, (long) counts.get(TEST_USERNAME));
+        Map<Severity, Long> severities = AppResultCounts.countBySeverity(0);
+        assertEquals(2L, (long) severities.get(Severity.MODERATE));
+        assertEquals(1L, (long) severities.get(Severity.SEVERE));
+        assertEquals(1L, (long) severities.get(Severity.LOW));
+
+        // The application without a flow execution is not scored
+        List<AppResultScores.Score> flows = AppResultScores.getFlowScores(TEST_FLOW_DEF_ID1, 10);
+        assertEquals(1, flows.size());
+        assertEquals(TEST_FLOW_EXEC_ID1, flows.get(0).getFlowExecId());
+        assertEquals(5000, flows.get(0).getFinishTime());
+        assertEquals(2 * 2 + 3 + 1, flows.get(0).getScore());
+
+        List<AppResultScores.Score> jobs = AppResultScores.getJobScores(Arrays.asList(TEST_FLOW_EXEC_ID1));
+        assertEquals(2, jobs.size());
+        assertEquals(JOB_DEF_A, jobs.get(0).getJobDefId());
+        assertEquals(1000, jobs.get(0).getFirstFinishTime());
+        assertEquals(5000, jobs.get(0).getFinishTime());
+        assertEquals(2 * 2 + 1, jobs.get(0).getScore());
+        assertTrue(jobs.get(0).getJobExecUrl().endsWith("app_1"));
+        assertEquals(JOB_DEF_B, jobs.get(1).getJobDefId());
+        assertEquals(3, jobs.get(1).getScore());
+      }
+    });
+  }
+
+  @Test
+  public void testFallsBackToSingleSavesInDB() {
+    running(fakeDBApplication(), new Runnable() {
+      public void run() {
+        RecordingListener listener = new RecordingListener();
+        AppResultWriter writer = new AppResultWriter(10, 60000, listener);
+        try {
+          writer.insertBatch(Arrays.asList(
+              newAppResult("app_1", TEST_FLOW_EXEC_ID1, JOB_DEF_A, 1000, Severity.MODERATE, 2, "Mapper Skew")));
+          // The second result is already saved, which fails the batch
+          writer.write(new AnalyticJob().setAppId("app_2"),
+              newAppResult("app_2", TEST_FLOW_EXEC_ID1, JOB_DEF_B, 2000, Severity.SEVERE, 3, "Mapper Skew"));
+          writer.write(new AnalyticJob().setAppId("app_1"),
+              newAppResult("app_1", TEST_FLOW_EXEC_ID1, JOB_DEF_A, 1000, Severity.MODERATE, 2, "Mapper Skew"));
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+        writer.start();
+        writer.stop(10000);
+
+        assertEquals(Arrays.asList("app_2"), listener._saved);
+        assertEquals(Arrays.asList("app_1"), listener._failed);
+        assertEquals(2L, (long) AppResultCounts.countBy(AppResultCounts.USERNAME, 0).get(TEST_USERNAME));
+        assertEquals(2 + 3, AppResultScores.getFlowScores(TEST_FLOW_DEF_ID1, 10).get(0).getScore());
+        assertEquals(2, Ebean.createSqlQuery(HEURISTIC_RESULTS_SQL).findList().size());
+      }
+    });
+  }
+}
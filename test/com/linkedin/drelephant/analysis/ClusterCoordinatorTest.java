@@ -0,0 +1,138 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.analysis;
+
+import com.avaje.ebean.Ebean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Test;
+
+import static common.DBTestUtil.fakeDBApplication;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static play.test.Helpers.running;
+
+
+public class ClusterCoordinatorTest {
+
+  private static final int NUM_APPS = 3000;
+
+  private static String appId(int i) {
+    return String.format("application_1460381439677_%04d", i);
+  }
+
+  @Test
+  public void testSingleNodeOwnsAll() {
+    List<String> nodes = Collections.singletonList("node1");
+    for (int i = 0; i < 100; i++) {
+      assertEquals("node1", ClusterCoordinator.getOwner(appId(i), nodes));
+    }
+  }
+
+  @Test
+  public void testOwnersAreBalanced() {
+    List<String> nodes = Arrays.asList("node1", "node2", "node3");
+    Map<String, Integer> counts = new HashMap<String, Integer>();
+    for (int i = 0; i < NUM_APPS; i++) {
+      String owner = ClusterCoordinator.getOwner(appId(i), nodes);
+      counts.put(owner, counts.containsKey(owner) ? counts.get(owner) + 1 : 1);
+    }
+    assertEquals(3, counts.size());
+    for (int count : counts.values()) {
+      assertTrue("Unbalanced owners " + counts, count > NUM_APPS / 3 * 0.8 && count < NUM_APPS / 3 * 1.2);
+    }
+  }
+
+  @Test
+  public void testSurvivingNodesShareTheDeadNode() {
+    List<String> nodes = Arrays.asList("node1", "node2", "node3");
+    List<String> survivors = new ArrayList<String>(Arrays.asList("node1", "node3"));
+    Map<String, Integer> counts = new HashMap<String, Integer>();
+    for (int i = 0; i < NUM_APPS; i++) {
+      String owner = ClusterCoordinator.getOwner(appId(i), survivors);
+      assertTrue(survivors.contains(owner));
+      if (ClusterCoordinator.getOwner(appId(i), nodes).equals("node2")) {
+        counts.put(owner, counts.containsKey(owner) ? counts.get(owner) + 1 : 1);
+      }
+    }
+    // Both surviving nodes take part of the applications of the dead one
+    assertEquals(2, counts.size());
+  }
+
+  @Test
+  public void testClaimFailsOnLiveLease() {
+    running(fakeDBApplication(), new Runnable() {
+      public void run() {
+        ClusterCoordinator node1 = newCoordinator("node1");
+        ClusterCoordinator node2 = newCoordinator("node2");
+        String appId = appId(1);
+
+        assertTrue(node1.claim(appId));
+        // Fetched again after a rewind while still queued on node1
+        assertFalse(node1.claim(appId));
+        assertFalse(node2.claim(appId));
+        // The retries of node1 keep its lease
+        assertTrue(node1.renew(appId));
+        assertFalse(node2.renew(appId));
+
+        // Once node1 gives it up, the application can be claimed again
+        node1.expire(appId);
+        assertTrue(node2.claim(appId));
+        assertFalse(node1.renew(appId));
+        node2.release(appId);
+        assertTrue(node1.claim(appId));
+      }
+    });
+  }
+
+  @Test
+  public void testTakeOverOldestExpiredLeases() {
+    running(fakeDBApplication(), new Runnable() {
+      public void run() {
+        ClusterCoordinator node1 = newCoordinator("node1");
+        ClusterCoordinator node2 = newCoordinator("node2");
+        for (int i = 1; i <= 4; i++) {
+          assertTrue(node1.claim(appId(i)));
+        }
+        // node1 died, its leases expired in reverse order except for the last application still leased
+        for (int i = 1; i <= 3; i++) {
+          Ebean.createSqlUpdate("UPDATE analysis_lease SET lease_expiry = :expiry WHERE app_id = :app")
+              .setParameter("expiry", 10 - i)
+              .setParameter("app", appId(i))
+              .execute();
+        }
+
+        assertEquals(Arrays.asList(appId(3), appId(2)), node2.takeOverExpiredLeases(2));
+        assertEquals(Collections.singletonList(appId(1)), node2.takeOverExpiredLeases(2));
+        assertTrue(node2.takeOverExpiredLeases(2).isEmpty());
+        assertFalse(node2.claim(appId(4)));
+      }
+    });
+  }
+
+  private static ClusterCoordinator newCoordinator(String nodeId) {
+    Configuration configuration = new Configuration(false);
+    configuration.set(ClusterCoordinator.NODE_ID_KEY, nodeId);
+    return new ClusterCoordinator(configuration);
+  }
+}
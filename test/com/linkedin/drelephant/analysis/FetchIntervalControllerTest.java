@@ -0,0 +1,137 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class FetchIntervalControllerTest {
+
+  private static final long MINUTE = 60000;
+
+  @Test
+  public void testFixedByDefault() {
+    FetchIntervalController controller = new FetchIntervalController(MINUTE, MINUTE, MINUTE, 10, 100);
+    assertEquals(MINUTE, controller.nextInterval(1000, MINUTE, 0));
+    assertEquals(MINUTE, controller.nextInterval(0, MINUTE, 0));
+    assertEquals(MINUTE, controller.nextInterval(0, MINUTE, 500));
+  }
+
+  @Test
+  public void testShortensWhenBusyAndIdle() {
+    FetchIntervalController controller = new FetchIntervalController(MINUTE, 5000, 10 * MINUTE, 10, 100);
+    assertEquals(30000, controller.nextInterval(20, MINUTE, 0));
+    assertEquals(15000, controller.nextInterval(10, 30000, 0));
+    assertEquals(7500, controller.nextInterval(5, 15000, 0));
+    assertEquals(5000, controller.nextInterval(5, 7500, 0));
+    assertEquals(5000, controller.nextInterval(5, 5000, 0));
+    // Busy, but the executors have not caught up
+    assertEquals(32500, controller.nextInterval(5, 5000, 10));
+  }
+
+  @Test
+  public void testLengthensWhenQuiet() {
+    FetchIntervalController controller = new FetchIntervalController(MINUTE, 5000, 2 * MINUTE, 10, 100);
+    assertEquals(90000, controller.nextInterval(0, MINUTE, 0));
+    assertEquals(2 * MINUTE, controller.nextInterval(0, 90000, 0));
+    assertEquals(2 * MINUTE, controller.nextInterval(0, 2 * MINUTE, 0));
+    // A few applications complete again
+    assertEquals(90000, controller.nextInterval(2, 2 * MINUTE, 0));
+  }
+
+  @Test
+  public void testBacksOffWithBacklog() {
+    FetchIntervalController controller = new FetchIntervalController(MINUTE, 5000, 5 * MINUTE, 10, 100);
+    assertFalse(controller.shouldSkipFetch(100));
+    assertTrue(controller.shouldSkipFetch(101));
+    assertEquals(2 * MINUTE, controller.nextInterval(1000, MINUTE, 500));
+    assertEquals(4 * MINUTE, controller.nextInterval(0, 0, 500));
+    assertEquals(5 * MINUTE, controller.nextInterval(0, 0, 500));
+  }
+
+  @Test
+  public void testDefaultThresholdCoversAllLanes() throws InterruptedException {
+    // Two lanes of 100 jobs, the summed backlog of both is compared with half of their total capacity
+    AnalyticJobQueue mapreduce = new AnalyticJobQueue(100, new AnalyticJobPriorityComparator());
+    AnalyticJobQueue spark = new AnalyticJobQueue(100, new AnalyticJobPriorityComparator());
+    FetchIntervalController controller = FetchIntervalController.fromConfiguration(new Configuration(false), MINUTE,
+        mapreduce.getCapacity() + spark.getCapacity());
+
+    // Each lane is less than half full
+    fill(mapreduce, 60);
+    fill(spark, 30);
+    assertFalse(controller.shouldSkipFetch(mapreduce.size() + spark.size()));
+
+    fill(spark, 20);
+    assertTrue(controller.shouldSkipFetch(mapreduce.size() + spark.size()));
+  }
+
+  @Test
+  public void testShortensInRunnerCallOrder() throws InterruptedException {
+    FetchIntervalController controller = new FetchIntervalController(MINUTE, 5000, 10 * MINUTE, 10, 100);
+    AnalyticJobQueue queue = new AnalyticJobQueue(1000, new AnalyticJobPriorityComparator());
+
+    // Busy cluster, the executors empty the queue between two fetches
+    assertEquals(30000, fetch(controller, queue, 20, MINUTE));
+    drain(queue);
+    assertEquals(15000, fetch(controller, queue, 10, 30000));
+    drain(queue);
+    assertEquals(7500, fetch(controller, queue, 5, 15000));
+
+    // The executors fall behind, the jobs of the last fetch are still waiting
+    assertEquals(33750, fetch(controller, queue, 5, 7500));
+    assertEquals(10, queue.size());
+  }
+
+  /**
+   * Runs one iteration of the fetch loop of the ElephantRunner: check the backlog, queue the fetched jobs and compute
+   * the next interval.
+   */
+  private static long fetch(FetchIntervalController controller, AnalyticJobQueue queue, int fetched, long window)
+      throws InterruptedException {
+    assertFalse(controller.shouldSkipFetch(queue.size()));
+    List<AnalyticJob> todos = new ArrayList<AnalyticJob>();
+    for (int i = 0; i < fetched; i++) {
+      todos.add(new AnalyticJob().setAppId("application_1460381439677_" + i).setStartTime(1000).setFinishTime(2000));
+    }
+    int backlog = queue.size();
+    for (AnalyticJob job : todos) {
+      queue.put(job);
+    }
+    return controller.nextInterval(todos.size(), window, backlog);
+  }
+
+  private static void fill(AnalyticJobQueue queue, int jobs) throws InterruptedException {
+    int first = queue.size();
+    for (int i = first; i < first + jobs; i++) {
+      queue.put(new AnalyticJob().setAppId("application_1460381439677_" + i).setStartTime(1000).setFinishTime(2000));
+    }
+  }
+
+  private static void drain(AnalyticJobQueue queue) throws InterruptedException {
+    while (queue.size() > 0) {
+      queue.take();
+    }
+  }
+}
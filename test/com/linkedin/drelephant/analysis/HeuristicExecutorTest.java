@@ -0,0 +1,235 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.analysis;
+
+import com.linkedin.drelephant.configurations.heuristic.HeuristicConfigurationData;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * This class tests the sequential and parallel execution of the heuristics
+ */
+public class HeuristicExecutorTest {
+
+  private static final HadoopApplicationData DATA = new HadoopApplicationData() {
+    @Override
+    public String getAppId() {
+      return "application_1_0001";
+    }
+
+    @Override
+    public Properties getConf() {
+      return new Properties();
+    }
+
+    @Override
+    public ApplicationType getApplicationType() {
+      return new ApplicationType("TEST");
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return false;
+    }
+  };
+
+  /**
+   * A heuristic returning its severity after a delay, or null without a severity
+   */
+  private static class TestHeuristic implements Heuristic<HadoopApplicationData> {
+    private final HeuristicConfigurationData _confData;
+    private final Severity _severity;
+    private final long _delay;
+    private final CountDownLatch _interrupted = new CountDownLatch(1);
+
+    TestHeuristic(String name, Severity severity, long delay) {
+      _confData = new HeuristicConfigurationData(name, "test." + name, null, null, null);
+      _severity = severity;
+      _delay = delay;
+    }
+
+    @Override
+    public HeuristicResult apply(HadoopApplicationData data) {
+      if (_delay > 0) {
+        try {
+          Thread.sleep(_delay);
+        } catch (InterruptedException e) {
+          _interrupted.countDown();
+          return null;
+        }
+      }
+      if (_severity == null) {
+        return null;
+      }
+      return new HeuristicResult(_confData.getClassName(), _confData.getHeuristicName(), _severity, 1);
+    }
+
+    @Override
+    public HeuristicConfigurationData getHeuristicConfData() {
+      return _confData;
+    }
+  }
+
+  private static List<String> names(List<HeuristicResult> results) {
+    List<String> names = new ArrayList<String>();
+    for (HeuristicResult result : results) {
+      names.add(result.getHeuristicName());
+    }
+    return names;
+  }
+
+  @Test
+  public void testSequential() throws Exception {
+    List<Heuristic> heuristics = new ArrayList<Heuristic>();
+    heuristics.add(new TestHeuristic("a", Severity.LOW, 0));
+    heuristics.add(new TestHeuristic("b", null, 0));
+    heuristics.add(new TestHeuristic("c", Severity.SEVERE, 0));
+
+    List<HeuristicResult> results = new HeuristicExecutor(0, 10).apply(heuristics, DATA);
+
+    assertEquals(Arrays.asList("a", "c"), names(results));
+  }
+
+  @Test
+  public void testParallelKeepsOrder() throws Exception {
+    List<Heuristic> heuristics = new ArrayList<Heuristic>();
+    heuristics.add(new TestHeuristic("a", Severity.LOW, 500));
+    heuristics.add(new TestHeuristic("b", null, 500));
+    heuristics.add(new TestHeuristic("c", Severity.SEVERE, 0));
+    HeuristicExecutor executor = new HeuristicExecutor(3, 10000);
+    try {
+      long start = System.currentTimeMillis();
+      List<HeuristicResult> results = executor.apply(heuristics, DATA);
+
+      assertEquals(Arrays.asList("a", "c"), names(results));
+      assertEquals(Severity.SEVERE, results.get(1).getSeverity());
+      // One after the other they would take a second
+      assertTrue(System.currentTimeMillis() - start < 900);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testTimeout() throws Exception {
+    TestHeuristic runaway = new TestHeuristic("runaway", Severity.CRITICAL, 60000);
+    List<Heuristic> heuristics = new ArrayList<Heuristic>();
+    heuristics.add(runaway);
+    heuristics.add(new TestHeuristic("fast", Severity.MODERATE, 0));
+    HeuristicExecutor executor = new HeuristicExecutor(2, 200);
+    try {
+      List<HeuristicResult> results = executor.apply(heuristics, DATA);
+
+      assertEquals(Arrays.asList("runaway", "fast"), names(results));
+      assertTimedOut(results.get(0), "Did not finish");
+      assertEquals(Severity.MODERATE, results.get(1).getSeverity());
+      assertFalse(results.get(1).isTimedOut());
+      assertTrue(runaway._interrupted.await(10, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * A heuristic holding its thread until released, ignoring the interrupt
+   */
+  private static class StuckHeuristic extends TestHeuristic {
+    private final CountDownLatch _release;
+
+    StuckHeuristic(String name, CountDownLatch release) {
+      super(name, Severity.CRITICAL, 0);
+      _release = release;
+    }
+
+    @Override
+    public HeuristicResult apply(HadoopApplicationData data) {
+      while (_release.getCount() > 0) {
+        try {
+          _release.await();
+        } catch (InterruptedException e) {
+          // Keep running
+        }
+      }
+      return null;
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testQueuedTimesOut() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    List<Heuristic> heuristics = new ArrayList<Heuristic>();
+    // Holds the only thread, so the next heuristic never gets one
+    heuristics.add(new StuckHeuristic("stuck", release));
+    // Would never return either if it ran on the analysis thread
+    heuristics.add(new StuckHeuristic("queued", release));
+    HeuristicExecutor executor = new HeuristicExecutor(1, 200);
+    try {
+      long start = System.currentTimeMillis();
+      List<HeuristicResult> results = executor.apply(heuristics, DATA);
+
+      assertEquals(Arrays.asList("stuck", "queued"), names(results));
+      assertTimedOut(results.get(0), "Did not finish");
+      assertTimedOut(results.get(1), "No heuristic thread was free");
+      // The timeout to run the first one, then what is left of the timeout to get a thread for the second one
+      assertTrue(System.currentTimeMillis() - start < 2000);
+    } finally {
+      release.countDown();
+      executor.shutdown();
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testFailure() throws Exception {
+    List<Heuristic> heuristics = new ArrayList<Heuristic>();
+    heuristics.add(new TestHeuristic("a", Severity.LOW, 0));
+    heuristics.add(new Heuristic<HadoopApplicationData>() {
+      @Override
+      public HeuristicResult apply(HadoopApplicationData data) {
+        throw new IllegalStateException("Broken heuristic");
+      }
+
+      @Override
+      public HeuristicConfigurationData getHeuristicConfData() {
+        return null;
+      }
+    });
+    HeuristicExecutor executor = new HeuristicExecutor(2, 10000);
+    try {
+      executor.apply(heuristics, DATA);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static void assertTimedOut(HeuristicResult result, String reason) {
+    assertTrue(result.isTimedOut());
+    assertEquals(Severity.NONE, result.getSeverity());
+    assertEquals(0, result.getScore());
+    assertEquals(HeuristicExecutor.TIMEOUT_DETAIL, result.getHeuristicResultDetails().get(0).getName());
+    assertTrue(result.getHeuristicResultDetails().get(0).getValue().startsWith(reason));
+  }
+}
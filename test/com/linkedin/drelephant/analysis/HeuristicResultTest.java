@@ -0,0 +1,46 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.analysis;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class HeuristicResultTest {
+
+  @Test
+  public void testMetrics() {
+    HeuristicResult result = new HeuristicResult("test.Heuristic", "Test", Severity.NONE, 0);
+    result.addResultMetric("Number of tasks", MetricUnit.COUNT, 10);
+    result.addResultPercentiles("Task runtime", MetricUnit.MILLISECONDS, new long[] { 3000, 1000, 2000 }, 3);
+
+    assertEquals(4, result.getHeuristicResultMetrics().size());
+    assertEquals("Task runtime p50", result.getHeuristicResultMetrics().get(1).getName());
+    assertEquals(2000, result.getHeuristicResultMetrics().get(1).getValue(), 0);
+    // The percentiles are shown as details too
+    assertEquals("2 sec", result.getHeuristicResultDetails().get(0).getValue());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDuplicateMetric() {
+    // The metrics of a result are stored by name, a second one would fail to save the whole analysis
+    HeuristicResult result = new HeuristicResult("test.Heuristic", "Test", Severity.NONE, 0);
+    result.addResultMetric("Number of tasks", MetricUnit.COUNT, 10);
+    result.addResultMetric("Number of tasks", MetricUnit.COUNT, 20);
+  }
+}
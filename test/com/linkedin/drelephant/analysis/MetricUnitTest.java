@@ -0,0 +1,36 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.analysis;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class MetricUnitTest {
+
+  @Test
+  public void testFormat() {
+    assertEquals("12", MetricUnit.COUNT.format(12));
+    assertEquals("1 GB", MetricUnit.BYTES.format(1024L * 1024 * 1024));
+    assertEquals("512 bytes", MetricUnit.BYTES.format(512));
+    assertEquals("55 ms", MetricUnit.MILLISECONDS.format(55));
+    assertEquals("1 min 5 sec", MetricUnit.MILLISECONDS.format(65000));
+    assertEquals("0.0234", MetricUnit.RATIO.format(0.023423));
+    assertEquals("0.5", MetricUnit.RATIO.format(0.5));
+  }
+}
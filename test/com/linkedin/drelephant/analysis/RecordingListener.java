@@ -0,0 +1,55 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.analysis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * A result writer listener recording the ids of the applications saved and failed
+ */
+class RecordingListener implements AppResultWriter.Listener {
+  final List<String> _saved = Collections.synchronizedList(new ArrayList<String>());
+  final List<String> _failed = Collections.synchronizedList(new ArrayList<String>());
+  private final boolean _failSaved;
+
+  RecordingListener() {
+    this(false);
+  }
+
+  /**
+   * @param failSaved Whether to throw once a saved application is recorded
+   */
+  RecordingListener(boolean failSaved) {
+    _failSaved = failSaved;
+  }
+
+  @Override
+  public void onSaved(AnalyticJob job) {
+    _saved.add(job.getAppId());
+    if (_failSaved) {
+      throw new IllegalStateException("Listener failed");
+    }
+  }
+
+  @Override
+  public void onFailed(AnalyticJob job, Exception e) {
+    _failed.add(job.getAppId());
+  }
+}
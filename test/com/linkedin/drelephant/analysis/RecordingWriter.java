@@ -0,0 +1,62 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.analysis;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import models.AppResult;
+
+
+/**
+ * A result writer recording the batches and single saves instead of writing them to the database
+ */
+class RecordingWriter extends AppResultWriter {
+  final List<Integer> _batches = Collections.synchronizedList(new ArrayList<Integer>());
+  final List<String> _inserted = Collections.synchronizedList(new ArrayList<String>());
+  final List<String> _singleSaves = Collections.synchronizedList(new ArrayList<String>());
+  private final boolean _failBatches;
+
+  /**
+   * @param failBatches Whether every batch fails, so that the results are saved one by one. The single saves of the
+   *                    applications whose id ends with _bad fail too.
+   */
+  RecordingWriter(int batchSize, long flushInterval, Listener listener, boolean replace, boolean failBatches) {
+    super(batchSize, flushInterval, listener, replace);
+    _failBatches = failBatches;
+  }
+
+  @Override
+  void insertBatch(List<AppResult> results) throws SQLException {
+    if (_failBatches) {
+      throw new SQLException("Batch failed");
+    }
+    _batches.add(results.size());
+    for (AppResult result : results) {
+      _inserted.add(result.id);
+    }
+  }
+
+  @Override
+  void saveOne(AppResult result) {
+    _singleSaves.add(result.id);
+    if (result.id.endsWith("_bad")) {
+      throw new RuntimeException("Bad result");
+    }
+  }
+}
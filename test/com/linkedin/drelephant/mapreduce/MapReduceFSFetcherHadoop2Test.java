@@ -0,0 +1,359 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.mapreduce;
+
+import com.linkedin.drelephant.analysis.AnalyticJob;
+import com.linkedin.drelephant.configurations.fetcher.FetcherConfigurationData;
+import com.linkedin.drelephant.mapreduce.data.MapReduceApplicationData;
+import com.linkedin.drelephant.mapreduce.data.MapReduceCounterData.CounterName;
+import com.linkedin.drelephant.mapreduce.data.MapReduceTaskData;
+import com.linkedin.drelephant.mapreduce.data.MapReduceTaskSketches;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.JobID;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskCounter;
+import org.apache.hadoop.mapreduce.TaskType;
+import org.apache.hadoop.mapreduce.jobhistory.JobFinishedEvent;
+import org.apache.hadoop.mapreduce.jobhistory.JobHistoryFileWriter;
+import org.apache.hadoop.mapreduce.jobhistory.JobUnsuccessfulCompletionEvent;
+import org.apache.hadoop.mapreduce.jobhistory.MapAttemptFinishedEvent;
+import org.apache.hadoop.mapreduce.jobhistory.ReduceAttemptFinishedEvent;
+import org.apache.hadoop.mapreduce.jobhistory.TaskAttemptStartedEvent;
+import org.apache.hadoop.mapreduce.jobhistory.TaskAttemptUnsuccessfulCompletionEvent;
+import org.apache.hadoop.mapreduce.jobhistory.TaskFinishedEvent;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+public class MapReduceFSFetcherHadoop2Test {
+  private static final String APP_ID = "application_1460381439677_0001";
+  private static final String JOB_ID = "job_1460381439677_0001";
+  private static final String USER = "user1";
+  private static final String HOST = "host1.grid.company.com";
+  private static final String RACK = "/default-rack";
+  private static final int[][] NO_SPLITS = new int[4][0];
+
+  @Rule
+  public TemporaryFolder _folder = new TemporaryFolder();
+
+  private FileSystem _fs;
+  private Path _doneDir;
+  private Path _intermediateDir;
+  private MapReduceFSFetcherHadoop2 _fetcher;
+
+  @Before
+  public void setUp() throws IOException {
+    _fs = FileSystem.getLocal(new Configuration());
+    _doneDir = new Path(new File(_folder.getRoot(), "done").toURI());
+    _intermediateDir = new Path(new File(_folder.getRoot(), "intermediate").toURI());
+
+    Map<String, String> params = new HashMap<String, String>();
+    params.put("history_log_dir", _doneDir.toString());
+    params.put("intermediate_log_dir", _intermediateDir.toString());
+    params.put("history_server_time_zone", "UTC");
+    _fetcher = new MapReduceFSFetcherHadoop2(new FetcherConfigurationData(
+        MapReduceFSFetcherHadoop2.class.getName(), null, params));
+  }
+
+  @Test
+  public void testSerialNumberDirectory() {
+    Assert.assertEquals("000000", MapReduceFSFetcherHadoop2.getSerialNumberDirectory("job_1460381439677_0001"));
+    Assert.assertEquals("000000", MapReduceFSFetcherHadoop2.getSerialNumberDirectory("job_1460381439677_0999"));
+    Assert.assertEquals("000123", MapReduceFSFetcherHadoop2.getSerialNumberDirectory("job_1460381439677_123456"));
+  }
+
+  @Test
+  public void testDateDirectory() {
+    TimeZone utc = TimeZone.getTimeZone("UTC");
+    // 2016-04-11 13:30:50 UTC
+    Assert.assertEquals("2016/04/11", MapReduceFSFetcherHadoop2.getDateDirectory(1460381450000L, utc));
+    // 2016-04-11 06:30:50 PDT
+    Assert.assertEquals("2016/04/11",
+        MapReduceFSFetcherHadoop2.getDateDirectory(1460381450000L, TimeZone.getTimeZone("America/Los_Angeles")));
+    // 2016-01-01 00:00:00 UTC is still the last day of 2015 in California
+    Assert.assertEquals("2016/01/01", MapReduceFSFetcherHadoop2.getDateDirectory(1451606400000L, utc));
+    Assert.assertEquals("2015/12/31",
+        MapReduceFSFetcherHadoop2.getDateDirectory(1451606400000L, TimeZone.getTimeZone("America/Los_Angeles")));
+  }
+
+  @Test
+  public void testFetchSucceededJob() throws Exception {
+    // The job was moved to the done directory of 2016/04/17 but finished on 2016/04/18, the day before is searched
+    Path dir = new Path(_doneDir, "2016/04/17/000000");
+    writeJobConf(new Path(dir, JOB_ID + "_conf.xml"));
+    writeSucceededJob(new Path(dir, JOB_ID + "-1460289000000-user1-word+count-1460290000000-2-1-SUCCEEDED-default"
+        + "-1460289100000.jhist"));
+
+    AnalyticJob job = new AnalyticJob().setAppId(APP_ID).setUser(USER).setFinishTime(1461000000000L);
+    MapReduceApplicationData data = _fetcher.fetchData(job);
+
+    Assert.assertTrue(data.getSucceeded());
+    Assert.assertEquals(JOB_ID, data.getJobId());
+    Assert.assertEquals("default", data.getConf().getProperty("mapreduce.job.queuename"));
+    Assert.assertEquals(100, data.getCounters().get(CounterName.MAP_OUTPUT_RECORDS));
+    Assert.assertEquals(Long.valueOf(7), data.getCounters().getAllCountersInGroup("custom").get("MY_COUNTER"));
+
+    MapReduceTaskData[] mappers = data.getMapperData();
+    Assert.assertEquals(2, mappers.length);
+    Assert.assertEquals("task_1460381439677_0001_m_000000", mappers[0].getTaskId());
+    Assert.assertEquals(2000, mappers[0].getTotalRunTimeMs());
+    Assert.assertEquals(200, mappers[0].getCounters().get(CounterName.SPILLED_RECORDS));
+    // The second mapper succeeded on its second attempt, the times of the failed one are dropped
+    Assert.assertEquals("attempt_1460381439677_0001_m_000001_1", mappers[1].getAttemptId());
+    Assert.assertEquals(5000, mappers[1].getTotalRunTimeMs());
+    Assert.assertEquals(50, mappers[1].getCounters().get(CounterName.SPILLED_RECORDS));
+    Assert.assertArrayEquals(new long[] { 200, 50 }, data.getMapperColumns().getCounter(CounterName.SPILLED_RECORDS));
+
+    MapReduceTaskData[] reducers = data.getReducerData();
+    Assert.assertEquals(1, reducers.length);
+    Assert.assertEquals(10000, reducers[0].getTotalRunTimeMs());
+    Assert.assertEquals(2000, reducers[0].getShuffleTimeMs());
+    Assert.assertEquals(1000, reducers[0].getSortTimeMs());
+    Assert.assertEquals(7000, reducers[0].getCodeExecutionTimeMs());
+    Assert.assertEquals(1024, reducers[0].getCounters().get(CounterName.REDUCE_SHUFFLE_BYTES));
+  }
+
+  @Test
+  public void testFetchFailedJobFromIntermediateDirectory() throws Exception {
+    Path dir = new Path(_intermediateDir, USER);
+    writeJobConf(new Path(dir, JOB_ID + "_conf.xml"));
+    JobHistoryFileWriter writer = new JobHistoryFileWriter(_fs, new Path(dir, JOB_ID + "-1460289000000-user1"
+        + "-word+count-1460290000000-0-0-FAILED-default-1460289100000.jhist"));
+    try {
+      TaskAttemptID attempt = TaskAttemptID.forName("attempt_1460381439677_0001_m_000000_0");
+      writer.write(new TaskAttemptStartedEvent(attempt, TaskType.MAP, 1000, HOST, 8080, 13562, "NODE_LOCAL", "VIRGIN"))
+          .write(new TaskAttemptUnsuccessfulCompletionEvent(attempt, TaskType.MAP, "FAILED", 2000, HOST, 8080, RACK,
+              "Error: java.lang.OutOfMemoryError: Java heap space", NO_SPLITS))
+          .write(new JobUnsuccessfulCompletionEvent(JobID.forName(JOB_ID), 3000, 0, 0, "FAILED"));
+    } finally {
+      writer.close();
+    }
+
+    MapReduceApplicationData data = _fetcher.fetchData(new AnalyticJob().setAppId(APP_ID).setUser(USER));
+
+    Assert.assertFalse(data.getSucceeded());
+    Assert.assertEquals("Error: java.lang.OutOfMemoryError: Java heap space", data.getDiagnosticInfo());
+    Assert.assertEquals("default", data.getConf().getProperty("mapreduce.job.queuename"));
+  }
+
+  @Test
+  public void testFetchKeepsEveryTaskByDefault() throws Exception {
+    Path dir = new Path(_doneDir, "2016/04/18/000000");
+    writeJobConf(new Path(dir, JOB_ID + "_conf.xml"));
+    writeMapOnlyJob(new Path(dir, JOB_ID + "-1460289000000-user1-word+count-1461000000000-100-0-SUCCEEDED-default"
+        + "-1460289100000.jhist"), 100);
+
+    MapReduceApplicationData data = _fetcher.fetchData(
+        new AnalyticJob().setAppId(APP_ID).setUser(USER).setFinishTime(1461000000000L));
+
+    MapReduceTaskData[] mappers = data.getMapperData();
+    Assert.assertEquals(100, mappers.length);
+    Assert.assertEquals(100, data.getMapperColumns().size());
+    for (int i = 0; i < mappers.length; i++) {
+      Assert.assertTrue(mappers[i].isSampled());
+      Assert.assertEquals(String.format("task_1460381439677_0001_m_%06d", i), mappers[i].getTaskId());
+      Assert.assertEquals(i, mappers[i].getCounters().get(CounterName.HDFS_BYTES_READ));
+    }
+    Assert.assertEquals(100, data.getMapperSketches().getCount());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeTaskSampleSize() {
+    Map<String, String> params = new HashMap<String, String>();
+    params.put("history_log_dir", _doneDir.toString());
+    params.put("task_sample_size", "-1");
+    new MapReduceFSFetcherHadoop2(new FetcherConfigurationData(MapReduceFSFetcherHadoop2.class.getName(), null, params));
+  }
+
+  @Test
+  public void testFetchSamplesTasksAndSketchesAll() throws Exception {
+    Map<String, String> params = new HashMap<String, String>();
+    params.put("history_log_dir", _doneDir.toString());
+    params.put("history_server_time_zone", "UTC");
+    params.put("task_sample_size", "10");
+    MapReduceFSFetcherHadoop2 fetcher = new MapReduceFSFetcherHadoop2(new FetcherConfigurationData(
+        MapReduceFSFetcherHadoop2.class.getName(), null, params));
+
+    // 2016-04-18 17:20:00 UTC
+    Path dir = new Path(_doneDir, "2016/04/18/000000");
+    writeJobConf(new Path(dir, JOB_ID + "_conf.xml"));
+    writeMapOnlyJob(new Path(dir, JOB_ID + "-1460289000000-user1-word+count-1461000000000-100-0-SUCCEEDED-default"
+        + "-1460289100000.jhist"), 100);
+
+    MapReduceApplicationData data = fetcher.fetchData(
+        new AnalyticJob().setAppId(APP_ID).setUser(USER).setFinishTime(1461000000000L));
+
+    MapReduceTaskData[] mappers = data.getMapperData();
+    Assert.assertEquals(100, mappers.length);
+    Assert.assertEquals(10, data.getMapperColumns().size());
+    int sampled = 0;
+    MapReduceTaskData unsampled = null;
+    for (int i = 0; i < mappers.length; i++) {
+      if (mappers[i].isSampled()) {
+        sampled++;
+        // The sampled tasks keep their own ids and values whatever row of the columns they ended in
+        Assert.assertEquals(String.format("task_1460381439677_0001_m_%06d", i), mappers[i].getTaskId());
+        Assert.assertEquals(i, mappers[i].getCounters().get(CounterName.HDFS_BYTES_READ));
+        Assert.assertEquals(i * 1000L, mappers[i].getTotalRunTimeMs());
+      } else {
+        // The other tasks are only counted, they all share one task without ids
+        if (unsampled == null) {
+          unsampled = mappers[i];
+        }
+        Assert.assertSame(unsampled, mappers[i]);
+        Assert.assertNull(mappers[i].getTaskId());
+      }
+    }
+    Assert.assertEquals(10, sampled);
+    // The shared task cannot be changed by one heuristic for every other job
+    try {
+      unsampled.setTime(new long[] { 1L, 0L, 0L, 0L, 0L });
+      Assert.fail("Changed the unsampled task");
+    } catch (UnsupportedOperationException e) {
+      // Expected
+    }
+
+    MapReduceTaskSketches sketches = data.getMapperSketches();
+    Assert.assertEquals(100, sketches.getCount());
+    Assert.assertEquals(0, sketches.getCounter(CounterName.HDFS_BYTES_READ).getMin());
+    Assert.assertEquals(99, sketches.getCounter(CounterName.HDFS_BYTES_READ).getMax());
+    Assert.assertEquals(99000, sketches.getTotalRunTimeMs().getMax());
+    Assert.assertEquals(0, data.getReducerSketches().getCount());
+  }
+
+  @Test
+  public void testFetchJobWithinLookupDays() throws Exception {
+    // The job was moved to the done directory of 2016/04/10 but finished on 2016/04/18
+    Path dir = new Path(_doneDir, "2016/04/10/000000");
+    writeJobConf(new Path(dir, JOB_ID + "_conf.xml"));
+    writeSucceededJob(new Path(dir, JOB_ID + "-1460289000000-user1-word+count-1460290000000-2-1-SUCCEEDED-default"
+        + "-1460289100000.jhist"));
+    AnalyticJob job = new AnalyticJob().setAppId(APP_ID).setUser(USER).setFinishTime(1461000000000L);
+
+    // The other date directories are not searched
+    try {
+      _fetcher.fetchData(job);
+      Assert.fail("Found the job 8 days before its finish time");
+    } catch (FileNotFoundException e) {
+      // Expected
+    }
+
+    Map<String, String> params = new HashMap<String, String>();
+    params.put("history_log_dir", _doneDir.toString());
+    params.put("history_server_time_zone", "UTC");
+    params.put("history_lookup_days", "8");
+    MapReduceFSFetcherHadoop2 fetcher = new MapReduceFSFetcherHadoop2(new FetcherConfigurationData(
+        MapReduceFSFetcherHadoop2.class.getName(), null, params));
+    Assert.assertEquals(JOB_ID, fetcher.fetchData(job).getJobId());
+  }
+
+  @Test(expected = FileNotFoundException.class)
+  public void testFetchMissingJob() throws Exception {
+    _fetcher.fetchData(new AnalyticJob().setAppId(APP_ID).setUser(USER).setFinishTime(1461000000000L));
+  }
+
+  private void writeJobConf(Path file) throws IOException {
+    Configuration conf = new Configuration(false);
+    conf.set("mapreduce.job.queuename", "default");
+    conf.set("mapreduce.map.memory.mb", "2048");
+    OutputStream out = _fs.create(file);
+    try {
+      conf.writeXml(out);
+    } finally {
+      out.close();
+    }
+  }
+
+  private void writeSucceededJob(Path file) throws IOException {
+    TaskAttemptID map0 = TaskAttemptID.forName("attempt_1460381439677_0001_m_000000_0");
+    TaskAttemptID map1Failed = TaskAttemptID.forName("attempt_1460381439677_0001_m_000001_0");
+    TaskAttemptID map1 = TaskAttemptID.forName("attempt_1460381439677_0001_m_000001_1");
+    TaskAttemptID reduce0 = TaskAttemptID.forName("attempt_1460381439677_0001_r_000000_0");
+
+    Counters map0Counters = new Counters();
+    map0Counters.findCounter(TaskCounter.MAP_OUTPUT_RECORDS).setValue(100);
+    map0Counters.findCounter(TaskCounter.SPILLED_RECORDS).setValue(200);
+    Counters map1Counters = new Counters();
+    map1Counters.findCounter(TaskCounter.SPILLED_RECORDS).setValue(50);
+    Counters reduce0Counters = new Counters();
+    reduce0Counters.findCounter(TaskCounter.REDUCE_SHUFFLE_BYTES).setValue(1024);
+    Counters jobCounters = new Counters();
+    jobCounters.findCounter(TaskCounter.MAP_OUTPUT_RECORDS).setValue(100);
+    jobCounters.findCounter("custom", "MY_COUNTER").setValue(7);
+
+    JobHistoryFileWriter writer = new JobHistoryFileWriter(_fs, file);
+    try {
+      writer.write(new TaskAttemptStartedEvent(map0, TaskType.MAP, 1000, HOST, 8080, 13562, "NODE_LOCAL", "VIRGIN"))
+          .write(new TaskAttemptStartedEvent(map1Failed, TaskType.MAP, 1000, HOST, 8080, 13562, "NODE_LOCAL",
+              "VIRGIN"))
+          .write(new TaskAttemptUnsuccessfulCompletionEvent(map1Failed, TaskType.MAP, "FAILED", 2500, HOST, 8080,
+              RACK, "Error: java.io.IOException: Spill failed", NO_SPLITS))
+          .write(new MapAttemptFinishedEvent(map0, TaskType.MAP, "SUCCEEDED", 2900, 3000, HOST, 8080, RACK,
+              "map", map0Counters, NO_SPLITS))
+          .write(new TaskFinishedEvent(map0.getTaskID(), map0, 3000, TaskType.MAP, "SUCCEEDED", map0Counters))
+          .write(new TaskAttemptStartedEvent(map1, TaskType.MAP, 4000, HOST, 8080, 13562, "RACK_LOCAL", "VIRGIN"))
+          .write(new MapAttemptFinishedEvent(map1, TaskType.MAP, "SUCCEEDED", 8900, 9000, HOST, 8080, RACK,
+              "map", map1Counters, NO_SPLITS))
+          .write(new TaskFinishedEvent(map1.getTaskID(), map1, 9000, TaskType.MAP, "SUCCEEDED", map1Counters))
+          .write(new TaskAttemptStartedEvent(reduce0, TaskType.REDUCE, 10000, HOST, 8080, 13562, "OFF_SWITCH", "VIRGIN"))
+          .write(new ReduceAttemptFinishedEvent(reduce0, TaskType.REDUCE, "SUCCEEDED", 12000, 13000, 20000, HOST,
+              8080, RACK, "reduce > reduce", reduce0Counters, NO_SPLITS))
+          .write(new TaskFinishedEvent(reduce0.getTaskID(), reduce0, 20000,
+              TaskType.REDUCE, "SUCCEEDED", reduce0Counters))
+          .write(new JobFinishedEvent(JobID.forName(JOB_ID), 21000, 2, 1, 0, 0, new Counters(), new Counters(),
+              jobCounters));
+    } finally {
+      writer.close();
+    }
+  }
+
+  /**
+   * Writes a succeeded job of the given number of mappers, mapper i reads i bytes in i seconds.
+   */
+  private void writeMapOnlyJob(Path file, int mappers) throws IOException {
+    JobHistoryFileWriter writer = new JobHistoryFileWriter(_fs, file);
+    try {
+      for (int i = 0; i < mappers; i++) {
+        TaskAttemptID attempt = TaskAttemptID.forName(String.format("attempt_1460381439677_0001_m_%06d_0", i));
+        Counters counters = new Counters();
+        counters.findCounter("FileSystemCounters", "HDFS_BYTES_READ").setValue(i);
+        writer.write(new TaskAttemptStartedEvent(attempt, TaskType.MAP, 0, HOST, 8080, 13562, "NODE_LOCAL", "VIRGIN"))
+            .write(new MapAttemptFinishedEvent(attempt, TaskType.MAP, "SUCCEEDED", i * 1000L, i * 1000L, HOST, 8080,
+                RACK, "map", counters, NO_SPLITS))
+            .write(new TaskFinishedEvent(attempt.getTaskID(), attempt, i * 1000L, TaskType.MAP, "SUCCEEDED",
+                counters));
+      }
+      writer.write(new JobFinishedEvent(JobID.forName(JOB_ID), 1461000000000L, mappers, 0, 0, 0, new Counters(),
+          new Counters(), new Counters()));
+    } finally {
+      writer.close();
+    }
+  }
+}
@@ -16,6 +16,19 @@
 
 package com.linkedin.drelephant.mapreduce;
 
+import com.linkedin.drelephant.mapreduce.data.MapReduceTaskData;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -32,4 +45,117 @@ public class MapReduceFetcherHadoop2Test {
         .groupCount());
   }
 
+  private static List<MapReduceTaskData> newTasks(int count) {
+    List<MapReduceTaskData> tasks = new ArrayList<MapReduceTaskData>();
+    for (int i = 0; i < count; i++) {
+      String taskId = String.format("task_1460381439677_0001_m_%06d", i);
+      tasks.add(new MapReduceTaskData(taskId, taskId.replace("task", "attempt") + "_0"));
+    }
+    return tasks;
+  }
+
+  /**
+   * Records the tasks fetched and how many were fetched at once
+   */
+  private static class RecordingFetch implements MapReduceFetcherHadoop2.TaskFetch {
+    private final Set<String> _fetched = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final AtomicInteger _running = new AtomicInteger();
+    private final AtomicInteger _maxRunning = new AtomicInteger();
+
+    @Override
+    public void fetch(String jobId, MapReduceTaskData data) throws IOException {
+      int running = _running.incrementAndGet();
+      synchronized (_maxRunning) {
+        _maxRunning.set(Math.max(_maxRunning.get(), running));
+      }
+      try {
+        Thread.sleep(5);
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      } finally {
+        _running.decrementAndGet();
+      }
+      _fetched.add(data.getTaskId());
+    }
+  }
+
+  @Test
+  public void testFetchTasksKeepsSampledOrder() throws Exception {
+    ExecutorService service = MapReduceFetcherHadoop2.newTaskFetchService(4);
+    try {
+      List<MapReduceTaskData> tasks = newTasks(MapReduceFetcherHadoop2.MAX_SAMPLE_SIZE + 50);
+      RecordingFetch fetch = new RecordingFetch();
+      MapReduceFetcherHadoop2.fetchTasks(service, "job_1460381439677_0001", tasks, fetch);
+
+      // The first tasks of the shuffled list are the ones fetched, whatever order the threads finished in
+      Assert.assertEquals(MapReduceFetcherHadoop2.MAX_SAMPLE_SIZE, fetch._fetched.size());
+      for (int i = 0; i < tasks.size(); i++) {
+        Assert.assertEquals(i < MapReduceFetcherHadoop2.MAX_SAMPLE_SIZE,
+            fetch._fetched.contains(tasks.get(i).getTaskId()));
+      }
+    } finally {
+      service.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testFetchTasksOnThreadCount() throws Exception {
+    Map<String, String> params = new HashMap<String, String>();
+    params.put("task_fetch_thread_count", "3");
+    int threadCount = MapReduceFetcherHadoop2.getIntParam(params, "task_fetch_thread_count", 8);
+    Assert.assertEquals(3, threadCount);
+
+    ExecutorService service = MapReduceFetcherHadoop2.newTaskFetchService(threadCount);
+    try {
+      RecordingFetch fetch = new RecordingFetch();
+      MapReduceFetcherHadoop2.fetchTasks(service, "job_1460381439677_0001", newTasks(60), fetch);
+      Assert.assertEquals(60, fetch._fetched.size());
+      Assert.assertTrue(fetch._maxRunning.get() <= 3);
+    } finally {
+      service.shutdownNow();
+    }
+
+    // Without threads the tasks are fetched one after the other
+    params.put("task_fetch_thread_count", "0");
+    Assert.assertNull(MapReduceFetcherHadoop2.newTaskFetchService(
+        MapReduceFetcherHadoop2.getIntParam(params, "task_fetch_thread_count", 8)));
+    RecordingFetch fetch = new RecordingFetch();
+    MapReduceFetcherHadoop2.fetchTasks(null, "job_1460381439677_0001", newTasks(10), fetch);
+    Assert.assertEquals(10, fetch._fetched.size());
+    Assert.assertEquals(1, fetch._maxRunning.get());
+  }
+
+  @Test
+  public void testFetchTasksCancelledOnFailure() throws Exception {
+    final CountDownLatch interrupted = new CountDownLatch(1);
+    final AtomicInteger started = new AtomicInteger();
+    ExecutorService service = MapReduceFetcherHadoop2.newTaskFetchService(2);
+    try {
+      MapReduceFetcherHadoop2.fetchTasks(service, "job_1460381439677_0001", newTasks(10),
+          new MapReduceFetcherHadoop2.TaskFetch() {
+            @Override
+            public void fetch(String jobId, MapReduceTaskData data) throws IOException {
+              started.incrementAndGet();
+              if (data.getTaskId().endsWith("_000000")) {
+                throw new IOException("Cannot fetch " + data.getTaskId());
+              }
+              // The other thread waits until it is cancelled
+              try {
+                Thread.sleep(60000);
+              } catch (InterruptedException e) {
+                interrupted.countDown();
+              }
+            }
+          });
+      Assert.fail("The failure of a task was not rethrown");
+    } catch (IOException e) {
+      Assert.assertEquals("Cannot fetch task_1460381439677_0001_m_000000", e.getMessage());
+    }
+    // The running fetches are interrupted and the queued ones never start
+    Assert.assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+    service.shutdown();
+    Assert.assertTrue(service.awaitTermination(10, TimeUnit.SECONDS));
+    Assert.assertTrue(started.get() < 10);
+  }
+
 }
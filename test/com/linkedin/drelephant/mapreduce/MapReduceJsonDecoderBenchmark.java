@@ -0,0 +1,161 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.mapreduce;
+
+import com.linkedin.drelephant.mapreduce.data.MapReduceCounterData;
+import com.linkedin.drelephant.mapreduce.data.MapReduceTaskData;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static common.TestConstants.*;
+
+
+/**
+ * Compares the streaming decoding of the job history server responses with the JsonNode tree decoding it replaced.
+ *
+ * Run with: sbt "test:runMain org.openjdk.jmh.Main MapReduceJsonDecoderBenchmark -prof gc"
+ * The gc profiler reports the bytes allocated per operation next to the time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MapReduceJsonDecoderBenchmark {
+
+  @Param({"1000", "100000"})
+  public int size;
+
+  private final ObjectMapper _objectMapper = new ObjectMapper();
+  private byte[] _conf;
+  private byte[] _jobCounters;
+  private byte[] _taskCounters;
+  private byte[] _tasks;
+
+  @Setup
+  public void setup() throws IOException {
+    // Real job confs have a few thousand properties, scale them down with the task count
+    _conf = MapReduceJsonFixtures.confJson(Math.min(size, 5000)).getBytes(DEFAULT_ENCODING);
+    _jobCounters = MapReduceJsonFixtures.jobCountersJson().getBytes(DEFAULT_ENCODING);
+    _taskCounters = MapReduceJsonFixtures.taskCountersJson(FILENAME_REDUCERTASK.replaceFirst("\\$", "1"))
+        .getBytes(DEFAULT_ENCODING);
+    _tasks = MapReduceJsonFixtures.tasksJson(size).getBytes(DEFAULT_ENCODING);
+  }
+
+  @Benchmark
+  public Properties streamProperties() throws IOException {
+    Properties jobConf = new Properties();
+    MapReduceJsonDecoder.readProperties(new ByteArrayInputStream(_conf), jobConf);
+    return jobConf;
+  }
+
+  @Benchmark
+  public Properties treeProperties() throws IOException {
+    Properties jobConf = new Properties();
+    JsonNode rootNode = _objectMapper.readTree(new ByteArrayInputStream(_conf));
+    for (JsonNode conf : rootNode.path("conf").path("property")) {
+      jobConf.setProperty(conf.get("name").getValueAsText(), conf.get("value").getValueAsText());
+    }
+    return jobConf;
+  }
+
+  @Benchmark
+  public MapReduceCounterData streamJobCounters() throws IOException {
+    MapReduceCounterData holder = new MapReduceCounterData();
+    MapReduceJsonDecoder.readJobCounters(new ByteArrayInputStream(_jobCounters), holder);
+    return holder;
+  }
+
+  @Benchmark
+  public MapReduceCounterData treeJobCounters() throws IOException {
+    MapReduceCounterData holder = new MapReduceCounterData();
+    JsonNode rootNode = _objectMapper.readTree(new ByteArrayInputStream(_jobCounters));
+    for (JsonNode group : rootNode.path("jobCounters").path("counterGroup")) {
+      for (JsonNode counter : group.path("counter")) {
+        holder.set(group.get("counterGroupName").getValueAsText(), counter.get("name").getValueAsText(),
+            counter.get("totalCounterValue").getLongValue());
+      }
+    }
+    return holder;
+  }
+
+  @Benchmark
+  public MapReduceCounterData streamTaskCounters() throws IOException {
+    MapReduceCounterData holder = new MapReduceCounterData();
+    MapReduceJsonDecoder.readTaskCounters(new ByteArrayInputStream(_taskCounters), holder);
+    return holder;
+  }
+
+  @Benchmark
+  public MapReduceCounterData treeTaskCounters() throws IOException {
+    MapReduceCounterData holder = new MapReduceCounterData();
+    JsonNode rootNode = _objectMapper.readTree(new ByteArrayInputStream(_taskCounters));
+    for (JsonNode group : rootNode.path("jobTaskCounters").path("taskCounterGroup")) {
+      for (JsonNode counter : group.path("counter")) {
+        holder.set(group.get("counterGroupName").getValueAsText(), counter.get("name").getValueAsText(),
+            counter.get("value").getLongValue());
+      }
+    }
+    return holder;
+  }
+
+  @Benchmark
+  public int streamTasks() throws IOException {
+    List<MapReduceTaskData> mappers = new ArrayList<MapReduceTaskData>();
+    List<MapReduceTaskData> reducers = new ArrayList<MapReduceTaskData>();
+    MapReduceJsonDecoder.readTasks(new ByteArrayInputStream(_tasks), mappers, reducers);
+    return mappers.size() + reducers.size();
+  }
+
+  @Benchmark
+  public int treeTasks() throws IOException {
+    List<MapReduceTaskData> mappers = new ArrayList<MapReduceTaskData>();
+    List<MapReduceTaskData> reducers = new ArrayList<MapReduceTaskData>();
+    JsonNode rootNode = _objectMapper.readTree(new ByteArrayInputStream(_tasks));
+    for (JsonNode task : rootNode.path("tasks").path("task")) {
+      if (!task.get("state").getValueAsText().equals("SUCCEEDED")) {
+        continue;
+      }
+      MapReduceTaskData data =
+          new MapReduceTaskData(task.get("id").getValueAsText(), task.get("successfulAttempt").getValueAsText());
+      if (task.get("type").getValueAsText().equals("MAP")) {
+        mappers.add(data);
+      } else {
+        reducers.add(data);
+      }
+    }
+    return mappers.size() + reducers.size();
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.mapreduce;
+
+import com.linkedin.drelephant.mapreduce.data.MapReduceCounterData;
+import com.linkedin.drelephant.mapreduce.data.MapReduceTaskData;
+import common.TestUtil;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import org.junit.Test;
+
+import static common.TestConstants.*;
+import static org.junit.Assert.assertEquals;
+
+
+/**
+ * This class tests the streaming decoding of the job history server responses
+ */
+public class MapReduceJsonDecoderTest {
+
+  private static InputStream toStream(String json) throws IOException {
+    return new ByteArrayInputStream(json.getBytes(DEFAULT_ENCODING));
+  }
+
+  @Test
+  public void testReadProperties() throws IOException {
+    Properties expected = TestUtil.loadProperties(FILENAME_JOBCONF);
+    Properties jobConf = new Properties();
+    MapReduceJsonDecoder.readProperties(toStream(MapReduceJsonFixtures.confJson(expected.size())), jobConf);
+    assertEquals(expected, jobConf);
+
+    Properties bigJobConf = new Properties();
+    MapReduceJsonDecoder.readProperties(toStream(MapReduceJsonFixtures.confJson(1000)), bigJobConf);
+    assertEquals(1000, bigJobConf.size());
+  }
+
+  @Test
+  public void testReadJobCounters() throws IOException {
+    MapReduceCounterData holder = new MapReduceCounterData();
+    MapReduceJsonDecoder.readJobCounters(toStream(MapReduceJsonFixtures.jobCountersJson()), holder);
+
+    Map<String, Map<String, Long>> expected = MapReduceJsonFixtures.loadCounters(FILENAME_JOBCOUNTER);
+    assertEquals(expected.keySet(), holder.getGroupNames());
+    for (String groupName : expected.keySet()) {
+      assertEquals(expected.get(groupName), holder.getAllCountersInGroup(groupName));
+    }
+    assertEquals(804, holder.get(MapReduceCounterData.CounterName.HDFS_BYTES_READ));
+  }
+
+  @Test
+  public void testReadTaskCounters() throws IOException {
+    String filePath = FILENAME_REDUCERTASK.replaceFirst("\\$", "1");
+    MapReduceCounterData holder = new MapReduceCounterData();
+    MapReduceJsonDecoder.readTaskCounters(toStream(MapReduceJsonFixtures.taskCountersJson(filePath)), holder);
+
+    Map<String, Map<String, Long>> expected = MapReduceJsonFixtures.loadCounters(filePath);
+    assertEquals(expected.keySet(), holder.getGroupNames());
+    for (String groupName : expected.keySet()) {
+      assertEquals(expected.get(groupName), holder.getAllCountersInGroup(groupName));
+    }
+  }
+
+  @Test
+  public void testCounterGroupNameAfterCounters() throws IOException {
+    String json = "{\"jobCounters\":{\"counterGroup\":[{\"counter\":[{\"name\":\"MAP_INPUT_RECORDS\","
+        + "\"totalCounterValue\":42}],\"counterGroupName\":\"org.apache.hadoop.mapreduce.TaskCounter\"}]}}";
+    MapReduceCounterData holder = new MapReduceCounterData();
+    MapReduceJsonDecoder.readJobCounters(toStream(json), holder);
+    assertEquals(Long.valueOf(42),
+        holder.getAllCountersInGroup("org.apache.hadoop.mapreduce.TaskCounter").get("MAP_INPUT_RECORDS"));
+  }
+
+  @Test
+  public void testReadTasks() throws IOException {
+    List<MapReduceTaskData> mappers = new ArrayList<MapReduceTaskData>();
+    List<MapReduceTaskData> reducers = new ArrayList<MapReduceTaskData>();
+    MapReduceJsonDecoder.readTasks(toStream(MapReduceJsonFixtures.tasksJson(200)), mappers, reducers);
+
+    // 20 reducers, 2 killed mappers
+    assertEquals(178, mappers.size());
+    assertEquals(20, reducers.size());
+    assertEquals("task_1460381439677_0001_m_000001", mappers.get(0).getTaskId());
+    assertEquals("attempt_1460381439677_0001_m_000001_0", mappers.get(0).getAttemptId());
+    assertEquals("task_1460381439677_0001_r_000000", reducers.get(0).getTaskId());
+  }
+
+  @Test
+  public void testMissingFields() throws IOException {
+    Properties jobConf = new Properties();
+    MapReduceJsonDecoder.readProperties(toStream("{\"conf\":{\"path\":\"job.xml\"}}"), jobConf);
+    assertEquals(0, jobConf.size());
+
+    List<MapReduceTaskData> mappers = new ArrayList<MapReduceTaskData>();
+    List<MapReduceTaskData> reducers = new ArrayList<MapReduceTaskData>();
+    MapReduceJsonDecoder.readTasks(toStream("{\"tasks\":null}"), mappers, reducers);
+    assertEquals(0, mappers.size() + reducers.size());
+  }
+}
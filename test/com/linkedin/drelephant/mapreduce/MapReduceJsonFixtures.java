@@ -0,0 +1,168 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.mapreduce;
+
+import common.TestUtil;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static common.TestConstants.*;
+
+
+/**
+ * Builds job history server REST responses out of the sample job conf and counter fixtures in mrdata.
+ */
+public final class MapReduceJsonFixtures {
+
+  private MapReduceJsonFixtures() {
+  }
+
+  /**
+   * Loads a counter fixture, where each property is a group and its value is a "{NAME=value, ...}" list.
+   *
+   * @return A map of group name -> counter name -> value, in the order of the file
+   */
+  public static Map<String, Map<String, Long>> loadCounters(String filePath) throws IOException {
+    Properties counterData = TestUtil.loadProperties(filePath);
+    Map<String, Map<String, Long>> groups = new LinkedHashMap<String, Map<String, Long>>();
+    for (String groupName : counterData.stringPropertyNames()) {
+      String counterValueString = counterData.getProperty(groupName).replaceAll("\\{|\\}", "");
+
+      StringBuilder stringBuilder = new StringBuilder();
+      for (String counterKeyValue : counterValueString.split(",")) {
+        stringBuilder.append(counterKeyValue.trim()).append('\n');
+      }
+      Properties counterProperties = new Properties();
+      counterProperties.load(new ByteArrayInputStream(stringBuilder.toString().getBytes(DEFAULT_ENCODING)));
+
+      Map<String, Long> counters = new LinkedHashMap<String, Long>();
+      for (String counterName : counterProperties.stringPropertyNames()) {
+        counters.put(counterName, Long.parseLong(counterProperties.getProperty(counterName)));
+      }
+      groups.put(groupName, counters);
+    }
+    return groups;
+  }
+
+  /**
+   * Builds a /conf response with the sample job conf, repeated with numbered names until it has the given number of
+   * properties.
+   */
+  public static String confJson(int numProperties) throws IOException {
+    Properties jobConf = TestUtil.loadProperties(FILENAME_JOBCONF);
+    String[] names = jobConf.stringPropertyNames().toArray(new String[0]);
+
+    StringBuilder sb = new StringBuilder("{\"conf\":{\"path\":\"hdfs://localhost/job.xml\",\"property\":[");
+    for (int i = 0; i < numProperties; i++) {
+      String name = names[i % names.length];
+      if (i >= names.length) {
+        name = name + "." + i;
+      }
+      if (i > 0) {
+        sb.append(',');
+      }
+      sb.append("{\"name\":").append(quote(name)).append(",\"value\":")
+          .append(quote(jobConf.getProperty(names[i % names.length])))
+          .append(",\"source\":[\"job.xml\"]}");
+    }
+    return sb.append("]}}").toString();
+  }
+
+  /**
+   * Builds a /counters response of a job from the sample job counters
+   */
+  public static String jobCountersJson() throws IOException {
+    Map<String, Map<String, Long>> groups = loadCounters(FILENAME_JOBCOUNTER);
+    StringBuilder sb = new StringBuilder("{\"jobCounters\":{\"id\":\"job_1460381439677_0001\",\"counterGroup\":[");
+    boolean firstGroup = true;
+    for (Map.Entry<String, Map<String, Long>> group : groups.entrySet()) {
+      if (!firstGroup) {
+        sb.append(',');
+      }
+      firstGroup = false;
+      sb.append("{\"counterGroupName\":").append(quote(group.getKey())).append(",\"counter\":[");
+      boolean firstCounter = true;
+      for (Map.Entry<String, Long> counter : group.getValue().entrySet()) {
+        if (!firstCounter) {
+          sb.append(',');
+        }
+        firstCounter = false;
+        sb.append("{\"name\":").append(quote(counter.getKey())).append(",\"reduceCounterValue\":0")
+            .append(",\"mapCounterValue\":").append(counter.getValue())
+            .append(",\"totalCounterValue\":").append(counter.getValue()).append('}');
+      }
+      sb.append("]}");
+    }
+    return sb.append("]}}").toString();
+  }
+
+  /**
+   * Builds a /tasks/{taskid}/counters response of a task from a task counter fixture
+   */
+  public static String taskCountersJson(String filePath) throws IOException {
+    Map<String, Map<String, Long>> groups = loadCounters(filePath);
+    StringBuilder sb = new StringBuilder("{\"jobTaskCounters\":{\"id\":\"task_1460381439677_0001_m_000000\",")
+        .append("\"taskCounterGroup\":[");
+    boolean firstGroup = true;
+    for (Map.Entry<String, Map<String, Long>> group : groups.entrySet()) {
+      if (!firstGroup) {
+        sb.append(',');
+      }
+      firstGroup = false;
+      sb.append("{\"counterGroupName\":").append(quote(group.getKey())).append(",\"counter\":[");
+      boolean firstCounter = true;
+      for (Map.Entry<String, Long> counter : group.getValue().entrySet()) {
+        if (!firstCounter) {
+          sb.append(',');
+        }
+        firstCounter = false;
+        sb.append("{\"name\":").append(quote(counter.getKey())).append(",\"value\":").append(counter.getValue())
+            .append('}');
+      }
+      sb.append("]}");
+    }
+    return sb.append("]}}").toString();
+  }
+
+  /**
+   * Builds a /tasks response with the given number of tasks. Every tenth task is a reducer, and every hundredth task
+   * is killed.
+   */
+  public static String tasksJson(int numTasks) {
+    StringBuilder sb = new StringBuilder("{\"tasks\":{\"task\":[");
+    for (int i = 0; i < numTasks; i++) {
+      boolean isMapper = i % 10 != 0;
+      String taskId = String.format("task_1460381439677_0001_%s_%06d", isMapper ? "m" : "r", i);
+      if (i > 0) {
+        sb.append(',');
+      }
+      sb.append("{\"startTime\":1460381450000,\"finishTime\":1460381460000,\"elapsedTime\":10000,\"progress\":100.0")
+          .append(",\"id\":\"").append(taskId).append('"')
+          .append(",\"state\":\"").append(i % 100 == 99 ? "KILLED" : "SUCCEEDED").append('"')
+          .append(",\"type\":\"").append(isMapper ? "MAP" : "REDUCE").append('"')
+          .append(",\"successfulAttempt\":\"").append(taskId.replace("task_", "attempt_")).append("_0\"}");
+    }
+    return sb.append("]}}").toString();
+  }
+
+  private static String quote(String value) {
+    return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.mapreduce.data;
+
+import com.linkedin.drelephant.mapreduce.data.MapReduceCounterData.CounterName;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Compares the ordinal indexed known counters with the nested maps of group to counters they replaced, for the
+ * counter lookups of the heuristics and for the heap of the 200 sampled tasks of the REST fetcher.
+ *
+ * Run with: sbt "test:runMain org.openjdk.jmh.Main MapReduceCounterDataBenchmark -prof gc"
+ * The gc profiler reports the bytes allocated per operation. For the sample benchmarks that is the heap held by the
+ * counters of a 200 task sample, plus the small garbage of the map resizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MapReduceCounterDataBenchmark {
+
+  private static final int SAMPLE_SIZE = 200;
+  private static final String[] GROUP_NAMES = {
+      "org.apache.hadoop.mapreduce.FileSystemCounter", "org.apache.hadoop.mapreduce.TaskCounter",
+      "org.apache.hadoop.mapreduce.lib.input.FileInputFormatCounter",
+      "org.apache.hadoop.mapreduce.lib.output.FileOutputFormatCounter"
+  };
+
+  // Number of custom user counters of each task
+  @Param({"0", "100"})
+  public int customCounters;
+
+  private String[] _groups;
+  private String[] _names;
+  private long[] _values;
+  private MapReduceCounterData _counters;
+  private LegacyCounterData _legacyCounters;
+
+  @Setup
+  public void setup() {
+    CounterName[] counterNames = CounterName.values();
+    int size = counterNames.length + customCounters;
+    _groups = new String[size];
+    _names = new String[size];
+    _values = new long[size];
+    for (int i = 0; i < size; i++) {
+      if (i < counterNames.length) {
+        _groups[i] = GROUP_NAMES[counterNames[i]._group.ordinal() % GROUP_NAMES.length];
+        _names[i] = counterNames[i].getName();
+      } else {
+        _groups[i] = "UserCounters" + (i % 4);
+        _names[i] = "RECORDS_" + i;
+      }
+      _values[i] = i * 1000L;
+    }
+    _counters = newCounters(true);
+    _legacyCounters = newLegacyCounters();
+  }
+
+  @Benchmark
+  public long get() {
+    long sum = 0;
+    for (CounterName counterName : CounterName.values()) {
+      sum += _counters.get(counterName);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public long legacyGet() {
+    long sum = 0;
+    for (CounterName counterName : CounterName.values()) {
+      sum += _legacyCounters.get(counterName);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public MapReduceCounterData[] sample() {
+    MapReduceCounterData[] sample = new MapReduceCounterData[SAMPLE_SIZE];
+    for (int i = 0; i < SAMPLE_SIZE; i++) {
+      sample[i] = newCounters(true);
+    }
+    return sample;
+  }
+
+  @Benchmark
+  public MapReduceCounterData[] sampleDroppingUnknownCounters() {
+    MapReduceCounterData[] sample = new MapReduceCounterData[SAMPLE_SIZE];
+    for (int i = 0; i < SAMPLE_SIZE; i++) {
+      sample[i] = newCounters(false);
+    }
+    return sample;
+  }
+
+  @Benchmark
+  public LegacyCounterData[] legacySample() {
+    LegacyCounterData[] sample = new LegacyCounterData[SAMPLE_SIZE];
+    for (int i = 0; i < SAMPLE_SIZE; i++) {
+      sample[i] = newLegacyCounters();
+    }
+    return sample;
+  }
+
+  private MapReduceCounterData newCounters(boolean keepUnknownCounters) {
+    MapReduceCounterData counters = new MapReduceCounterData(keepUnknownCounters);
+    for (int i = 0; i < _names.length; i++) {
+      // New strings, the way the fetchers read the names from the responses
+      counters.set(new String(_groups[i]), new String(_names[i]), _values[i]);
+    }
+    return counters;
+  }
+
+  private LegacyCounterData newLegacyCounters() {
+    LegacyCounterData counters = new LegacyCounterData();
+    for (int i = 0; i < _names.length; i++) {
+      counters.set(new String(_groups[i]), new String(_names[i]), _values[i]);
+    }
+    return counters;
+  }
+
+  /**
+   * The former MapReduceCounterData, every counter in a map of group to counters, looked up in every group.
+   */
+  public static class LegacyCounterData {
+    private final Map<String, Map<String, Long>> _pubCounters = new HashMap<String, Map<String, Long>>(8);
+
+    public long get(CounterName counterName) {
+      for (Map<String, Long> counterGrp : _pubCounters.values()) {
+        if (counterGrp.containsKey(counterName.getName())) {
+          return counterGrp.get(counterName.getName());
+        }
+      }
+      return 0;
+    }
+
+    public void set(String groupName, String counterName, long value) {
+      Map<String, Long> counterMap = _pubCounters.get(groupName);
+      if (counterMap == null) {
+        counterMap = new HashMap<String, Long>(4);
+        _pubCounters.put(groupName, counterMap);
+      }
+      counterMap.put(counterName, value);
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.mapreduce.data;
+
+import com.linkedin.drelephant.mapreduce.data.MapReduceCounterData.CounterName;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class MapReduceCounterDataTest {
+
+  private static final String TASK_GROUP = "org.apache.hadoop.mapreduce.TaskCounter";
+  private static final String USER_GROUP = "UserCounters";
+
+  @Test
+  public void testKnownCountersInAnyGroup() {
+    MapReduceCounterData counters = new MapReduceCounterData();
+    counters.set(TASK_GROUP, "GC_TIME_MILLIS", 42);
+    counters.set("FileSystemCounters", "HDFS_BYTES_READ", 1024);
+    counters.set(CounterName.CPU_MILLISECONDS, 420);
+
+    assertEquals(42, counters.get(CounterName.GC_MILLISECONDS));
+    assertEquals(1024, counters.get(CounterName.HDFS_BYTES_READ));
+    assertEquals(420, counters.get(CounterName.CPU_MILLISECONDS));
+    assertEquals(0, counters.get(CounterName.SPILLED_RECORDS));
+
+    Map<String, Long> expected = new HashMap<String, Long>();
+    expected.put("GC_TIME_MILLIS", 42L);
+    assertEquals(expected, counters.getAllCountersInGroup(TASK_GROUP));
+  }
+
+  @Test
+  public void testUnknownCounters() {
+    MapReduceCounterData counters = new MapReduceCounterData();
+    counters.set(TASK_GROUP, "SPILLED_RECORDS", 10);
+    counters.set(TASK_GROUP, "MERGED_MAP_OUTPUTS", 3);
+    counters.set(USER_GROUP, "BAD_RECORDS", 7);
+
+    Set<String> groupNames = new HashSet<String>();
+    groupNames.add(TASK_GROUP);
+    groupNames.add(USER_GROUP);
+    assertEquals(groupNames, counters.getGroupNames());
+
+    Map<String, Long> expected = new HashMap<String, Long>();
+    expected.put("SPILLED_RECORDS", 10L);
+    expected.put("MERGED_MAP_OUTPUTS", 3L);
+    assertEquals(expected, counters.getAllCountersInGroup(TASK_GROUP));
+    assertEquals(Long.valueOf(7), counters.getAllCountersInGroup(USER_GROUP).get("BAD_RECORDS"));
+    assertTrue(counters.getAllCountersInGroup("NoSuchGroup").isEmpty());
+  }
+
+  @Test
+  public void testDropUnknownCounters() {
+    MapReduceCounterData counters = new MapReduceCounterData(false);
+    counters.set(TASK_GROUP, "SPILLED_RECORDS", 10);
+    counters.set(USER_GROUP, "BAD_RECORDS", 7);
+
+    assertEquals(10, counters.get(CounterName.SPILLED_RECORDS));
+    assertEquals(1, counters.getGroupNames().size());
+    assertTrue(counters.getAllCountersInGroup(USER_GROUP).isEmpty());
+  }
+
+  @Test
+  public void testSameNameInAnotherGroup() {
+    MapReduceCounterData counters = new MapReduceCounterData();
+    counters.set("org.apache.hadoop.mapreduce.lib.input.FileInputFormatCounter", "BYTES_READ", 100);
+    counters.set(USER_GROUP, "BYTES_READ", 200);
+
+    assertEquals(100, counters.get(CounterName.BYTES_READ));
+    assertEquals(Long.valueOf(200), counters.getAllCountersInGroup(USER_GROUP).get("BYTES_READ"));
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.mapreduce.data;
+
+import com.linkedin.drelephant.mapreduce.data.MapReduceCounterData.CounterName;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class MapReduceTaskColumnsTest {
+
+  @Test
+  public void testAddTaskGrowsColumns() {
+    MapReduceTaskColumns columns = new MapReduceTaskColumns(1);
+    for (int i = 0; i < 100; i++) {
+      assertEquals(i, columns.addTask(new long[] { 100 + i, 10, 5 }));
+      columns.setCounter(i, CounterName.HDFS_BYTES_READ, i * 1000);
+    }
+
+    assertEquals(100, columns.size());
+    assertTrue(columns.getCounter(CounterName.HDFS_BYTES_READ).length >= 100);
+    for (int i = 0; i < 100; i++) {
+      assertEquals(i * 1000, columns.getCounter(i, CounterName.HDFS_BYTES_READ));
+      assertEquals(0, columns.getCounter(i, CounterName.SPILLED_RECORDS));
+      assertEquals(100 + i, columns.getTotalRunTimeMs()[i]);
+      assertEquals(100 + i - 15, columns.getCodeExecutionTimeMs(i));
+    }
+  }
+
+  @Test
+  public void testFromTasksKeepsSampledTasks() {
+    MapReduceCounterData counters = new MapReduceCounterData();
+    counters.set(CounterName.GC_MILLISECONDS, 42);
+    counters.set(CounterName.CPU_MILLISECONDS, 420);
+    MapReduceTaskData[] tasks = new MapReduceTaskData[] {
+        new MapReduceTaskData(counters, new long[] { 1000, 200, 100 }),
+        new MapReduceTaskData("task_1", "attempt_1"),
+        new MapReduceTaskData(new MapReduceCounterData(), new long[] { 2000, 0, 0 })
+    };
+
+    MapReduceTaskColumns columns = MapReduceTaskColumns.fromTasks(tasks);
+
+    assertEquals(2, columns.size());
+    assertEquals(42, columns.getCounter(0, CounterName.GC_MILLISECONDS));
+    assertEquals(420, columns.getCounter(0, CounterName.CPU_MILLISECONDS));
+    assertEquals(0, columns.getCounter(1, CounterName.GC_MILLISECONDS));
+    assertEquals(200, columns.getShuffleTimeMs()[0]);
+    assertEquals(100, columns.getSortTimeMs()[0]);
+    assertEquals(2000, columns.getTotalRunTimeMs()[1]);
+    assertEquals(0, MapReduceTaskColumns.fromTasks(null).size());
+  }
+
+  @Test
+  public void testTaskReadsColumns() {
+    MapReduceTaskColumns columns = new MapReduceTaskColumns();
+    columns.addTask(new long[] { 5000, 0, 0 });
+    int index = columns.addTask(new long[] { 9000, 3000, 1000 });
+    columns.setCounter(index, CounterName.REDUCE_SHUFFLE_BYTES, 1234);
+
+    MapReduceTaskData task = new MapReduceTaskData("task_2", "attempt_2", columns, index);
+
+    assertTrue(task.isSampled());
+    assertEquals(9000, task.getTotalRunTimeMs());
+    assertEquals(3000, task.getShuffleTimeMs());
+    assertEquals(1000, task.getSortTimeMs());
+    assertEquals(5000, task.getCodeExecutionTimeMs());
+    assertEquals(1234, task.getCounters().get(CounterName.REDUCE_SHUFFLE_BYTES));
+  }
+
+  @Test
+  public void testApplicationDataBuildsColumns() {
+    MapReduceTaskData[] mappers = new MapReduceTaskData[] {
+        new MapReduceTaskData(new MapReduceCounterData(), new long[] { 1000, 0, 0 })
+    };
+    MapReduceApplicationData data = new MapReduceApplicationData().setMapperData(mappers);
+
+    MapReduceTaskColumns columns = data.getMapperColumns();
+    assertEquals(1, columns.size());
+    assertTrue(columns == data.getMapperColumns());
+    assertEquals(0, data.getReducerColumns().size());
+
+    data.setMapperData(new MapReduceTaskData[0]);
+    assertEquals(0, data.getMapperColumns().size());
+  }
+}
@@ -20,10 +20,12 @@ import com.linkedin.drelephant.analysis.ApplicationType;
 import com.linkedin.drelephant.analysis.HDFSContext;
 import com.linkedin.drelephant.analysis.Heuristic;
 import com.linkedin.drelephant.analysis.HeuristicResult;
+import com.linkedin.drelephant.analysis.HeuristicResultMetric;
 import com.linkedin.drelephant.analysis.Severity;
 import com.linkedin.drelephant.mapreduce.data.MapReduceCounterData;
 import com.linkedin.drelephant.mapreduce.data.MapReduceApplicationData;
 import com.linkedin.drelephant.mapreduce.data.MapReduceTaskData;
+import com.linkedin.drelephant.mapreduce.data.MapReduceTaskSketches;
 
 import com.linkedin.drelephant.configurations.heuristic.HeuristicConfigurationData;
 import java.io.IOException;
@@ -41,6 +43,13 @@ public class MapperDataSkewHeuristicTest extends TestCase {
   private static Heuristic _heuristic = new MapperDataSkewHeuristic(new HeuristicConfigurationData("test_heuristic",
       "test_class", "test_view", new ApplicationType("test_apptype"), paramsMap));
 
+  private static Map<String, String> sketchParamsMap = new HashMap<String, String>();
+  static {
+    sketchParamsMap.put("quantile_sketch", "true");
+  }
+  private static Heuristic _sketchHeuristic = new MapperDataSkewHeuristic(new HeuristicConfigurationData(
+      "test_heuristic", "test_class", "test_view", new ApplicationType("test_apptype"), sketchParamsMap));
+
   public void testCritical() throws IOException {
     assertEquals(Severity.CRITICAL, analyzeJob(200, 200, 1 * UNITSIZE, 100 * UNITSIZE));
   }
@@ -69,8 +78,80 @@ public class MapperDataSkewHeuristicTest extends TestCase {
     assertEquals(Severity.NONE, analyzeJob(5, 5, 10 * UNITSIZE, 100 * UNITSIZE));
   }
 
+  public void testPercentiles() throws IOException {
+    HeuristicResult expected = analyzeJob(_heuristic, 30000, 20000, 10 * UNITSIZE, 100 * UNITSIZE);
+    HeuristicResult result = analyzeJob(_sketchHeuristic, 30000, 20000, 10 * UNITSIZE, 100 * UNITSIZE);
+    assertEquals(expected.getSeverity(), result.getSeverity());
+    assertEquals("30000 tasks @ 10 MB avg", result.getHeuristicResultDetails().get(1).getValue());
+    assertEquals("20000 tasks @ 100 MB avg", result.getHeuristicResultDetails().get(2).getValue());
+    assertEquals(3, expected.getHeuristicResultDetails().size());
+    assertEquals("Task input size p50", result.getHeuristicResultDetails().get(3).getName());
+    assertEquals(5, expected.getHeuristicResultMetrics().size());
+    assertEquals(8, result.getHeuristicResultMetrics().size());
+    assertEquals(30000d, metric(result, "Group A tasks"), 0d);
+    assertEquals(10d * UNITSIZE, metric(result, "Task input size p50"), 0d);
+    assertEquals(100d * UNITSIZE, metric(result, "Task input size p95"), 0d);
+    assertEquals(100d * UNITSIZE, metric(result, "Task input size p99"), 0d);
+  }
+
+  public void testQuantileSketch() throws IOException {
+    // Only 100 small tasks are sampled, the sketches hold all of them
+    int numSmallTasks = 30000;
+    int numLargeTasks = 20000;
+    MapReduceCounterData smallCounter = new MapReduceCounterData();
+    smallCounter.set(MapReduceCounterData.CounterName.HDFS_BYTES_READ, 10 * UNITSIZE);
+    long[] smallCounters = new long[MapReduceCounterData.CounterName.values().length];
+    smallCounters[MapReduceCounterData.CounterName.HDFS_BYTES_READ.ordinal()] = 10 * UNITSIZE;
+    long[] largeCounters = new long[MapReduceCounterData.CounterName.values().length];
+    largeCounters[MapReduceCounterData.CounterName.HDFS_BYTES_READ.ordinal()] = 100 * UNITSIZE;
+
+    MapReduceTaskData[] mappers = new MapReduceTaskData[numSmallTasks + numLargeTasks];
+    MapReduceTaskSketches sketches = new MapReduceTaskSketches();
+    for (int i = 0; i < mappers.length; i++) {
+      if (i < 100) {
+        mappers[i] = new MapReduceTaskData(smallCounter, new long[3]);
+      } else {
+        mappers[i] = new MapReduceTaskData("task_" + i, "attempt_" + i);
+      }
+      sketches.add(0, i < numSmallTasks ? smallCounters : largeCounters);
+    }
+    MapReduceApplicationData data = new MapReduceApplicationData().setCounters(new MapReduceCounterData())
+        .setMapperData(mappers).setTaskSketches(sketches, null);
+
+    assertEquals(Severity.NONE, _heuristic.apply(data).getSeverity());
+    HeuristicResult result = _sketchHeuristic.apply(data);
+    assertEquals(Severity.SEVERE, result.getSeverity());
+    assertEquals("50000", result.getHeuristicResultDetails().get(0).getValue());
+    // The group sizes are estimated by the sketch
+    assertGroup(30000, "10 MB", result.getHeuristicResultDetails().get(1).getValue());
+    assertGroup(20000, "100 MB", result.getHeuristicResultDetails().get(2).getValue());
+    assertEquals("Task input size p50", result.getHeuristicResultDetails().get(3).getName());
+    assertEquals(10d * UNITSIZE, metric(result, "Task input size p50"), 0d);
+    assertEquals(100d * UNITSIZE, metric(result, "Task input size p99"), 0d);
+  }
+
+  private static double metric(HeuristicResult result, String name) {
+    for (HeuristicResultMetric metric : result.getHeuristicResultMetrics()) {
+      if (metric.getName().equals(name)) {
+        return metric.getValue();
+      }
+    }
+    throw new AssertionError("No metric " + name);
+  }
+
+  private void assertGroup(int expectedTasks, String expectedAverage, String group) {
+    String[] parts = group.split(" tasks @ ");
+    assertEquals(expectedAverage + " avg", parts[1]);
+    assertEquals(expectedTasks, Integer.parseInt(parts[0]), expectedTasks / 100);
+  }
+
   private Severity analyzeJob(int numSmallTasks, int numLargeTasks, long smallInputSize, long largeInputSize)
       throws IOException {
+    return analyzeJob(_heuristic, numSmallTasks, numLargeTasks, smallInputSize, largeInputSize).getSeverity();
+  }
+
+  private HeuristicResult analyzeJob(Heuristic heuristic, int numSmallTasks, int numLargeTasks, long smallInputSize,
+      long largeInputSize) throws IOException {
     MapReduceCounterData jobCounter = new MapReduceCounterData();
     MapReduceTaskData[] mappers = new MapReduceTaskData[numSmallTasks + numLargeTasks];
 
@@ -89,8 +170,6 @@ public class MapperDataSkewHeuristicTest extends TestCase {
     }
 
     MapReduceApplicationData data = new MapReduceApplicationData().setCounters(jobCounter).setMapperData(mappers);
-    HeuristicResult result = _heuristic.apply(data);
-    return result.getSeverity();
-
+    return heuristic.apply(data);
   }
 }
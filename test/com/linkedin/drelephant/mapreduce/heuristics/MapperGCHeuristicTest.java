@@ -19,6 +19,8 @@ package com.linkedin.drelephant.mapreduce.heuristics;
 import com.linkedin.drelephant.analysis.ApplicationType;
 import com.linkedin.drelephant.analysis.Heuristic;
 import com.linkedin.drelephant.analysis.HeuristicResult;
+import com.linkedin.drelephant.analysis.HeuristicResultMetric;
+import com.linkedin.drelephant.analysis.MetricUnit;
 import com.linkedin.drelephant.analysis.Severity;
 import com.linkedin.drelephant.mapreduce.data.MapReduceCounterData;
 import com.linkedin.drelephant.mapreduce.data.MapReduceApplicationData;
@@ -27,6 +29,7 @@ import com.linkedin.drelephant.mapreduce.data.MapReduceTaskData;
 import com.linkedin.drelephant.configurations.heuristic.HeuristicConfigurationData;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import junit.framework.TestCase;
 
@@ -60,7 +63,26 @@ public class MapperGCHeuristicTest extends TestCase {
   }
 
 
+  public void testMetrics() throws IOException {
+    HeuristicResult result = analyze(1000000, 50000, 2000);
+    // The details keep their names and values, the metrics repeat them as numbers
+    assertEquals("Avg task GC time (ms)", result.getHeuristicResultDetails().get(3).getName());
+    assertEquals("2000", result.getHeuristicResultDetails().get(3).getValue());
+    List<HeuristicResultMetric> metrics = result.getHeuristicResultMetrics();
+    assertEquals(5, metrics.size());
+    assertEquals("Number of tasks", metrics.get(0).getName());
+    assertEquals(NUMTASKS, metrics.get(0).getValue(), 0);
+    assertEquals(MetricUnit.MILLISECONDS, metrics.get(3).getUnit());
+    assertEquals(2000, metrics.get(3).getValue(), 0);
+    assertEquals("Task GC/CPU ratio", metrics.get(4).getName());
+    assertEquals(0.04, metrics.get(4).getValue(), 0.0001);
+  }
+
   private Severity analyzeJob(long runtimeMs, long cpuMs, long gcMs) throws IOException {
+    return analyze(runtimeMs, cpuMs, gcMs).getSeverity();
+  }
+
+  private HeuristicResult analyze(long runtimeMs, long cpuMs, long gcMs) throws IOException {
     MapReduceCounterData jobCounter = new MapReduceCounterData();
     MapReduceTaskData[] mappers = new MapReduceTaskData[NUMTASKS];
 
@@ -74,7 +96,6 @@ public class MapperGCHeuristicTest extends TestCase {
     }
 
     MapReduceApplicationData data = new MapReduceApplicationData().setCounters(jobCounter).setMapperData(mappers);
-    HeuristicResult result = _heuristic.apply(data);
-    return result.getSeverity();
+    return _heuristic.apply(data);
   }
 }
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.math;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class QuantileSketchTest {
+
+  private static final double[] PERCENTILES = {1, 10, 25, 50, 75, 90, 95, 99};
+
+  @Test
+  public void testExactBelowK() {
+    long[] values = randomValues(new Random(1), QuantileSketch.DEFAULT_K - 1);
+    QuantileSketch sketch = sketch(values, 0, values.length);
+
+    for (double percentile : PERCENTILES) {
+      long expected = Statistics.percentile(values.clone(), 0, values.length, percentile);
+      assertEquals(expected, sketch.getPercentile(percentile));
+    }
+    assertEquals(Statistics.average(values), sketch.getMean());
+  }
+
+  @Test
+  public void testAccuracy() {
+    long[] values = randomValues(new Random(2), 500000);
+    QuantileSketch sketch = sketch(values, 0, values.length);
+
+    assertEquals(values.length, sketch.getCount());
+    assertTrue(sketch.getRetainedCount() < 3 * QuantileSketch.DEFAULT_K);
+    assertAccurate(values, sketch);
+  }
+
+  @Test
+  public void testMerge() {
+    long[] values = randomValues(new Random(3), 200000);
+    QuantileSketch merged = new QuantileSketch();
+    for (int part = 0; part < 4; part++) {
+      merged.merge(sketch(values, part * 50000, (part + 1) * 50000));
+    }
+    merged.merge(new QuantileSketch());
+
+    assertEquals(values.length, merged.getCount());
+    assertTrue(merged.getRetainedCount() < 3 * QuantileSketch.DEFAULT_K);
+    assertAccurate(values, merged);
+  }
+
+  @Test
+  public void testHistogramAndMeans() {
+    QuantileSketch sketch = sketch(new long[]{1, 2, 2, 3, 10, 20, 30, 100}, 0, 8);
+
+    assertArrayEquals(new long[]{1, 3, 3, 1}, sketch.getHistogram(2, 10, 100));
+    assertArrayEquals(new long[]{1, 2, 20, 100}, sketch.getMeans(2, 10, 100));
+    assertArrayEquals(new long[]{8}, sketch.getHistogram());
+    assertEquals(1, sketch.getMin());
+    assertEquals(100, sketch.getMax());
+    assertEquals(21, sketch.getMean());
+  }
+
+  @Test
+  public void testEmpty() {
+    QuantileSketch sketch = new QuantileSketch();
+
+    assertEquals(0, sketch.getCount());
+    assertEquals(0, sketch.getMin());
+    assertEquals(0, sketch.getMax());
+    assertEquals(0, sketch.getMean());
+    assertArrayEquals(new long[]{0, 0}, sketch.getHistogram(10));
+    assertArrayEquals(new long[]{0, 0}, sketch.getMeans(10));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testEmptyPercentile() {
+    new QuantileSketch().getPercentile(50);
+  }
+
+  @Test
+  public void testTwoGroupsMiddle() {
+    long[] values = new long[]{1, 2, 1, 100, 3, 120, 2, 110};
+    QuantileSketch sketch = sketch(values, 0, values.length);
+
+    long middle = Statistics.findTwoGroupsMiddle(sketch);
+    int split = Statistics.partitionTwoGroups(values, 0, values.length);
+    assertArrayEquals(new long[]{split, values.length - split}, sketch.getHistogram(middle));
+    long[] averages =
+        new long[]{Statistics.average(values, 0, split), Statistics.average(values, split, values.length)};
+    assertArrayEquals(averages, sketch.getMeans(middle));
+  }
+
+  private static QuantileSketch sketch(long[] values, int from, int to) {
+    QuantileSketch sketch = new QuantileSketch();
+    for (int i = from; i < to; i++) {
+      sketch.update(values[i]);
+    }
+    return sketch;
+  }
+
+  // Task runtimes like values, most around a minute and a long tail up to an hour
+  private static long[] randomValues(Random random, int count) {
+    long[] values = new long[count];
+    for (int i = 0; i < count; i++) {
+      values[i] = random.nextInt(20) == 0 ? random.nextInt(3600000) : 30000 + random.nextInt(60000);
+    }
+    return values;
+  }
+
+  // The rank of each estimated percentile is within 1.5% of the requested one
+  private static void assertAccurate(long[] values, QuantileSketch sketch) {
+    long[] sorted = values.clone();
+    Arrays.sort(sorted);
+    for (double percentile : PERCENTILES) {
+      long estimate = sketch.getPercentile(percentile);
+      int lowest = Arrays.binarySearch(sorted, estimate);
+      while (lowest > 0 && sorted[lowest - 1] == estimate) {
+        lowest--;
+      }
+      int highest = lowest;
+      while (highest < sorted.length - 1 && sorted[highest + 1] == estimate) {
+        highest++;
+      }
+      double target = percentile / 100 * sorted.length;
+      double error = Math.max(0, Math.max(lowest - target, target - highest - 1)) / sorted.length;
+      assertTrue(percentile + " is off by " + error, error < 0.015);
+    }
+    assertEquals(sorted[0], sketch.getPercentile(0));
+    assertEquals(sorted[sorted.length - 1], sketch.getPercentile(100));
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.math;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Compares the primitive statistics on task arrays with the boxed List<Long> versions the heuristics used before.
+ *
+ * Run with: sbt "test:runMain org.openjdk.jmh.Main StatisticsBenchmark -prof gc"
+ * The gc profiler reports the bytes allocated per operation, the array versions should report close to 0 since they
+ * only copy the values into a scratch array allocated once, the way a heuristic fills its own array.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StatisticsBenchmark {
+
+  @Param({"10000", "100000", "1000000"})
+  public int size;
+
+  private long[] _values;
+  private long[] _scratch;
+
+  @Setup
+  public void setup() {
+    // Skewed task input sizes, most tasks read a block and a few read many more
+    Random random = new Random(0);
+    _values = new long[size];
+    for (int i = 0; i < size; i++) {
+      _values[i] = random.nextInt(10) == 0 ? random.nextInt(1 << 30) * 8L : random.nextInt(1 << 27);
+    }
+    _scratch = new long[size];
+  }
+
+  @Benchmark
+  public long arrayAverage() {
+    System.arraycopy(_values, 0, _scratch, 0, size);
+    return Statistics.average(_scratch, 0, size);
+  }
+
+  @Benchmark
+  public long listAverage() {
+    List<Long> values = toList();
+    return Statistics.average(values);
+  }
+
+  @Benchmark
+  public double arrayVariance() {
+    System.arraycopy(_values, 0, _scratch, 0, size);
+    return Statistics.variance(_scratch, 0, size);
+  }
+
+  @Benchmark
+  public long arrayMedian() {
+    System.arraycopy(_values, 0, _scratch, 0, size);
+    return Statistics.median(_scratch, 0, size);
+  }
+
+  @Benchmark
+  public long listMedian() {
+    List<Long> values = toList();
+    Collections.sort(values);
+    int middle = values.size() / 2;
+    return values.size() % 2 == 0 ? (values.get(middle - 1) + values.get(middle)) / 2 : values.get(middle);
+  }
+
+  @Benchmark
+  public long arrayPercentile() {
+    System.arraycopy(_values, 0, _scratch, 0, size);
+    return Statistics.percentile(_scratch, 0, size, 95);
+  }
+
+  @Benchmark
+  public long arrayTwoGroups() {
+    System.arraycopy(_values, 0, _scratch, 0, size);
+    int split = Statistics.partitionTwoGroups(_scratch, 0, size);
+    return Statistics.average(_scratch, split, size) - Statistics.average(_scratch, 0, split);
+  }
+
+  @Benchmark
+  public long listTwoGroups() {
+    long[] values = toArray(toList());
+    long[][] groups = listTwoGroups(values, Statistics.average(values), 2);
+    return Statistics.average(groups[1]) - Statistics.average(groups[0]);
+  }
+
+  private List<Long> toList() {
+    List<Long> values = new ArrayList<Long>();
+    for (int i = 0; i < size; i++) {
+      values.add(_values[i]);
+    }
+    return values;
+  }
+
+  private static long[] toArray(List<Long> input) {
+    long[] result = new long[input.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = input.get(i);
+    }
+    return result;
+  }
+
+  // The grouping as it was done before, with a pair of lists copied back to arrays at every level
+  private static long[][] listTwoGroups(long[] values, long middle, int levels) {
+    List<Long> smaller = new ArrayList<Long>();
+    List<Long> larger = new ArrayList<Long>();
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] < middle) {
+        smaller.add(values[i]);
+      } else {
+        larger.add(values[i]);
+      }
+    }
+    long[][] result = new long[][]{toArray(smaller), toArray(larger)};
+    if (levels > 0) {
+      return listTwoGroups(values, Statistics.average(result[1]) - Statistics.average(result[0]), levels - 1);
+    }
+    return result;
+  }
+}
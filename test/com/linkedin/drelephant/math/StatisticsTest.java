@@ -17,10 +17,13 @@
 package com.linkedin.drelephant.math;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 
@@ -70,6 +73,91 @@ public class StatisticsTest {
     assertEquals(6, Statistics.median(list2));
   }
 
+  @Test
+  public void testMedian3() {
+    ArrayList<Long> list = new ArrayList<Long>(Arrays.asList(8l, 2l, 6l, 4l));
+    assertEquals(5, Statistics.median(list));
+    assertEquals(Arrays.asList(8l, 2l, 6l, 4l), list);
+  }
+
+  @Test
+  public void testMedianRange() {
+    long[] values = new long[]{100, 7, 3, 9, 1, 5, 100};
+    assertEquals(5, Statistics.median(values.clone(), 1, 6));
+    assertEquals(5, Statistics.median(values.clone(), 1, 5));
+    assertEquals(100, Statistics.median(values.clone(), 6, 7));
+
+    Random random = new Random(7);
+    for (int size = 1; size < 200; size++) {
+      long[] random1 = new long[size];
+      for (int i = 0; i < size; i++) {
+        random1[i] = random.nextInt(50);
+      }
+      long[] sorted = random1.clone();
+      Arrays.sort(sorted);
+      long expected = size % 2 == 0 ? (sorted[size / 2 - 1] + sorted[size / 2]) / 2 : sorted[size / 2];
+      assertEquals(expected, Statistics.median(random1, 0, size));
+    }
+  }
+
+  @Test
+  public void testPercentile() {
+    long[] values = new long[]{15, 20, 35, 40, 50};
+    assertEquals(15, Statistics.percentile(values.clone(), 0, 5, 0));
+    assertEquals(20, Statistics.percentile(values.clone(), 0, 5, 30));
+    assertEquals(20, Statistics.percentile(values.clone(), 0, 5, 40));
+    assertEquals(35, Statistics.percentile(values.clone(), 0, 5, 50));
+    assertEquals(50, Statistics.percentile(values.clone(), 0, 5, 100));
+  }
+
+  @Test
+  public void testPercentileEmpty() {
+    expectedEx.expect(IllegalArgumentException.class);
+    expectedEx.expectMessage("Percentile of an empty list is not defined.");
+    Statistics.percentile(new long[]{1}, 1, 1, 50);
+  }
+
+  @Test
+  public void testAverageAndVarianceRange() {
+    long[] values = new long[]{100, 2, 4, 4, 4, 5, 5, 7, 9, 100};
+    assertEquals(5, Statistics.average(values, 1, 9));
+    assertEquals(0, Statistics.average(values, 3, 3));
+    assertEquals(4d, Statistics.variance(values, 1, 9), 1e-9);
+    assertEquals(0d, Statistics.variance(values, 3, 3), 1e-9);
+  }
+
+  @Test
+  public void testMoments() {
+    Statistics.Moments moments = new Statistics.Moments();
+    assertEquals(0d, moments.getMean(), 1e-9);
+    assertEquals(0, moments.getMin());
+    assertEquals(0, moments.getMax());
+    for (long value : new long[]{2, 4, 4, 4, 5, 5, 7, 9}) {
+      moments.add(value);
+    }
+    assertEquals(8, moments.getCount());
+    assertEquals(5d, moments.getMean(), 1e-9);
+    assertEquals(4d, moments.getVariance(), 1e-9);
+    assertEquals(2, moments.getMin());
+    assertEquals(9, moments.getMax());
+  }
+
+  @Test
+  public void testTwoGroups() {
+    long[] values = new long[]{1, 2, 1, 100, 3, 120, 2, 110};
+    long[][] groups = Statistics.findTwoGroups(values);
+    Arrays.sort(groups[0]);
+    Arrays.sort(groups[1]);
+    assertArrayEquals(new long[]{1, 1, 2, 2, 3}, groups[0]);
+    assertArrayEquals(new long[]{100, 110, 120}, groups[1]);
+    assertArrayEquals(new long[]{1, 2, 1, 100, 3, 120, 2, 110}, values);
+
+    int split = Statistics.partitionTwoGroups(values, 0, values.length);
+    assertEquals(5, split);
+    assertEquals(1, Statistics.average(values, 0, split));
+    assertEquals(110, Statistics.average(values, split, values.length));
+  }
+
   @Test
   public void testDescribeFactor() {
     assertEquals("", Statistics.describeFactor(0, 0, "test"));
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.linkedin.drelephant.spark;
+
+import com.linkedin.drelephant.spark.data.SparkExecutorData;
+import com.linkedin.drelephant.spark.data.SparkJobProgressData;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.util.Collection;
+import java.util.Map;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * This class tests the streaming reading of the Spark event logs
+ */
+public class SparkEventLogReaderTest {
+
+  private static final String event_log_dir = "spark_event_logs/";
+
+  @Test
+  public void testReadEventLog() throws IOException {
+    InputStream in = new BufferedInputStream(
+        SparkEventLogReaderTest.class.getClassLoader().getResourceAsStream(event_log_dir + "event_log_1"));
+    SparkEventLogData data;
+    try {
+      data = SparkEventLogReader.read(in);
+    } finally {
+      in.close();
+    }
+
+    assertFalse(data.isEmpty());
+    assertEquals("application_1457600942802_0093", data.getAppId());
+    assertEquals("PythonPi", data.getGeneralData().getApplicationName());
+    assertEquals("hdfs", data.getGeneralData().getSparkUser());
+    assertEquals(1458126354336L, data.getGeneralData().getStartTime());
+    assertEquals(1458126409609L, data.getGeneralData().getEndTime());
+
+    SparkExecutorData executorData = data.getExecutorData();
+    assertEquals(3, executorData.getExecutors().size());
+    SparkExecutorData.ExecutorInfo driver = executorData.getExecutorInfo("driver");
+    assertEquals("10.20.0.71:58838", driver.hostPort);
+    assertEquals(1111794647L, driver.maxMem);
+    assertEquals(0, driver.totalTasks);
+    SparkExecutorData.ExecutorInfo executor = executorData.getExecutorInfo("2");
+    assertEquals(2223023063L, executor.maxMem);
+    assertEquals(5, executor.completedTasks);
+    assertEquals(0, executor.activeTasks);
+    assertEquals(17725L, executor.duration);
+
+    SparkJobProgressData jobProgressData = data.getJobProgressData();
+    assertTrue(jobProgressData.getCompletedJobs().contains(0));
+    assertTrue(jobProgressData.getFailedJobs().isEmpty());
+    assertEquals(10, jobProgressData.getJobInfo(0).numCompletedTasks);
+    assertEquals(1, jobProgressData.getJobInfo(0).completedStageIndices.size());
+    assertEquals("reduce at pi.py:39", jobProgressData.getJobDescription(0));
+
+    SparkJobProgressData.StageInfo stage = jobProgressData.getStageInfo(0, 0);
+    assertEquals(10, stage.numCompleteTasks);
+    assertEquals(0, stage.numActiveTasks);
+    assertEquals(2470L, stage.executorRunTime);
+    assertEquals(1458126409599L - 1458126390256L, stage.duration);
+    assertEquals(1, jobProgressData.getCompletedStages().size());
+  }
+
+  @Test
+  public void testFailuresAndBlocks() throws IOException {
+    String log = "{\"Event\":\"SparkListenerEnvironmentUpdate\",\"JVM Information\":{\"Java Version\":\"1.7\"},"
+        + "\"Spark Properties\":{\"spark.executor.memory\":\"4g\",\"spark.admin.acls\":\"a,b\"},"
+        + "\"System Properties\":{\"java.io.tmpdir\":\"/tmp\"},\"Classpath Entries\":{}}\n"
+        + "{\"Event\":\"SparkListenerBlockManagerAdded\",\"Block Manager ID\":{\"Executor ID\":\"1\",\"Host\":\"h1\","
+        + "\"Port\":1},\"Maximum Memory\":1000}\n"
+        + "{\"Event\":\"SparkListenerJobStart\",\"Job ID\":0,\"Submission Time\":10,\"Stage Infos\":["
+        + "{\"Stage ID\":0,\"Stage Attempt ID\":0,\"Stage Name\":\"map\",\"Number of Tasks\":2,\"RDD Info\":[]},"
+        + "{\"Stage ID\":1,\"Stage Attempt ID\":0,\"Stage Name\":\"skipped\",\"Number of Tasks\":3,\"RDD Info\":[]}],"
+        + "\"Stage IDs\":[0,1],\"Properties\":{\"spark.jobGroup.id\":\"group\"}}\n"
+        + "{\"Event\":\"SparkListenerStageSubmitted\",\"Stage Info\":{\"Stage ID\":0,\"Stage Attempt ID\":0,"
+        + "\"Stage Name\":\"map\",\"Number of Tasks\":2,\"Submission Time\":20}}\n"
+        + "{\"Event\":\"SparkListenerTaskStart\",\"Stage ID\":0,\"Stage Attempt ID\":0,\"Task Info\":{\"Index\":0,"
+        + "\"Executor ID\":\"1\"}}\n"
+        + "{\"Event\":\"SparkListenerTaskStart\",\"Stage ID\":0,\"Stage Attempt ID\":0,\"Task Info\":{\"Index\":1,"
+        + "\"Executor ID\":\"1\"}}\n"
+        + "{\"Event\":\"SparkListenerTaskEnd\",\"Stage ID\":0,\"Stage Attempt ID\":0,"
+        + "\"Task End Reason\":{\"Reason\":\"Success\"},\"Task Info\":{\"Index\":0,\"Executor ID\":\"1\","
+        + "\"Launch Time\":20,\"Finish Time\":30,\"Failed\":false},\"Task Metrics\":{\"Executor Run Time\":8,"
+        + "\"Input Metrics\":{\"Bytes Read\":100},\"Shuffle Read Metrics\":{\"Remote Bytes Read\":5,"
+        + "\"Local Bytes Read\":6},\"Shuffle Write Metrics\":{\"Shuffle Bytes Written\":7},\"Updated Blocks\":["
+        + "{\"Block ID\":\"rdd_3_0\",\"Status\":{\"Storage Level\":{\"Use Disk\":false,\"Use Memory\":true},"
+        + "\"Memory Size\":400,\"Disk Size\":0}},"
+        + "{\"Block ID\":\"rdd_3_1\",\"Status\":{\"Storage Level\":{\"Use Disk\":false,\"Use Memory\":true},"
+        + "\"Memory Size\":300,\"Disk Size\":0}}]}}\n"
+        + "{\"Event\":\"SparkListenerUnpersistRDD\",\"RDD ID\":3}\n"
+        + "{\"Event\":\"SparkListenerTaskEnd\",\"Stage ID\":0,\"Stage Attempt ID\":0,"
+        + "\"Task End Reason\":{\"Reason\":\"ExceptionFailure\",\"Description\":\"boom\"},\"Task Info\":{\"Index\":1,"
+        + "\"Executor ID\":\"1\",\"Launch Time\":20,\"Finish Time\":40,\"Failed\":true},"
+        + "\"Task Metrics\":{\"Executor Run Time\":9}}\n"
+        + "{\"Event\":\"SparkListenerStageCompleted\",\"Stage Info\":{\"Stage ID\":0,\"Stage Attempt ID\":0,"
+        + "\"Stage Name\":\"map\",\"Number of Tasks\":2,\"Submission Time\":20,\"Completion Time\":50,"
+        + "\"Failure Reason\":\"boom\"}}\n"
+        + "{\"Event\":\"SparkListenerJobEnd\",\"Job ID\":0,\"Completion Time\":60,"
+        + "\"Job Result\":{\"Result\":\"JobFailed\"}}\n";
+
+    SparkEventLogData data = SparkEventLogReader.read(new ByteArrayInputStream(log.getBytes("UTF-8")));
+
+    assertEquals("4g", data.getEnvironmentData().getSparkProperty("spark.executor.memory"));
+    assertEquals("/tmp", data.getEnvironmentData().getSystemProperty("java.io.tmpdir"));
+    assertEquals(2, data.getGeneralData().getAdminAcls().size());
+
+    SparkExecutorData.ExecutorInfo executor = data.getExecutorData().getExecutorInfo("1");
+    // The peak memory is kept after the RDD is unpersisted
+    assertEquals(700L, executor.memUsed);
+    assertEquals(0, executor.rddBlocks);
+    assertEquals(1, executor.completedTasks);
+    assertEquals(1, executor.failedTasks);
+    assertEquals(30L, executor.duration);
+    assertEquals(100L, executor.inputBytes);
+    assertEquals(5L, executor.shuffleRead);
+    assertEquals(7L, executor.shuffleWrite);
+
+    SparkJobProgressData jobProgressData = data.getJobProgressData();
+    assertTrue(jobProgressData.getFailedJobs().contains(0));
+    assertEquals(1, jobProgressData.getFailedStages().size());
+    SparkJobProgressData.JobInfo job = jobProgressData.getJobInfo(0);
+    assertEquals("group", job.jobGroup);
+    assertEquals(1, job.numCompletedTasks);
+    assertEquals(1, job.numFailedTasks);
+    assertEquals(1, job.numFailedStages);
+    assertEquals(1, job.numSkippedStages);
+    assertEquals(3, job.numSkippedTasks);
+    assertEquals(0.5, job.getFailureRate(), 0);
+
+    SparkJobProgressData.StageInfo stage = jobProgressData.getStageInfo(0, 0);
+    assertEquals(11L, stage.shuffleReadBytes);
+    assertEquals(17L, stage.executorRunTime);
+    assertEquals(30L, stage.duration);
+    assertEquals("skipped", jobProgressData.getStageInfo(1, 0).name);
+  }
+
+  /**
+   * @return An event log of one job running one stage of numTasks tasks
+   */
+  private static String newStageLog(int numTasks) {
+    StringBuilder log = new StringBuilder();
+    log.append("{\"Event\":\"SparkListenerJobStart\",\"Job ID\":0,\"Submission Time\":10,\"Stage Infos\":[")
+        .append("{\"Stage ID\":0,\"Stage Attempt ID\":0,\"Stage Name\":\"map\",\"Number of Tasks\":")
+        .append(numTasks).append(",\"RDD Info\":[]}],\"Stage IDs\":[0]}\n")
+        .append("{\"Event\":\"SparkListenerStageSubmitted\",\"Stage Info\":{\"Stage ID\":0,")
+        .append("\"Stage Attempt ID\":0,\"Stage Name\":\"map\",\"Number of Tasks\":").append(numTasks)
+        .append(",\"Submission Time\":20}}\n");
+    for (int i = 0; i < numTasks; i++) {
+      log.append("{\"Event\":\"SparkListenerTaskStart\",\"Stage ID\":0,\"Stage Attempt ID\":0,")
+          .append("\"Task Info\":{\"Index\":").append(i).append(",\"Executor ID\":\"1\"}}\n")
+          .append("{\"Event\":\"SparkListenerTaskEnd\",\"Stage ID\":0,\"Stage Attempt ID\":0,")
+          .append("\"Task End Reason\":{\"Reason\":\"Success\"},\"Task Info\":{\"Index\":").append(i)
+          .append(",\"Executor ID\":\"1\",\"Launch Time\":20,\"Finish Time\":30,\"Failed\":false},")
+          .append("\"Task Metrics\":{\"Executor Run Time\":1}}\n");
+    }
+    log.append("{\"Event\":\"SparkListenerStageCompleted\",\"Stage Info\":{\"Stage ID\":0,")
+        .append("\"Stage Attempt ID\":0,\"Stage Name\":\"map\",\"Number of Tasks\":").append(numTasks)
+        .append(",\"Submission Time\":20,\"Completion Time\":50}}\n")
+        .append("{\"Event\":\"SparkListenerJobEnd\",\"Job ID\":0,\"Completion Time\":60,")
+        .append("\"Job Result\":{\"Result\":\"JobSucceeded\"}}\n");
+    return log.toString();
+  }
+
+  /**
+   * @return The number of elements held by the collection and map fields of the object
+   */
+  private static int countElements(Object object) throws IllegalAccessException {
+    int count = 0;
+    for (Field field : object.getClass().getDeclaredFields()) {
+      field.setAccessible(true);
+      Object value = field.get(object);
+      if (value instanceof Collection) {
+        count += ((Collection<?>) value).size();
+      } else if (value instanceof Map) {
+        count += ((Map<?, ?>) value).size();
+      }
+    }
+    return count;
+  }
+
+  @Test
+  public void testStageStateIndependentOfTaskCount() throws Exception {
+    SparkJobProgressData small =
+        SparkEventLogReader.read(new ByteArrayInputStream(newStageLog(10).getBytes("UTF-8"))).getJobProgressData();
+    SparkJobProgressData large =
+        SparkEventLogReader.read(new ByteArrayInputStream(newStageLog(10000).getBytes("UTF-8"))).getJobProgressData();
+
+    assertEquals(10, small.getStageInfo(0, 0).numCompleteTasks);
+    assertEquals(10000, large.getStageInfo(0, 0).numCompleteTasks);
+    assertEquals(10000, large.getJobInfo(0).numCompletedTasks);
+    assertEquals(10000L, large.getStageInfo(0, 0).executorRunTime);
+
+    // The stages and jobs only hold counters, whatever the number of tasks
+    assertEquals(countElements(small.getStageInfo(0, 0)), countElements(large.getStageInfo(0, 0)));
+    assertEquals(countElements(small.getJobInfo(0)), countElements(large.getJobInfo(0)));
+  }
+
+  @Test
+  public void testStopsAtApplicationEnd() throws IOException {
+    // Whatever follows the application end is not read, not even invalid json
+    String log = newStageLog(2) + "{\"Event\":\"SparkListenerApplicationEnd\",\"Timestamp\":70}\n" + "not json\n";
+    SparkEventLogData data = SparkEventLogReader.read(new ByteArrayInputStream(log.getBytes("UTF-8")));
+
+    assertEquals(70L, data.getGeneralData().getEndTime());
+    assertEquals(2, data.getJobProgressData().getStageInfo(0, 0).numCompleteTasks);
+  }
+
+  @Test
+  public void testReadsTheTasksEndedAfterApplicationEnd() throws IOException {
+    String log = "{\"Event\":\"SparkListenerBlockManagerAdded\",\"Block Manager ID\":{\"Executor ID\":\"1\","
+        + "\"Host\":\"h1\",\"Port\":1},\"Maximum Memory\":1000}\n"
+        + "{\"Event\":\"SparkListenerJobStart\",\"Job ID\":0,\"Submission Time\":10,\"Stage IDs\":[0]}\n"
+        + "{\"Event\":\"SparkListenerStageSubmitted\",\"Stage Info\":{\"Stage ID\":0,\"Stage Attempt ID\":0,"
+        + "\"Stage Name\":\"map\",\"Number of Tasks\":1,\"Submission Time\":20}}\n"
+        + "{\"Event\":\"SparkListenerTaskStart\",\"Stage ID\":0,\"Stage Attempt ID\":0,\"Task Info\":{\"Index\":0,"
+        + "\"Executor ID\":\"1\"}}\n"
+        + "{\"Event\":\"SparkListenerApplicationEnd\",\"Timestamp\":70}\n"
+        + "{\"Event\":\"SparkListenerTaskEnd\",\"Stage ID\":0,\"Stage Attempt ID\":0,"
+        + "\"Task End Reason\":{\"Reason\":\"Success\"},\"Task Info\":{\"Index\":0,\"Executor ID\":\"1\","
+        + "\"Launch Time\":20,\"Finish Time\":30,\"Failed\":false}}\n"
+        + "{\"Event\":\"SparkListenerJobEnd\",\"Job ID\":0,\"Completion Time\":80,"
+        + "\"Job Result\":{\"Result\":\"JobSucceeded\"}}\n"
+        + "not json\n";
+    SparkEventLogData data = SparkEventLogReader.read(new ByteArrayInputStream(log.getBytes("UTF-8")));
+
+    assertEquals(1, data.getExecutorData().getExecutorInfo("1").completedTasks);
+    assertEquals(0, data.getExecutorData().getExecutorInfo("1").activeTasks);
+    assertTrue(data.getJobProgressData().getCompletedJobs().contains(0));
+  }
+}
@@ -20,6 +20,8 @@ import com.linkedin.drelephant.schedulers.AirflowScheduler;
 import com.linkedin.drelephant.schedulers.AzkabanScheduler;
 import com.linkedin.drelephant.schedulers.Scheduler;
 
+import common.DBTestUtil;
+
 import java.util.Properties;
 
 import org.junit.After;
@@ -38,7 +40,7 @@ public class InfoExtractorTest {
 
   @Before
   public void startApp() throws Exception {
-    app = Helpers.fakeApplication(Helpers.inMemoryDatabase());
+    app = Helpers.fakeApplication(DBTestUtil.inMemoryDatabase());
     Helpers.start(app);
   }
 
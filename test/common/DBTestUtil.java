@@ -21,10 +21,16 @@ import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.IOUtils;
+import play.GlobalSettings;
 import play.db.DB;
+import play.test.FakeApplication;
 
-import static common.TestConstants.TEST_DATA_FILE;
+import static common.TestConstants.*;
+import static play.test.Helpers.fakeApplication;
 
 
 public class DBTestUtil {
@@ -49,4 +55,32 @@ public class DBTestUtil {
       connection.close();
     }
   }
+
+  /**
+   * The SHA1() function of MySQL, registered in H2 by the database url
+   */
+  public static String sha1(String value) {
+    return value == null ? null : DigestUtils.shaHex(value);
+  }
+
+  /**
+   * The configuration of an in-memory H2 database in MySQL mode with the evolutions applied, to use instead of
+   * Helpers.inMemoryDatabase(), whose database cannot run the evolutions
+   */
+  public static Map<String, String> inMemoryDatabase() {
+    Map<String, String> dbConn = new HashMap<String, String>();
+    dbConn.put(DB_DEFAULT_DRIVER_KEY, DB_DEFAULT_DRIVER_VALUE);
+    dbConn.put(DB_DEFAULT_URL_KEY, DB_DEFAULT_URL_VALUE);
+    dbConn.put(EVOLUTION_PLUGIN_KEY, EVOLUTION_PLUGIN_VALUE);
+    dbConn.put(APPLY_EVOLUTIONS_DEFAULT_KEY, APPLY_EVOLUTIONS_DEFAULT_VALUE);
+    return dbConn;
+  }
+
+  /**
+   * Creates a fake application on an in-memory H2 database in MySQL mode with the evolutions applied. The global
+   * settings are overridden so that the daemon is not started.
+   */
+  public static FakeApplication fakeDBApplication() {
+    return fakeApplication(inMemoryDatabase(), new GlobalSettings());
+  }
 }
@@ -50,7 +50,9 @@ public class TestConstants {
   public static final String DB_DEFAULT_DRIVER_KEY = "db.default.driver";
   public static final String DB_DEFAULT_DRIVER_VALUE = "org.h2.Driver";
   public static final String DB_DEFAULT_URL_KEY = "db.default.url";
-  public static final String DB_DEFAULT_URL_VALUE = "jdbc:h2:mem:test;MODE=MySQL;";
+  // H2 has no SHA1() of MySQL, used by the evolutions
+  public static final String DB_DEFAULT_URL_VALUE =
+      "jdbc:h2:mem:test;MODE=MySQL;INIT=CREATE ALIAS IF NOT EXISTS SHA1 FOR \"common.DBTestUtil.sha1\"";
   public static final String EVOLUTION_PLUGIN_KEY = "evolutionplugin";
   public static final String EVOLUTION_PLUGIN_VALUE = "enabled";
   public static final String APPLY_EVOLUTIONS_DEFAULT_KEY = "applyEvolutions.default";
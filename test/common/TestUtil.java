@@ -16,9 +16,16 @@
 
 package common;
 
+import com.linkedin.drelephant.analysis.MetricUnit;
+import com.linkedin.drelephant.analysis.Severity;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Properties;
+import models.AppHeuristicResult;
+import models.AppHeuristicResultDetails;
+import models.AppHeuristicResultMetric;
+import models.AppResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -43,4 +50,69 @@ public class TestUtil {
     return properties;
   }
 
+  /**
+   * Creates the result of an application run by a scheduled job. Each heuristic has the given severity and score,
+   * a detail whose value is the application id and the heuristic name, and a metric named after the heuristic.
+   *
+   * @param appId The application id
+   * @param flowExecId The flow execution id, empty for an application not run by a scheduler
+   * @param jobDefId The job definition id
+   * @param finishTime The finish time of the application
+   * @param severity The severity of each heuristic
+   * @param heuristicScore The score of each heuristic
+   * @param heuristicNames The names of the heuristics
+   * @return The result
+   */
+  public static AppResult newAppResult(String appId, String flowExecId, String jobDefId, long finishTime,
+      Severity severity, int heuristicScore, String... heuristicNames) {
+    AppResult result = new AppResult();
+    result.id = appId;
+    result.name = "Word count";
+    result.username = TestConstants.TEST_USERNAME;
+    result.queueName = TestConstants.TEST_DEFAULT_QUEUE_NAME;
+    result.startTime = finishTime - 1000;
+    result.finishTime = finishTime;
+    result.trackingUrl = "http://hostname/jobhistory/job/" + appId;
+    result.jobType = TestConstants.TEST_JOB_TYPE;
+    result.scheduler = TestConstants.TEST_SCHEDULER;
+    result.jobName = jobDefId;
+    result.flowExecId = flowExecId;
+    result.flowExecUrl = flowExecId;
+    result.flowDefId = flowExecId.isEmpty() ? "" : TestConstants.TEST_FLOW_DEF_ID1;
+    result.flowDefUrl = result.flowDefId;
+    result.jobDefId = jobDefId;
+    result.jobDefUrl = jobDefId;
+    result.jobExecId = flowExecId + "&job=" + jobDefId + "&app=" + appId;
+    result.jobExecUrl = result.jobExecId;
+
+    result.severity = heuristicNames.length == 0 ? Severity.NONE : severity;
+    result.score = heuristicScore * heuristicNames.length;
+    result.yarnAppHeuristicResults = new ArrayList<AppHeuristicResult>();
+    for (String heuristicName : heuristicNames) {
+      AppHeuristicResult heuristicResult = new AppHeuristicResult();
+      heuristicResult.yarnAppResult = result;
+      heuristicResult.heuristicClass = "com.linkedin.drelephant.mapreduce.heuristics." + heuristicName.replace(" ", "");
+      heuristicResult.heuristicName = heuristicName;
+      heuristicResult.severity = severity;
+      heuristicResult.score = heuristicScore;
+
+      AppHeuristicResultDetails details = new AppHeuristicResultDetails();
+      details.yarnAppHeuristicResult = heuristicResult;
+      details.name = "Result";
+      details.value = appId + " " + heuristicName;
+      heuristicResult.yarnAppHeuristicResultDetails = new ArrayList<AppHeuristicResultDetails>();
+      heuristicResult.yarnAppHeuristicResultDetails.add(details);
+
+      AppHeuristicResultMetric metric = new AppHeuristicResultMetric();
+      metric.yarnAppHeuristicResult = heuristicResult;
+      metric.name = heuristicName;
+      metric.unit = MetricUnit.COUNT;
+      metric.value = heuristicScore;
+      heuristicResult.yarnAppHeuristicResultMetrics = new ArrayList<AppHeuristicResultMetric>();
+      heuristicResult.yarnAppHeuristicResultMetrics.add(metric);
+
+      result.yarnAppHeuristicResults.add(heuristicResult);
+    }
+    return result;
+  }
 }
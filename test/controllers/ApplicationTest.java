@@ -17,20 +17,31 @@
 package controllers;
 
 import com.avaje.ebean.Query;
+import com.linkedin.drelephant.analysis.AppResultCounts;
+import com.linkedin.drelephant.analysis.Severity;
+import common.DBTestUtil;
 import models.AppResult;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import play.api.mvc.Content;
+import play.db.DB;
 import play.test.FakeApplication;
 import play.test.Helpers;
 import views.html.page.homePage;
 import views.html.results.searchResults;
 
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -57,7 +68,7 @@ public class ApplicationTest {
 
   @BeforeClass
   public static void startApp() {
-    app = Helpers.fakeApplication(Helpers.inMemoryDatabase());
+    app = Helpers.fakeApplication(DBTestUtil.inMemoryDatabase());
     Helpers.start(app);
   }
 
@@ -141,4 +152,139 @@ public class ApplicationTest {
     assertTrue(sql4.contains("t0.finish_time <= ?"));
     assertTrue(sql4.contains("order by t0.finish_time desc"));
   }
+
+  @Test
+  public void testGenerateSearchQueryWithCursor() {
+    Map<String, String> searchParams = new HashMap<String, String>();
+    searchParams.put(Application.USERNAME, "username");
+    SearchCursor cursor = new SearchCursor(1459713751000L, "application_1_2");
+
+    Query<AppResult> query = Application.generateSearchQuery("*", searchParams, cursor, false);
+    assertNotNull(query.findList());
+    String sql = query.getGeneratedSql();
+    assertTrue(sql.contains("t0.username = ?"));
+    assertTrue(sql.contains("t0.finish_time <= ?"));
+    assertTrue(sql.contains("t0.id < ?"));
+    assertTrue(sql.contains("order by t0.finish_time desc, t0.id desc"));
+
+    // Backwards from the cursor, by start time
+    searchParams.put(Application.STARTED_TIME_BEGIN, "1459713751000");
+    query = Application.generateSearchQuery("*", searchParams, cursor, true);
+    assertNotNull(query.findList());
+    sql = query.getGeneratedSql();
+    assertTrue(sql.contains("t0.start_time >= ?"));
+    assertTrue(sql.contains("t0.id > ?"));
+    assertTrue(sql.contains("order by t0.start_time, t0.id"));
+  }
+
+  /**
+   * Smoke check that every filter of the search has an index to use, with the plans of the in-memory H2 database. H2
+   * plans an empty table, so this only catches a filter left without any index, not a plan MySQL would pick on real
+   * data. A search without filters reads the latest results along the finish time index, so it is not checked.
+   */
+  @Test
+  public void testSearchQueryPlans() throws SQLException {
+    String[][] searches = {
+        {Application.USERNAME, "username"},
+        {Application.QUEUE_NAME, "queuename"},
+        {Application.JOB_TYPE, "Pig"},
+        {Application.SEVERITY, "3"},
+        {Application.SEVERITY, "3", Application.ANALYSIS, "Mapper Skew"},
+        {Application.USERNAME, "username", Application.JOB_TYPE, "Pig"},
+        {Application.USERNAME, "username", Application.QUEUE_NAME, "queuename"},
+        {Application.USERNAME, "username", Application.STARTED_TIME_BEGIN, "1459713751000"},
+        {Application.STARTED_TIME_BEGIN, "1459713751000", Application.STARTED_TIME_END, "1459713751000"},
+        {Application.FINISHED_TIME_BEGIN, "1459713751000", Application.FINISHED_TIME_END, "1459713751000"},
+        {Application.JOB_TYPE, "Pig", Application.FINISHED_TIME_BEGIN, "1459713751000"}
+    };
+
+    for (String[] search : searches) {
+      Map<String, String> searchParams = new HashMap<String, String>();
+      for (int i = 0; i < search.length; i += 2) {
+        searchParams.put(search[i], search[i + 1]);
+      }
+      Query<AppResult> query = Application.generateSearchQuery("*", searchParams);
+      query.findList();
+      String plan = explain(query.getGeneratedSql());
+      // H2 smoke check only, not a guarantee of the MySQL plan
+      assertFalse("Search " + searchParams + " scans a whole table in H2: " + plan, plan.contains(".tableScan"));
+    }
+  }
+
+  /**
+   * Smoke check that the flow history, the job history and the job execution lookups have an index to use, with the
+   * plans of the in-memory H2 database. Like the search plans, it is not a guarantee of the MySQL plans.
+   */
+  @Test
+  public void testHistoryQueryPlans() throws SQLException {
+    List<Query<AppResult>> queries = new ArrayList<Query<AppResult>>();
+    queries.add(Application.generateFlowHistoryQuery("flowdefid"));
+    queries.add(Application.generateJobHistoryQuery("jobdefid"));
+    queries.add(Application.generateJobExecQuery("jobexecid"));
+
+    for (Query<AppResult> query : queries) {
+      query.findList();
+      String plan = explain(query.getGeneratedSql());
+      // H2 smoke check only, not a guarantee of the MySQL plan
+      assertFalse("History query scans a whole table in H2: " + plan, plan.contains(".tableScan"));
+    }
+  }
+
+  @Test
+  public void testDashboardCountsRefresh() throws SQLException {
+    // Later than any counts cached by the other tests
+    long now = System.currentTimeMillis() + 10 * Application.FETCH_DELAY;
+    long hour = AppResultCounts.BUCKET_SIZE;
+    addCounts(now - hour, Severity.CRITICAL, Severity.CRITICAL, Severity.SEVERE, Severity.LOW);
+    // Before the last day
+    addCounts(now - 48 * hour, Severity.CRITICAL);
+
+    Application.DashboardCounts counts = Application.getDashboardCounts(now);
+    assertEquals(4, counts._numJobsAnalyzed);
+    assertEquals(2, counts._numJobsCritical);
+    assertEquals(1, counts._numJobsSevere);
+
+    // Served from the cache until FETCH_DELAY passed
+    addCounts(now, Severity.CRITICAL);
+    assertTrue(counts == Application.getDashboardCounts(now + Application.FETCH_DELAY));
+    counts = Application.getDashboardCounts(now + Application.FETCH_DELAY + 1);
+    assertEquals(5, counts._numJobsAnalyzed);
+    assertEquals(3, counts._numJobsCritical);
+  }
+
+  private static void addCounts(long finishTime, Severity... severities) throws SQLException {
+    List<AppResult> results = new ArrayList<AppResult>();
+    for (Severity severity : severities) {
+      AppResult result = new AppResult();
+      result.username = "username";
+      result.jobType = "Pig";
+      result.severity = severity;
+      result.finishTime = finishTime;
+      results.add(result);
+    }
+    Connection connection = DB.getConnection(false);
+    try {
+      AppResultCounts.add(connection, results);
+      connection.commit();
+    } finally {
+      connection.close();
+    }
+  }
+
+  private static String explain(String sql) throws SQLException {
+    // The values do not change which index is used
+    Connection connection = DB.getConnection();
+    try {
+      Statement statement = connection.createStatement();
+      try {
+        ResultSet resultSet = statement.executeQuery("EXPLAIN " + sql.replace("?", "'1'"));
+        resultSet.next();
+        return resultSet.getString(1);
+      } finally {
+        statement.close();
+      }
+    } finally {
+      connection.close();
+    }
+  }
 }
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package controllers;
+
+import com.avaje.ebean.Query;
+import com.linkedin.drelephant.analysis.Severity;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import models.AppHeuristicResult;
+import models.AppHeuristicResultDetails;
+import models.AppResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import play.libs.Json;
+import play.test.FakeApplication;
+import play.test.Helpers;
+
+import static common.DBTestUtil.fakeDBApplication;
+import static common.TestConstants.*;
+import static common.TestUtil.newAppResult;
+
+
+/**
+ * Compares the rest search page of the whole results with the projected pages, for a page of results with failed
+ * tasks whose details hold stack traces. The whole, heuristics and details benchmarks only serialize a page already
+ * loaded. The query benchmarks run the Ebean query of the rest search with each projection on an in-memory H2
+ * database, then serialize the page, so that they include the columns read and the beans built.
+ *
+ * Run with: sbt "test:runMain org.openjdk.jmh.Main ResultProjectionBenchmark -prof gc"
+ * The gc profiler reports the allocation rate and the bytes allocated per request (gc.alloc.rate.norm) next to the
+ * time. Each benchmark returns the size of its response. H2 runs in the same process, so the query benchmarks also
+ * count the allocations of the database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ResultProjectionBenchmark {
+
+  private static final int PAGE_LENGTH = 100;
+  private static final int HEURISTICS = 12;
+  private static final int DETAILS = 6;
+  private static final int STACK_TRACE_LINES = 60;
+
+  private List<AppResult> _results;
+  private ResultProjection _heuristics;
+  private ResultProjection _details;
+
+  /**
+   * A page of results saved in an in-memory database
+   */
+  @State(Scope.Benchmark)
+  public static class Database {
+    private FakeApplication _app;
+
+    @Setup
+    public void setup() {
+      _app = fakeDBApplication();
+      Helpers.start(_app);
+      String[] heuristicNames = new String[HEURISTICS];
+      for (int j = 0; j < HEURISTICS; j++) {
+        heuristicNames[j] = "Heuristic " + j;
+      }
+      for (int i = 0; i < PAGE_LENGTH; i++) {
+        AppResult result = newAppResult("application_1458194917883_" + i, TEST_FLOW_EXEC_ID1, TEST_JOB_DEF_ID1,
+            1458194917883L + i, Severity.CRITICAL, 4, heuristicNames);
+        for (AppHeuristicResult heuristicResult : result.yarnAppHeuristicResults) {
+          heuristicResult.yarnAppHeuristicResultDetails = newDetails(heuristicResult);
+        }
+        result.save();
+      }
+    }
+
+    @TearDown
+    public void tearDown() {
+      Helpers.stop(_app);
+    }
+  }
+
+  @Setup
+  public void setup() {
+    _results = new ArrayList<AppResult>();
+    for (int i = 0; i < PAGE_LENGTH; i++) {
+      AppResult result = new AppResult();
+      result.id = "application_1458194917883_" + i;
+      result.name = "Email Overwriter";
+      result.username = "growth";
+      result.queueName = "misc_default";
+      result.jobType = "HadoopJava";
+      result.trackingUrl = "http://elephant.linkedin.com:19888/jobhistory/job/job_1458194917883_" + i;
+      result.severity = Severity.CRITICAL;
+      result.yarnAppHeuristicResults = new ArrayList<AppHeuristicResult>();
+      for (int j = 0; j < HEURISTICS; j++) {
+        AppHeuristicResult heuristicResult = new AppHeuristicResult();
+        heuristicResult.heuristicClass = "com.linkedin.drelephant.mapreduce.heuristics.ExceptionHeuristic";
+        heuristicResult.heuristicName = "Heuristic " + j;
+        heuristicResult.severity = Severity.CRITICAL;
+        heuristicResult.yarnAppHeuristicResultDetails = newDetails(heuristicResult);
+        result.yarnAppHeuristicResults.add(heuristicResult);
+      }
+      _results.add(result);
+    }
+
+    _heuristics = ResultProjection.parse(null, ResultProjection.EXPAND_HEURISTICS);
+    _details = ResultProjection.parse(null, ResultProjection.EXPAND_DETAILS);
+  }
+
+  /**
+   * @return The details of a failed heuristic, the first one holding a stack trace
+   */
+  private static List<AppHeuristicResultDetails> newDetails(AppHeuristicResult heuristicResult) {
+    StringBuilder stackTrace = new StringBuilder("java.io.IOException: Task failed");
+    for (int i = 0; i < STACK_TRACE_LINES; i++) {
+      stackTrace.append("\n\tat org.apache.hadoop.mapred.MapTask.runNewMapper(MapTask.java:").append(i).append(")");
+    }
+
+    List<AppHeuristicResultDetails> details = new ArrayList<AppHeuristicResultDetails>();
+    for (int k = 0; k < DETAILS; k++) {
+      AppHeuristicResultDetails detail = new AppHeuristicResultDetails();
+      detail.yarnAppHeuristicResult = heuristicResult;
+      detail.name = "Detail " + k;
+      detail.value = String.valueOf(k);
+      detail.details = k == 0 ? stackTrace.toString() : null;
+      details.add(detail);
+    }
+    return details;
+  }
+
+  /**
+   * Loads a page of results as the rest search does
+   *
+   * @param projection The projection, null for the whole results
+   */
+  private static List<AppResult> findPage(ResultProjection projection) {
+    Query<AppResult> query = Application.generateSearchQuery(projection != null ? projection.getSelect() : "*",
+        Collections.<String, String>emptyMap()).setMaxRows(PAGE_LENGTH);
+    query = projection != null ? projection.fetch(query) : Application.fetchWholeResults(query);
+    return query.findList();
+  }
+
+  @Benchmark
+  public int whole() {
+    return Json.toJson(_results).toString().length();
+  }
+
+  @Benchmark
+  public int heuristics() {
+    return _heuristics.toJson(_results).toString().length();
+  }
+
+  @Benchmark
+  public int details() {
+    return _details.toJson(_results).toString().length();
+  }
+
+  @Benchmark
+  public int queryWhole(Database database) {
+    return Json.toJson(findPage(null)).toString().length();
+  }
+
+  @Benchmark
+  public int queryHeuristics(Database database) {
+    return _heuristics.toJson(findPage(_heuristics)).toString().length();
+  }
+
+  @Benchmark
+  public int queryDetails(Database database) {
+    return _details.toJson(findPage(_details)).toString().length();
+  }
+}
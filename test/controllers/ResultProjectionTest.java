@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.linkedin.drelephant.analysis.MetricUnit;
+import com.linkedin.drelephant.analysis.Severity;
+import java.util.ArrayList;
+import java.util.Collections;
+import models.AppHeuristicResult;
+import models.AppHeuristicResultDetails;
+import models.AppHeuristicResultMetric;
+import models.AppResult;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class ResultProjectionTest {
+
+  private static AppResult newResult() {
+    AppHeuristicResultDetails detail = new AppHeuristicResultDetails();
+    detail.name = "Exception";
+    detail.value = "NullPointerException";
+    detail.details = "java.lang.NullPointerException\n\tat Foo.bar(Foo.java:1)";
+
+    AppHeuristicResultMetric metric = new AppHeuristicResultMetric();
+    metric.name = "Avg task GC time";
+    metric.unit = MetricUnit.MILLISECONDS;
+    metric.value = 55;
+
+    AppHeuristicResult heuristicResult = new AppHeuristicResult();
+    heuristicResult.heuristicClass = "ExceptionHeuristic";
+    heuristicResult.heuristicName = "Exception";
+    heuristicResult.severity = Severity.CRITICAL;
+    heuristicResult.score = 4;
+    heuristicResult.yarnAppHeuristicResultDetails = Collections.singletonList(detail);
+    heuristicResult.yarnAppHeuristicResultMetrics = Collections.singletonList(metric);
+
+    AppResult result = new AppResult();
+    result.id = "application_1_1";
+    result.username = "user";
+    result.finishTime = 100L;
+    result.severity = Severity.CRITICAL;
+    result.yarnAppHeuristicResults = new ArrayList<AppHeuristicResult>(Collections.singletonList(heuristicResult));
+    return result;
+  }
+
+  @Test
+  public void testParse() {
+    assertNull(ResultProjection.parse(null, " "));
+    assertEquals("id,username,finishTime", ResultProjection.parse("username, finishTime", null).getSelect());
+    assertEquals("id", ResultProjection.parse("id", null).getSelect());
+    assertTrue(ResultProjection.parse(null, "heuristics").getSelect().contains("flowDefUrl"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownField() {
+    ResultProjection.parse("yarnAppHeuristicResults", null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownExpansion() {
+    ResultProjection.parse(null, "heuristics,everything");
+  }
+
+  @Test
+  public void testToJson() {
+    JsonNode json = ResultProjection.parse("username,severity", null).toJson(Collections.singletonList(newResult()));
+    assertEquals(1, json.size());
+    assertEquals("user", json.get(0).get("username").asText());
+    assertFalse(json.get(0).has("finishTime"));
+    assertFalse(json.get(0).has("yarnAppHeuristicResults"));
+
+    json = ResultProjection.parse("username", "heuristics").toJson(Collections.singletonList(newResult()));
+    JsonNode heuristicResult = json.get(0).get("yarnAppHeuristicResults").get(0);
+    assertEquals("Exception", heuristicResult.get("heuristicName").asText());
+    assertEquals(4, heuristicResult.get("score").asInt());
+    assertFalse(heuristicResult.has("yarnAppHeuristicResultDetails"));
+    assertFalse(heuristicResult.has("yarnAppHeuristicResultMetrics"));
+
+    // The detail texts are left out even when loaded
+    json = ResultProjection.parse("username", "details").toJson(Collections.singletonList(newResult()));
+    JsonNode detail = json.get(0).get("yarnAppHeuristicResults").get(0).get("yarnAppHeuristicResultDetails").get(0);
+    assertEquals("NullPointerException", detail.get("value").asText());
+    assertFalse(detail.has("details"));
+    JsonNode metric = json.get(0).get("yarnAppHeuristicResults").get(0).get("yarnAppHeuristicResultMetrics").get(0);
+    assertEquals("Avg task GC time", metric.get("name").asText());
+    assertEquals("MILLISECONDS", metric.get("unit").asText());
+    assertEquals(55, metric.get("value").asDouble(), 0);
+  }
+}
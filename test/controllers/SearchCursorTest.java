@@ -0,0 +1,70 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package controllers;
+
+import models.AppResult;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+
+public class SearchCursorTest {
+
+  @Test
+  public void testToken() {
+    SearchCursor cursor = SearchCursor.fromToken(new SearchCursor(1460980723925L, "application_1_2").toToken());
+    assertEquals(1460980723925L, cursor.getTime());
+    assertEquals("application_1_2", cursor.getId());
+
+    // Only the first separator counts
+    cursor = SearchCursor.fromToken(new SearchCursor(5L, "a:b").toToken());
+    assertEquals("a:b", cursor.getId());
+
+    assertNull(SearchCursor.fromToken(null));
+    assertNull(SearchCursor.fromToken(" "));
+  }
+
+  @Test
+  public void testOf() {
+    AppResult result = new AppResult();
+    result.id = "application_1_2";
+    result.startTime = 10L;
+    result.finishTime = 20L;
+    assertEquals(10L, SearchCursor.of(result, true).getTime());
+    assertEquals(20L, SearchCursor.of(result, false).getTime());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidToken() {
+    SearchCursor.fromToken("bm90IGEgY3Vyc29y");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidTime() {
+    // x:id
+    SearchCursor.fromToken("eDppZA");
+  }
+
+  @Test
+  public void testPageQuery() {
+    PaginationStats paginationStats = new PaginationStats(20, 5);
+    paginationStats.setPageToken(3, "abc");
+    assertEquals("page=2", paginationStats.getPageQuery(2));
+    assertEquals("page=3&page-token=abc", paginationStats.getPageQuery(3));
+  }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2016 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.hadoop.mapreduce.jobhistory;
+
+import java.io.IOException;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+
+/**
+ * Writes job history files in the format of the MapReduce ApplicationMaster, whose EventWriter is package private.
+ */
+public class JobHistoryFileWriter {
+  private final EventWriter _writer;
+
+  public JobHistoryFileWriter(FileSystem fs, Path file) throws IOException {
+    _writer = new EventWriter(fs.create(file));
+  }
+
+  public JobHistoryFileWriter write(HistoryEvent event) throws IOException {
+    _writer.write(event);
+    return this;
+  }
+
+  public void close() throws IOException {
+    _writer.close();
+  }
+}
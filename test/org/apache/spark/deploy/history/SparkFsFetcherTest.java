@@ -46,7 +46,7 @@ public class SparkFsFetcherTest {
   private static final String spark = "SPARK";
   private static final String defEventLogDir = "/system/spark-history";
   private static final String confEventLogDir = "/custom/configured";
-  private static final double defEventLogSize = 100;
+  private static final double defEventLogSize = 10240;
   private static final double confEventLogSize = 50;
 
   @BeforeClass